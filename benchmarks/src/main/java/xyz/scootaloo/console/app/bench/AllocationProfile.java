@@ -0,0 +1,34 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行全部基准测试并附带GC分析，结果以JSON格式写入文件，作为后续优化的对比基线
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.args="-classpath %classpath xyz.scootaloo.console.app.bench.AllocationProfile [输出文件] [过滤正则]"
+ * </pre>
+ * <p>每个操作分配的字节数见结果中的 {@code gc.alloc.rate.norm}。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+public final class AllocationProfile {
+
+    public static void main(String[] args) throws RunnerException {
+        String output = args.length > 0 ? args[0] : "baseline.json";
+        String include = args.length > 1 ? args[1] : "xyz\\.scootaloo\\.console\\.app\\..*Benchmark.*";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(output)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,44 @@
+package xyz.scootaloo.console.app.bench;
+
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.Opt;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试使用的命令，覆盖几种常见的参数形式
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+public class BenchCommands {
+
+    // 按顺序填充的位置参数
+    @Cmd
+    public int add(int a, int b) {
+        return a + b;
+    }
+
+    // 短选项、长选项、默认值和布尔开关
+    @Cmd
+    public String opts(@Opt(value = 'n', fullName = "name") String name,
+                       @Opt(value = 's', fullName = "size", dftVal = "1") int size,
+                       @Opt(value = 'v', fullName = "verbose") boolean verbose) {
+        return verbose ? name + size : name;
+    }
+
+    // 子命令形式的参数
+    @Cmd(parser = "sub")
+    public String pack(@Opt(value = 'p', fullName = "pack", dftVal = "leetcode") String pack) {
+        return pack;
+    }
+
+    // 数据结构参数
+    @Cmd(parser = "collection")
+    public int coll(@Opt(value = 'l', fullName = "list") List<Integer> list,
+                    @Opt(value = 'm', fullName = "map") Map<String, Integer> map) {
+        return list.size() + map.size();
+    }
+
+}
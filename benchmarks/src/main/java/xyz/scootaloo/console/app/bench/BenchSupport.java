@@ -0,0 +1,50 @@
+package xyz.scootaloo.console.app.bench;
+
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.client.Console;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+/**
+ * 基准测试的公共部分
+ * <p>解释器是单例，每个基准测试在独立的JVM中运行(JMH fork)，所以在同一个JVM中只需要创建一次。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+public final class BenchSupport {
+    private static volatile Interpreter interpreter;
+
+    private BenchSupport() {
+    }
+
+    /**
+     * @return 注册了 {@link BenchCommands} 的解释器，不读取 console.yml
+     */
+    public static Interpreter interpreter() {
+        if (interpreter == null) {
+            synchronized (BenchSupport.class) {
+                if (interpreter == null) {
+                    interpreter = ApplicationRunner.getInterpreter(Console.factories()
+                            .add(new BenchCommands(), true)
+                            .then()
+                            .setConfFile(null)
+                            .printWelcome(false)
+                            .build());
+                }
+            }
+        }
+        return interpreter;
+    }
+
+    /**
+     * 检查命令是否执行成功，避免基准测试在测量一条失败的路径
+     * @param info 调用信息
+     * @param command 命令
+     */
+    public static void check(InvokeInfo info, String command) {
+        if (!info.isSuccess())
+            throw new IllegalStateException("命令执行失败: `" + command + "`, " + info.getExMsg());
+    }
+
+}
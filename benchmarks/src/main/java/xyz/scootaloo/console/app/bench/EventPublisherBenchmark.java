@@ -0,0 +1,101 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import xyz.scootaloo.console.app.event.AppListenerAdapter;
+import xyz.scootaloo.console.app.event.AppListenerProperty;
+import xyz.scootaloo.console.app.event.EventPublisher;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventPublisher} 向多个监听器分发事件的开销，包括系统自带的监听器
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventPublisherBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int listeners;
+
+    private final List<String> items = new ArrayList<>(Arrays.asList("1", "2"));
+    private InvokeInfo info;
+
+    @Setup
+    public void setUp() {
+        BenchSupport.interpreter().setUser("bench-event");
+        for (int i = 0; i<listeners; i++)
+            EventPublisher.regListener(new CountingListener("bench-" + i));
+        info = BenchSupport.interpreter().interpret("add 1 2");
+    }
+
+    @Benchmark
+    public String onInput() {
+        return EventPublisher.onInput("add 1 2");
+    }
+
+    @Benchmark
+    public void fullCycle(Blackhole bh) {
+        bh.consume(EventPublisher.onInput("add 1 2"));
+        EventPublisher.beforeResolveInput("add", items);
+        EventPublisher.onInputResolved("add", info);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fullCycle4Threads(Blackhole bh) {
+        fullCycle(bh);
+    }
+
+    public static class CountingListener implements AppListenerAdapter {
+        private final String name;
+        private long count;
+
+        public CountingListener(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void config(AppListenerProperty interested) {
+            interested.onInput().onResolveInput().onInputResolved();
+        }
+
+        @Override
+        public String onInput(String cmdline) {
+            count++;
+            return cmdline;
+        }
+
+        @Override
+        public void beforeResolveInput(String cmdName, List<String> cmdItems) {
+            count++;
+        }
+
+        @Override
+        public void onInputResolved(String cmdName, InvokeInfo info) {
+            count++;
+        }
+
+        @Override
+        public String info() {
+            return "count=" + count;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.CmdType;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过滤链的开销: 同一条命令在注册了不同数量的过滤器时的吞吐量，0 个过滤器时作为基准
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterChainBenchmark {
+
+    @Param({"0", "4", "16"})
+    public int filters;
+
+    private Interpreter interpreter;
+    private ResourcesHandler handler;
+    private final List<Object> factories = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        interpreter = BenchSupport.interpreter();
+        for (int i = 0; i<filters; i++) {
+            PassFilter filter = new PassFilter();
+            interpreter.register(filter);
+            factories.add(filter);
+        }
+        handler = interpreter.setUser("bench-filter");
+    }
+
+    @TearDown
+    public void tearDown() {
+        factories.forEach(interpreter::unregister);
+        handler.shutdown();
+    }
+
+    @Benchmark
+    public InvokeInfo interpret() {
+        return interpreter.interpret("add 1 2");
+    }
+
+    public static class PassFilter {
+        @Cmd(type = CmdType.Filter)
+        public boolean pass(String command) {
+            return command != null;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link Interpreter#interpret(String)} 端到端: 分词、查找命令、过滤链、事件、参数解析、调用、记录历史
+ * <p>每个 JMH 线程使用自己的用户，多线程的版本用于观察共享结构(注册表、事件、历史记录)的竞争。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InterpreterBenchmark {
+    private static final AtomicInteger USERS = new AtomicInteger();
+
+    @Param({"add 1 2", "opts -n bench --size 3 -v", "pack p x", "coll -l [1, 2, 3] -m {a:1, b:2}"})
+    public String command;
+
+    private Interpreter interpreter;
+    private ResourcesHandler handler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        interpreter = BenchSupport.interpreter();
+        // 在 JMH 的工作线程中创建用户，之后这个线程的命令都以此用户执行
+        handler = interpreter.setUser("bench-" + USERS.incrementAndGet());
+        BenchSupport.check(interpreter.interpret(command), command);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public InvokeInfo interpret() {
+        return interpreter.interpret(command);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public InvokeInfo interpret4Threads() {
+        return interpreter.interpret(command);
+    }
+
+}
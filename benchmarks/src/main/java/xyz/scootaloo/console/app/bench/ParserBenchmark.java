@@ -0,0 +1,74 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.scootaloo.console.app.parser.*;
+import xyz.scootaloo.console.app.parser.Interpreter.MethodActuator;
+import xyz.scootaloo.console.app.parser.preset.PresetFactoryManager;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单独测量各个参数解析器，不包含命令查找、事件和方法调用
+ * <p>默认解析器通过命令 {@code add} 的执行器取得，它没有指定解析器。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    private MethodMeta addMeta;
+    private MethodMeta optsMeta;
+    private MethodMeta packMeta;
+    private MethodMeta collMeta;
+    private ParameterParser dftParser;
+    private ParameterParser subParser;
+    private ParameterParser collectionParser;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        BenchCommands commands = new BenchCommands();
+        addMeta = meta(commands, "add");
+        optsMeta = meta(commands, "opts");
+        packMeta = meta(commands, "pack");
+        collMeta = meta(commands, "coll");
+        BenchSupport.interpreter();
+        dftParser = ((MethodActuator) AssemblyFactory.findActuator("add")).getParser();
+        subParser = PresetFactoryManager.getParserByName("sub").orElseThrow(IllegalStateException::new);
+        collectionParser = PresetFactoryManager.getParserByName("collection").orElseThrow(IllegalStateException::new);
+    }
+
+    private static MethodMeta meta(Object owner, String name) throws NoSuchMethodException {
+        for (Method method : owner.getClass().getMethods()) {
+            if (method.getName().equals(name))
+                return MethodMeta.getInstance(method, owner);
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    @Benchmark
+    public ResultWrapper dftPositional() throws Exception {
+        return dftParser.parse(addMeta, CommandLine.ofArgs("1 2"));
+    }
+
+    @Benchmark
+    public ResultWrapper dftOptions() throws Exception {
+        return dftParser.parse(optsMeta, CommandLine.ofArgs("-n bench --size 3 -v"));
+    }
+
+    @Benchmark
+    public ResultWrapper sub() throws Exception {
+        return subParser.parse(packMeta, CommandLine.ofArgs("p x"));
+    }
+
+    @Benchmark
+    public ResultWrapper collection() throws Exception {
+        return collectionParser.parse(collMeta, CommandLine.ofArgs("-l [1, 2, 3] -m {a:1, b:2}"));
+    }
+
+}
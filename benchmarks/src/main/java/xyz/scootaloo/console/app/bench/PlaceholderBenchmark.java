@@ -0,0 +1,53 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.scootaloo.console.app.client.Client;
+import xyz.scootaloo.console.app.client.ReplacementRecord;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.support.VariableManager;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VariableManager#resolvePlaceholders}: 命令参数中 ${...} 占位符的替换
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PlaceholderBenchmark {
+
+    @Param({"plain-text", "${name}", "prefix-${name}-${age}", "${user.name}"})
+    public String text;
+
+    private ReplacementRecord record;
+    private Map<String, Object> variablePool;
+
+    @Setup
+    public void setUp() {
+        BenchSupport.interpreter().setUser("bench-placeholder");
+        Client.Resources resources = Interpreter.getCurrentUser().getResources();
+        record = resources.getReplacementRecord();
+        variablePool = resources.getVariablePool();
+        variablePool.put("name", "bench");
+        variablePool.put("age", 18);
+        variablePool.put("user", new User());
+    }
+
+    @Benchmark
+    public String resolve() {
+        record.refresh();
+        return VariableManager.resolvePlaceholders(text, record, variablePool);
+    }
+
+    public static class User {
+        public String name = "bench";
+    }
+
+}
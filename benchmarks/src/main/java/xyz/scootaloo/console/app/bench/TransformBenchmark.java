@@ -0,0 +1,59 @@
+package xyz.scootaloo.console.app.bench;
+
+import org.openjdk.jmh.annotations.*;
+import xyz.scootaloo.console.app.parser.TransformFactory;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransformFactory#parsingParam(Object, Class, Type)}: 字符串到方法参数类型的转换
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:40
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+    private Type listType;
+
+    // 用于获取 List<Integer> 的泛型类型
+    @SuppressWarnings("unused")
+    public List<Integer> integers;
+
+    @Setup
+    public void setUp() throws NoSuchFieldException {
+        listType = TransformBenchmark.class.getField("integers").getGenericType();
+    }
+
+    @Benchmark
+    public Object toInt() throws Exception {
+        return TransformFactory.parsingParam("12345", int.class, int.class);
+    }
+
+    @Benchmark
+    public Object toDouble() throws Exception {
+        return TransformFactory.parsingParam("3.14", Double.class, Double.class);
+    }
+
+    @Benchmark
+    public Object toString_() throws Exception {
+        return TransformFactory.parsingParam("text", String.class, String.class);
+    }
+
+    @Benchmark
+    public Object toIntegerArray() throws Exception {
+        return TransformFactory.parsingParam("1,2,3,4,5", Integer[].class, Integer[].class);
+    }
+
+    @Benchmark
+    public Object toList() throws Exception {
+        return TransformFactory.parsingParam("1,2,3,4,5", List.class, listType);
+    }
+
+}
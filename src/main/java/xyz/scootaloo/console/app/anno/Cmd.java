@@ -55,6 +55,17 @@ public @interface Cmd {
      */
     String tag() default "usr";
 
+    /**
+     * @see xyz.scootaloo.console.app.support.ResultCache
+     * @return 是否缓存命令的结果，相同的参数再次执行时直接返回上一次的结果(方法上有 @Stateless 注解时也会缓存)
+     */
+    boolean cache() default false;
+
+    /**
+     * @return 命令执行成功后，清空这些命令缓存的结果(命令的方法名)
+     */
+    String[] evict() default {};
+
     /**
      * @return 备注
      */
@@ -7,10 +7,12 @@ import java.lang.annotation.Target;
 
 /**
  * 标记无状态的资源，不会因为连接改变状态
+ * <p>标记在命令方法上时，表示相同的参数总是得到相同的结果，命令的结果会被缓存，
+ * 见 {@link xyz.scootaloo.console.app.support.ResultCache}；标记在命令工厂类上时，类中所有的命令都会被缓存。</p>
  * @author flutterdash@qq.com
  * @since 2021/3/2 17:41
  */
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.FIELD, ElementType.METHOD, ElementType.TYPE})
 public @interface Stateless {
 
@@ -0,0 +1,480 @@
+package xyz.scootaloo.console.app.application;
+
+import xyz.scootaloo.console.app.application.callback.PostProcessor;
+import xyz.scootaloo.console.app.client.Console;
+import xyz.scootaloo.console.app.common.ResourceManager;
+import xyz.scootaloo.console.app.event.EventPublisher;
+import xyz.scootaloo.console.app.parser.Actuator;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量执行命令
+ * <p>从文件或者输入流中逐行读取命令，交给解释器执行，适用于回放大量的命令记录。
+ * 文件不会被一次性读入内存，读取和执行分为两个阶段，分别在两个线程中进行:</p>
+ * <pre>
+ *      读取阶段: 在后台线程中读取行、拼接多行命令、跳过空行和注释，每 {@code chunkSize} 条命令打包放入队列;
+ *      执行阶段: 在调用 {@link #run(Reader)} 的线程中取出命令并调用 {@link Interpreter#interpret(String)}，
+ *               所以命令以当前线程的用户身份执行。
+ * </pre>
+ * <p>输入的格式和控制台相同: 以反斜杠结尾的行和下一行拼接成一条命令; 以 '#' 开头的行是注释;
+ * 遇到退出命令时停止执行。</p>
+ * <pre>
+ * 示例:
+ *      BatchRunner.of(interpreter)
+ *              .errorPolicy(BatchRunner.ErrorPolicy.CONTINUE)
+ *              .maxErrors(100)
+ *              .run(Paths.get("commands.txt"));
+ * </pre>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 18:40
+ */
+public final class BatchRunner {
+    private static final Console console = ResourceManager.getConsole();
+    // 读取阶段结束的标记
+    private static final Chunk END = new Chunk(0);
+    // 报告中保留的失败记录数量
+    private static final int MAX_FAILURES = 16;
+
+    private final Interpreter interpreter;
+    private ErrorPolicy errorPolicy = ErrorPolicy.CONTINUE;
+    private int maxErrors = 0;
+    private int chunkSize = 256;
+    private int queueSize = 64;
+    private boolean echo = false;
+    private final List<PostProcessor> postProcessors = new ArrayList<>();
+
+    private BatchRunner(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * @param interpreter 解释器
+     * @return 使用此解释器执行命令的批量执行器
+     */
+    public static BatchRunner of(Interpreter interpreter) {
+        return new BatchRunner(Objects.requireNonNull(interpreter));
+    }
+
+    // setter---------------------------------------------------------------
+
+    /**
+     * @param errorPolicy 命令执行失败时的处理方式，默认继续执行
+     * @return 当前对象
+     */
+    public BatchRunner errorPolicy(ErrorPolicy errorPolicy) {
+        if (errorPolicy != null)
+            this.errorPolicy = errorPolicy;
+        return this;
+    }
+
+    /**
+     * @param maxErrors 失败的命令达到这个数量后停止执行，0 表示不限制，只在 {@code CONTINUE} 模式下有效
+     * @return 当前对象
+     */
+    public BatchRunner maxErrors(int maxErrors) {
+        if (maxErrors >= 0)
+            this.maxErrors = maxErrors;
+        return this;
+    }
+
+    /**
+     * @param chunkSize 读取阶段每次交给执行阶段的命令数量
+     * @return 当前对象
+     */
+    public BatchRunner chunkSize(int chunkSize) {
+        if (chunkSize > 0)
+            this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * @param queueSize 读取阶段最多领先执行阶段多少个批次，用于限制内存占用
+     * @return 当前对象
+     */
+    public BatchRunner queueSize(int queueSize) {
+        if (queueSize > 0)
+            this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * @param echo 执行之前是否输出命令，默认不输出
+     * @return 当前对象
+     */
+    public BatchRunner echo(boolean echo) {
+        this.echo = echo;
+        return this;
+    }
+
+    /**
+     * @param processor 接收每条命令的执行信息，按照添加的顺序调用
+     * @return 当前对象
+     */
+    public BatchRunner addPostProcessor(PostProcessor processor) {
+        if (processor != null)
+            this.postProcessors.add(processor);
+        return this;
+    }
+
+    // ---------------------------------------------------------------------
+
+    /**
+     * 执行文件中的命令，文件使用 UTF-8 编码
+     * @param file 命令文件
+     * @return 执行报告
+     * @throws IOException 无法打开文件时
+     */
+    public Report run(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return run(reader);
+        }
+    }
+
+    /**
+     * 执行输入流中的命令，例如 {@code System.in}，执行完毕后不会关闭这个输入流
+     * @param in 输入流
+     * @return 执行报告
+     */
+    public Report run(InputStream in) {
+        return run(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 执行命令，直到读取完毕、遇到退出命令，或者错误处理方式要求停止
+     * @param reader 命令来源，执行完毕后不会关闭
+     * @return 执行报告
+     */
+    public Report run(Reader reader) {
+        Report report = new Report();
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(queueSize);
+        LineReader lineReader = new LineReader(reader, queue, report);
+        Thread readerThread = new Thread(lineReader, "console-batch-reader");
+        readerThread.setDaemon(true);
+        long start = System.nanoTime();
+        readerThread.start();
+        try {
+            execute(queue, report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.stop("执行线程被中断");
+        } finally {
+            lineReader.stopped = true;
+            report.elapsedNanos = System.nanoTime() - start;
+        }
+        return report;
+    }
+
+    private void execute(BlockingQueue<Chunk> queue, Report report) throws InterruptedException {
+        String[] exitCmd = interpreter.getConfig().getExitCmd();
+        while (true) {
+            Chunk chunk = queue.take();
+            if (chunk == END)
+                return;
+            for (int i = 0; i<chunk.size; i++) {
+                String command = EventPublisher.onInput(chunk.commands[i]);
+                if (isExitCmd(exitCmd, Actuator.getCommandName(command))) {
+                    report.stop("遇到退出命令, 第" + chunk.lineNumbers[i] + "行");
+                    return;
+                }
+                if (echo)
+                    console.println(command);
+                InvokeInfo info;
+                try {
+                    info = interpreter.interpret(command);
+                } catch (RuntimeException e) {
+                    info = InvokeInfo.restore(null, command, null, System.currentTimeMillis(),
+                            0, false, String.valueOf(e.getMessage()));
+                }
+                for (PostProcessor processor : postProcessors)
+                    processor.process(info);
+                if (!onResult(report, chunk.lineNumbers[i], command, info))
+                    return;
+            }
+        }
+    }
+
+    // 统计执行结果，返回是否继续执行
+    private boolean onResult(Report report, long lineNumber, String command, InvokeInfo info) {
+        report.executed++;
+        if (info.isSuccess())
+            return true;
+        report.failed++;
+        if (report.failures.size() < MAX_FAILURES)
+            report.failures.add(new Failure(lineNumber, command, info.getExMsg()));
+        if (errorPolicy == ErrorPolicy.STOP) {
+            report.stop("命令执行失败, 第" + lineNumber + "行");
+            return false;
+        }
+        if (maxErrors > 0 && report.failed >= maxErrors) {
+            report.stop("失败的命令数量达到上限 " + maxErrors);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isExitCmd(String[] exitCmd, String cmdName) {
+        if (exitCmd == null)
+            return false;
+        for (String cmd : exitCmd) {
+            if (cmd != null && cmd.equals(cmdName))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchRunner{" +
+                "errorPolicy=" + errorPolicy +
+                ", maxErrors=" + maxErrors +
+                ", chunkSize=" + chunkSize +
+                ", queueSize=" + queueSize +
+                '}';
+    }
+
+    /**
+     * 命令执行失败时的处理方式
+     * <pre>
+     *      CONTINUE: 记录失败信息，继续执行之后的命令;
+     *      STOP:     停止执行
+     * </pre>
+     */
+    public enum ErrorPolicy {
+        CONTINUE, STOP;
+
+        /**
+         * 根据名称获取处理方式，不区分大小写，名称不能识别时返回 {@code CONTINUE}
+         * @param name 名称
+         * @return 处理方式
+         */
+        public static ErrorPolicy of(String name) {
+            if (name == null)
+                return CONTINUE;
+            for (ErrorPolicy policy : values()) {
+                if (policy.name().equals(name.trim().toUpperCase(Locale.ROOT)))
+                    return policy;
+            }
+            return CONTINUE;
+        }
+    }
+
+    // 读取阶段交给执行阶段的一批命令
+    private static final class Chunk {
+        private final String[] commands;
+        private final long[] lineNumbers;
+        private int size;
+
+        private Chunk(int capacity) {
+            this.commands = new String[capacity];
+            this.lineNumbers = new long[capacity];
+        }
+
+        private boolean add(String command, long lineNumber) {
+            commands[size] = command;
+            lineNumbers[size] = lineNumber;
+            size++;
+            return size == commands.length;
+        }
+    }
+
+    // 读取阶段，在后台线程中运行
+    private final class LineReader implements Runnable {
+        private final BufferedReader reader;
+        private final BlockingQueue<Chunk> queue;
+        private final Report report;
+        private volatile boolean stopped;
+
+        private LineReader(Reader reader, BlockingQueue<Chunk> queue, Report report) {
+            this.reader = reader instanceof BufferedReader ?
+                    (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+            this.queue = queue;
+            this.report = report;
+        }
+
+        @Override
+        public void run() {
+            try {
+                read();
+            } catch (IOException e) {
+                report.stop("读取命令时遇到异常: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    put(END);
+                } catch (InterruptedException ignore) {
+                    // 执行阶段已经结束
+                }
+            }
+        }
+
+        private void read() throws IOException, InterruptedException {
+            Chunk chunk = new Chunk(chunkSize);
+            StringBuilder multiLine = null;
+            long lineNumber = 0;
+            long commandLine = 0;
+            String line;
+            while (!stopped && (line = reader.readLine()) != null) {
+                lineNumber++;
+                report.lines++;
+                String trimmed = line.trim();
+                if (multiLine == null) {
+                    if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+                        report.skipped++;
+                        continue;
+                    }
+                    commandLine = lineNumber;
+                }
+                // 多行输入
+                if (trimmed.endsWith("\\")) {
+                    if (multiLine == null)
+                        multiLine = new StringBuilder();
+                    multiLine.append(trimmed, 0, trimmed.length() - 1);
+                    continue;
+                }
+                String command = trimmed;
+                if (multiLine != null) {
+                    command = multiLine.append(trimmed).toString();
+                    multiLine = null;
+                }
+                if (chunk.add(command, commandLine)) {
+                    put(chunk);
+                    chunk = new Chunk(chunkSize);
+                }
+            }
+            if (multiLine != null)
+                chunk.add(multiLine.toString(), commandLine);
+            if (chunk.size > 0)
+                put(chunk);
+        }
+
+        // 队列已满时等待，执行阶段提前结束后不再等待
+        private void put(Chunk chunk) throws InterruptedException {
+            while (!stopped) {
+                if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS))
+                    return;
+            }
+        }
+    }
+
+    /**
+     * 执行报告
+     */
+    public static final class Report {
+        private volatile long lines;      // 读取的行数
+        private volatile long skipped;    // 跳过的空行和注释
+        private long executed;            // 执行的命令数量
+        private long failed;              // 执行失败的命令数量
+        private long elapsedNanos;        // 总用时
+        private volatile String stopReason;
+        private final List<Failure> failures = new ArrayList<>();
+
+        private synchronized void stop(String reason) {
+            if (stopReason == null)
+                stopReason = reason;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getSkipped() {
+            return skipped;
+        }
+
+        public long getExecuted() {
+            return executed;
+        }
+
+        public long getSucceeded() {
+            return executed - failed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        /**
+         * @return 每秒执行的命令数量
+         */
+        public double getCommandsPerSecond() {
+            return elapsedNanos == 0 ? 0 : executed * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return 执行停止的原因，全部执行完毕时为null
+         */
+        public String getStopReason() {
+            return stopReason;
+        }
+
+        /**
+         * @return 最早的几条失败记录
+         */
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("执行完毕: ").append(executed).append(" 条命令, 成功 ").append(getSucceeded())
+                    .append(", 失败 ").append(failed).append(", 跳过 ").append(skipped).append(" 行\n");
+            sb.append("用时: ").append(getElapsedMillis()).append("ms, 吞吐量: ")
+                    .append(String.format("%.1f", getCommandsPerSecond())).append(" 条/秒\n");
+            if (stopReason != null)
+                sb.append("提前停止: ").append(stopReason).append('\n');
+            for (Failure failure : failures)
+                sb.append("    ").append(failure).append('\n');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 一条失败的命令
+     */
+    public static final class Failure {
+        private final long lineNumber;
+        private final String command;
+        private final String message;
+
+        private Failure(long lineNumber, String command, String message) {
+            this.lineNumber = lineNumber;
+            this.command = command;
+            this.message = message;
+        }
+
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "[line " + lineNumber + "] " + command + " -> " + message;
+        }
+    }
+
+}
@@ -7,11 +7,22 @@ import xyz.scootaloo.console.app.parser.InvokeInfo;
 import xyz.scootaloo.console.app.support.BackstageTaskManager.BackstageTaskInfo;
 import xyz.scootaloo.console.app.util.StringUtils;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 定义一个连接的用户信息
+ * <pre>
+ * 并发模型:
+ *      同一个用户可能同时在多个线程中执行命令(例如默认用户、后台任务、监听器)，所以命令本身不加锁;
+ *      命令执行过程中的临时状态(当前命令行、占位符替换记录、过滤链结果)每个线程一份，互不影响;
+ *      用户长期持有的状态(变量池、历史记录、后台任务列表、会话对象)各自是线程安全的，
+ *      变量池和任务列表在自身上同步，遍历时需要先持有它们的锁;
+ *      需要按照提交顺序依次执行某个用户的命令时，使用 {@link xyz.scootaloo.console.app.parser.SessionExecutor}。
+ * </pre>
  *
  * @author flutterdash@qq.com
  * @since 2021/3/2 17:52
@@ -23,12 +34,93 @@ public class Client {
     private final Resources resources;
     /** 此用户的标识 */
     protected final String userKey;
+    /** 最近一次使用的时间 */
+    private volatile long lastAccess = System.currentTimeMillis();
+    /** 被回收之后 active 加上这个值，之后 active 永远小于0 */
+    private static final int EVICTED = Integer.MIN_VALUE / 2;
+    /** 正在执行的命令数，大于0时不会被回收，小于0表示已经被回收，持有这个对象的线程下次执行命令时会重新获取 */
+    private final AtomicInteger active = new AtomicInteger();
+    /** 使用次数，每次使用都会改变，用来判断放入回收队列之后是否又被使用过 */
+    private volatile long accessSeq;
+    /** 放入回收队列时的使用次数，由 ClientCenter 在锁内读写 */
+    protected long queuedAccess;
+    /** 在时间轮中的到期刻度 */
+    protected long wheelTick;
+    /** 上次保存快照之后是否执行过命令 */
+    protected volatile boolean dirty;
 
     protected Client(String userKey) {
         this.userKey = userKey;
         this.resources = new Resources();
     }
 
+    /**
+     * 开始执行命令，由框架调用
+     * <p>调用之后需要再检查 {@link #isEvicted()}，这时已经被回收的会话不能再使用</p>
+     */
+    public void enter() {
+        active.incrementAndGet();
+        lastAccess = System.currentTimeMillis();
+        accessSeq++;
+    }
+
+    /**
+     * 命令执行完毕，由框架调用
+     */
+    public void leave() {
+        dirty = true;
+        lastAccess = System.currentTimeMillis();
+        accessSeq++;
+        active.decrementAndGet();
+    }
+
+    /**
+     * @return 此用户是否已经被回收
+     */
+    public boolean isEvicted() {
+        return active.get() < 0;
+    }
+
+    /**
+     * @param now 当前时间
+     * @return 空闲的毫秒数，正在执行命令时返回0
+     */
+    public long getIdleMillis(long now) {
+        return active.get() > 0 ? 0 : Math.max(0, now - lastAccess);
+    }
+
+    protected boolean isActive() {
+        return active.get() > 0;
+    }
+
+    /**
+     * 标记为已经被回收，和 {@link #enter()} 互斥: 标记成功之后进入的线程一定能看到回收标记
+     * @param force 为false时只回收没有在执行命令的会话
+     * @return 是否由这次调用完成标记
+     */
+    protected boolean markEvicted(boolean force) {
+        while (true) {
+            int current = active.get();
+            if (current < 0 || (current > 0 && !force))
+                return false;
+            if (active.compareAndSet(current, current + EVICTED))
+                return true;
+        }
+    }
+
+    protected long getLastAccess() {
+        return lastAccess;
+    }
+
+    protected void touch() {
+        lastAccess = System.currentTimeMillis();
+        accessSeq++;
+    }
+
+    protected long getAccessSeq() {
+        return accessSeq;
+    }
+
     /**
      * 清空为此用户创建的所有资源
      * @return 一个回调，调用回调方法可以实现清空资源
@@ -37,6 +129,13 @@ public class Client {
         return new ResourcesHandler(this.userKey, ClientCenter::destroyUserResources);
     }
 
+    /**
+     * @return 此用户的标识
+     */
+    public String getUserKey() {
+        return userKey;
+    }
+
     /**
      * @return 获取这个资源对象
      */
@@ -45,6 +144,7 @@ public class Client {
     }
 
     protected void destroy() {
+        markEvicted(true);
         resources.shutdown();
     }
 
@@ -73,37 +173,43 @@ public class Client {
 
     @Private
     public static class Resources {
-        private Object value; // 一个属性
-        private String callingCommand; // 当前正在处理的命令行
+        // 估算内存占用时使用的大小
+        private static final int RESOURCES_BYTES = 512;
+        private static final int RECORD_BYTES = 256;
+        private static final int COMPACT_RECORD_BYTES = 96;
+        private static final int TASK_BYTES = 256;
+
+        // 命令执行过程中的临时状态，每个线程一份
+        private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+        private volatile Object value; // 一个属性
         private final History history = new History(); // 执行命令行的信息记录
-        private final Set<BackstageTaskInfo> taskList = new LinkedHashSet<>(); // 后台任务列表
-        private final Map<String, Object> variablePool = new HashMap<>(); // 变量池，存储一些键值对
-        private final ReplacementRecord replacementRecord = new ReplacementRecord(); // 命令行中占位符替换记录
-        private final FilterChainMessage filterChainMessage
-                = new FilterChainMessage(); // 过滤链执行信息
+        private final Set<BackstageTaskInfo> taskList =
+                Collections.synchronizedSet(new LinkedHashSet<>()); // 后台任务列表
+        private final VariablePool variablePool = new VariablePool(); // 变量池，存储一些键值对
 
         private Resources() {
         }
 
         /**
-         * @return 获取当前用户的过滤链执行情况
+         * @return 获取当前线程的过滤链执行情况
          */
         public FilterChainMessage getFilterChainMessage() {
-            return this.filterChainMessage;
+            return SCRATCH.get().filterChainMessage;
         }
 
         /**
-         * @return 获取当前正在处理的命令行
+         * @return 获取当前线程正在处理的命令行
          */
         public String getCallingCommand() {
-            return callingCommand;
+            return SCRATCH.get().callingCommand;
         }
 
         /**
-         * @param callingCommand 设置当前正在处理的命令行
+         * @param callingCommand 设置当前线程正在处理的命令行
          */
         public void setCallingCommand(String callingCommand) {
-            this.callingCommand = callingCommand;
+            SCRATCH.get().callingCommand = callingCommand;
         }
 
         /**
@@ -121,16 +227,16 @@ public class Client {
         }
 
         /**
-         * @return 命令行中占位符替换记录
+         * @return 当前线程正在处理的命令行中占位符替换记录
          */
         public ReplacementRecord getReplacementRecord() {
-            return replacementRecord;
+            return SCRATCH.get().replacementRecord;
         }
 
         /**
          * @return 获取当前用户的变量池
          */
-        public Map<String, Object> getVariablePool() {
+        public VariablePool getVariablePool() {
             return this.variablePool;
         }
 
@@ -153,75 +259,174 @@ public class Client {
             this.value = value;
         }
 
+        /**
+         * 估算此用户的资源占用的内存，只用于观察，不是精确值
+         * @return 估计的字节数
+         */
+        public long estimateBytes() {
+            long bytes = RESOURCES_BYTES + variablePool.footprint().getTotalBytes();
+            bytes += (long) history.size() *
+                    (ClientCenter.SINGLETON != null && ClientCenter.SINGLETON.compactHistory ?
+                            COMPACT_RECORD_BYTES : RECORD_BYTES);
+            bytes += (long) taskList.size() * TASK_BYTES;
+            return bytes;
+        }
+
+        // 是否有还没有结束的后台任务
+        protected boolean hasRunningTask() {
+            synchronized (taskList) {
+                for (BackstageTaskInfo task : taskList) {
+                    if (!task.getFuture().isDone())
+                        return true;
+                }
+            }
+            return false;
+        }
+
         private void shutdown() {
-            history.hisInfoList.clear();
+            history.clear();
             taskList.clear();
             variablePool.clear();
-            replacementRecord.refresh();
-            callingCommand = "";
         }
 
         @Override
         public String toString() {
             return "Resources{" +
                     "value=" + value +
-                    ", callingCommand='" + callingCommand + '\'' +
                     ", history=" + history +
                     ", taskList=" + taskList +
                     ", variablePool=" + variablePool +
-                    ", replacementRecord=" + replacementRecord +
-                    ", filterChainMessage=" + filterChainMessage +
                     '}';
         }
 
+        // 命令执行过程中的临时状态
+        private static final class Scratch {
+            private String callingCommand; // 当前正在处理的命令行
+            private final ReplacementRecord replacementRecord = new ReplacementRecord(); // 命令行中占位符替换记录
+            private final FilterChainMessage filterChainMessage = new FilterChainMessage(); // 过滤链执行信息
+        }
+
     }
 
-    // 实现历史记录功能时使用，前提条件是sys监听器已经启用
+    /**
+     * 历史记录，实现历史记录功能时使用，前提条件是sys监听器已经启用
+     * <p>使用固定容量的环形数组保存，容量等于配置中的 maxHistory，写满之后覆盖最早的记录。
+     * 每条记录同时保存了上一条同名记录的序号，按照命令名查询时沿着这条链向前查找，
+     * 查询最近的N条记录只需要访问N个元素。</p>
+     * <p>配置 compactHistory 开启时，记录以紧凑的形式保存，不再持有方法的返回值对象和参数数组。</p>
+     */
     @Private
     public static class History {
-        // 历史记录
-        private final LinkedList<InvokeInfo> hisInfoList = new LinkedList<>();
-        // 日期转换器 执行时间
-        private static final SimpleDateFormat time_sdf = new SimpleDateFormat("hh:mm");
+        // 日期转换器 执行时间，线程安全
+        private static final DateTimeFormatter TIME_FORMATTER =
+                DateTimeFormatter.ofPattern("hh:mm").withZone(ZoneId.systemDefault());
+
+        private InvokeInfo[] ring;        // 历史记录，第一次写入时根据配置分配
+        private long[] prevSameName;      // 同一位置上记录的上一条同名记录的序号，没有时为-1
+        private long count;               // 已经写入的记录总数，下一条记录的序号
+        private final Map<String, Long> lastByName = new HashMap<>(); // 命令名 -> 最近一条记录的序号
 
         // 向容器增加新的命令
-        public void add(InvokeInfo info) {
-            if (hisInfoList.size() >= ClientCenter.SINGLETON.maxHistory)
-                hisInfoList.removeFirst();
-            hisInfoList.addLast(info);
+        public synchronized void add(InvokeInfo info) {
+            if (ring == null)
+                allocate(ClientCenter.SINGLETON.maxHistory);
+            if (ClientCenter.SINGLETON.compactHistory)
+                info = info.compact();
+            int capacity = ring.length;
+            int pos = (int) (count % capacity);
+            // 覆盖最早的记录，假如它是同名记录中的最后一条，则移除索引
+            InvokeInfo evicted = ring[pos];
+            if (evicted != null) {
+                String evictedName = keyOf(evicted);
+                Long last = lastByName.get(evictedName);
+                if (last != null && last == count - capacity)
+                    lastByName.remove(evictedName);
+            }
+            String name = keyOf(info);
+            Long prev = lastByName.put(name, count);
+            ring[pos] = info;
+            prevSameName[pos] = prev == null ? -1 : prev;
+            count++;
+        }
+
+        private void allocate(int capacity) {
+            capacity = Math.max(capacity, 1);
+            this.ring = new InvokeInfo[capacity];
+            this.prevSameName = new long[capacity];
+        }
+
+        // 命令名可能为空，例如没有被执行的命令
+        private static String keyOf(InvokeInfo info) {
+            return info.getName() == null ? "" : info.getName();
+        }
+
+        // 序号对应的记录是否还在容器中
+        private boolean isAlive(long seq) {
+            return seq >= 0 && seq < count && seq >= count - ring.length;
+        }
+
+        /**
+         * 按照时间顺序取出最近的记录
+         * @param name 命令名，为null时不按照命令名筛选
+         * @param size 最多取出多少条，小于0时取出全部
+         * @return 记录列表，最早的记录在前
+         */
+        public synchronized List<InvokeInfo> latest(String name, int size) {
+            if (ring == null || count == 0)
+                return new ArrayList<>();
+            int stored = (int) Math.min(count, ring.length);
+            int limit = size < 0 ? stored : Math.min(size, stored);
+            InvokeInfo[] found = new InvokeInfo[limit];
+            int n = 0;
+            if (name == null) {
+                for (long seq = count - 1; n < limit && isAlive(seq); seq--)
+                    found[n++] = ring[(int) (seq % ring.length)];
+            } else {
+                Long last = lastByName.get(name);
+                long seq = last == null ? -1 : last;
+                while (n < limit && isAlive(seq)) {
+                    int pos = (int) (seq % ring.length);
+                    found[n++] = ring[pos];
+                    seq = prevSameName[pos];
+                }
+            }
+            List<InvokeInfo> result = new ArrayList<>(n);
+            for (int i = n - 1; i>=0; i--)
+                result.add(found[i]);
+            return result;
         }
 
         // 筛选出符合条件的记录，并按照规则显示出来
         public List<InvokeInfo> select(String name, int size, boolean isAll, boolean success, boolean rtnVal,
                                        boolean args, boolean invokeAt, boolean interval) {
-            boolean matchByName = true;
-            if (name == null)
-                matchByName = false;
-            if (size < 0)
-                size = hisInfoList.size();
-            else
-                size = Math.min(hisInfoList.size(), size);
-            LinkedList<InvokeInfo> targetInfos = new LinkedList<>();
-            ListIterator<InvokeInfo> it = hisInfoList.listIterator(hisInfoList.size());
-            while (it.hasPrevious()) {
-                if (size <= 0)
-                    break;
-                InvokeInfo info = it.previous();
-                if (matchByName) {
-                    if (info.getName().equals(name)) {
-                        targetInfos.addFirst(info);
-                        size--;
-                    }
-                } else {
-                    targetInfos.addFirst(info);
-                    size--;
-                }
-            }
+            List<InvokeInfo> targetInfos = latest(name, size);
+            print(targetInfos, isAll, success, rtnVal, args, invokeAt, interval);
+            return targetInfos;
+        }
 
-            for (InvokeInfo inf : targetInfos) {
+        // 按照规则显示这些记录，也用于显示历史记录日志中的记录
+        public static void print(List<InvokeInfo> infos, boolean isAll, boolean success, boolean rtnVal,
+                                 boolean args, boolean invokeAt, boolean interval) {
+            for (InvokeInfo inf : infos) {
                 printInfo(inf, isAll, success, rtnVal, args, invokeAt, interval);
             }
-            return targetInfos;
+        }
+
+        /**
+         * @return 当前保存的记录数量
+         */
+        public synchronized int size() {
+            return ring == null ? 0 : (int) Math.min(count, ring.length);
+        }
+
+        // 清空所有记录
+        public synchronized void clear() {
+            if (ring != null) {
+                Arrays.fill(ring, null);
+                Arrays.fill(prevSameName, -1);
+            }
+            this.count = 0;
+            this.lastByName.clear();
         }
 
         // 显示这些信息
@@ -231,7 +436,7 @@ public class Client {
             StringBuilder sb = new StringBuilder();
             // 执行的日期
             if (isAll || invokeAt)
-                sb.append('[').append(time_sdf.format(new Date(info.getInvokeAt()))).append("] ");
+                sb.append('[').append(TIME_FORMATTER.format(Instant.ofEpochMilli(info.getInvokeAt()))).append("] ");
             // 执行用时
             if (isAll || interval)
                 sb.append('[').append(StringUtils.trimNumberSizeTo4(info.getInterval())).append("] ");
@@ -267,14 +472,17 @@ public class Client {
             return stringBuilder.toString();
         }
 
+        /**
+         * @return 所有记录的副本，最早的记录在前
+         */
         public List<InvokeInfo> getInvokeHistory() {
-            return this.hisInfoList;
+            return latest(null, -1);
         }
 
         @Override
         public String toString() {
             return "History{" +
-                    "historySize=" + hisInfoList.size() +
+                    "historySize=" + size() +
                     '}';
         }
 
@@ -2,12 +2,26 @@ package xyz.scootaloo.console.app.client;
 
 import xyz.scootaloo.console.app.parser.Interpreter;
 
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 /**
  * 用户管理中心
+ * <pre>
+ * 会话的生命周期:
+ *      maxSessions: 会话数超过这个值时，回收最久没有使用的会话;
+ *      sessionIdleTimeout: 会话空闲超过这个时间后被回收，由 {@link SessionWheel} 检查;
+ *      正在执行命令或者还有后台任务没有结束的会话不会被回收，默认用户永远不会被回收。
+ * 会话被回收之前依次调用注册的 {@link EvictionListener}，之后清空它的资源。
+ * 启用了 {@link SessionSnapshots} 时，回收前保存快照，再次创建这个用户时恢复。
+ * 锁内只把会话从用户表中移除，保存快照、回调和清空资源都在释放锁之后进行，不会阻塞其他会话的创建。
+ * 仍然持有被回收会话的线程，下次执行命令时会以相同的用户标识重新创建会话。
+ * </pre>
  *
  * @author flutterdash@qq.com
  * @since 2021/3/2 12:14
@@ -16,12 +30,26 @@ public final class ClientCenter {
     private final Client PUBLIC_SPACE = new Client("ROOT"); // 默认用户
     protected static volatile ClientCenter SINGLETON; // 当前类的单例
     private final Map<String, Client> users; // 用户map
+    // 回收队列，不包括默认用户，队首是最久没有使用的会话; 由 users 的锁保护
+    private final LinkedHashMap<String, Client> lruQueue = new LinkedHashMap<>();
     protected final int maxHistory; // 最大历史记录大小设置
+    protected final boolean compactHistory; // 是否以紧凑的形式保存历史记录
+    private final List<EvictionListener> evictionListeners = new CopyOnWriteArrayList<>();
+    // 已经移除但还没有保存完快照的会话，重新创建相同的用户时需要等待快照保存完成
+    private final Map<String, CountDownLatch> releasing = new ConcurrentHashMap<>();
+    private final LongAdder[] evictedCounts = new LongAdder[Cause.values().length];
+    private volatile int maxSessions; // 最大会话数，0表示不限制
+    private volatile SessionWheel wheel; // 检查空闲会话，没有配置空闲时间时为null
 
     protected ClientCenter(Interpreter interpreter) {
         this.users = new ConcurrentHashMap<>();
         this.maxHistory = interpreter.getConfig().getMaxHistory();
+        this.compactHistory = interpreter.getConfig().isCompactHistory();
+        this.maxSessions = interpreter.getConfig().getMaxSessions();
+        for (int i = 0; i<evictedCounts.length; i++)
+            evictedCounts[i] = new LongAdder();
         this.users.put(PUBLIC_SPACE.userKey, PUBLIC_SPACE);
+        setIdleTimeout(interpreter.getConfig().getSessionIdleTimeout(), TimeUnit.SECONDS);
     }
 
     /**
@@ -41,6 +69,15 @@ public final class ClientCenter {
         return SINGLETON;
     }
 
+    /**
+     * @return 已经创建的单例
+     */
+    public static ClientCenter getInstance() {
+        if (SINGLETON == null)
+            throw new RuntimeException("解释器未初始化");
+        return SINGLETON;
+    }
+
     @Deprecated
     public static void show() {
         // 在此处插入断点，观察用户状态
@@ -53,13 +90,31 @@ public final class ClientCenter {
      * @return 用户对象，可使用此对象管理资源
      */
     public Client createUser(String userKey) {
-        Client user, existUser;
-        synchronized (SINGLETON.users) {
-            user = new Client(userKey);
-            existUser = SINGLETON.users.putIfAbsent(userKey, user);
-            if (existUser != null)
-                user = existUser;
+        Client user = users.get(userKey);
+        if (user != null) {
+            user.touch();
+            return user;
         }
+        // 在锁外读取快照，同时创建同一个用户时只保留先放入的
+        awaitReleased(userKey);
+        Client created = new Client(userKey);
+        SessionSnapshots.current().ifPresent(snapshots -> snapshots.restore(created));
+        List<Client> victims = new ArrayList<>();
+        synchronized (users) {
+            user = users.get(userKey);
+            if (user != null) {
+                user.touch();
+                return user;
+            }
+            user = created;
+            users.put(userKey, user);
+            enqueue(user);
+            evictIfFull(user, victims);
+        }
+        release(victims, Cause.SIZE);
+        SessionWheel current = wheel;
+        if (current != null)
+            current.schedule(user);
         return user;
     }
 
@@ -70,11 +125,234 @@ public final class ClientCenter {
         return PUBLIC_SPACE;
     }
 
+    /**
+     * 销毁某个用户的资源，此用户不存在时不做处理
+     * @param userKey 用户标识
+     */
+    public void destroyUser(String userKey) {
+        destroyUserResources(userKey);
+    }
+
     protected static void destroyUserResources(String userKey) {
-        synchronized (SINGLETON.users) {
-            Optional.ofNullable(SINGLETON.users.remove(userKey))
-                    .ifPresent(Client::destroy);
+        ClientCenter center = SINGLETON;
+        Client user;
+        synchronized (center.users) {
+            user = center.users.get(userKey);
+            if (user == null || user == center.PUBLIC_SPACE)
+                return;
+            user.markEvicted(true);
+            center.detach(user, Cause.DESTROYED);
+        }
+        center.release(user, Cause.DESTROYED);
+    }
+
+    //---------------------------------------会话管理---------------------------------------
+
+    /**
+     * 注册一个回调，会话被回收之前调用，此时会话的资源还没有被清空
+     * @param listener 回调
+     */
+    public void addEvictionListener(EvictionListener listener) {
+        evictionListeners.add(Objects.requireNonNull(listener));
+    }
+
+    public boolean removeEvictionListener(EvictionListener listener) {
+        return evictionListeners.remove(listener);
+    }
+
+    /**
+     * 修改最大会话数，立即回收超出的会话
+     * @param maxSessions 最大会话数，不包括默认用户，0表示不限制
+     */
+    public void setMaxSessions(int maxSessions) {
+        if (maxSessions < 0)
+            throw new IllegalArgumentException("maxSessions: " + maxSessions);
+        List<Client> victims = new ArrayList<>();
+        synchronized (users) {
+            this.maxSessions = maxSessions;
+            evictIfFull(null, victims);
         }
+        release(victims, Cause.SIZE);
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * 修改会话的空闲时间，之后已经存在的会话也按照新的时间计算
+     * @param timeout 空闲时间，0表示不回收空闲的会话
+     * @param unit 时间单位
+     */
+    public synchronized void setIdleTimeout(long timeout, TimeUnit unit) {
+        SessionWheel previous = this.wheel;
+        if (previous != null)
+            previous.stop();
+        long millis = unit.toMillis(timeout);
+        if (millis <= 0) {
+            this.wheel = null;
+            return;
+        }
+        SessionWheel next = new SessionWheel(this, millis);
+        this.wheel = next;
+        for (Client user : users.values()) {
+            if (user != PUBLIC_SPACE)
+                next.schedule(user);
+        }
+    }
+
+    /**
+     * @return 会话的空闲时间(毫秒)，0表示不回收空闲的会话
+     */
+    public long getIdleTimeoutMillis() {
+        SessionWheel current = wheel;
+        return current == null ? 0 : current.getIdleMillis();
+    }
+
+    /**
+     * @return 当前的所有会话，不包括默认用户，按照最近使用的时间排序
+     */
+    public List<Client> sessions() {
+        return users.values().stream()
+                .filter(user -> user != PUBLIC_SPACE)
+                .sorted(Comparator.comparingLong(Client::getLastAccess).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param cause 回收原因
+     * @return 因为这个原因回收的会话总数
+     */
+    public long getEvictedCount(Cause cause) {
+        return evictedCounts[cause.ordinal()].sum();
+    }
+
+    // 空闲时间到期，正在使用的会话不回收
+    protected boolean expire(Client user) {
+        synchronized (users) {
+            if (users.get(user.userKey) != user)
+                return true;
+            // 标记成功之后，正在进入的线程会发现会话已经被回收
+            if (user.getResources().hasRunningTask() || !user.markEvicted(false))
+                return false;
+            detach(user, Cause.EXPIRED);
+        }
+        release(user, Cause.EXPIRED);
+        return true;
+    }
+
+    /*
+     * 超出最大会话数时，回收最久没有使用的会话，keep 是正在创建的会话，不回收; 调用时已经持有锁
+     * 使用会话时不加锁，只更新使用次数，所以队列中的顺序可能是过期的:
+     * 从队首取出的会话在入队之后又被使用过时，移到队尾，再看下一个，
+     * 每次移动都对应至少一次使用，平摊下来每次回收是O(1)的。
+     */
+    private void evictIfFull(Client keep, List<Client> victims) {
+        int limit = maxSessions;
+        if (limit <= 0)
+            return;
+        // 连续遇到的正在使用中的会话数，队列中的会话都在使用中时，暂时允许超出
+        int busy = 0;
+        while (users.size() - 1 > limit && busy < lruQueue.size()) {
+            Client eldest = lruQueue.values().iterator().next();
+            if (eldest.getAccessSeq() != eldest.queuedAccess) {
+                if (eldest.isActive())
+                    busy++;
+                enqueue(eldest);
+                continue;
+            }
+            // 选中之后开始执行命令的会话也不回收
+            if (eldest == keep || eldest.getResources().hasRunningTask() || !eldest.markEvicted(false)) {
+                busy++;
+                enqueue(eldest);
+                continue;
+            }
+            busy = 0;
+            detach(eldest, Cause.SIZE);
+            victims.add(eldest);
+        }
+    }
+
+    // 放到回收队列的队尾，调用时已经持有锁
+    private void enqueue(Client user) {
+        lruQueue.remove(user.userKey);
+        user.queuedAccess = user.getAccessSeq();
+        lruQueue.put(user.userKey, user);
+    }
+
+    // 从用户表中移除，调用时已经持有锁，之后需要在锁外调用 release
+    private void detach(Client user, Cause cause) {
+        users.remove(user.userKey, user);
+        lruQueue.remove(user.userKey, user);
+        evictedCounts[cause.ordinal()].increment();
+        releasing.put(user.userKey, new CountDownLatch(1));
+    }
+
+    private void release(List<Client> victims, Cause cause) {
+        for (Client victim : victims)
+            release(victim, cause);
+    }
+
+    // 保存快照，调用回调，清空资源，不能持有锁
+    private void release(Client user, Cause cause) {
+        try {
+            SessionSnapshots.current().ifPresent(snapshots -> snapshots.capture(user));
+        } finally {
+            CountDownLatch latch = releasing.remove(user.userKey);
+            if (latch != null)
+                latch.countDown();
+        }
+        for (EvictionListener listener : evictionListeners) {
+            try {
+                listener.onEvicted(user, cause);
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+        user.destroy();
+    }
+
+    // 等待这个用户上一个会话的快照保存完成，避免恢复出旧的快照
+    private void awaitReleased(String userKey) {
+        CountDownLatch latch = releasing.get(userKey);
+        if (latch == null)
+            return;
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * 会话被回收的原因
+     */
+    public enum Cause {
+        /** 空闲时间到期 */
+        EXPIRED,
+        /** 超出最大会话数 */
+        SIZE,
+        /** 调用了 {@link ResourcesHandler#shutdown()} */
+        DESTROYED
+    }
+
+    /**
+     * 会话被回收时的回调
+     */
+    @FunctionalInterface
+    public interface EvictionListener {
+        /**
+         * 在会话的资源被清空之前调用，此时会话已经从用户中心移除，不持有 ClientCenter 的锁
+         * @param client 被回收的会话
+         * @param cause 回收原因
+         */
+        void onEvicted(Client client, Cause cause);
     }
 
     @Override
@@ -83,6 +361,9 @@ public final class ClientCenter {
                 "PUBLIC_SPACE=" + PUBLIC_SPACE +
                 ", users=" + users +
                 ", maxHistory=" + maxHistory +
+                ", compactHistory=" + compactHistory +
+                ", maxSessions=" + maxSessions +
+                ", idleTimeout=" + getIdleTimeoutMillis() +
                 '}';
     }
 
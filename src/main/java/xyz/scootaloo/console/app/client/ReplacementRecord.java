@@ -1,36 +1,67 @@
 package xyz.scootaloo.console.app.client;
 
-import xyz.scootaloo.console.app.util.IdGenerator;
-
+import java.util.Arrays;
 import java.util.LinkedHashSet;
-import java.util.Objects;
 import java.util.Set;
 
 /**
  * 命令行占位符替换记录
+ * <p>每个线程一份，记录保存在数组中，id 就是数组的下标，所以根据 id 查找时不需要遍历。
+ * 记录只在处理一条命令的过程中有效，并且只会被处理这条命令的线程访问，所以这里不需要同步。</p>
  *
  * @author flutterdash@qq.com
  * @since 2021/3/6 12:09
  */
 public class ReplacementRecord {
-    private final Set<KVPair> records;
-    private static final IdGenerator idGenerator = IdGenerator.create();
+    private static final int INIT_SLOTS = 8;
+    // 替换记录，下标就是记录的id，每执行一条命令从0开始重新使用
+    private KVPair[] slots = new KVPair[INIT_SLOTS];
+    private int size;
 
     protected ReplacementRecord() {
-        this.records = new LinkedHashSet<>();
+    }
+
+    /**
+     * 获取一个新的替换记录，它的id是下一个空闲的位置；调用 {@link #add(KVPair)} 之前，下一次获取的还是同一个对象
+     * @return 清空过的替换记录
+     */
+    public KVPair next() {
+        if (size == slots.length)
+            slots = Arrays.copyOf(slots, slots.length << 1);
+        KVPair kvPair = slots[size];
+        if (kvPair == null)
+            slots[size] = kvPair = new KVPair(size);
+        else
+            kvPair.clear();
+        return kvPair;
     }
 
     public void add(KVPair kvPair) {
-        records.add(kvPair);
+        if (kvPair.id == size && slots[size] == kvPair)
+            size++;
+    }
+
+    /**
+     * @param id 替换记录的id
+     * @return 这个id对应的记录，不存在时返回null
+     */
+    public KVPair get(int id) {
+        return id >= 0 && id < size ? slots[id] : null;
+    }
+
+    public int size() {
+        return this.size;
     }
 
     public Set<KVPair> getRecords() {
-        return this.records;
+        return new LinkedHashSet<>(Arrays.asList(slots).subList(0, size));
     }
 
+    // 开始处理一条新的命令，之前的记录不再有效，同时释放对变量值的引用
     public void refresh() {
-        records.clear();
-        idGenerator.reset();
+        for (int i = 0; i<size; i++)
+            slots[i].clear();
+        size = 0;
     }
 
     /**
@@ -40,7 +71,7 @@ public class ReplacementRecord {
      *     1. 通过预置的命令，或者其他方式，将变量存储到用户的变量池中
      *     2. 在上游部分，对命令行进行处理的替换。
      *        每个占位符假如有一个变量与之对应，则它会被原地替换成一个标记，例如占位符命令行中 ${abc} 可能被替换成 @#@12
-     *        这个12是这次替换记录的一个id，它是唯一的。
+     *        这个12是这次替换记录的一个id，在这条命令中是唯一的。
      *     3. 下游部分，接受到了 @#@12 这样的标记，于是在在这个位置查找对应的替换记录，得到实际的值
      *     over 完成占位符替换功能
      * </pre>
@@ -52,11 +83,16 @@ public class ReplacementRecord {
         public boolean hasVar;    // 是否有变量
         public String key;        // 此变量的key
         public Object value;      // 此变量的值
-        public final Integer id;  // 唯一ID
+        public final int id;      // 在这条命令中唯一的ID
+
+        protected KVPair(int id) {
+            this.id = id;
+        }
 
-        public KVPair() {
-            // 被创建时，更新id
-            this.id = idGenerator.get().intValue();
+        private void clear() {
+            this.hasVar = false;
+            this.key = null;
+            this.value = null;
         }
 
         @Override
@@ -64,12 +100,12 @@ public class ReplacementRecord {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             KVPair kvPair = (KVPair) o;
-            return Objects.equals(id, kvPair.id);
+            return id == kvPair.id;
         }
 
         @Override
         public int hashCode() {
-            return id.hashCode();
+            return id;
         }
 
         @Override
@@ -87,7 +123,7 @@ public class ReplacementRecord {
     @Override
     public String toString() {
         return "ReplacementRecord{" +
-                "records=" + records +
+                "records=" + getRecords() +
                 '}';
     }
 
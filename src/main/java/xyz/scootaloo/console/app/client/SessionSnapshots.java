@@ -0,0 +1,548 @@
+package xyz.scootaloo.console.app.client;
+
+import xyz.scootaloo.console.app.common.ResourceManager;
+import xyz.scootaloo.console.app.config.ConsoleConfig;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 会话快照
+ * <p>把用户的变量池、历史记录和会话对象({@link Client.Resources#setValue(Object)})保存到磁盘，
+ * 会话被回收、或者应用重启之后，以相同的用户标识再次创建会话时恢复这些内容。</p>
+ * <pre>
+ * 写入时机:
+ *      会话被回收时，在清空资源之前编码成字节数组，放入待写入的队列;
+ *      每隔一段时间，把执行过命令并且当前空闲的会话编码后放入队列;
+ *      后台线程把队列中的内容写入文件，同一个用户多次放入时只写入最后一次的内容;
+ *      应用退出时写入所有会话。
+ * 恢复时机:
+ *      打开目录时只记录有快照的用户标识，创建这些用户时才读取对应的文件。
+ * 文件格式(每个用户一个文件，先写入临时文件再替换):
+ *      int 魔数, byte 版本, str 用户标识, value 会话对象,
+ *      int 变量数, (str 变量名, value 变量值)...,
+ *      int 记录数, (long 调用时间, long 执行用时, byte 是否成功, str 命令名, str 参数, str 返回值, str 异常信息)...,
+ *      int 校验和
+ *      str 为 int 长度(null时为-1) 加上 UTF-8 编码的内容
+ *      value 为 byte 类型标记加上对应的内容，int long double boolean String 直接保存，
+ *      其他实现了 Serializable 的对象使用java序列化保存，不能序列化的值不保存
+ * </pre>
+ * <p>快照目录中的文件可能被其他人修改，所以java序列化的值在恢复时只接受白名单中的类:
+ * 字符串、包装类型、常用的集合和时间类型、枚举、这些类型的数组，以及通过 {@link #allowClass(Class[])} 登记的类，
+ * 其他类的值会被忽略。</p>
+ * <p>历史记录的返回值只保存字符串形式，与 {@link xyz.scootaloo.console.app.support.HistoryJournal} 相同。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:25
+ */
+public final class SessionSnapshots {
+    private static final Console console = ResourceManager.getConsole();
+    private static final String SUFFIX = ".snap";
+    private static final int MAGIC = 0x4A435353; // JCSS
+    private static final byte VERSION = 1;
+    // 定时保存的间隔
+    private static final long FLUSH_MILLIS = 5000;
+    // 返回值字符串保留的最大长度
+    private static final int MAX_RTN_LENGTH = 1024;
+
+    private static final byte T_NULL = 0, T_INT = 1, T_LONG = 2, T_DOUBLE = 3,
+            T_BOOLEAN = 4, T_STRING = 5, T_SERIAL = 6;
+
+    // 反序列化时允许的类名，和允许的包名前缀
+    private static final Set<String> ALLOWED = ConcurrentHashMap.newKeySet();
+    private static final String[] ALLOWED_PREFIXES = { "java.time.", "java.util.Collections$" };
+
+    static {
+        ALLOWED.addAll(Arrays.asList(
+                "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Number",
+                "java.lang.Byte", "java.lang.Short", "java.lang.Integer", "java.lang.Long",
+                "java.lang.Float", "java.lang.Double", "java.lang.Enum",
+                "java.math.BigInteger", "java.math.BigDecimal",
+                "java.util.ArrayList", "java.util.LinkedList", "java.util.ArrayDeque", "java.util.Arrays$ArrayList",
+                "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap",
+                "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet",
+                "java.util.Date", "java.util.UUID"));
+    }
+
+    private static volatile SessionSnapshots current;
+    private static volatile boolean hookRegistered;
+
+    private final Path dir;
+    // 有快照文件的用户标识
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    // 等待写入的快照，用户标识 -> 编码后的内容
+    private final Map<String, byte[]> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer;
+    private volatile boolean closed;
+
+    private SessionSnapshots(Path dir) {
+        this.dir = dir;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(SessionSnapshots::decodeKey)
+                    .filter(Objects::nonNull)
+                    .forEach(known::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "console-session-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 根据配置打开会话快照，配置 snapshotDir 为空时关闭快照功能
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        String snapshotDir = config.getSnapshotDir();
+        SessionSnapshots snapshots = null;
+        if (snapshotDir != null && !snapshotDir.trim().isEmpty()) {
+            try {
+                snapshots = open(Paths.get(snapshotDir.trim()));
+            } catch (UncheckedIOException e) {
+                console.err("无法打开会话快照目录 `" + snapshotDir + "`: " + e.getMessage());
+            }
+        }
+        SessionSnapshots previous = current;
+        current = snapshots;
+        if (previous != null && previous != snapshots)
+            previous.close();
+        if (snapshots != null && !hookRegistered) {
+            hookRegistered = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> current().ifPresent(SessionSnapshots::close)));
+        }
+    }
+
+    /**
+     * 允许这些类的对象从快照中恢复，它们可以序列化的父类也会被允许
+     * <p>会话对象和变量中保存了自定义的类型时，需要在恢复之前登记，否则这些值不会被恢复。</p>
+     * @param types 允许反序列化的类
+     */
+    public static void allowClass(Class<?> ... types) {
+        for (Class<?> type : types) {
+            for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass())
+                ALLOWED.add(c.getName());
+        }
+    }
+
+    /**
+     * @return 当前启用的会话快照，没有启用时返回空
+     */
+    public static Optional<SessionSnapshots> current() {
+        return Optional.ofNullable(current);
+    }
+
+    /**
+     * 打开一个快照目录，目录不存在时会自动创建
+     * @param dir 快照目录
+     * @return 会话快照
+     */
+    public static SessionSnapshots open(Path dir) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SessionSnapshots(dir);
+    }
+
+    //---------------------------------------保存--------------------------------------------
+
+    /**
+     * 把会话的当前状态编码后放入待写入的队列，由后台线程写入文件
+     * @param client 会话
+     */
+    public void capture(Client client) {
+        if (closed)
+            return;
+        client.dirty = false;
+        byte[] data;
+        try {
+            data = encode(client);
+        } catch (RuntimeException e) {
+            // 编码失败，例如会话对象在序列化时抛出了异常，下次再保存
+            client.dirty = true;
+            return;
+        }
+        pending.put(client.userKey, data);
+        known.add(client.userKey);
+    }
+
+    /**
+     * 保存所有执行过命令并且当前空闲的会话，并写入所有待写入的快照
+     */
+    public void flush() {
+        ClientCenter center = ClientCenter.SINGLETON;
+        if (center != null) {
+            for (Client client : center.sessions()) {
+                if (client.dirty && !client.isActive())
+                    capture(client);
+            }
+        }
+        writePending();
+    }
+
+    /**
+     * 删除某个用户的快照
+     * @param userKey 用户标识
+     * @return 是否存在这个用户的快照
+     */
+    public boolean delete(String userKey) {
+        pending.remove(userKey);
+        boolean existed = known.remove(userKey);
+        try {
+            return Files.deleteIfExists(fileOf(userKey)) || existed;
+        } catch (IOException e) {
+            console.err("删除会话快照失败 `" + userKey + "`: " + e.getMessage());
+            return existed;
+        }
+    }
+
+    /**
+     * @return 所有有快照的用户标识
+     */
+    public Set<String> knownKeys() {
+        return Collections.unmodifiableSet(known);
+    }
+
+    /**
+     * 写入所有会话，并停止后台线程
+     */
+    public synchronized void close() {
+        if (closed)
+            return;
+        flush();
+        closed = true;
+        writer.shutdown();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            console.err("保存会话快照失败: " + e);
+        }
+    }
+
+    private synchronized void writePending() {
+        for (String userKey : new ArrayList<>(pending.keySet())) {
+            byte[] data = pending.get(userKey);
+            if (data == null)
+                continue;
+            try {
+                Path file = fileOf(userKey);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // 写入期间又有新的快照时保留新的
+                pending.remove(userKey, data);
+            } catch (IOException e) {
+                console.err("写入会话快照失败 `" + userKey + "`: " + e.getMessage());
+            }
+        }
+    }
+
+    //---------------------------------------恢复--------------------------------------------
+
+    /**
+     * 假如这个用户有快照，把快照中的内容恢复到会话中
+     * @param client 刚刚创建的会话
+     * @return 是否恢复成功
+     */
+    public boolean restore(Client client) {
+        if (!known.contains(client.userKey))
+            return false;
+        byte[] data = pending.get(client.userKey);
+        try {
+            if (data == null)
+                data = Files.readAllBytes(fileOf(client.userKey));
+            decode(data, client);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            console.err("恢复会话快照失败 `" + client.userKey + "`: " + e);
+            return false;
+        }
+    }
+
+    //---------------------------------------编码--------------------------------------------
+
+    private static byte[] encode(Client client) {
+        Client.Resources resources = client.getResources();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeString(out, client.userKey);
+            writeValue(out, resources.getValue());
+
+            List<Map.Entry<String, byte[]>> variables = new ArrayList<>();
+            for (Map.Entry<String, Object> entry : resources.getVariablePool().copy().entrySet()) {
+                byte[] value = valueBytes(entry.getValue());
+                if (value != null)
+                    variables.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), value));
+            }
+            out.writeInt(variables.size());
+            for (Map.Entry<String, byte[]> entry : variables) {
+                writeString(out, entry.getKey());
+                out.write(entry.getValue());
+            }
+
+            List<InvokeInfo> history = resources.getHistory().getInvokeHistory();
+            out.writeInt(history.size());
+            for (InvokeInfo info : history) {
+                out.writeLong(info.getInvokeAt());
+                out.writeLong(info.getInterval());
+                out.writeByte(info.isSuccess() ? 1 : 0);
+                writeString(out, info.getName());
+                writeString(out, info.getCmdArgs());
+                writeString(out, rtnOf(info));
+                writeString(out, info.getExMsg());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CRC32 crc = new CRC32();
+        byte[] body = bytes.toByteArray();
+        crc.update(body, 0, body.length);
+        byte[] data = Arrays.copyOf(body, body.length + 4);
+        int sum = (int) crc.getValue();
+        for (int i = 0; i<4; i++)
+            data[body.length + i] = (byte) (sum >>> (24 - i * 8));
+        return data;
+    }
+
+    private static void decode(byte[] data, Client client) throws IOException {
+        if (data.length < 4)
+            throw new IOException("快照文件不完整");
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.mark(data.length);
+        in.skipBytes(data.length - 4);
+        if (in.readInt() != (int) crc.getValue())
+            throw new IOException("快照文件校验失败");
+        in.reset();
+        if (in.readInt() != MAGIC || in.readByte() != VERSION)
+            throw new IOException("不是会话快照文件");
+        if (!client.userKey.equals(readString(in)))
+            throw new IOException("用户标识不一致");
+
+        Client.Resources resources = client.getResources();
+        resources.setValue(readValue(in));
+        VariablePool pool = resources.getVariablePool();
+        for (int i = in.readInt(); i>0; i--) {
+            String key = readString(in);
+            pool.put(key, readValue(in));
+        }
+        Client.History history = resources.getHistory();
+        for (int i = in.readInt(); i>0; i--) {
+            long invokeAt = in.readLong();
+            long interval = in.readLong();
+            boolean success = in.readByte() != 0;
+            String name = readString(in);
+            String args = readString(in);
+            String rtn = readString(in);
+            String exMsg = readString(in);
+            history.add(InvokeInfo.restore(name, args, rtn, invokeAt, interval, success, exMsg));
+        }
+    }
+
+    private static String rtnOf(InvokeInfo info) {
+        Object rtn = info.getRtnVal();
+        if (rtn == null)
+            return null;
+        String text = rtn.toString();
+        return text.length() > MAX_RTN_LENGTH ? text.substring(0, MAX_RTN_LENGTH) + "..." : text;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        byte[] bytes = valueBytes(value);
+        out.write(bytes == null ? new byte[] { T_NULL } : bytes);
+    }
+
+    // 编码一个值，不能保存时返回null
+    private static byte[] valueBytes(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            if (value == null) {
+                out.writeByte(T_NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(T_INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(T_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(T_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(T_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof String) {
+                out.writeByte(T_STRING);
+                writeString(out, (String) value);
+            } else if (value instanceof Serializable) {
+                ByteArrayOutputStream serial = new ByteArrayOutputStream();
+                try (ObjectOutputStream oos = new ObjectOutputStream(serial)) {
+                    oos.writeObject(value);
+                }
+                out.writeByte(T_SERIAL);
+                out.writeInt(serial.size());
+                serial.writeTo(out);
+            } else {
+                return null;
+            }
+            out.flush();
+        } catch (NotSerializableException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case T_NULL: return null;
+            case T_INT: return in.readInt();
+            case T_LONG: return in.readLong();
+            case T_DOUBLE: return in.readDouble();
+            case T_BOOLEAN: return in.readBoolean();
+            case T_STRING: return readString(in);
+            case T_SERIAL:
+                byte[] serial = new byte[in.readInt()];
+                in.readFully(serial);
+                try (ObjectInputStream ois = new AllowListInputStream(new ByteArrayInputStream(serial))) {
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    // 类已经不存在，忽略这个值
+                    return null;
+                } catch (InvalidClassException e) {
+                    console.err("忽略快照中的值: " + e.getMessage());
+                    return null;
+                }
+            default:
+                throw new IOException("未知的类型标记: " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 只解析白名单中的类，在加载类之前按照类名检查
+    private static final class AllowListInputStream extends ObjectInputStream {
+
+        private AllowListInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            // 数组检查元素类型，例如 [I 或者 [[Ljava.lang.String;
+            String element = name.replaceFirst("^\\[+", "");
+            if (element.length() == name.length() || element.startsWith("L") && element.endsWith(";")) {
+                if (element.length() != name.length())
+                    element = element.substring(1, element.length() - 1);
+                if (!isAllowed(element) && !isEnum(element))
+                    throw new InvalidClassException(name, "不允许从快照中恢复这个类");
+            }
+            return super.resolveClass(desc);
+        }
+
+        private static boolean isAllowed(String name) {
+            if (ALLOWED.contains(name))
+                return true;
+            for (String prefix : ALLOWED_PREFIXES) {
+                if (name.startsWith(prefix))
+                    return true;
+            }
+            return false;
+        }
+
+        // 枚举按照名字恢复，不会执行其他代码; 加载时不初始化这个类
+        private static boolean isEnum(String name) {
+            try {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                if (loader == null)
+                    loader = SessionSnapshots.class.getClassLoader();
+                return Class.forName(name, false, loader).isEnum();
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy", "不允许从快照中恢复代理类");
+        }
+
+    }
+
+    //---------------------------------------文件--------------------------------------------
+
+    // 用户标识经过编码后作为文件名，加上前缀避免出现 "." 或者 ".." 这样的文件名
+    private Path fileOf(String userKey) {
+        try {
+            return dir.resolve("u_" + URLEncoder.encode(userKey, "UTF-8") + SUFFIX);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decodeKey(String fileName) {
+        if (!fileName.startsWith("u_"))
+            return null;
+        try {
+            return URLDecoder.decode(fileName.substring(2, fileName.length() - SUFFIX.length()), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SessionSnapshots{" +
+                "dir=" + dir +
+                ", known=" + known.size() +
+                ", pending=" + pending.size() +
+                '}';
+    }
+
+}
@@ -0,0 +1,89 @@
+package xyz.scootaloo.console.app.client;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检查会话空闲时间的时间轮
+ * <p>每个会话按照 最近使用时间 + 空闲时间 放到对应刻度的槽位中，使用会话时不移动它的位置，
+ * 只更新最近使用时间。到期时再检查一次，还没有真正空闲够的会话按照新的到期时间重新放入。
+ * 所以执行命令时没有额外的开销，每个刻度也只检查一个槽位。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:10
+ */
+final class SessionWheel implements Runnable {
+    private static final int SLOTS = 64;
+
+    private final ClientCenter center;
+    private final long idleMillis;
+    private final long tickMillis;
+    private final long startAt = System.currentTimeMillis();
+    private final List<List<Client>> slots = new ArrayList<>(SLOTS);
+    private final ScheduledExecutorService ticker;
+    private long tick; // 已经处理过的刻度
+
+    SessionWheel(ClientCenter center, long idleMillis) {
+        this.center = center;
+        this.idleMillis = idleMillis;
+        // 到期的误差不超过空闲时间的 1/8
+        this.tickMillis = Math.max(10, Math.min(1000, idleMillis / 8));
+        for (int i = 0; i<SLOTS; i++)
+            slots.add(new ArrayList<>());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "console-session-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    long getIdleMillis() {
+        return idleMillis;
+    }
+
+    synchronized void schedule(Client client) {
+        long deadline = client.getLastAccess() + idleMillis - startAt;
+        long target = Math.max(tick + 1, (deadline + tickMillis - 1) / tickMillis);
+        client.wheelTick = target;
+        slots.get((int) (target % SLOTS)).add(client);
+    }
+
+    void stop() {
+        ticker.shutdownNow();
+    }
+
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        long current = (now - startAt) / tickMillis;
+        List<Client> due = new ArrayList<>();
+        synchronized (this) {
+            // 落后超过一圈时，所有槽位只需要检查一次
+            tick = Math.max(tick, current - SLOTS);
+            while (tick < current) {
+                tick++;
+                Iterator<Client> iterator = slots.get((int) (tick % SLOTS)).iterator();
+                while (iterator.hasNext()) {
+                    Client client = iterator.next();
+                    if (client.wheelTick <= current) {
+                        iterator.remove();
+                        due.add(client);
+                    }
+                }
+            }
+        }
+        for (Client client : due) {
+            if (client.isEvicted())
+                continue;
+            if (client.getIdleMillis(now) >= idleMillis && center.expire(client))
+                continue;
+            schedule(client);
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+package xyz.scootaloo.console.app.client;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * 用户的变量池
+ * <p>int long double boolean 类型的值以基本类型保存在槽位中，不持有包装对象；其他类型的值按照引用保存。
+ * 通过 {@code putInt getInt} 等方法存取时不会产生包装对象。</p>
+ * <p>同时它也是一个 {@code Map<String, Object>}: 放入包装类型的值时自动拆箱保存，
+ * 通过 {@link #get(Object)} 读取基本类型的值时返回新的包装对象。</p>
+ * <p>同一个用户可能同时在多个线程中执行命令，所以所有方法都在变量池对象上同步；
+ * 通过 {@link #entrySet()} {@link #keySet()} {@link #values()} 遍历时需要先持有变量池的锁，
+ * 或者使用 {@link #copy()} 得到的副本。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:00
+ */
+public final class VariablePool extends AbstractMap<String, Object> {
+    // 估算内存占用时使用的大小，64位JVM开启压缩指针
+    private static final int ENTRY_BYTES = 32 + 32; // HashMap.Node 和 Slot
+    private static final int STRING_BYTES = 24 + 16;
+    private static final int OBJECT_BYTES = 16;
+
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final Set<Entry<String, Object>> entrySet = new EntrySet();
+
+    protected VariablePool() {
+    }
+
+    // -----------------------------------typed----------------------------------------
+
+    public synchronized void putInt(String key, int value) {
+        slot(key).setBits(Kind.INT, value);
+    }
+
+    public synchronized void putLong(String key, long value) {
+        slot(key).setBits(Kind.LONG, value);
+    }
+
+    public synchronized void putDouble(String key, double value) {
+        slot(key).setBits(Kind.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public synchronized void putBoolean(String key, boolean value) {
+        slot(key).setBits(Kind.BOOLEAN, value ? 1 : 0);
+    }
+
+    /**
+     * @param key 变量名
+     * @param dft 没有这个变量，或者变量不是数值时返回的值
+     * @return 变量的值，long 和 double 类型的值会被截断
+     */
+    public synchronized int getInt(String key, int dft) {
+        Slot slot = slots.get(key);
+        return slot != null && slot.isNumber() ? (int) slot.asLong() : dft;
+    }
+
+    public synchronized long getLong(String key, long dft) {
+        Slot slot = slots.get(key);
+        return slot != null && slot.isNumber() ? slot.asLong() : dft;
+    }
+
+    public synchronized double getDouble(String key, double dft) {
+        Slot slot = slots.get(key);
+        return slot != null && slot.isNumber() ? slot.asDouble() : dft;
+    }
+
+    public synchronized boolean getBoolean(String key, boolean dft) {
+        Slot slot = slots.get(key);
+        if (slot == null)
+            return dft;
+        if (slot.kind == Kind.BOOLEAN)
+            return slot.bits != 0;
+        return slot.ref instanceof Boolean ? (Boolean) slot.ref : dft;
+    }
+
+    /**
+     * @param key 变量名
+     * @return 变量的保存方式，没有这个变量时返回null
+     */
+    public synchronized Kind kindOf(String key) {
+        Slot slot = slots.get(key);
+        return slot == null ? null : slot.kind;
+    }
+
+    /**
+     * 估算每个变量占用的内存，对象类型的变量只计算对象本身和数组、字符串的内容，不计算它引用的其他对象
+     * @return 内存占用报告
+     */
+    public synchronized Footprint footprint() {
+        List<Footprint.Item> items = new ArrayList<>();
+        for (Entry<String, Slot> entry : new TreeMap<>(slots).entrySet()) {
+            Slot slot = entry.getValue();
+            long bytes = ENTRY_BYTES + stringBytes(entry.getKey()) +
+                    (slot.kind == Kind.OBJECT ? shallowBytes(slot.ref) : 0);
+            String type = slot.kind == Kind.OBJECT ? slot.ref.getClass().getSimpleName() :
+                    slot.kind.name().toLowerCase(Locale.ROOT);
+            items.add(new Footprint.Item(entry.getKey(), slot.kind, type, bytes));
+        }
+        return new Footprint(items);
+    }
+
+    private Slot slot(String key) {
+        Slot slot = slots.get(key);
+        if (slot == null)
+            slots.put(key, slot = new Slot());
+        return slot;
+    }
+
+    private static long stringBytes(String text) {
+        return align(STRING_BYTES + text.length() * 2L);
+    }
+
+    private static long shallowBytes(Object obj) {
+        if (obj instanceof String)
+            return stringBytes((String) obj);
+        Class<?> type = obj.getClass();
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            int size = component == long.class || component == double.class ? 8 :
+                    component == int.class || component == float.class || !component.isPrimitive() ? 4 :
+                    component == short.class || component == char.class ? 2 : 1;
+            return align(OBJECT_BYTES + (long) Array.getLength(obj) * size);
+        }
+        if (obj instanceof Collection)
+            return align(OBJECT_BYTES + ((Collection<?>) obj).size() * 4L);
+        if (obj instanceof Map)
+            return align(OBJECT_BYTES + ((Map<?, ?>) obj).size() * 32L);
+        return OBJECT_BYTES;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    // ------------------------------------map-----------------------------------------
+
+    /**
+     * 放入一个值，Integer Long Double Boolean 会被拆箱保存
+     * @param key 变量名
+     * @param value 变量值
+     * @return 原来的值
+     */
+    @Override
+    public synchronized Object put(String key, Object value) {
+        Objects.requireNonNull(key);
+        Slot slot = slots.get(key);
+        Object previous = slot == null ? null : slot.box();
+        if (slot == null)
+            slots.put(key, slot = new Slot());
+        slot.set(value);
+        return previous;
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+        Slot slot = slots.get(key);
+        return slot == null ? null : slot.box();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return slots.containsKey(key);
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        Slot slot = slots.remove(key);
+        return slot == null ? null : slot.box();
+    }
+
+    @Override
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        slots.clear();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return entrySet;
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<? super String, ? super Object> action) {
+        for (Entry<String, Slot> entry : slots.entrySet())
+            action.accept(entry.getKey(), entry.getValue().box());
+    }
+
+    /**
+     * @return 当前所有变量的副本
+     */
+    public synchronized Map<String, Object> copy() {
+        Map<String, Object> copy = new LinkedHashMap<>(slots.size() * 2);
+        forEach(copy::put);
+        return copy;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return super.toString();
+    }
+
+    /**
+     * 变量的保存方式
+     */
+    public enum Kind {
+        INT, LONG, DOUBLE, BOOLEAN, OBJECT
+    }
+
+    /**
+     * 一个变量的值，基本类型的值保存在 bits 中
+     */
+    private static final class Slot {
+        private Kind kind;
+        private long bits;
+        private Object ref;
+
+        private void setBits(Kind kind, long bits) {
+            this.kind = kind;
+            this.bits = bits;
+            this.ref = null;
+        }
+
+        private void set(Object value) {
+            if (value instanceof Integer)
+                setBits(Kind.INT, (Integer) value);
+            else if (value instanceof Long)
+                setBits(Kind.LONG, (Long) value);
+            else if (value instanceof Double)
+                setBits(Kind.DOUBLE, Double.doubleToRawLongBits((Double) value));
+            else if (value instanceof Boolean)
+                setBits(Kind.BOOLEAN, (Boolean) value ? 1 : 0);
+            else {
+                this.kind = Kind.OBJECT;
+                this.bits = 0;
+                this.ref = value;
+            }
+        }
+
+        private boolean isNumber() {
+            return kind == Kind.INT || kind == Kind.LONG || kind == Kind.DOUBLE || ref instanceof Number;
+        }
+
+        private long asLong() {
+            switch (kind) {
+                case INT: case LONG: return bits;
+                case DOUBLE: return (long) Double.longBitsToDouble(bits);
+                default: return ((Number) ref).longValue();
+            }
+        }
+
+        private double asDouble() {
+            switch (kind) {
+                case INT: case LONG: return bits;
+                case DOUBLE: return Double.longBitsToDouble(bits);
+                default: return ((Number) ref).doubleValue();
+            }
+        }
+
+        private Object box() {
+            switch (kind) {
+                case INT: return (int) bits;
+                case LONG: return bits;
+                case DOUBLE: return Double.longBitsToDouble(bits);
+                case BOOLEAN: return bits != 0;
+                default: return ref;
+            }
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            Iterator<Entry<String, Slot>> iterator = slots.entrySet().iterator();
+            return new Iterator<Entry<String, Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    Entry<String, Slot> entry = iterator.next();
+                    return new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().box());
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return slots.size();
+        }
+    }
+
+    /**
+     * 变量池的内存占用报告
+     */
+    public static final class Footprint {
+        private final List<Item> items;
+        private final long totalBytes;
+
+        private Footprint(List<Item> items) {
+            this.items = Collections.unmodifiableList(items);
+            this.totalBytes = items.stream().mapToLong(Item::getBytes).sum();
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        // 以基本类型保存的变量数量
+        public long getPrimitiveCount() {
+            return items.stream().filter(item -> item.kind != Kind.OBJECT).count();
+        }
+
+        @Override
+        public String toString() {
+            return "Footprint{" +
+                    "variables=" + items.size() +
+                    ", primitives=" + getPrimitiveCount() +
+                    ", totalBytes=" + totalBytes +
+                    '}';
+        }
+
+        public static final class Item {
+            private final String key;
+            private final Kind kind;
+            private final String type;
+            private final long bytes;
+
+            private Item(String key, Kind kind, String type, long bytes) {
+                this.key = key;
+                this.kind = kind;
+                this.type = type;
+                this.bytes = bytes;
+            }
+
+            public String getKey() {
+                return key;
+            }
+
+            public Kind getKind() {
+                return kind;
+            }
+
+            public String getType() {
+                return type;
+            }
+
+            public long getBytes() {
+                return bytes;
+            }
+
+            @Override
+            public String toString() {
+                return key + " [" + type + "] " + bytes + "B";
+            }
+        }
+    }
+
+}
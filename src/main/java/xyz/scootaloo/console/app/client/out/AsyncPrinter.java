@@ -0,0 +1,463 @@
+package xyz.scootaloo.console.app.client.out;
+
+import xyz.scootaloo.console.app.common.ResourceManager;
+import xyz.scootaloo.console.app.config.ConsoleConfig;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步的输出实现
+ * <p>调用 print/println 的线程只把内容写入自己的缓冲，缓冲中的内容按照刷新策略打包放入一个有界队列，
+ * 由一个专门的写入线程批量地写到标准输出或者文件中，调用线程之间不再争抢 {@code System.out} 的锁。</p>
+ * <pre>
+ * 刷新策略:
+ *      IMMEDIATE: 每次调用都把内容交给写入线程;
+ *      LINE:      换行时或者缓冲超过 {@value #BATCH_CHARS} 个字符时交给写入线程;
+ *      BATCH:     缓冲超过 {@value #BATCH_CHARS} 个字符时交给写入线程，另外写入线程每隔 {@value #TICK_MILLIS} 毫秒
+ *                 收集一次空闲线程的缓冲。
+ * </pre>
+ * <p>队列已满时调用线程会等待(背压)，直到写入线程腾出空间; err() 的内容不经过缓冲，立刻交给写入线程，
+ * 同一线程输出的内容保持原来的顺序。</p>
+ * <p>{@link #setMode(boolean)} 设置为 false 后，当前线程的输出会一直保留在缓冲中，直到调用 {@link #refresh()}。
+ * {@link #flush()} 等待当前线程之前的输出全部写出。应用退出时会自动调用 {@link #close()} 写出所有剩余的内容。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 19:40
+ */
+public final class AsyncPrinter extends CPrinter {
+    // 缓冲超过这个长度时交给写入线程
+    private static final int BATCH_CHARS = 8192;
+    // 写入线程收集空闲缓冲的间隔
+    private static final int TICK_MILLIS = 50;
+    // 写入线程一次最多取出的片段数量
+    private static final int DRAIN_SIZE = 256;
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final FlushPolicy policy;
+    private final FileChannel fileChannel;       // 为null时写到标准输出
+    private final Charset charset;
+    private final BlockingQueue<Segment> queue;
+    private final Set<ThreadBuffer> buffers = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<ThreadBuffer> localBuffer = ThreadLocal.withInitial(this::newBuffer);
+    private final Thread writer;
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    private final LongAdder writtenChars = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    private AsyncPrinter(FlushPolicy policy, FileChannel fileChannel, int queueSize) {
+        this.policy = policy == null ? FlushPolicy.LINE : policy;
+        this.fileChannel = fileChannel;
+        this.charset = fileChannel == null ? Charset.defaultCharset() : StandardCharsets.UTF_8;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueSize, 16));
+        this.writer = new Thread(this::writeLoop, "console-output-" + COUNTER.incrementAndGet());
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.shutdownHook = new Thread(this::close);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 根据配置决定是否启用异步输出，启用时替换控制台的默认输出实现
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        if (!config.isOutputAsync())
+            return;
+        String file = config.getOutputFile();
+        AsyncPrinter printer = file == null || file.trim().isEmpty() ?
+                toStdout(config.getOutputFlush(), config.getOutputQueueSize()) :
+                toFile(Paths.get(file.trim()), config.getOutputFlush(), config.getOutputQueueSize());
+        ResourceManager.setConsole(printer);
+    }
+
+    /**
+     * 输出到标准输出，错误信息输出到标准错误; 每次写入时使用当前的 {@code System.out} 和 {@code System.err}
+     * @param policy 刷新策略
+     * @param queueSize 队列容量
+     * @return 输出器
+     */
+    public static AsyncPrinter toStdout(FlushPolicy policy, int queueSize) {
+        return new AsyncPrinter(policy, null, queueSize);
+    }
+
+    /**
+     * 追加到文件，错误信息输出到标准错误
+     * @param file 文件
+     * @param policy 刷新策略
+     * @param queueSize 队列容量
+     * @return 输出器
+     */
+    public static AsyncPrinter toFile(Path file, FlushPolicy policy, int queueSize) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new AsyncPrinter(policy, channel, queueSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //---------------------------------------输出--------------------------------------------
+
+    @Override
+    public void print(Object o) {
+        localBuffer.get().append(String.valueOf(o), false);
+    }
+
+    @Override
+    public void println(Object o) {
+        localBuffer.get().append(o + System.lineSeparator(), true);
+    }
+
+    @Override
+    public void err(Object o) {
+        ThreadBuffer buffer = localBuffer.get();
+        buffer.lock.lock();
+        try {
+            buffer.handOff();
+            enqueue(new Segment(o + System.lineSeparator(), true, null));
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public void setMode(boolean immediate) {
+        ThreadBuffer buffer = localBuffer.get();
+        buffer.lock.lock();
+        try {
+            buffer.deferred = !immediate;
+            if (immediate)
+                buffer.handOff();
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public void refresh() {
+        ThreadBuffer buffer = localBuffer.get();
+        buffer.lock.lock();
+        try {
+            buffer.handOff();
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    /**
+     * 把当前线程缓冲中的内容交给写入线程，并等待这些内容以及之前的内容写出
+     */
+    @Override
+    public void flush() {
+        refresh();
+        if (closed || Thread.currentThread() == writer)
+            return;
+        CountDownLatch latch = new CountDownLatch(1);
+        enqueue(new Segment(null, false, latch));
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 写出所有线程缓冲中的内容，然后停止写入线程，之后的输出直接写到标准输出
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        refresh();
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignore) {
+            // 正在关闭应用，这个方法就是在关闭钩子中调用的
+        }
+    }
+
+    // 队列已满时等待，关闭之后在当前线程中直接写出
+    private void enqueue(Segment segment) {
+        if (closed || !writer.isAlive()) {
+            writeDirectly(segment);
+            return;
+        }
+        if (queue.offer(segment))
+            return;
+        blocked.increment();
+        try {
+            while (!queue.offer(segment, TICK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) {
+                    writeDirectly(segment);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeDirectly(segment);
+        }
+    }
+
+    private synchronized void writeDirectly(Segment segment) {
+        List<Segment> batch = new ArrayList<>(1);
+        batch.add(segment);
+        write(batch);
+    }
+
+    //---------------------------------------写入线程------------------------------------------
+
+    private void writeLoop() {
+        List<Segment> batch = new ArrayList<>(DRAIN_SIZE);
+        long nextTick = System.currentTimeMillis() + TICK_MILLIS;
+        while (true) {
+            try {
+                Segment first = queue.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_SIZE - 1);
+                    writeBatch(batch);
+                }
+                long now = System.currentTimeMillis();
+                if (closed || now >= nextTick) {
+                    collectBuffers(closed);
+                    nextTick = now + TICK_MILLIS;
+                }
+                if (closed && queue.isEmpty())
+                    break;
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        synchronized (this) {
+            closeTarget();
+        }
+    }
+
+    private void writeBatch(List<Segment> batch) {
+        synchronized (this) {
+            write(batch);
+        }
+        batch.clear();
+    }
+
+    // 收集空闲线程缓冲中的内容; 正在被调用线程持有的缓冲跳过，调用线程会自己交出内容
+    private void collectBuffers(boolean all) {
+        List<Segment> batch = new ArrayList<>();
+        for (ThreadBuffer buffer : buffers) {
+            if (!buffer.lock.tryLock())
+                continue;
+            try {
+                Thread owner = buffer.owner.get();
+                boolean dead = owner == null || !owner.isAlive();
+                if (buffer.sb.length() > 0 && (all || dead || (policy == FlushPolicy.BATCH && !buffer.deferred))) {
+                    // 先写出这个线程之前交出的内容，保证同一线程的输出顺序
+                    queue.drainTo(batch);
+                    String text = buffer.take(!all && !dead);
+                    if (!text.isEmpty())
+                        batch.add(new Segment(text, false, null));
+                    writeBatch(batch);
+                }
+                if (dead)
+                    buffers.remove(buffer);
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+    }
+
+    // 把一批片段写到目标，连续的同类片段合并成一次写入
+    private void write(List<Segment> batch) {
+        StringBuilder out = new StringBuilder();
+        boolean outErr = false;
+        for (Segment segment : batch) {
+            if (segment.latch != null) {
+                emit(out, outErr);
+                segment.latch.countDown();
+                continue;
+            }
+            if (segment.err != outErr) {
+                emit(out, outErr);
+                outErr = segment.err;
+            }
+            out.append(segment.text);
+        }
+        emit(out, outErr);
+        batches.increment();
+    }
+
+    private void emit(StringBuilder sb, boolean err) {
+        if (sb.length() == 0)
+            return;
+        writtenChars.add(sb.length());
+        byte[] bytes = sb.toString().getBytes(err ? Charset.defaultCharset() : charset);
+        sb.setLength(0);
+        try {
+            // 关闭之后文件已经不能写入，改为输出到标准输出
+            if (err || fileChannel == null || !fileChannel.isOpen()) {
+                PrintStream stream = err ? System.err : System.out;
+                stream.write(bytes, 0, bytes.length);
+                stream.flush();
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining())
+                    fileChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("输出失败: " + e.getMessage());
+        }
+    }
+
+    private void closeTarget() {
+        if (fileChannel == null)
+            return;
+        try {
+            fileChannel.force(false);
+            fileChannel.close();
+        } catch (IOException ignore) {
+            // 忽略关闭时的异常
+        }
+    }
+
+    private ThreadBuffer newBuffer() {
+        ThreadBuffer buffer = new ThreadBuffer(Thread.currentThread());
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * @return 刷新策略
+     */
+    public FlushPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncPrinter{" +
+                "policy=" + policy +
+                ", target=" + (fileChannel == null ? "stdout" : "file") +
+                ", pending=" + queue.size() +
+                ", writtenChars=" + writtenChars.sum() +
+                ", batches=" + batches.sum() +
+                ", blocked=" + blocked.sum() +
+                '}';
+    }
+
+    /**
+     * 刷新策略
+     */
+    public enum FlushPolicy {
+        IMMEDIATE, LINE, BATCH;
+
+        /**
+         * 根据名称获取刷新策略，不区分大小写，名称不能识别时返回 {@code LINE}
+         * @param name 名称
+         * @return 刷新策略
+         */
+        public static FlushPolicy of(String name) {
+            if (name == null)
+                return LINE;
+            for (FlushPolicy policy : values()) {
+                if (policy.name().equals(name.trim().toUpperCase(Locale.ROOT)))
+                    return policy;
+            }
+            return LINE;
+        }
+    }
+
+    // 交给写入线程的片段; latch 不为null时表示一个刷新请求
+    private static final class Segment {
+        private final String text;
+        private final boolean err;
+        private final CountDownLatch latch;
+
+        private Segment(String text, boolean err, CountDownLatch latch) {
+            this.text = text;
+            this.err = err;
+            this.latch = latch;
+        }
+    }
+
+    // 单个线程的缓冲，只有所属线程和写入线程会访问，锁基本上没有竞争
+    private final class ThreadBuffer {
+        private final WeakReference<Thread> owner;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final StringBuilder sb = new StringBuilder();
+        private boolean deferred;
+
+        private ThreadBuffer(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private void append(String text, boolean newLine) {
+            lock.lock();
+            try {
+                sb.append(text);
+                if (deferred)
+                    return;
+                if (policy == FlushPolicy.IMMEDIATE || (newLine && policy == FlushPolicy.LINE))
+                    handOff();
+                else if (sb.length() >= BATCH_CHARS)
+                    handOff(true);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // 需要持有锁
+        private void handOff() {
+            handOff(false);
+        }
+
+        private void handOff(boolean wholeLines) {
+            String text = take(wholeLines);
+            if (!text.isEmpty())
+                enqueue(new Segment(text, false, null));
+        }
+
+        // 取出缓冲中的内容; wholeLines 为true时只取出完整的行，避免和其他线程的输出混在同一行中
+        private String take(boolean wholeLines) {
+            int end = sb.length();
+            if (wholeLines) {
+                int lastLine = sb.lastIndexOf("\n");
+                // 很长的一行没有换行符时，仍然全部取出，避免缓冲无限增长
+                if (lastLine >= 0)
+                    end = lastLine + 1;
+                else if (end < BATCH_CHARS)
+                    end = 0;
+            }
+            String text = sb.substring(0, end);
+            sb.delete(0, end);
+            return text;
+        }
+    }
+
+}
@@ -2,6 +2,8 @@ package xyz.scootaloo.console.app.client.out;
 
 import xyz.scootaloo.console.app.client.Console;
 
+import java.io.IOException;
+
 /**
  * 一些通用的便捷方法，实现此接口可以快捷的调用
  *
@@ -49,6 +51,28 @@ public class DelegatingConsole extends Console {
         impl.err(o);
     }
 
+    @Override
+    public void setMode(boolean immediate) {
+        impl.setMode(immediate);
+    }
+
+    @Override
+    public void refresh() {
+        impl.refresh();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        impl.flush();
+    }
+
+    /**
+     * @return 当前使用的输出实现
+     */
+    public CPrinter getPrinter() {
+        return impl;
+    }
+
     // 默认实现，使用标准系统标准输出
     public static void setPrinter(CPrinter cPrinter) {
         if (cPrinter != null)
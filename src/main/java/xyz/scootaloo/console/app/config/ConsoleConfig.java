@@ -1,5 +1,9 @@
 package xyz.scootaloo.console.app.config;
 
+import xyz.scootaloo.console.app.parser.MethodInvoker;
+import xyz.scootaloo.console.app.parser.SessionExecutor;
+import xyz.scootaloo.console.app.support.HistoryJournal;
+import xyz.scootaloo.console.app.client.out.AsyncPrinter;
 import xyz.scootaloo.console.app.util.ClassUtils;
 
 import java.util.List;
@@ -26,6 +30,28 @@ public final class ConsoleConfig {
     private Set<Supplier<Object>> factories;
     private List<String> initCommands;
     private boolean enableVariableFunction;
+    private MethodInvoker.Engine dispatchEngine; // 命令方法的调用引擎
+    private SessionExecutor.Mode sessionMode;    // 会话执行引擎的模式
+    private int sessionPoolSize;                 // 会话执行引擎的线程池大小
+    private int backstagePoolSize; // 后台任务线程池大小
+    private int backstageUserQuota; // 每个用户同时存在的后台任务上限
+    private boolean compactHistory; // 是否以紧凑的形式保存历史记录
+    private String journalDir; // 历史记录日志的目录，为空时不记录
+    private long journalSegmentSize; // 历史记录日志单个段文件的大小上限
+    private HistoryJournal.RtnMode journalRtnMode; // 历史记录日志中返回值的保存方式
+    private boolean outputAsync; // 是否使用异步的输出
+    private AsyncPrinter.FlushPolicy outputFlush; // 异步输出的刷新策略
+    private String outputFile; // 异步输出的目标文件，为空时输出到标准输出
+    private int outputQueueSize; // 异步输出队列的容量
+    private boolean metricsEnabled; // 是否统计命令的执行耗时
+    private String metricsFile; // 执行耗时统计的导出文件，为空时不导出
+    private int metricsInterval; // 执行耗时统计的导出间隔，单位秒
+    private int maxSessions; // 同时保留的最大会话数，0表示不限制
+    private int sessionIdleTimeout; // 会话空闲多少秒之后被回收，0表示不回收
+    private String snapshotDir; // 会话快照的目录
+    private int resultCacheSize; // 结果缓存的最大条目数，0表示不缓存
+    private int resultCacheTtl; // 缓存的结果多少秒之后过期，0表示不过期
+    private int parseCacheSize; // 参数解析结果缓存的最大条目数，0表示不缓存
 
     // 扫描的基础包路径
     private String basePack;
@@ -75,6 +101,94 @@ public final class ConsoleConfig {
         return this.enableVariableFunction;
     }
 
+    public MethodInvoker.Engine getDispatchEngine() {
+        return this.dispatchEngine;
+    }
+
+    public SessionExecutor.Mode getSessionMode() {
+        return this.sessionMode;
+    }
+
+    public int getSessionPoolSize() {
+        return this.sessionPoolSize;
+    }
+
+    public int getBackstagePoolSize() {
+        return this.backstagePoolSize;
+    }
+
+    public int getBackstageUserQuota() {
+        return this.backstageUserQuota;
+    }
+
+    public boolean isCompactHistory() {
+        return this.compactHistory;
+    }
+
+    public String getJournalDir() {
+        return this.journalDir;
+    }
+
+    public long getJournalSegmentSize() {
+        return this.journalSegmentSize;
+    }
+
+    public HistoryJournal.RtnMode getJournalRtnMode() {
+        return this.journalRtnMode;
+    }
+
+    public boolean isOutputAsync() {
+        return this.outputAsync;
+    }
+
+    public AsyncPrinter.FlushPolicy getOutputFlush() {
+        return this.outputFlush;
+    }
+
+    public String getOutputFile() {
+        return this.outputFile;
+    }
+
+    public int getOutputQueueSize() {
+        return this.outputQueueSize;
+    }
+
+    public boolean isMetricsEnabled() {
+        return this.metricsEnabled;
+    }
+
+    public String getMetricsFile() {
+        return this.metricsFile;
+    }
+
+    public int getMetricsInterval() {
+        return this.metricsInterval;
+    }
+
+    public int getMaxSessions() {
+        return this.maxSessions;
+    }
+
+    public int getSessionIdleTimeout() {
+        return this.sessionIdleTimeout;
+    }
+
+    public String getSnapshotDir() {
+        return this.snapshotDir;
+    }
+
+    public int getResultCacheSize() {
+        return this.resultCacheSize;
+    }
+
+    public int getResultCacheTtl() {
+        return this.resultCacheTtl;
+    }
+
+    public int getParseCacheSize() {
+        return this.parseCacheSize;
+    }
+
     public String getBasePack() {
         return this.basePack;
     }
@@ -106,6 +220,40 @@ public final class ConsoleConfig {
         if (!Objects.equals(this$initCommands, other$initCommands))
             return false;
         if (this.isEnableVariableFunction() != other.isEnableVariableFunction()) return false;
+        if (this.getDispatchEngine() != other.getDispatchEngine()) return false;
+        if (this.getSessionMode() != other.getSessionMode()) return false;
+        if (this.getSessionPoolSize() != other.getSessionPoolSize()) return false;
+        if (this.getBackstagePoolSize() != other.getBackstagePoolSize()) return false;
+        if (this.getBackstageUserQuota() != other.getBackstageUserQuota()) return false;
+        if (this.isCompactHistory() != other.isCompactHistory()) return false;
+        final Object this$journalDir = this.getJournalDir();
+        final Object other$journalDir = other.getJournalDir();
+        if (!Objects.equals(this$journalDir, other$journalDir)) return false;
+        if (this.getJournalSegmentSize() != other.getJournalSegmentSize()) return false;
+        final Object this$journalRtnMode = this.getJournalRtnMode();
+        final Object other$journalRtnMode = other.getJournalRtnMode();
+        if (!Objects.equals(this$journalRtnMode, other$journalRtnMode)) return false;
+        if (this.isOutputAsync() != other.isOutputAsync()) return false;
+        final Object this$outputFlush = this.getOutputFlush();
+        final Object other$outputFlush = other.getOutputFlush();
+        if (!Objects.equals(this$outputFlush, other$outputFlush)) return false;
+        final Object this$outputFile = this.getOutputFile();
+        final Object other$outputFile = other.getOutputFile();
+        if (!Objects.equals(this$outputFile, other$outputFile)) return false;
+        if (this.getOutputQueueSize() != other.getOutputQueueSize()) return false;
+        if (this.isMetricsEnabled() != other.isMetricsEnabled()) return false;
+        final Object this$metricsFile = this.getMetricsFile();
+        final Object other$metricsFile = other.getMetricsFile();
+        if (!Objects.equals(this$metricsFile, other$metricsFile)) return false;
+        if (this.getMetricsInterval() != other.getMetricsInterval()) return false;
+        if (this.getMaxSessions() != other.getMaxSessions()) return false;
+        if (this.getSessionIdleTimeout() != other.getSessionIdleTimeout()) return false;
+        final Object this$snapshotDir = this.getSnapshotDir();
+        final Object other$snapshotDir = other.getSnapshotDir();
+        if (!Objects.equals(this$snapshotDir, other$snapshotDir)) return false;
+        if (this.getResultCacheSize() != other.getResultCacheSize()) return false;
+        if (this.getResultCacheTtl() != other.getResultCacheTtl()) return false;
+        if (this.getParseCacheSize() != other.getParseCacheSize()) return false;
         final Object this$basePack = this.getBasePack();
         final Object other$basePack = other.getBasePack();
         if (!Objects.equals(this$basePack, other$basePack)) return false;
@@ -134,6 +282,37 @@ public final class ConsoleConfig {
         final Object $initCommands = this.getInitCommands();
         result = result * PRIME + ($initCommands == null ? 43 : $initCommands.hashCode());
         result = result * PRIME + (this.isEnableVariableFunction() ? 79 : 97);
+        final Object $dispatchEngine = this.getDispatchEngine();
+        result = result * PRIME + ($dispatchEngine == null ? 43 : $dispatchEngine.hashCode());
+        final Object $sessionMode = this.getSessionMode();
+        result = result * PRIME + ($sessionMode == null ? 43 : $sessionMode.hashCode());
+        result = result * PRIME + this.getSessionPoolSize();
+        result = result * PRIME + this.getBackstagePoolSize();
+        result = result * PRIME + this.getBackstageUserQuota();
+        result = result * PRIME + (this.isCompactHistory() ? 79 : 97);
+        final Object $journalDir = this.getJournalDir();
+        result = result * PRIME + ($journalDir == null ? 43 : $journalDir.hashCode());
+        final long $journalSegmentSize = this.getJournalSegmentSize();
+        result = result * PRIME + (int) ($journalSegmentSize >>> 32 ^ $journalSegmentSize);
+        final Object $journalRtnMode = this.getJournalRtnMode();
+        result = result * PRIME + ($journalRtnMode == null ? 43 : $journalRtnMode.hashCode());
+        result = result * PRIME + (this.isOutputAsync() ? 79 : 97);
+        final Object $outputFlush = this.getOutputFlush();
+        result = result * PRIME + ($outputFlush == null ? 43 : $outputFlush.hashCode());
+        final Object $outputFile = this.getOutputFile();
+        result = result * PRIME + ($outputFile == null ? 43 : $outputFile.hashCode());
+        result = result * PRIME + this.getOutputQueueSize();
+        result = result * PRIME + (this.isMetricsEnabled() ? 79 : 97);
+        final Object $metricsFile = this.getMetricsFile();
+        result = result * PRIME + ($metricsFile == null ? 43 : $metricsFile.hashCode());
+        result = result * PRIME + this.getMetricsInterval();
+        result = result * PRIME + this.getMaxSessions();
+        result = result * PRIME + this.getSessionIdleTimeout();
+        final Object $snapshotDir = this.getSnapshotDir();
+        result = result * PRIME + ($snapshotDir == null ? 43 : $snapshotDir.hashCode());
+        result = result * PRIME + this.getResultCacheSize();
+        result = result * PRIME + this.getResultCacheTtl();
+        result = result * PRIME + this.getParseCacheSize();
         final Object $basePack = this.getBasePack();
         result = result * PRIME + ($basePack == null ? 43 : $basePack.hashCode());
         final Object $author = this.getAuthor();
@@ -142,7 +321,7 @@ public final class ConsoleConfig {
     }
 
     public String toString() {
-        return "ConsoleConfig(appName=" + this.getAppName() + ", prompt=" + this.getPrompt() + ", printWelcome=" + this.isPrintWelcome() + ", exitCmd=" + java.util.Arrays.deepToString(this.getExitCmd()) + ", maxHistory=" + this.getMaxHistory() + ", printStackTraceOnException=" + this.isPrintStackTraceOnException() + ", factories=" + this.getFactories() + ", initCommands=" + this.getInitCommands() + ", enableVariableFunction=" + this.isEnableVariableFunction() + ", basePack=" + this.getBasePack() + ", author=" + this.getAuthor() + ")";
+        return "ConsoleConfig(appName=" + this.getAppName() + ", prompt=" + this.getPrompt() + ", printWelcome=" + this.isPrintWelcome() + ", exitCmd=" + java.util.Arrays.deepToString(this.getExitCmd()) + ", maxHistory=" + this.getMaxHistory() + ", printStackTraceOnException=" + this.isPrintStackTraceOnException() + ", factories=" + this.getFactories() + ", initCommands=" + this.getInitCommands() + ", enableVariableFunction=" + this.isEnableVariableFunction() + ", dispatchEngine=" + this.getDispatchEngine() + ", sessionMode=" + this.getSessionMode() + ", sessionPoolSize=" + this.getSessionPoolSize() + ", backstagePoolSize=" + this.getBackstagePoolSize() + ", backstageUserQuota=" + this.getBackstageUserQuota() + ", compactHistory=" + this.isCompactHistory() + ", journalDir=" + this.getJournalDir() + ", journalSegmentSize=" + this.getJournalSegmentSize() + ", journalRtnMode=" + this.getJournalRtnMode() + ", outputAsync=" + this.isOutputAsync() + ", outputFlush=" + this.getOutputFlush() + ", outputFile=" + this.getOutputFile() + ", outputQueueSize=" + this.getOutputQueueSize() + ", metricsEnabled=" + this.isMetricsEnabled() + ", metricsFile=" + this.getMetricsFile() + ", metricsInterval=" + this.getMetricsInterval() + ", maxSessions=" + this.getMaxSessions() + ", sessionIdleTimeout=" + this.getSessionIdleTimeout() + ", snapshotDir=" + this.getSnapshotDir() + ", resultCacheSize=" + this.getResultCacheSize() + ", resultCacheTtl=" + this.getResultCacheTtl() + ", parseCacheSize=" + this.getParseCacheSize() + ", basePack=" + this.getBasePack() + ", author=" + this.getAuthor() + ")";
     }
 
 }
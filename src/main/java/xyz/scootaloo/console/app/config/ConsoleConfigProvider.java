@@ -1,6 +1,10 @@
 package xyz.scootaloo.console.app.config;
 
+import xyz.scootaloo.console.app.parser.MethodInvoker;
+import xyz.scootaloo.console.app.parser.SessionExecutor;
 import xyz.scootaloo.console.app.parser.ParameterParser;
+import xyz.scootaloo.console.app.support.HistoryJournal;
+import xyz.scootaloo.console.app.client.out.AsyncPrinter;
 import xyz.scootaloo.console.app.util.YmlConfReader;
 
 import java.util.*;
@@ -30,6 +34,28 @@ public final class ConsoleConfigProvider {
         private List<String> initCommands = new ArrayList<>();
         private Set<Supplier<Object>> factories = new LinkedHashSet<>();
         private boolean enableVariableFunction = true;
+        private MethodInvoker.Engine dispatchEngine = MethodInvoker.Engine.GENERATED;
+        private SessionExecutor.Mode sessionMode = SessionExecutor.Mode.VIRTUAL;
+        private int sessionPoolSize = 0;
+        private int backstagePoolSize = 3;
+        private int backstageUserQuota = 16;
+        private boolean compactHistory = false;
+        private String journalDir = "";
+        private long journalSegmentSize = 16 * 1024 * 1024;
+        private HistoryJournal.RtnMode journalRtnMode = HistoryJournal.RtnMode.STRING;
+        private boolean outputAsync = false;
+        private AsyncPrinter.FlushPolicy outputFlush = AsyncPrinter.FlushPolicy.LINE;
+        private String outputFile = "";
+        private int outputQueueSize = 1024;
+        private boolean metricsEnabled = true;
+        private String metricsFile = "";
+        private int metricsInterval = 60;
+        private int maxSessions = 0;
+        private int sessionIdleTimeout = 0;
+        private String snapshotDir = "";
+        private int resultCacheSize = 256;
+        private int resultCacheTtl = 60;
+        private int parseCacheSize = 512;
 
         // 作者信息
         private Author author = new Author(this);
@@ -102,6 +128,135 @@ public final class ConsoleConfigProvider {
             return this;
         }
 
+        public DefaultValueConfigBuilder dispatchEngine(MethodInvoker.Engine engine) {
+            if (engine != null)
+                this.dispatchEngine = engine;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder sessionMode(SessionExecutor.Mode mode) {
+            if (mode != null)
+                this.sessionMode = mode;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder sessionPoolSize(int size) {
+            if (size >= 0)
+                this.sessionPoolSize = size;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder backstagePoolSize(int backstagePoolSize) {
+            if (backstagePoolSize > 0)
+                this.backstagePoolSize = backstagePoolSize;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder backstageUserQuota(int backstageUserQuota) {
+            if (backstageUserQuota >= 0)
+                this.backstageUserQuota = backstageUserQuota;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder compactHistory(boolean compactHistory) {
+            this.compactHistory = compactHistory;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder journalDir(String journalDir) {
+            if (journalDir != null)
+                this.journalDir = journalDir;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder journalSegmentSize(long journalSegmentSize) {
+            if (journalSegmentSize > 0)
+                this.journalSegmentSize = journalSegmentSize;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder journalRtnMode(HistoryJournal.RtnMode journalRtnMode) {
+            if (journalRtnMode != null)
+                this.journalRtnMode = journalRtnMode;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder outputAsync(boolean outputAsync) {
+            this.outputAsync = outputAsync;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder outputFlush(AsyncPrinter.FlushPolicy outputFlush) {
+            if (outputFlush != null)
+                this.outputFlush = outputFlush;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder outputFile(String outputFile) {
+            if (outputFile != null)
+                this.outputFile = outputFile;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder outputQueueSize(int outputQueueSize) {
+            if (outputQueueSize > 0)
+                this.outputQueueSize = outputQueueSize;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder metricsEnabled(boolean metricsEnabled) {
+            this.metricsEnabled = metricsEnabled;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder metricsFile(String metricsFile) {
+            if (metricsFile != null)
+                this.metricsFile = metricsFile;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder metricsInterval(int metricsInterval) {
+            if (metricsInterval > 0)
+                this.metricsInterval = metricsInterval;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder maxSessions(int maxSessions) {
+            if (maxSessions >= 0)
+                this.maxSessions = maxSessions;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder sessionIdleTimeout(int sessionIdleTimeout) {
+            if (sessionIdleTimeout >= 0)
+                this.sessionIdleTimeout = sessionIdleTimeout;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder snapshotDir(String snapshotDir) {
+            if (snapshotDir != null)
+                this.snapshotDir = snapshotDir;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder resultCacheSize(int resultCacheSize) {
+            if (resultCacheSize >= 0)
+                this.resultCacheSize = resultCacheSize;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder resultCacheTtl(int resultCacheTtl) {
+            if (resultCacheTtl >= 0)
+                this.resultCacheTtl = resultCacheTtl;
+            return this;
+        }
+
+        public DefaultValueConfigBuilder parseCacheSize(int parseCacheSize) {
+            if (parseCacheSize >= 0)
+                this.parseCacheSize = parseCacheSize;
+            return this;
+        }
+
         public DefaultValueConfigBuilder addHelpDoc(Object o) {
             if (o != null)
                 this.factories.add(() -> o);
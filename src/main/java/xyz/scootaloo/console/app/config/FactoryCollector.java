@@ -66,13 +66,15 @@ public final class FactoryCollector {
      *     private static final MyFactory INSTANCE = new MyFactory();
      * }}</pre>
      * <p>这个名为"INSTANCE"的变量会被装配</p>
+     * <p>编译时启用了 {@code CommandProcessor} 的jar包，直接从其中的工厂索引读取类，不再遍历jar包; 目录和没有索引的jar包仍然遍历。</p>
      * @param packName 包名
      * @return 构建者
      */
     public FactoryCollector scanPack(String packName) {
         String factory_name = "FACTORY_INSTANCE";
         String instance_name = "INSTANCE";
-        commandFac.addAll(PackScanner.getClasses(packName).stream()
+        Set<Class<?>> classes = PackScanner.getFactoryClasses(packName);
+        commandFac.addAll(classes.stream()
                 .map(classType ->
                         Stream.of(
                                 fun(classType::getDeclaredField).call(factory_name),
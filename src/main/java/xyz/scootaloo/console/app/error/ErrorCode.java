@@ -30,7 +30,11 @@ public enum ErrorCode {
 
     /** 400 ~ 499 过滤器错误 */
     FILTER_ON_EXCEPTION(401, "过滤器异常", "过滤器方法中抛出了异常, 请根据调用栈检查该过滤器方法"),
-    FILTER_INTERCEPT(402, "过滤器", "此命令行的执行被过滤器拦截")
+    FILTER_INTERCEPT(402, "过滤器", "此命令行的执行被过滤器拦截"),
+
+    /** 500 ~ 599 会话调度错误 */
+    SESSION_REJECTED(501, "会话调度", "会话执行引擎已经关闭，或者等待时被中断，命令没有被执行"),
+    SESSION_TIMEOUT(502, "会话调度", "等待命令执行的时间超过了限制，命令仍然会在后台继续执行")
 
     ;
 
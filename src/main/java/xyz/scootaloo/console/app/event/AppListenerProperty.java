@@ -2,6 +2,7 @@ package xyz.scootaloo.console.app.event;
 
 /**
  * 对监听器进行更细粒度的配置
+ * <p>除了感兴趣的事件和优先级，还可以让监听器在单独的线程中处理事件，见 {@link #async(int, Overflow)}。</p>
  *
  * @see EventType 事件描述
  * @author flutterdash@qq.com
@@ -9,7 +10,10 @@ package xyz.scootaloo.console.app.event;
  */
 public final class AppListenerProperty {
     protected static final int DFT_PRIORITY = 5; // 默认优先级
+    protected static final int DFT_QUEUE_SIZE = 1024; // 异步处理时默认的队列容量
     private final EventProperty eventProperty;   // 事件的属性
+    private int queueSize = 0;                   // 异步处理的队列容量，0表示同步处理
+    private Overflow overflow = Overflow.BLOCK;  // 队列已满时的处理方式
 
     public AppListenerProperty() {
         eventProperty = new EventProperty();
@@ -60,10 +64,57 @@ public final class AppListenerProperty {
         return this;
     }
 
+    /**
+     * 在单独的线程中处理事件，队列已满时等待
+     * @return this
+     * @see #async(int, Overflow)
+     */
+    public AppListenerProperty async() {
+        return async(DFT_QUEUE_SIZE, Overflow.BLOCK);
+    }
+
+    /**
+     * 在单独的线程中处理 onInputResolved 和 onMessage 事件，发布事件的线程不等待监听器处理完毕
+     * <p>其他事件需要监听器返回修改后的命令行或者直接修改参数，所以仍然在发布事件的线程中处理。
+     * 异步处理时监听器仍然以发布事件时的用户身份执行。</p>
+     * @param queueSize 队列容量
+     * @param overflow 队列已满时的处理方式
+     * @return this
+     */
+    public AppListenerProperty async(int queueSize, Overflow overflow) {
+        if (queueSize > 0)
+            this.queueSize = queueSize;
+        if (overflow != null)
+            this.overflow = overflow;
+        return this;
+    }
+
+    public boolean isAsync() {
+        return this.queueSize > 0;
+    }
+
+    public int getQueueSize() {
+        return this.queueSize;
+    }
+
+    public Overflow getOverflow() {
+        return this.overflow;
+    }
+
     protected EventProperty get() {
         return this.eventProperty;
     }
 
+    /**
+     * 异步处理的队列已满时的处理方式
+     */
+    public enum Overflow {
+        // 丢弃这个事件
+        DROP,
+        // 发布事件的线程等待，直到队列中有空位
+        BLOCK
+    }
+
     /**
      *
      * @author flutterdash@qq.com
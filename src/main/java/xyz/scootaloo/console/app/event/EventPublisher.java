@@ -1,16 +1,34 @@
 package xyz.scootaloo.console.app.event;
 
+import xyz.scootaloo.console.app.client.Client;
 import xyz.scootaloo.console.app.client.Console;
 import xyz.scootaloo.console.app.common.ConsoleMessage;
 import xyz.scootaloo.console.app.common.ResourceManager;
 import xyz.scootaloo.console.app.config.ConsoleConfig;
 import xyz.scootaloo.console.app.event.AppListenerProperty.EventProperty;
+import xyz.scootaloo.console.app.event.AppListenerProperty.Overflow;
+import xyz.scootaloo.console.app.parser.Interpreter;
 import xyz.scootaloo.console.app.parser.InvokeInfo;
 
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 系统事件发布器，在运行的不同节点发布事件
+ * <pre>
+ * 每种事件对应一个按照优先级排好序的监听器数组:
+ *      注册和移除监听器时复制出新的数组，排序后整体替换;
+ *      发布事件时直接遍历当前的数组，不加锁，也不会看到修改到一半的数组。
+ * 异步监听器:
+ *      在 {@link AppListener#config(AppListenerProperty)} 中调用 {@link AppListenerProperty#async()} 声明，
+ *      这个监听器的 onInputResolved 和 onMessage 事件放入它自己的队列，由单独的线程按顺序处理，
+ *      队列已满时根据配置丢弃事件或者等待。
+ * </pre>
  *
  * @author flutterdash@qq.com
  * @since 2020/12/30 9:44
@@ -18,9 +36,10 @@ import java.util.*;
 public final class EventPublisher {
     /** resources */
     private static final Console console = ResourceManager.getConsole();
-    private static final Map<EventType, List<ListenerWrapper>> LISTENERS = new HashMap<>();
-    private static final List<AppListener> WORKING_LISTENERS = new ArrayList<>();
-    private static volatile boolean hasEnable;
+    private static final EventType[] EVENTS = EventType.values();
+    private static final Object writeLock = new Object();
+    private static final List<ListenerWrapper> WORKING_LISTENERS = new CopyOnWriteArrayList<>();
+    private static volatile ListenerWrapper[][] listeners = new ListenerWrapper[EVENTS.length][0];
 
     // private constructor
     private EventPublisher() {
@@ -31,102 +50,122 @@ public final class EventPublisher {
      * @param listener 要注册进来的监听器
      */
     public static void regListener(AppListener listener) {
-        hasEnable = false;
-
         ListenerWrapper wrapper = new ListenerWrapper(listener);
-        EventProperty eventProperty = wrapper.appListenerProperty.get();
-        if (eventProperty.onAppStarted.isInterestedIn())
-            putToCollection(EventType.OnAppStarted, wrapper);
-        if (eventProperty.onInput.isInterestedIn())
-            putToCollection(EventType.OnInput, wrapper);
-        if (eventProperty.onResolveInput.isInterestedIn())
-            putToCollection(EventType.BeforeResolveInput, wrapper);
-        if (eventProperty.onInputResolved.isInterestedIn())
-            putToCollection(EventType.OnInputResolved, wrapper);
-        if (eventProperty.onMessage.isInterestedIn())
-            putToCollection(EventType.OnMessage, wrapper);
-
-        if (hasEnable) {
-            WORKING_LISTENERS.add(listener);
-            sortListeners();
+        EventProperty eventProperty = wrapper.getProperty();
+        synchronized (writeLock) {
+            ListenerWrapper[][] current = listeners;
+            ListenerWrapper[][] next = current.clone();
+            boolean hasEnable = false;
+            for (EventType event : EVENTS) {
+                if (!eventProperty.get(event).isInterestedIn())
+                    continue;
+                hasEnable = true;
+                ListenerWrapper[] wrappers = Arrays.copyOf(current[event.ordinal()],
+                        current[event.ordinal()].length + 1);
+                wrappers[wrappers.length - 1] = wrapper;
+                // 按照优先级信息排序，优先级相同时保持注册的顺序
+                Arrays.sort(wrappers, Comparator.comparingInt(wrap -> wrap.getProperty().get(event).priority()));
+                next[event.ordinal()] = wrappers;
+            }
+            if (!hasEnable)
+                return;
+            wrapper.start();
+            listeners = next;
+            WORKING_LISTENERS.add(wrapper);
         }
     }
 
     /**
-     * 查看系统中正在工作的监听器
+     * 从系统中移除一个监听器，这个监听器的异步队列中剩余的事件仍然会被处理
+     * @param listener 要移除的监听器
+     * @return 是否存在这个监听器
      */
-    public static void showAllListeners() {
-        WORKING_LISTENERS.forEach(
-                 listener -> console.println("[" + listener.getName() + "] " + listener.info())
-        );
+    public static boolean removeListener(AppListener listener) {
+        synchronized (writeLock) {
+            ListenerWrapper[][] current = listeners;
+            ListenerWrapper[][] next = current.clone();
+            boolean removed = false;
+            for (int i = 0; i<next.length; i++) {
+                ListenerWrapper[] wrappers = Arrays.stream(current[i])
+                        .filter(wrapper -> wrapper.impl != listener)
+                        .toArray(ListenerWrapper[]::new);
+                removed |= wrappers.length != current[i].length;
+                next[i] = wrappers;
+            }
+            listeners = next;
+            for (ListenerWrapper wrapper : WORKING_LISTENERS) {
+                if (wrapper.impl == listener) {
+                    WORKING_LISTENERS.remove(wrapper);
+                    wrapper.stop();
+                }
+            }
+            return removed;
+        }
     }
 
-    // 放置入集合
-    private static void putToCollection(EventType key, ListenerWrapper value) {
-        hasEnable = true;
-        Optional<List<ListenerWrapper>> optional = Optional.ofNullable(LISTENERS.get(key));
-        if (!optional.isPresent()) {
-            List<ListenerWrapper> listeners = new ArrayList<>();
-            listeners.add(value);
-            LISTENERS.put(key, listeners);
-        } else {
-            optional.get().add(value);
+    /**
+     * 等待所有异步监听器处理完已经发布的事件
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否在规定时间内处理完毕
+     * @throws InterruptedException 等待时被中断
+     */
+    public static boolean awaitAsync(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ListenerWrapper wrapper : WORKING_LISTENERS) {
+            AsyncLane lane = wrapper.lane;
+            if (lane == null)
+                continue;
+            while (lane.pending.get() > 0) {
+                if (System.nanoTime() >= deadline)
+                    return false;
+                Thread.sleep(1);
+            }
         }
+        return true;
     }
 
-    // 按照优先级信息排序
-    private static void sortListeners() {
-        LISTENERS.forEach((event, listenerWrappers) -> {
-            if (!listenerWrappers.isEmpty()) {
-                listenerWrappers.sort(Comparator.comparingInt(wrap ->
-                        wrap.getProperty().get(event).priority()));
-            }
-        });
+    /**
+     * 查看系统中正在工作的监听器
+     */
+    public static void showAllListeners() {
+        WORKING_LISTENERS.forEach(
+                 wrapper -> console.println("[" + wrapper.getName() + "] " + wrapper.impl.info() +
+                         (wrapper.lane == null ? "" : " " + wrapper.lane))
+        );
     }
 
     //----------------------------------事件发布------------------------------------------
 
     // 系统起步时
     public static void onAppStarted(ConsoleConfig config) {
-        Optional.ofNullable(LISTENERS.get(EventType.OnAppStarted))
-                .ifPresent(listenerWrappers ->
-                        listenerWrappers.forEach(wrapper ->
-                                wrapper.onAppStarted(config)));
+        for (ListenerWrapper wrapper : listeners[EventType.OnAppStarted.ordinal()])
+            wrapper.onAppStarted(config);
     }
 
     // 获取控制台输入时
     public static String onInput(String cmdline) {
-        final String[] modifiedCmdline = {cmdline};
-        Optional.ofNullable(LISTENERS.get(EventType.OnInput))
-                .ifPresent(listenerWrappers -> {
-                    for (AppListener listener : listenerWrappers)
-                        modifiedCmdline[0] = listener.onInput(modifiedCmdline[0]);
-                });
-        return modifiedCmdline[0];
+        for (ListenerWrapper wrapper : listeners[EventType.OnInput.ordinal()])
+            cmdline = wrapper.onInput(cmdline);
+        return cmdline;
     }
 
     // 解析输入前
     public static void beforeResolveInput(String cmdName, List<String> cmdItems) {
-        Optional.ofNullable(LISTENERS.get(EventType.BeforeResolveInput))
-                .ifPresent(listenerWrappers ->
-                        listenerWrappers.forEach(wrapper ->
-                                wrapper.beforeResolveInput(cmdName, cmdItems)));
+        for (ListenerWrapper wrapper : listeners[EventType.BeforeResolveInput.ordinal()])
+            wrapper.beforeResolveInput(cmdName, cmdItems);
     }
 
     // 解析输入后
     public static void onInputResolved(String cmdName, InvokeInfo info) {
-        Optional.ofNullable(LISTENERS.get(EventType.OnInputResolved))
-                .ifPresent(listenerWrappers ->
-                        listenerWrappers.forEach(wrapper ->
-                                wrapper.onInputResolved(cmdName, info)));
+        for (ListenerWrapper wrapper : listeners[EventType.OnInputResolved.ordinal()])
+            wrapper.onInputResolved(cmdName, info);
     }
 
     // 产生消息时
     public static void onMessage(ConsoleMessage message) {
-        Optional.ofNullable(LISTENERS.get(EventType.OnMessage))
-                .ifPresent(listenerWrappers ->
-                        listenerWrappers.forEach(wrapper ->
-                                wrapper.onMessage(message)));
+        for (ListenerWrapper wrapper : listeners[EventType.OnMessage.ordinal()])
+            wrapper.onMessage(message);
     }
 
     //--------------------------------------------------------------------------
@@ -134,17 +173,30 @@ public final class EventPublisher {
     private static class ListenerWrapper implements AppListener {
         private final AppListener impl;
         private final AppListenerProperty appListenerProperty;
+        private final AsyncLane lane;
 
         public ListenerWrapper(AppListener impl) {
             this.impl = impl;
             appListenerProperty = new AppListenerProperty();
             config(appListenerProperty);
+            this.lane = appListenerProperty.isAsync() ? new AsyncLane(impl.getName(),
+                    appListenerProperty.getQueueSize(), appListenerProperty.getOverflow()) : null;
         }
 
         public EventProperty getProperty() {
             return this.appListenerProperty.get();
         }
 
+        private void start() {
+            if (lane != null)
+                lane.start();
+        }
+
+        private void stop() {
+            if (lane != null)
+                lane.stop();
+        }
+
         @Override
         public boolean enable() {
             return impl.enable();
@@ -177,14 +229,128 @@ public final class EventPublisher {
 
         @Override
         public void onInputResolved(String cmdName, InvokeInfo info) {
-            impl.onInputResolved(cmdName, info);
+            if (lane == null) {
+                impl.onInputResolved(cmdName, info);
+            } else {
+                // 使用产生事件的用户对象，用户之后被回收时不会因为这个事件重新创建
+                Client user = Interpreter.currentUser();
+                lane.offer(() -> Interpreter.runAsUser(user, () -> impl.onInputResolved(cmdName, info)));
+            }
         }
 
         @Override
         public void onMessage(ConsoleMessage message) {
-            impl.onMessage(message);
+            if (lane == null) {
+                impl.onMessage(message);
+            } else {
+                // 使用产生事件的用户对象，用户之后被回收时不会因为这个事件重新创建
+                Client user = Interpreter.currentUser();
+                lane.offer(() -> Interpreter.runAsUser(user, () -> impl.onMessage(message)));
+            }
         }
 
     }
 
+    /**
+     * 异步监听器的事件队列和处理线程
+     */
+    private static final class AsyncLane implements Runnable {
+        private final String name;
+        private final BlockingQueue<Runnable> queue;
+        private final Overflow overflow;
+        // 已经发布但还没有处理完的事件数量
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder dropped = new LongAdder();
+        private volatile Thread thread;
+        private volatile boolean stopped;
+
+        private AsyncLane(String name, int queueSize, Overflow overflow) {
+            this.name = name;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.overflow = overflow;
+        }
+
+        private void start() {
+            Thread worker = new Thread(this, "console-listener-" + name);
+            worker.setDaemon(true);
+            this.thread = worker;
+            worker.start();
+        }
+
+        // 处理线程会处理完队列中剩余的事件; 线程没有启动或者已经退出时，剩余的事件算作丢弃
+        private void stop() {
+            this.stopped = true;
+            Thread worker = thread;
+            if (worker == null || !worker.isAlive())
+                discard();
+        }
+
+        private void offer(Runnable event) {
+            pending.incrementAndGet();
+            // 监听器在处理事件时又产生了事件，直接处理，避免等待自己的队列
+            if (Thread.currentThread() == thread) {
+                handle(event);
+                return;
+            }
+            if (!stopped && enqueue(event)) {
+                // 放入队列的同时被停止，处理线程可能已经退出，取回这个事件
+                if (!stopped || !queue.remove(event))
+                    return;
+            }
+            pending.decrementAndGet();
+            dropped.increment();
+        }
+
+        private boolean enqueue(Runnable event) {
+            if (queue.offer(event))
+                return true;
+            if (overflow == Overflow.BLOCK) {
+                try {
+                    queue.put(event);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return false;
+        }
+
+        private void discard() {
+            while (queue.poll() != null) {
+                pending.decrementAndGet();
+                dropped.increment();
+            }
+        }
+
+        private void handle(Runnable event) {
+            try {
+                event.run();
+            } catch (Throwable e) {
+                console.err("监听器`" + name + "`处理事件时发生异常: " + e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!stopped || !queue.isEmpty()) {
+                try {
+                    Runnable event = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (event != null)
+                        handle(event);
+                } catch (InterruptedException e) {
+                    discard();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "[async queue=" + queue.size() + "/" + (queue.size() + queue.remainingCapacity()) +
+                    " overflow=" + overflow + " dropped=" + dropped.sum() + "]";
+        }
+    }
+
 }
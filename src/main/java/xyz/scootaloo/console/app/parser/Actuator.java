@@ -30,6 +30,15 @@ public interface Actuator {
      */
     InvokeInfo execute(String commandArgs);
 
+    /**
+     * 使用已经分词的命令行进行执行，默认将命令参数还原成字符串后执行
+     * @param commandLine 命令行的分词结果
+     * @return 命令执行过程中收集到的信息
+     */
+    default InvokeInfo execute(CommandLine commandLine) {
+        return execute(commandLine.args());
+    }
+
     /**
      * 工具方法，将命令行分割成列表
      * @param commandArgs 命令行
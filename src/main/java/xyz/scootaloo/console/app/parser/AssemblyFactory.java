@@ -3,6 +3,8 @@ package xyz.scootaloo.console.app.parser;
 import xyz.scootaloo.console.app.anno.Cmd;
 import xyz.scootaloo.console.app.application.callback.CallBack;
 import xyz.scootaloo.console.app.client.Console;
+import xyz.scootaloo.console.app.client.SessionSnapshots;
+import xyz.scootaloo.console.app.client.out.AsyncPrinter;
 import xyz.scootaloo.console.app.client.out.CPrinterSupplier;
 import xyz.scootaloo.console.app.client.out.DelegatingConsole;
 import xyz.scootaloo.console.app.common.*;
@@ -12,13 +14,19 @@ import xyz.scootaloo.console.app.event.AppListener;
 import xyz.scootaloo.console.app.event.EventPublisher;
 import xyz.scootaloo.console.app.parser.Interpreter.MethodActuator;
 import xyz.scootaloo.console.app.parser.preset.PresetFactoryManager;
+import xyz.scootaloo.console.app.support.BackstageTaskManager;
 import xyz.scootaloo.console.app.support.FunctionDesc;
+import xyz.scootaloo.console.app.support.CommandMetrics;
+import xyz.scootaloo.console.app.support.HistoryJournal;
 import xyz.scootaloo.console.app.support.InvokeProxy;
+import xyz.scootaloo.console.app.support.ResultCache;
 import xyz.scootaloo.console.app.util.StringUtils;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Supplier;
 
 /**
@@ -31,6 +39,8 @@ import java.util.function.Supplier;
  *      参数解析器集合;
  *      命令帮助信息集合;
  * </pre>
+ * <p>系统启动后，仍然可以通过 {@link #register(Object)} 和 {@link #unregister(Object)} 在运行期间增加或者移除命令工厂，
+ * 命令保存在解释器的 {@link CommandRegistry} 中，增删命令不会阻塞正在执行的命令。</p>
  *
  * @author flutterdash@qq.com
  * @since 2020/12/28 10:05
@@ -41,12 +51,14 @@ public final class AssemblyFactory {
     private static ConsoleBanner bannerPrinter = AssemblyFactory::welcome;
 
     protected static final List<CallBack>     initActuators = new ArrayList<>();
-    protected static final List<CallBack>  destroyActuators = new ArrayList<>();
+    protected static final List<CallBack>  destroyActuators = new CopyOnWriteArrayList<>();
     protected static Map<String, ParameterParser> parserMap = new HashMap<>();
-    private final static Map<String, String>       HELP_MAP = new HashMap<>();
+    private final static Map<String, String>       HELP_MAP = new ConcurrentHashMap<>();
 
-    // 所有可调用的命令
-    private static final List<MethodActuator> ALL_COMMANDS = new LinkedList<>();
+    // 运行期间注册和注销工厂时使用的锁
+    private static final Object registerLock = new Object();
+    // 已经装配的工厂实例，按照引用判断，由 registerLock 保护
+    private static final Set<Object> registeredFactories = Collections.newSetFromMap(new IdentityHashMap<>());
     // 与装配工厂绑定的解释器
     private static Interpreter interpreter;
 
@@ -62,6 +74,13 @@ public final class AssemblyFactory {
     protected static void init(ConsoleConfig conf, Interpreter interpreter_) {
         config = conf;
         interpreter = interpreter_;
+        AsyncPrinter.configure(conf);
+        BackstageTaskManager.configure(conf);
+        HistoryJournal.configure(conf);
+        SessionSnapshots.configure(conf);
+        CommandMetrics.configure(conf);
+        ResultCache.configure(conf);
+        ParseCache.configure(conf);
         doInitStrategyFactories();
     }
 
@@ -70,7 +89,82 @@ public final class AssemblyFactory {
      * @return 执行器列表
      */
     public static List<MethodActuator> getAllCommands() {
-        return ALL_COMMANDS;
+        if (interpreter == null)
+            return Collections.emptyList();
+        return interpreter.getRegistry().commands();
+    }
+
+    /**
+     * 在运行期间注册一个命令工厂
+     * <p>工厂中的命令一次性生效; 初始化方法按照顺序立即执行; 销毁方法在工厂被注销或者系统关闭时执行。
+     * 如果工厂实现了 {@link HelpDoc}，则作为帮助工厂装配。同一个工厂实例重复注册时不做处理。</p>
+     * @param factory 工厂实例
+     * @return 注册的命令数量
+     */
+    protected static int register(Object factory) {
+        if (interpreter == null)
+            throw new RuntimeException("启动方式错误");
+        if (factory == null)
+            return 0;
+        synchronized (registerLock) {
+            if (factory instanceof HelpDoc) {
+                loadHelpFactory((HelpDoc) factory);
+                return 0;
+            }
+            // 只含有过滤器或者参数转换方法的工厂也不能重复注册
+            if (!registeredFactories.add(factory))
+                return 0;
+            List<MethodActuator> commands = new ArrayList<>();
+            List<CallBack> inits = new ArrayList<>();
+            loadCommandFactory(factory, commands, inits);
+            interpreter.loadCommandMethods(commands);
+            destroyActuators.sort(Comparator.comparingInt(CallBack::getOrder));
+            inits.sort(Comparator.comparingInt(CallBack::getOrder));
+            try {
+                inits.forEach(CallBack::call);
+            } catch (Exception e) {
+                console.onException(config, e, "初始化失败, msg: " + e.getMessage() + "\n");
+            }
+            return commands.size();
+        }
+    }
+
+    /**
+     * 在运行期间注销一个工厂，移除它的命令和过滤器，并执行它的销毁方法
+     * <p>通过这个工厂注册的参数转换方法不会被移除。</p>
+     * @param factory 注册时使用的工厂实例
+     * @return 注销的命令数量
+     */
+    protected static int unregister(Object factory) {
+        if (interpreter == null)
+            throw new RuntimeException("启动方式错误");
+        if (factory == null)
+            return 0;
+        synchronized (registerLock) {
+            registeredFactories.remove(factory);
+            List<MethodActuator> removed = interpreter.unloadFactory(factory);
+            // 名称没有被其他命令占用时，才移除帮助信息
+            for (MethodActuator actuator : removed) {
+                if (interpreter.getRegistry().lookup(actuator.getCmdName()) == null)
+                    HELP_MAP.remove(actuator.getCmdName());
+                // 缓存的结果属于被注销的工厂
+                if (actuator.isCacheable())
+                    ResultCache.invalidate(actuator.getCmdName());
+                ParseCache.invalidate(actuator);
+            }
+            List<CallBack> destroys = new ArrayList<>();
+            for (CallBack callBack : destroyActuators) {
+                if (callBack instanceof SimpleCallableMethod && ((SimpleCallableMethod) callBack).object == factory)
+                    destroys.add(callBack);
+            }
+            destroyActuators.removeAll(destroys);
+            try {
+                destroys.forEach(CallBack::call);
+            } catch (Exception e) {
+                console.onException(config, e, "销毁失败, msg: " + e.getMessage() + "\n");
+            }
+            return removed.size();
+        }
     }
 
     /**
@@ -148,18 +242,16 @@ public final class AssemblyFactory {
         // 输出欢迎信息
         bannerPrinter.printBanner();
 
-        // 处理命令工厂
+        // 处理命令工厂，所有命令装配完成后一次性注册
+        List<MethodActuator> commands = new ArrayList<>();
         for (Object factoryInstance : retainSet) {
-            Class<?> factoryClass = factoryInstance.getClass();
-            Method[] methods = factoryClass.getDeclaredMethods();
-            for (Method method : methods) {
-                method.setAccessible(true);
-                Cmd cmd = method.getAnnotation(Cmd.class);
-                if (cmd == null)
+            synchronized (registerLock) {
+                if (!registeredFactories.add(factoryInstance))
                     continue;
-                doResolveCmd(method, cmd, factoryInstance);
             }
+            loadCommandFactory(factoryInstance, commands, initActuators);
         }
+        interpreter.loadCommandMethods(commands);
 
         // 处理帮助工厂
         for (HelpDoc helpDoc : helpFactories) {
@@ -182,9 +274,24 @@ public final class AssemblyFactory {
                 initActuators.forEach(CallBack::call)));
     }
 
-    private static void doResolveCmd(Method method, Cmd cmdAnno, Object o) {
+    // 遍历工厂中含有 @Cmd 注解的方法，命令收集到 commands 中，初始化方法收集到 inits 中
+    private static void loadCommandFactory(Object factoryInstance, List<MethodActuator> commands,
+                                           List<CallBack> inits) {
+        Class<?> factoryClass = factoryInstance.getClass();
+        Method[] methods = factoryClass.getDeclaredMethods();
+        for (Method method : methods) {
+            method.setAccessible(true);
+            Cmd cmd = method.getAnnotation(Cmd.class);
+            if (cmd == null)
+                continue;
+            doResolveCmd(method, cmd, factoryInstance, commands, inits);
+        }
+    }
+
+    private static void doResolveCmd(Method method, Cmd cmdAnno, Object o,
+                                     List<MethodActuator> commands, List<CallBack> inits) {
         // 生成一个包装执行器类对象，这个类提供了一些便捷的方法
-        MethodActuator actuator = new MethodActuator(method, cmdAnno, o);
+        MethodActuator actuator = new MethodActuator(method, cmdAnno, o, config.getDispatchEngine());
         // 根据 type ，执行不同的装配方式
         switch (cmdAnno.type()) {
             case Cmd: {
@@ -193,14 +300,13 @@ public final class AssemblyFactory {
                 if (parser != null)
                     if (!actuator.setParser(parser))
                         return;
-                ALL_COMMANDS.add(actuator);
-                interpreter.loadCommandMethod(actuator);
+                commands.add(actuator);
             } break;
             case Filter: {
                 interpreter.loadFilter(actuator);
             } break;
             case Init: {
-                SimpleCallableMethod.checkAndAdd(method, o, cmdAnno, initActuators);
+                SimpleCallableMethod.checkAndAdd(method, o, cmdAnno, inits);
             } break;
             case Destroy: {
                 SimpleCallableMethod.checkAndAdd(method, o, cmdAnno, destroyActuators);
@@ -217,7 +323,6 @@ public final class AssemblyFactory {
     private static void sortResources() {
         initActuators.sort(Comparator.comparingInt(CallBack::getOrder));
         destroyActuators.sort(Comparator.comparingInt(CallBack::getOrder));
-        interpreter.sortFilter();
     }
 
     private static void loadListener(AppListener listenerObj) {
@@ -238,10 +343,10 @@ public final class AssemblyFactory {
         if (method.getReturnType() == void.class || method.getReturnType() == Void.class)
             return;
         // 将这个方法的实现注册到 TransformFactory
+        MethodInvoker invoker = MethodInvoker.bind(method, config.getDispatchEngine());
         TransformFactory.addParser((str) -> {
             try {
-                method.setAccessible(true);
-                return method.invoke(o, str);
+                return invoker.invoke(o, str);
             } catch (IllegalAccessException | InvocationTargetException e) {
                 console.onException(config, e);
                 return null;
@@ -335,12 +440,12 @@ public final class AssemblyFactory {
      * @since 2020/3/3 21:45
      */
     private static class SimpleCallableMethod implements CallBack {
-        final Method method;
+        final MethodInvoker invoker;
         final Object object;
         final int order;
 
         private SimpleCallableMethod(Method method, Object o, int order) {
-            this.method = method;
+            this.invoker = MethodInvoker.bind(method, config.getDispatchEngine());
             this.object = o;
             this.order = order;
         }
@@ -363,8 +468,7 @@ public final class AssemblyFactory {
 
         @Override
         public void call() {
-            method.setAccessible(true);
-            InvokeProxy.fun((FunctionDesc.Rtn1P<Object, Object>) method::invoke).call(object);
+            InvokeProxy.fun((FunctionDesc.Rtn1P<Object, Object>) invoker::invoke).call(object);
         }
 
     }
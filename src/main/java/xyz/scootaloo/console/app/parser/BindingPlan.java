@@ -0,0 +1,339 @@
+package xyz.scootaloo.console.app.parser;
+
+import xyz.scootaloo.console.app.anno.Opt;
+import xyz.scootaloo.console.app.error.ConsoleAppRuntimeException;
+import xyz.scootaloo.console.app.support.VariableManager;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 参数绑定计划
+ * <p>在 {@link MethodMeta} 创建时根据方法参数和 {@link Opt} 注解编译一次，之后不再改变。
+ * 计划中保存了参数名到参数下标的映射、每个参数的类型信息、连接标记、布尔标记以及预先解析好的默认值，
+ * 解析器在解析命令行时直接按照计划填充参数，不需要每次都重新遍历注解、构造集合。</p>
+ * <p>解析过程中的中间状态保存在 {@link Frame} 中，每个线程复用同一个 Frame 对象。</p>
+ *
+ * @see DftParameterParser
+ * @see xyz.scootaloo.console.app.parser.preset.SubParameterParser
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 11:05
+ */
+public final class BindingPlan {
+    // 默认值还未被解析时的标记
+    private static final Object UNRESOLVED = new Object();
+    private static final ThreadLocal<Frame> LOCAL_FRAME = ThreadLocal.withInitial(Frame::new);
+
+    public  final             int size;            // 方法参数个数
+    private final          Slot[] slots;           // 每个方法参数的绑定信息
+    private final Map<String, Slot> optionNames;   // 短参数名和完整参数名 -> 参数
+    private final Map<String, Slot> strategyNames; // 按照 getNameStrategy 选取的参数名 -> 参数
+    private final          String optChars;        // 所有的短参数名
+
+    private BindingPlan(MethodMeta meta) {
+        this.size = meta.size;
+        this.slots = new Slot[meta.size];
+        this.optionNames = new HashMap<>(meta.size * 2);
+        this.strategyNames = new HashMap<>(meta.size);
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i<meta.size; i++) {
+            Slot slot = new Slot(meta, i);
+            this.slots[i] = slot;
+            if (slot.opt == null)
+                continue;
+            chars.append(slot.opt.value());
+            this.optionNames.put(slot.shortName, slot);
+            if (!slot.fullName.isEmpty())
+                this.optionNames.put(slot.fullName, slot);
+            this.strategyNames.put(slot.strategyName, slot);
+        }
+        this.optChars = chars.toString();
+    }
+
+    // 编译方法的参数绑定计划
+    protected static BindingPlan compile(MethodMeta meta) {
+        return new BindingPlan(meta);
+    }
+
+    /**
+     * @param index 参数下标
+     * @return 此下标对应方法参数的绑定信息
+     */
+    public Slot slot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * 根据短参数名或者完整参数名查找参数
+     * @param name 参数名，不包括前缀 '-'
+     * @return 参数的绑定信息，没有找到时返回null
+     */
+    public Slot findOption(String name) {
+        return optionNames.get(name);
+    }
+
+    /**
+     * 根据短参数名查找参数
+     * @param shortName 短参数名
+     * @return 参数的绑定信息，没有找到时返回null
+     */
+    public Slot findOption(char shortName) {
+        for (Slot slot : slots) {
+            if (slot.opt != null && slot.opt.value() == shortName)
+                return slot;
+        }
+        return null;
+    }
+
+    /**
+     * 根据 {@link FillParamInOrder#getNameStrategy(Opt)} 选取的参数名查找参数
+     * @param name 参数名
+     * @return 参数的绑定信息，没有找到时返回null
+     */
+    public Slot findByStrategyName(String name) {
+        return strategyNames.get(name);
+    }
+
+    /**
+     * 检查一个命令参数是否由多个短参数名构成，例如 {@code -abc}
+     * @param segment 已经去掉前缀的命令参数
+     * @return 每个字符都是此方法的短参数名时返回true
+     */
+    public boolean isComposedOfShortOptions(String segment) {
+        for (int i = 0; i<segment.length(); i++) {
+            if (optChars.indexOf(segment.charAt(i)) == -1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 获取当前线程可用的解析状态，使用完毕后需要调用 {@link Frame#release()}
+     * @return 已经重置的解析状态
+     */
+    public Frame acquireFrame() {
+        Frame frame = LOCAL_FRAME.get();
+        if (frame.inUse)
+            frame = new Frame();
+        frame.reset(this);
+        return frame;
+    }
+
+    @Override
+    public String toString() {
+        return "BindingPlan{" +
+                "size=" + size +
+                ", optionNames=" + optionNames.keySet() +
+                ", strategyNames=" + strategyNames.keySet() +
+                ", optChars='" + optChars + '\'' +
+                '}';
+    }
+
+    /**
+     * 单个方法参数的绑定信息
+     */
+    public static final class Slot {
+        public final      int index;        // 参数下标
+        public final Class<?> type;         // 参数类型
+        public final     Type genericType;  // 参数的泛型类型
+        public final      Opt opt;          // 参数上的注解，没有注解时为null
+        public final   String shortName;    // 短参数名
+        public final   String fullName;     // 完整参数名
+        public final   String strategyName; // 优先使用完整参数名，没有时使用短参数名
+        public final  boolean required;     // 是否必选
+        public final  boolean joint;        // 是否需要拼接剩余的参数
+        public final  boolean bool;         // 是否布尔类型
+        public final  boolean hasDefault;   // 注解上是否提供了默认值
+        private final  String defaultText;  // 注解上的默认值
+        private final boolean immutable;    // 默认值解析后是否可以被复用
+        private volatile Object defaultValue = UNRESOLVED;
+
+        private Slot(MethodMeta meta, int index) {
+            this.index = index;
+            this.type = meta.parameterTypes[index];
+            this.genericType = meta.genericTypes[index];
+            this.opt = meta.optionals[index].orElse(null);
+            this.bool = type == boolean.class || type == Boolean.class;
+            if (opt != null) {
+                this.shortName = String.valueOf(opt.value());
+                this.fullName = opt.fullName();
+                this.strategyName = FillParamInOrder.getNameStrategy(opt);
+                this.required = opt.required();
+                this.joint = opt.joint();
+                this.defaultText = opt.dftVal();
+            } else {
+                this.shortName = "";
+                this.fullName = "";
+                this.strategyName = "";
+                this.required = false;
+                this.joint = false;
+                this.defaultText = "";
+            }
+            this.hasDefault = !defaultText.isEmpty();
+            this.immutable = isImmutable(type) && !defaultText.startsWith(VariableManager.placeholder);
+        }
+
+        /**
+         * 获取注解上提供的默认值，不可变类型的默认值只会解析一次
+         * @param parser 使用此解析器的规则解析默认值
+         * @return 解析结果，解析失败时返回异常对象
+         */
+        protected Object defaultValue(FillParamInOrder<?> parser) {
+            Object value = this.defaultValue;
+            if (value != UNRESOLVED)
+                return value;
+            value = parser.parsingParam(defaultText, type, genericType);
+            if (immutable && !(value instanceof Exception))
+                this.defaultValue = value;
+            return value;
+        }
+
+        // 基本类型、包装类型、字符串，这些类型的值可以被多次调用共享
+        private static boolean isImmutable(Class<?> type) {
+            return type.isPrimitive() || type == String.class || type == Integer.class || type == Long.class ||
+                    type == Double.class || type == Float.class || type == Short.class || type == Byte.class ||
+                    type == Boolean.class || type == Character.class;
+        }
+
+        @Override
+        public String toString() {
+            return "Slot{" +
+                    "index=" + index +
+                    ", type=" + type.getSimpleName() +
+                    ", strategyName='" + strategyName + '\'' +
+                    ", required=" + required +
+                    ", joint=" + joint +
+                    '}';
+        }
+    }
+
+    /**
+     * 解析状态
+     * <p>保存一次解析过程中的键值对、剩余的命令参数、缺省参数的位置，数组在同一个线程内复用。</p>
+     */
+    public static final class Frame {
+        private BindingPlan plan;
+        private boolean inUse;
+
+        private String[]  values     = new String[8];   // 下标 -> 命令行中对应的值
+        private boolean[] byFullName = new boolean[8];  // 这个值是否通过完整参数名给出
+        private String[]  positional = new String[8];   // 剩余的命令参数
+        private int positionalCount;
+        private int cursor;
+        private int[] lacks = new int[8];               // 缺省参数的下标
+        private int lackCount;
+        private Object[] args;
+        private ConsoleAppRuntimeException exception;
+
+        private void reset(BindingPlan plan) {
+            int size = plan.size;
+            if (values.length < size) {
+                values = new String[size];
+                byFullName = new boolean[size];
+                lacks = new int[size];
+            } else {
+                Arrays.fill(values, 0, size, null);
+                Arrays.fill(byFullName, 0, size, false);
+            }
+            this.plan = plan;
+            this.inUse = true;
+            this.positionalCount = 0;
+            this.cursor = 0;
+            this.lackCount = 0;
+            this.args = new Object[size];
+            this.exception = null;
+        }
+
+        /**
+         * 释放此状态，之后同一线程的解析可以复用它
+         */
+        public void release() {
+            Arrays.fill(positional, 0, positionalCount, null);
+            this.plan = null;
+            this.args = null;
+            this.inUse = false;
+        }
+
+        public BindingPlan plan() {
+            return plan;
+        }
+
+        /**
+         * 记录参数的值，通过完整参数名给出的值优先
+         * @param slot 参数
+         * @param value 值
+         * @param fullName 是否通过完整参数名给出
+         */
+        public void put(Slot slot, String value, boolean fullName) {
+            int idx = slot.index;
+            if (fullName || !byFullName[idx]) {
+                values[idx] = value;
+                byFullName[idx] = fullName;
+            }
+        }
+
+        public String value(Slot slot) {
+            return values[slot.index];
+        }
+
+        public void addPositional(String item) {
+            if (positionalCount == positional.length)
+                positional = Arrays.copyOf(positional, positionalCount * 2);
+            positional[positionalCount++] = item;
+        }
+
+        public boolean hasPositional() {
+            return cursor < positionalCount;
+        }
+
+        public String nextPositional() {
+            return positional[cursor++];
+        }
+
+        // 将剩余的命令参数使用空格拼接
+        public String joinPositional() {
+            StringBuilder sb = new StringBuilder();
+            while (cursor < positionalCount) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append(positional[cursor++]);
+            }
+            return sb.toString();
+        }
+
+        public void setArgument(Slot slot, Object arg) {
+            args[slot.index] = arg;
+        }
+
+        public void markLack(Slot slot) {
+            lacks[lackCount++] = slot.index;
+        }
+
+        public int lackCount() {
+            return lackCount;
+        }
+
+        public Slot lackSlot(int i) {
+            return plan.slots[lacks[i]];
+        }
+
+        public void fail(ConsoleAppRuntimeException ex) {
+            this.exception = ex;
+        }
+
+        public boolean hasException() {
+            return exception != null;
+        }
+
+        public ConsoleAppRuntimeException getException() {
+            return exception;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package xyz.scootaloo.console.app.parser;
+
+/**
+ * 编译期生成的命令调用代码
+ * <p>由 {@code xyz.scootaloo.console.app.processor.CommandProcessor} 为每个含有 {@code @Cmd} 方法的类生成，
+ * 类名为工厂类的全名加上 {@link #SUFFIX}，例如 {@code com.demo.MyFactory$$Commands}。
+ * 生成的代码直接调用命令方法，不经过反射和方法句柄，在 GraalVM native-image 下也可以使用。</p>
+ * <p>调用引擎为 {@link MethodInvoker.Engine#GENERATED} 时，装配阶段会优先使用这里的实现，
+ * 找不到生成的类，或者生成的类中没有这个方法(例如私有方法)时，退回到方法句柄。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:30
+ */
+public interface CommandIndex {
+
+    /** 生成类的类名后缀 */
+    String SUFFIX = "$$Commands";
+
+    /**
+     * 可以直接调用的方法签名，格式为 {@code 方法名(参数类型,参数类型)}，参数类型使用擦除后的规范名称，
+     * 例如 {@code add(int,java.util.List)}。签名在数组中的下标就是 {@link #call(int, Object, Object[])} 的序号。
+     * @return 方法签名
+     */
+    String[] signatures();
+
+    /**
+     * 调用方法
+     * @param id 方法的序号
+     * @param obj 方法所在类的实例，静态方法时可以为null
+     * @param args 方法参数
+     * @return 方法返回值，方法返回值类型为void时返回null
+     * @throws Throwable 方法内部抛出的异常，不做包装
+     */
+    Object call(int id, Object obj, Object[] args) throws Throwable;
+
+}
@@ -0,0 +1,369 @@
+package xyz.scootaloo.console.app.parser;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 命令行分词结果
+ * <p>命令行只被扫描一次，每个单词在原字符串中的位置被记录到可复用的 偏移量/长度 数组中，
+ * 之后 {@code Interpreter}、事件监听器、参数解析器都使用同一个分词结果，不再重复地截取、分割、拼接命令行。</p>
+ * <pre>
+ * 分词规则:
+ *      单词之间使用空格或者制表符分隔;
+ *      以单引号或者双引号开头的单词，直到对应的引号结束为止，中间的空白字符不做为分隔符;
+ *      反斜杠可以转义空白字符、引号和反斜杠本身，其他位置的反斜杠保持原样;
+ *      没有闭合的引号按照普通字符处理。
+ * </pre>
+ * <p>{@link #get(int)} 返回去掉引号和转义符后的内容，{@link #args()} 返回命令参数部分的原始文本，
+ * 假如某个单词被监听器修改过，则使用空格重新拼接。</p>
+ * <p>这个对象由同一个线程复用，从 {@link #acquire(String)} 获取，使用完毕后调用 {@link #release()}，
+ * 不要在命令执行结束后继续持有它，或者它的 {@link #asList()} 视图。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 13:10
+ */
+public final class CommandLine {
+    private static final ThreadLocal<CommandLine> LOCAL_LINES = new ThreadLocal<>();
+    private static final char ESCAPE = '\\';
+
+    private String line;
+    private int count;                        // 单词数量，包括命令名
+    private int argFrom;                      // 第一个命令参数的下标
+    private int[] offsets = new int[8];       // 单词在原字符串中的起始位置
+    private int[] lengths = new int[8];       // 单词在原字符串中的长度
+    private boolean[] plain = new boolean[8]; // 单词中不包含引号和转义符
+    private String[] texts = new String[8];   // 已经生成的单词内容
+    private boolean[] replaced = new boolean[8];
+    private boolean modified;
+    private String args;
+
+    private boolean inUse;
+    private CommandLine next;
+    private final ArgList argList = new ArgList();
+
+    private CommandLine() {
+    }
+
+    /**
+     * 获取当前线程可用的对象并对一条完整的命令行分词，第一个单词是命令名
+     * @param commandline 命令行
+     * @return 分词结果
+     */
+    public static CommandLine acquire(String commandline) {
+        return acquireFree().tokenize(commandline, 1);
+    }
+
+    /**
+     * 对命令参数部分分词，不包含命令名，适用于只有命令参数字符串的场景
+     * @param args 命令参数
+     * @return 分词结果，这个对象不会被复用
+     */
+    public static CommandLine ofArgs(String args) {
+        return new CommandLine().tokenize(args == null ? "" : args, 0);
+    }
+
+    /**
+     * 对一条完整的命令行分词，第一个单词是命令名
+     * @param commandline 命令行
+     * @return 分词结果，这个对象不会被复用
+     */
+    public static CommandLine of(String commandline) {
+        return new CommandLine().tokenize(commandline, 1);
+    }
+
+    // 当前线程中没有被使用的对象，命令执行时可能嵌套地执行其他命令，所以这里是一个链表
+    private static CommandLine acquireFree() {
+        CommandLine head = LOCAL_LINES.get();
+        if (head == null) {
+            head = new CommandLine();
+            LOCAL_LINES.set(head);
+        }
+        CommandLine cur = head;
+        while (cur.inUse) {
+            if (cur.next == null)
+                cur.next = new CommandLine();
+            cur = cur.next;
+        }
+        cur.inUse = true;
+        return cur;
+    }
+
+    /**
+     * 释放此对象，之后同一线程可以复用它
+     */
+    public void release() {
+        Arrays.fill(texts, 0, count, null);
+        this.line = null;
+        this.args = null;
+        this.inUse = false;
+    }
+
+    //---------------------------------------分词--------------------------------------------
+
+    private CommandLine tokenize(String commandline, int argFrom) {
+        this.line = commandline;
+        this.count = 0;
+        this.argFrom = argFrom;
+        this.modified = false;
+        this.args = null;
+        int len = commandline.length();
+        int i = 0;
+        while (i < len) {
+            char c = commandline.charAt(i);
+            if (isBlank(c)) {
+                i++;
+                continue;
+            }
+            int end = (c == '\'' || c == '"') ? scanQuoted(commandline, i, c) : -1;
+            if (end == -1)
+                end = scanPlain(commandline, i);
+            addToken(i, end);
+            i = end;
+        }
+        return this;
+    }
+
+    // 扫描一个以引号开头的单词，返回单词的结束位置; 假如引号没有闭合，返回-1
+    private static int scanQuoted(String text, int start, char quote) {
+        int len = text.length();
+        for (int i = start + 1; i<len; i++) {
+            char c = text.charAt(i);
+            if (c == ESCAPE && i + 1 < len && isEscapable(text.charAt(i + 1))) {
+                i++;
+            } else if (c == quote) {
+                // 引号之后直到空白字符，仍然属于这个单词
+                return scanPlain(text, i + 1);
+            }
+        }
+        return -1;
+    }
+
+    // 扫描一个普通的单词，返回单词的结束位置
+    private static int scanPlain(String text, int start) {
+        int len = text.length();
+        int i = start;
+        while (i < len) {
+            char c = text.charAt(i);
+            if (isBlank(c))
+                break;
+            if (c == ESCAPE && i + 1 < len && isEscapable(text.charAt(i + 1)))
+                i++;
+            i++;
+        }
+        return i;
+    }
+
+    private void addToken(int start, int end) {
+        if (count == offsets.length) {
+            int capacity = count * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            plain = Arrays.copyOf(plain, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            replaced = Arrays.copyOf(replaced, capacity);
+        }
+        offsets[count] = start;
+        lengths[count] = end - start;
+        plain[count] = isPlain(line, start, end);
+        texts[count] = null;
+        replaced[count] = false;
+        count++;
+    }
+
+    private static boolean isPlain(String text, int start, int end) {
+        char first = text.charAt(start);
+        if (first == '\'' || first == '"')
+            return false;
+        for (int i = start; i<end; i++) {
+            if (text.charAt(i) == ESCAPE)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isEscapable(char c) {
+        return isBlank(c) || c == '\'' || c == '"' || c == ESCAPE;
+    }
+
+    // 去掉引号和转义符
+    private String unquote(int idx) {
+        int start = offsets[idx];
+        int end = start + lengths[idx];
+        StringBuilder sb = new StringBuilder(lengths[idx]);
+        char quote = 0;
+        int i = start;
+        char first = line.charAt(start);
+        if ((first == '\'' || first == '"') && scanQuoted(line, start, first) != -1) {
+            quote = first;
+            i++;
+        }
+        for (; i<end; i++) {
+            char c = line.charAt(i);
+            if (c == ESCAPE && i + 1 < end && isEscapable(line.charAt(i + 1))) {
+                sb.append(line.charAt(++i));
+            } else if (quote != 0 && c == quote) {
+                quote = 0;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    //---------------------------------------访问--------------------------------------------
+
+    /**
+     * @return 命令行中没有任何单词时返回true
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @return 命令名，没有命令名时返回空字符串
+     */
+    public String name() {
+        if (argFrom == 0 || count == 0)
+            return "";
+        return text(0);
+    }
+
+    /**
+     * @return 命令参数的数量
+     */
+    public int size() {
+        return Math.max(count - argFrom, 0);
+    }
+
+    /**
+     * 获取第i个命令参数，已经去掉了引号和转义符
+     * @param i 命令参数下标
+     * @return 命令参数
+     */
+    public String get(int i) {
+        return text(i + argFrom);
+    }
+
+    /**
+     * 修改第i个命令参数，内容没有变化时不做任何处理
+     * @param i 命令参数下标
+     * @param value 新的值
+     */
+    public void set(int i, String value) {
+        int idx = i + argFrom;
+        if (value == null || value.equals(text(idx)))
+            return;
+        texts[idx] = value;
+        replaced[idx] = true;
+        modified = true;
+        args = null;
+    }
+
+    /**
+     * 第i个命令参数的原始文本是否以某个字符开头，不生成字符串
+     * <p>以引号或者转义符开头的命令参数不会匹配，例如 {@code '-x'} 不被当作选项</p>
+     * @param i 命令参数下标
+     * @param c 字符
+     * @return 是否以此字符开头
+     */
+    public boolean startsWith(int i, char c) {
+        int idx = i + argFrom;
+        if (!replaced[idx])
+            return lengths[idx] > 0 && line.charAt(offsets[idx]) == c;
+        String text = text(idx);
+        return !text.isEmpty() && text.charAt(0) == c;
+    }
+
+    /**
+     * 获取命令参数部分的文本
+     * <p>命令参数没有被修改时，返回原始的文本(保留引号、转义符和单词之间的空白)，否则使用空格重新拼接。</p>
+     * @return 命令参数文本
+     */
+    public String args() {
+        if (args == null)
+            args = joinFrom(0);
+        return args;
+    }
+
+    /**
+     * 从第i个命令参数开始，拼接剩余的命令参数，规则和 {@link #args()} 相同
+     * @param i 命令参数下标
+     * @return 拼接后的文本，没有剩余的命令参数时返回空字符串
+     */
+    public String joinFrom(int i) {
+        int from = i + argFrom;
+        if (from >= count)
+            return "";
+        if (!modified)
+            return line.substring(offsets[from], offsets[count - 1] + lengths[count - 1]);
+        StringBuilder sb = new StringBuilder();
+        for (int idx = from; idx<count; idx++) {
+            if (idx > from)
+                sb.append(' ');
+            if (replaced[idx])
+                sb.append(texts[idx]);
+            else
+                sb.append(line, offsets[idx], offsets[idx] + lengths[idx]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 命令参数的列表视图，对这个列表的修改会反映到分词结果上，不支持增删元素
+     * @return 列表视图
+     */
+    public List<String> asList() {
+        return argList;
+    }
+
+    private String text(int idx) {
+        String text = texts[idx];
+        if (text == null) {
+            text = plain[idx] ? line.substring(offsets[idx], offsets[idx] + lengths[idx]) : unquote(idx);
+            texts[idx] = text;
+        }
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandLine{" +
+                "name='" + name() + '\'' +
+                ", args=" + asList() +
+                '}';
+    }
+
+    // 命令参数的列表视图
+    private final class ArgList extends AbstractList<String> implements RandomAccess {
+
+        @Override
+        public String get(int index) {
+            checkIndex(index);
+            return CommandLine.this.get(index);
+        }
+
+        @Override
+        public String set(int index, String element) {
+            String old = get(index);
+            CommandLine.this.set(index, element);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return CommandLine.this.size();
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package xyz.scootaloo.console.app.parser;
+
+import xyz.scootaloo.console.app.parser.Interpreter.MethodActuator;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 命令注册表
+ * <p>保存系统中所有可调用的命令，可以通过方法名或者 {@code @Cmd.name} 别名以O(1)的时间找到对应的执行器。</p>
+ * <p>注册表的内容是一个不可变的快照，读取时不加锁，直接读取 volatile 引用;
+ * 注册和注销命令时，在锁内复制当前快照、修改、然后整体替换，所以正在执行的命令不会看到修改到一半的状态。</p>
+ * <p>名称冲突时，后注册的命令生效; 后注册的命令被注销后，之前被覆盖的命令会重新生效。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 14:20
+ */
+public final class CommandRegistry {
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    protected CommandRegistry() {
+    }
+
+    /**
+     * 根据方法名或者别名查找执行器，不加锁
+     * @param name 名称，需要是小写
+     * @return 执行器，没有找到时返回null
+     */
+    public MethodActuator lookup(String name) {
+        return snapshot.nameMap.get(name);
+    }
+
+    /**
+     * @return 当前所有命令的只读列表，按照注册顺序排列
+     */
+    public List<MethodActuator> commands() {
+        return snapshot.commands;
+    }
+
+    /**
+     * @return 当前注册表中命令的数量
+     */
+    public int size() {
+        return snapshot.commands.size();
+    }
+
+    /**
+     * 注册一批命令，这批命令同时生效
+     * @param actuators 执行器
+     */
+    protected void registerAll(Collection<MethodActuator> actuators) {
+        if (actuators.isEmpty())
+            return;
+        synchronized (writeLock) {
+            List<MethodActuator> commands = new ArrayList<>(snapshot.commands);
+            commands.addAll(actuators);
+            snapshot = new Snapshot(commands);
+        }
+    }
+
+    /**
+     * 注销满足条件的命令，这批命令同时失效
+     * @param filter 条件
+     * @return 被注销的执行器
+     */
+    protected List<MethodActuator> unregisterIf(Predicate<MethodActuator> filter) {
+        synchronized (writeLock) {
+            List<MethodActuator> commands = new ArrayList<>(snapshot.commands);
+            List<MethodActuator> removed = new ArrayList<>();
+            Iterator<MethodActuator> iterator = commands.iterator();
+            while (iterator.hasNext()) {
+                MethodActuator actuator = iterator.next();
+                if (filter.test(actuator)) {
+                    removed.add(actuator);
+                    iterator.remove();
+                }
+            }
+            if (!removed.isEmpty())
+                snapshot = new Snapshot(commands);
+            return removed;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CommandRegistry{" +
+                "names=" + snapshot.nameMap.keySet() +
+                '}';
+    }
+
+    // 注册表的不可变快照，创建后不再修改，可以被多个线程安全地读取
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyList());
+
+        private final List<MethodActuator> commands;
+        private final Map<String, MethodActuator> nameMap;
+
+        private Snapshot(List<MethodActuator> commands) {
+            this.commands = Collections.unmodifiableList(commands);
+            Map<String, MethodActuator> nameMap = new HashMap<>(commands.size() * 4);
+            for (MethodActuator actuator : commands) {
+                nameMap.put(actuator.getCmdName(), actuator);
+                String alias = actuator.getCmd().name();
+                if (!alias.isEmpty())
+                    nameMap.put(alias.toLowerCase(Locale.ROOT), actuator);
+            }
+            this.nameMap = nameMap;
+        }
+    }
+
+}
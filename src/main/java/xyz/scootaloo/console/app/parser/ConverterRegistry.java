@@ -0,0 +1,319 @@
+package xyz.scootaloo.console.app.parser;
+
+import xyz.scootaloo.console.app.anno.Form;
+import xyz.scootaloo.console.app.support.VariableManager;
+import xyz.scootaloo.console.app.util.PrimitiveArrays;
+
+import java.lang.reflect.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 转换器注册表
+ * <p>根据参数的类型和泛型信息生成一个转换器，同一个类型只生成一次，之后直接从缓存中获取。
+ * 集合和数组的转换器中已经包含了元素的转换器，转换时不再需要解析泛型信息或者加载类。</p>
+ * <pre>
+ * 转换器的输入:
+ *      字符串: 普通类型按照 {@link TransformFactory#simpleTrans(Object, Class)} 的规则转换，
+ *              集合和数组按照逗号拆分后逐个转换元素，基本类型的数组由 {@link PrimitiveArrays} 直接解析，
+ *              也可以使用 {@code file:路径} 从文件中读取;
+ *      集合 Map: 由 {@link xyz.scootaloo.console.app.parser.preset.CollectionParameterParser} 解析出的结构，
+ *              元素可以是字符串或者嵌套的结构，按照泛型信息逐层转换，所以泛型可以任意嵌套，
+ *              例如 {@code Map<String, List<Integer>>}。
+ * </pre>
+ * <p>通过 {@link TransformFactory#addParser(Function, Class[])} 添加新的解析器之后缓存会被清空。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:50
+ */
+public final class ConverterRegistry {
+    private static final String DELIMITER = ",";
+    private static final Map<Type, Converter> CACHE = new ConcurrentHashMap<>();
+
+    private ConverterRegistry() {
+    }
+
+    /**
+     * 获取某个类型的转换器
+     * @param classType 类型
+     * @param genericType 泛型信息，为null时使用classType
+     * @return 转换器
+     */
+    public static Converter get(Class<?> classType, Type genericType) {
+        Type key = genericType == null ? classType : genericType;
+        Converter converter = CACHE.get(key);
+        if (converter == null) {
+            // 生成转换器时可能递归地获取元素的转换器，所以不使用 computeIfAbsent
+            converter = create(key);
+            Converter exist = CACHE.putIfAbsent(key, converter);
+            if (exist != null)
+                converter = exist;
+        }
+        return converter;
+    }
+
+    /**
+     * 清空缓存的转换器
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * @param type 一个类型
+     * @return 这个类型擦除泛型之后的类
+     */
+    public static Class<?> rawClass(Type type) {
+        if (type instanceof Class)
+            return (Class<?>) type;
+        if (type instanceof ParameterizedType)
+            return rawClass(((ParameterizedType) type).getRawType());
+        if (type instanceof GenericArrayType)
+            return Array.newInstance(rawClass(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        if (type instanceof WildcardType)
+            return rawClass(((WildcardType) type).getUpperBounds()[0]);
+        if (type instanceof TypeVariable)
+            return rawClass(((TypeVariable<?>) type).getBounds()[0]);
+        return Object.class;
+    }
+
+    /**
+     * @param type 一个泛型类型
+     * @param index 第几个泛型参数
+     * @return 泛型参数的类型，没有泛型信息时返回 String
+     */
+    public static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length)
+                return arguments[index];
+        }
+        return String.class;
+    }
+
+    private static Converter create(Type type) {
+        Class<?> raw = rawClass(type);
+        if (raw.isArray()) {
+            Type component = type instanceof GenericArrayType ?
+                    ((GenericArrayType) type).getGenericComponentType() : raw.getComponentType();
+            Class<?> componentType = raw.getComponentType();
+            return new ArrayConverter(raw, componentType, get(rawClass(component), component),
+                    componentType.isPrimitive() && !TransformFactory.isCustomized(componentType));
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            Type element = typeArgument(type, 0);
+            return new CollectionConverter(raw, collectionFactory(raw), get(rawClass(element), element));
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            Type key = typeArgument(type, 0), value = typeArgument(type, 1);
+            return new MapConverter(raw, mapFactory(raw), get(rawClass(key), key), get(rawClass(value), value));
+        }
+        return new ScalarConverter(raw, TransformFactory.findConvertor(raw));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Collection<Object>> collectionFactory(Class<?> type) {
+        if (type.isAssignableFrom(ArrayList.class))
+            return ArrayList::new;
+        if (type.isAssignableFrom(LinkedHashSet.class))
+            return LinkedHashSet::new;
+        if (type.isAssignableFrom(TreeSet.class))
+            return TreeSet::new;
+        if (type.isAssignableFrom(ArrayDeque.class))
+            return ArrayDeque::new;
+        return () -> (Collection<Object>) newInstance(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Map<Object, Object>> mapFactory(Class<?> type) {
+        if (type.isAssignableFrom(LinkedHashMap.class))
+            return LinkedHashMap::new;
+        if (type.isAssignableFrom(TreeMap.class))
+            return TreeMap::new;
+        return () -> (Map<Object, Object>) newInstance(type);
+    }
+
+    private static Object newInstance(Class<?> type) {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("暂不支持的数据结构: " + type.getName());
+        }
+    }
+
+    // 把字符串按照逗号拆分，或者得到集合的元素
+    private static Collection<?> itemsOf(Object value) {
+        if (value instanceof Collection)
+            return (Collection<?>) value;
+        if (value instanceof Map)
+            return ((Map<?, ?>) value).keySet();
+        if (value == null)
+            return Collections.emptyList();
+        String text = String.valueOf(value);
+        return Arrays.asList(text.split(DELIMITER));
+    }
+
+    /**
+     * 转换器，把字符串或者解析出的结构转换成某个类型的对象
+     */
+    @FunctionalInterface
+    public interface Converter {
+        /**
+         * @param value 字符串，或者由字符串组成的集合、Map
+         * @return 转换结果
+         * @throws Exception 转换失败
+         */
+        Object convert(Object value) throws Exception;
+    }
+
+    // 普通类型，和 simpleTrans 的规则一致，但解析器和表单注解只在生成时查找一次
+    private static final class ScalarConverter implements Converter {
+        private final Class<?> type;
+        private final Function<String, Object> convertor;
+        private final boolean isForm;
+
+        private ScalarConverter(Class<?> type, Function<String, Object> convertor) {
+            this.type = type;
+            this.convertor = convertor;
+            this.isForm = convertor == null && type.isAnnotationPresent(Form.class);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            String text = String.valueOf(value);
+            Object pObj = TransformFactory.resolvePlaceholder(text, type);
+            if (pObj != null)
+                return pObj;
+            if (convertor != null)
+                return convertor.apply(text);
+            if (isForm)
+                return TransformFactory.simpleTrans(text, type);
+            return TransformFactory.getDefVal(type);
+        }
+    }
+
+    // 数组，元素类型可以是基本类型
+    private static final class ArrayConverter implements Converter {
+        private final Class<?> type;
+        private final Class<?> componentType;
+        private final Converter element;
+        private final boolean primitive; // 基本类型且没有自定义解析器时直接写入数组，不经过包装类型
+        private final boolean direct;    // 字符串可以由 PrimitiveArrays 直接解析
+
+        private ArrayConverter(Class<?> type, Class<?> componentType, Converter element, boolean primitive) {
+            this.type = type;
+            this.componentType = componentType;
+            this.element = element;
+            this.primitive = primitive;
+            this.direct = primitive && PrimitiveArrays.isSupported(componentType);
+        }
+
+        @Override
+        public Object convert(Object value) throws Exception {
+            Object pObj = TransformFactory.resolvePlaceholder(value, type);
+            if (pObj != null)
+                return pObj;
+            if (value instanceof String && ((String) value).trim().isEmpty())
+                return Array.newInstance(componentType, 0);
+            if (direct && value instanceof String) {
+                String text = (String) value;
+                if (text.startsWith(PrimitiveArrays.FILE_PREFIX))
+                    return PrimitiveArrays.load(componentType,
+                            Paths.get(text.substring(PrimitiveArrays.FILE_PREFIX.length()).trim()));
+                // 数据项中有占位符时逐个转换
+                if (!text.contains(VariableManager.placeholder))
+                    return PrimitiveArrays.parse(componentType, text);
+            }
+            Collection<?> items = itemsOf(value);
+            Object array = Array.newInstance(componentType, items.size());
+            int i = 0;
+            for (Object item : items) {
+                if (!primitive || !setPrimitive(array, i, item))
+                    Array.set(array, i, element.convert(item));
+                i++;
+            }
+            return array;
+        }
+    }
+
+    // 元素是字符串且不是占位符时，按照基本类型直接解析，失败返回false
+    private static boolean setPrimitive(Object array, int i, Object item) {
+        if (!(item instanceof String))
+            return false;
+        String text = (String) item;
+        if (text.startsWith(VariableManager.placeholder))
+            return false;
+        if (array instanceof int[])
+            ((int[]) array)[i] = Integer.parseInt(text);
+        else if (array instanceof long[])
+            ((long[]) array)[i] = Long.parseLong(text);
+        else if (array instanceof double[])
+            ((double[]) array)[i] = Double.parseDouble(text);
+        else if (array instanceof float[])
+            ((float[]) array)[i] = Float.parseFloat(text);
+        else if (array instanceof short[])
+            ((short[]) array)[i] = Short.parseShort(text);
+        else if (array instanceof byte[])
+            ((byte[]) array)[i] = Byte.parseByte(text);
+        else if (array instanceof boolean[])
+            ((boolean[]) array)[i] = !text.isEmpty() && (text.charAt(0) == 't' || text.charAt(0) == 'T');
+        else
+            return false;
+        return true;
+    }
+
+    // List Set 等集合
+    private static final class CollectionConverter implements Converter {
+        private final Class<?> type;
+        private final Supplier<Collection<Object>> factory;
+        private final Converter element;
+
+        private CollectionConverter(Class<?> type, Supplier<Collection<Object>> factory, Converter element) {
+            this.type = type;
+            this.factory = factory;
+            this.element = element;
+        }
+
+        @Override
+        public Object convert(Object value) throws Exception {
+            Object pObj = TransformFactory.resolvePlaceholder(value, type);
+            if (pObj != null)
+                return pObj;
+            Collection<Object> collection = factory.get();
+            for (Object item : itemsOf(value))
+                collection.add(element.convert(item));
+            return collection;
+        }
+    }
+
+    // Map，只能转换解析出的 Map 结构，字符串按照普通类型处理
+    private static final class MapConverter implements Converter {
+        private final Class<?> type;
+        private final Supplier<Map<Object, Object>> factory;
+        private final Converter key;
+        private final Converter value;
+
+        private MapConverter(Class<?> type, Supplier<Map<Object, Object>> factory, Converter key, Converter value) {
+            this.type = type;
+            this.factory = factory;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object convert(Object raw) throws Exception {
+            if (raw instanceof Collection)
+                throw new RuntimeException("不支持的类型转换: " + raw.getClass().getSimpleName() + " -> Map");
+            if (!(raw instanceof Map))
+                return TransformFactory.simpleTrans(String.valueOf(raw), type);
+            Map<Object, Object> map = factory.get();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) raw).entrySet())
+                map.put(key.convert(entry.getKey()), value.convert(entry.getValue()));
+            return map;
+        }
+    }
+
+}
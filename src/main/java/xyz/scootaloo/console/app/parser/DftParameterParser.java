@@ -1,14 +1,12 @@
 package xyz.scootaloo.console.app.parser;
 
-import xyz.scootaloo.console.app.anno.Opt;
 import xyz.scootaloo.console.app.anno.mark.Stateless;
 import xyz.scootaloo.console.app.error.ErrorCode;
-import xyz.scootaloo.console.app.parser.MethodMeta.Context;
-import xyz.scootaloo.console.app.parser.MethodMeta.CurrentParamInfo;
+import xyz.scootaloo.console.app.parser.BindingPlan.Frame;
+import xyz.scootaloo.console.app.parser.BindingPlan.Slot;
 import xyz.scootaloo.console.app.util.StringUtils;
 
 import java.lang.reflect.Type;
-import java.util.*;
 
 /**
  * 系统默认参数解析器实现
@@ -17,6 +15,7 @@ import java.util.*;
  *      按照方法参数的注解来填充参数
  *      参数默认值
  *      简化布尔类型参数的写法</pre>
+ * <p>解析时直接执行 {@link MethodMeta#bindingPlan} 中预先编译好的绑定计划。</p>
  * <p>其他内容请参考 README.md </p>
  * @author flutterdash@qq.com
  * @since 2020/12/29 11:21
@@ -28,60 +27,87 @@ public final class DftParameterParser extends FillParamInOrder<Object>{
     protected static final DftParameterParser INSTANCE = new DftParameterParser();
 
     @Override
-    protected Context<Object> createContext(MethodMeta meta, String args) {
-        return Context.getInstance(meta, args, this::loadArgumentFromCmdline);
+    public ResultWrapper parse(MethodMeta meta, String args) {
+        return parse(meta, CommandLine.ofArgs(args));
     }
 
     @Override
-    protected void doResolveIfAnnoExist(Context<Object> state, CurrentParamInfo current) {
-        Opt opt = current.getAnno();
-        String shortKeyName = String.valueOf(opt.value());
-        String fullKeyName = opt.fullName();
-        if (state.containParam(shortKeyName) || state.containParam(fullKeyName)) {
-            if (!fullKeyName.isEmpty() && state.containParam(fullKeyName)) {
-                mapToArgument(state, current, fullKeyName);
-            } else {
-                mapToArgument(state, current, shortKeyName);
+    public ResultWrapper parse(MethodMeta meta, CommandLine line) {
+        // 假如方法参数长度为空, 直接返回
+        if (meta.size == 0)
+            return returnNothing();
+
+        BindingPlan plan = meta.bindingPlan;
+        Frame frame = plan.acquireFrame();
+        try {
+            loadArgumentFromCmdline(plan, frame, line);
+            for (int i = 0; i<plan.size; i++) {
+                Slot slot = plan.slot(i);
+                if (slot.opt != null) {
+                    doResolveIfAnnoExist(frame, slot);
+                } else {
+                    doResolveIfAnnoMissing(frame, slot);
+                }
+
+                if (frame.hasException())
+                    return ParameterWrapper.fail(frame.getException());
             }
+
+            if (frame.lackCount() > 0)
+                fillLackSlots(frame);
+
+            return ParameterWrapper.successWith(frame.getArgs());
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void doResolveIfAnnoExist(Frame frame, Slot slot) {
+        String value = frame.value(slot);
+        if (value != null) {
+            Object parsingResult = parsingParam(value, slot.type, slot.genericType);
+            if (parsingResult instanceof Exception)
+                frame.fail(createException("参数解析错误", (Throwable) parsingResult, ErrorCode.RESOLVE_ERROR));
+            else
+                frame.setArgument(slot, parsingResult);
         } else {
-            if (current.isRequired())
-                state.setException(createException("缺少必要参数: " + shortKeyName + " | " + fullKeyName));
+            if (slot.required)
+                frame.fail(createException("缺少必要参数: " + slot.shortName + " | " + slot.fullName));
             else
-                addLackMark(state, current);
+                bindLackSlot(frame, slot);
         }
     }
 
-    @Override
-    protected void doResolveIfAnnoMissing(Context<Object> state, CurrentParamInfo current) {
-        Optional<Object> presetObjOptional = TransformFactory.getPresetVal(current.getParamType());
-        if (presetObjOptional.isPresent()) {
-            state.addMethodArgument(presetObjOptional.get());
+    private void doResolveIfAnnoMissing(Frame frame, Slot slot) {
+        Object presetObj = TransformFactory.findPresetVal(slot.type);
+        if (presetObj != null) {
+            frame.setArgument(slot, presetObj);
             return;
         }
 
-        if (state.getRemainList().isEmpty()) {
-            state.setException(
-                    createException("命令不完整，在第" + (current.index() + 1) + "个参数，" + "参数类型: "));
+        if (!frame.hasPositional()) {
+            frame.fail(createException("命令不完整，在第" + (slot.index + 1) + "个参数，" +
+                    "参数类型: " + slot.type.getSimpleName()));
             return;
         }
 
-        try {
-            state.addMethodArgument(parsingParam(state.getRemainList().remove(0),
-                    current.getParamType(), current.getGenericType()));
-        } catch (Exception e) {
-            state.setException(createException("参数解析异常", e, ErrorCode.RESOLVE_ERROR));
-        }
+        Object parsingResult = parsingParam(frame.nextPositional(), slot.type, slot.genericType);
+        if (parsingResult instanceof Exception)
+            frame.fail(createException("参数解析异常", (Throwable) parsingResult, ErrorCode.RESOLVE_ERROR));
+        else
+            frame.setArgument(slot, parsingResult);
     }
 
     // 从命令行中取出命令参数和值
-    private List<String> loadArgumentFromCmdline(Context<Object> state, String args) {
-        List<String> argItems = Actuator.splitCommandArgsBySpace(args);
-        MethodMeta meta = state.meta();
-        LinkedList<String> retainList = new LinkedList<>();
-        for (int i = 0; i<argItems.size(); i++) {
-            String curSegment = argItems.get(i);
-            if (StringUtils.isNumber(curSegment) || !curSegment.startsWith("-")) {
-                retainList.addLast(curSegment);
+    private void loadArgumentFromCmdline(BindingPlan plan, Frame frame, CommandLine line) {
+        int size = line.size();
+        // 没有任何命令参数时，和按照空格分隔空字符串的结果保持一致
+        if (size == 0)
+            frame.addPositional("");
+        for (int i = 0; i<size; i++) {
+            String curSegment = line.get(i);
+            if (!line.startsWith(i, '-') || StringUtils.isNumber(curSegment)) {
+                frame.addPositional(curSegment);
                 continue;
             }
 
@@ -89,30 +115,29 @@ public final class DftParameterParser extends FillParamInOrder<Object>{
             curSegment = curSegment.substring(prefixCount);
             if (curSegment.isEmpty())
                 continue;
-            if (meta.jointMarkSet.contains(curSegment)) {
-                List<String> jointList = new ArrayList<>();
-                for (i += 1; i<argItems.size(); i++) {
-                    jointList.add(argItems.get(i));
-                }
-                if (!jointList.isEmpty())
-                    state.getKVPairs().put(curSegment, String.join(" ", jointList));
-                continue;
+            Slot slot = plan.findOption(curSegment);
+            if (slot != null && slot.joint) {
+                // 拼合余下的命令参数，保留原始的文本
+                String joint = line.joinFrom(i + 1);
+                if (!joint.isEmpty())
+                    frame.put(slot, joint, curSegment.equals(slot.fullName));
+                break;
             }
 
-            String nextSeg = PLACEHOLDER;
-            if (curSegment.length() > 1 && isContainsAll(curSegment, meta.optCharSet)) {
-                for (char shortParam : curSegment.toCharArray()) {
-                    state.getKVPairs().put(String.valueOf(shortParam), "true");
+            if (curSegment.length() > 1 && plan.isComposedOfShortOptions(curSegment)) {
+                for (int j = 0; j<curSegment.length(); j++) {
+                    frame.put(plan.findOption(curSegment.charAt(j)), "true", false);
                 }
                 continue;
             }
-            if (i < argItems.size() - 1 && !argItems.get(i + 1).startsWith("-")) {
-                nextSeg = argItems.get(i + 1);
+            String nextSeg = PLACEHOLDER;
+            if (i < size - 1 && !line.startsWith(i + 1, '-')) {
+                nextSeg = line.get(i + 1);
                 i++;
             }
-            state.getKVPairs().put(curSegment, nextSeg);
+            if (slot != null)
+                frame.put(slot, nextSeg, curSegment.equals(slot.fullName));
         }
-        return retainList;
     }
 
     // 将一个对象根据类型解析成另外一个对象
@@ -123,15 +148,6 @@ public final class DftParameterParser extends FillParamInOrder<Object>{
         return super.parsingParam(value, classType, genericType);
     }
 
-    // 检查一个命令参数是否由多个可选项参数构成
-    private static boolean isContainsAll(String param, Set<Character> paramsSet) {
-        for (int i = 0; i<param.length(); i++) {
-            if (!paramsSet.contains(param.charAt(i)))
-                return false;
-        }
-        return true;
-    }
-
     @Override
     public String toString() {
         return "##default##";
@@ -40,10 +40,10 @@ public final class ExtraOptionHandler {
      *      命令名，命令行中最前的一个单词，假如它由‘-’分隔，且后面的内容不为空，则被认为是有效的
      *      然后查找对应的处理器
      * @param cmdName 命令名
-     * @param args 参数
+     * @param line 命令行的分词结果
      * @return 是否被处理过
      */
-    protected static boolean handle(String cmdName, String args) {
+    protected static boolean handle(String cmdName, CommandLine line) {
         if (!cmdName.contains(DELIMITER))
             return false;
         String[] segments = cmdName.split(DELIMITER);
@@ -57,7 +57,7 @@ public final class ExtraOptionHandler {
                 return false;
             }
             OptionHandler handle = optionMap.get(option);
-            handle.runWithParameter(realCmdName, getParameter(segments[1]), args, interpreter);
+            handle.runWithParameter(realCmdName, getParameter(segments[1]), line.args(), interpreter);
         } else {
             console.println("没有找到对应的操作处理器: `" + option + "`");
         }
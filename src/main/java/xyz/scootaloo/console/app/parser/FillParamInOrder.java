@@ -164,6 +164,51 @@ public abstract class FillParamInOrder<T> implements ParameterParser {
                 current.index(), current.getParamType(), current.getGenericType(), current.isJoint()));
     }
 
+    /**
+     * 与 {@link #addLackMark(MethodMeta.Context, MethodMeta.CurrentParamInfo)} 相同, 但是按照绑定计划执行.
+     * 预设值优先, 其次是注解提供的默认值(不可变类型的默认值只解析一次), 最后是类型的默认值
+     *
+     * @param frame 解析状态
+     * @param slot 当前参数
+     */
+    protected final void bindLackSlot(BindingPlan.Frame frame, BindingPlan.Slot slot) {
+        Object presetObj = TransformFactory.findPresetVal(slot.type);
+        if (presetObj != null) {
+            frame.setArgument(slot, presetObj);
+        } else if (slot.hasDefault) {
+            Object parsingResult = slot.defaultValue(this);
+            if (parsingResult instanceof Exception) {
+                frame.fail(createException("参数解析异常", (Throwable) parsingResult, ErrorCode.RESOLVE_ERROR));
+            } else {
+                frame.setArgument(slot, parsingResult);
+            }
+        } else {
+            frame.setArgument(slot, TransformFactory.getDefVal(slot.type));
+        }
+        frame.markLack(slot);
+    }
+
+    /**
+     * 与 {@link #remainItemsMapToArgument(MethodMeta.Context)} 相同, 但是按照绑定计划执行.
+     * 将剩余的命令参数依次填充到缺省的方法参数上
+     *
+     * @param frame 解析状态
+     */
+    protected final void fillLackSlots(BindingPlan.Frame frame) {
+        for (int i = 0; i<frame.lackCount(); i++) {
+            if (!frame.hasPositional())
+                break;
+            BindingPlan.Slot slot = frame.lackSlot(i);
+            String value = slot.joint ? frame.joinPositional() : frame.nextPositional();
+            if (value != null && value.isEmpty())
+                continue;
+            Object parsingResult = parsingParam(value, slot.type, slot.genericType);
+            if (parsingResult instanceof Exception)
+                continue;
+            frame.setArgument(slot, parsingResult);
+        }
+    }
+
     /**
      * 尝试根据一个key,在上下文中找一个与之匹配的值.
      * 假如有, 则进行映射
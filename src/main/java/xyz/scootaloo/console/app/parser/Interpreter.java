@@ -2,6 +2,7 @@ package xyz.scootaloo.console.app.parser;
 
 import xyz.scootaloo.console.app.anno.Cmd;
 import xyz.scootaloo.console.app.anno.mark.Public;
+import xyz.scootaloo.console.app.anno.mark.Stateless;
 import xyz.scootaloo.console.app.client.Client;
 import xyz.scootaloo.console.app.client.ClientCenter;
 import xyz.scootaloo.console.app.client.ResourcesHandler;
@@ -13,13 +14,22 @@ import xyz.scootaloo.console.app.error.CommandInvokeException;
 import xyz.scootaloo.console.app.error.ErrorCode;
 import xyz.scootaloo.console.app.error.ParameterResolveException;
 import xyz.scootaloo.console.app.event.EventPublisher;
+import xyz.scootaloo.console.app.parser.preset.PresetFactoryManager;
 import xyz.scootaloo.console.app.parser.preset.SystemPresetCmd;
+import xyz.scootaloo.console.app.support.CommandMetrics;
+import xyz.scootaloo.console.app.support.CommandMetrics.CommandStats;
+import xyz.scootaloo.console.app.support.CommandMetrics.Phase;
+import xyz.scootaloo.console.app.support.HistoryJournal;
 import xyz.scootaloo.console.app.support.InvokeProxy;
+import xyz.scootaloo.console.app.support.ResultCache;
 import xyz.scootaloo.console.app.util.ClassUtils;
+import xyz.scootaloo.console.app.util.PrimitiveArrays;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -39,13 +49,16 @@ public final class Interpreter {
     private static final        Colorful   color = ResourceManager.getColorful();
     private static final          Object    lock = new Object();
 
-    // 解释器中维护了一个Map用于管理注册到框架中的方法执行器，也就是标记有 @Cmd 注解的方法
-    private static final Map<String, MethodActuator> strategyMap = new HashMap<>();
+    // 注册到框架中的方法执行器，也就是标记有 @Cmd 注解的方法，读取时不加锁
+    private static final CommandRegistry registry = new CommandRegistry();
 
     private final ConsoleConfig       config;
     private final ClientCenter        clientCenter;
     protected ThreadLocal<InvokeInfo> lastInvokeInfo = new ThreadLocal<>();
     private final ThreadLocal<Client> localUser      = new ThreadLocal<>();
+    // 通过 runAsUser 固定的用户，即使已经被回收也不会重新创建
+    private final ThreadLocal<Client> pinnedUser     = new ThreadLocal<>();
+    private volatile SessionExecutor  sessionExecutor;
 
     /**
      * 单例，并初始化了几个工厂(这些工厂在整个框架生命周期中只会被初始化一次)
@@ -58,6 +71,9 @@ public final class Interpreter {
             AssemblyFactory.hasInit = true;
         }
         this.clientCenter = ClientCenter.getInstance(this);
+        // 会话被回收时释放它的历史记录写入器
+        this.clientCenter.addEvictionListener((client, cause) ->
+                HistoryJournal.current().ifPresent(journal -> journal.release(client.getUserKey())));
         ExtraOptionHandler.setInterpreter(this);
     }
 
@@ -84,6 +100,43 @@ public final class Interpreter {
         return INSTANCE.localUser.get();
     }
 
+    /**
+     * @return 当前线程的用户，解释器还未初始化时返回null
+     */
+    public static Client currentUser() {
+        return INSTANCE == null ? null : getCurrentUser();
+    }
+
+    /**
+     * 以某个用户的身份执行，用户为null或者解释器还未初始化时直接执行
+     * <p>和 {@link #runAs(String, Supplier)} 不同，这里直接使用传入的用户对象，不经过用户中心查找，
+     * 用户在这期间被回收也不会以相同的标识重新创建。用于异步处理某个用户产生的事件。</p>
+     * @param user 用户
+     * @param action 要执行的内容
+     */
+    public static void runAsUser(Client user, Runnable action) {
+        if (user == null || INSTANCE == null) {
+            action.run();
+            return;
+        }
+        Client previous = INSTANCE.localUser.get();
+        Client previousPinned = INSTANCE.pinnedUser.get();
+        INSTANCE.localUser.set(user);
+        INSTANCE.pinnedUser.set(user);
+        try {
+            action.run();
+        } finally {
+            if (previous == null)
+                INSTANCE.localUser.remove();
+            else
+                INSTANCE.localUser.set(previous);
+            if (previousPinned == null)
+                INSTANCE.pinnedUser.remove();
+            else
+                INSTANCE.pinnedUser.set(previousPinned);
+        }
+    }
+
     /**
      * 返回所有可调用的系统命令集合
      * @return 命令名称集合
@@ -91,7 +144,7 @@ public final class Interpreter {
     public static Set<String> getSysCommands() {
         if (INSTANCE == null)
             throw new RuntimeException("解释器未初始化");
-        return strategyMap.values().stream()
+        return registry.commands().stream()
                 .filter(methodActuator -> methodActuator.getCmd().tag().equals(SystemPresetCmd.SYS_TAG))
                 .flatMap(methodActuator -> Stream.of(methodActuator.getCmdName(),
                         methodActuator.cmd.name().toLowerCase(Locale.ROOT)))
@@ -111,6 +164,46 @@ public final class Interpreter {
         return user.shutdown();
     }
 
+    /**
+     * 获取会话执行引擎，由框架调度各个用户的命令，第一次调用时根据配置创建
+     * @return 会话执行引擎
+     */
+    public SessionExecutor getSessionExecutor() {
+        if (sessionExecutor == null) {
+            synchronized (lock) {
+                if (sessionExecutor == null)
+                    sessionExecutor = new SessionExecutor(this, config.getSessionMode(), config.getSessionPoolSize());
+            }
+        }
+        return sessionExecutor;
+    }
+
+    /**
+     * 在当前线程中以某个用户的身份执行，执行完毕后恢复当前线程原来的用户
+     * <p>用于把命令转移到其他线程执行时，保持提交命令的用户不变。</p>
+     * @param userKey 用户标识
+     * @param action 要执行的内容
+     * @param <T> 返回值类型
+     * @return 执行结果
+     */
+    public <T> T runAs(String userKey, Supplier<T> action) {
+        Client previous = this.localUser.get();
+        this.localUser.set(clientCenter.createUser(userKey));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null)
+                this.localUser.remove();
+            else
+                this.localUser.set(previous);
+        }
+    }
+
+    // 销毁某个用户的资源
+    protected void destroyUser(String userKey) {
+        clientCenter.destroyUser(userKey);
+    }
+
     private Client newUser(String userKey) {
         Client user = clientCenter.createUser(userKey);
         this.localUser.set(user);
@@ -123,22 +216,58 @@ public final class Interpreter {
      * @return 方法调用信息
      */
     public InvokeInfo interpret(String commandline) {
-        checkAndSet();
+        // 执行期间此用户不会被回收，命令中途回收了自己的会话时，剩余的部分仍然使用这个会话
+        Client user = enterUser();
+        Client previousPinned = this.pinnedUser.get();
+        this.pinnedUser.set(user);
+        // 命令行只分词一次，之后的过程都使用这个分词结果
+        CommandLine line = CommandLine.acquire(commandline);
+        try {
+            return interpret(commandline, line);
+        } finally {
+            line.release();
+            user.leave();
+            if (previousPinned == null)
+                this.pinnedUser.remove();
+            else
+                this.pinnedUser.set(previousPinned);
+        }
+    }
+
+    // 先进入再检查，检查和进入之间会话被回收时，换成以相同标识重新创建的会话
+    private Client enterUser() {
+        while (true) {
+            checkAndSet();
+            Client user = this.localUser.get();
+            user.enter();
+            if (!user.isEvicted() || user == this.pinnedUser.get())
+                return user;
+            user.leave();
+        }
+    }
+
+    private InvokeInfo interpret(String commandline, CommandLine line) {
         // 空命令，不做处理
-        if (commandline.trim().isEmpty())
+        if (line.isEmpty())
             return InvokeInfo.simpleSuccess();
         // 记录当前执行的命令行
         getCurrentUser().getResources().setCallingCommand(commandline);
-        String cmdName = Actuator.getCommandName(commandline); // 当前执行的命令行的命令名
-        String cmdArgs = Actuator.getCommandArgs(commandline); // 当前执行的命令行的命令参数
+        String cmdName = line.name(); // 当前执行的命令行的命令名
         // 检查是否能使用其他方式处理，假如这里返回true，表示已经处理过，则这里可以直接退出
-        if (ExtraOptionHandler.handle(cmdName, cmdArgs))
+        if (ExtraOptionHandler.handle(cmdName, line))
             return InvokeInfo.simpleSuccess();
         // 找到命令方法，执行，得到结果
         Optional<MethodActuator> actuatorWrapper = findActuatorByName(cmdName);
         if (actuatorWrapper.isPresent()) {
             // 执行命令方法之前，先执行过滤器
-            InvokeInfo filterChainInfo = doFilterChain(actuatorWrapper.get(), cmdArgs);
+            CommandStats stats = actuatorWrapper.get().getStats();
+            long start = stats != null ? System.nanoTime() : 0;
+            InvokeInfo filterChainInfo = doFilterChain(actuatorWrapper.get(), line.args());
+            if (stats != null) {
+                stats.record(Phase.FILTER, System.nanoTime() - start);
+                if (!filterChainInfo.isSuccess())
+                    stats.onFinish(filterChainInfo);
+            }
             if (!filterChainInfo.isSuccess())
                 // 过滤器未通过，返回出错原因
                 return filterChainInfo;
@@ -147,7 +276,7 @@ public final class Interpreter {
             return lackCommandException(cmdName);
         }
         // 最终执行
-        return actuatorWrapper.get().execute(cmdArgs);
+        return actuatorWrapper.get().execute(line);
     }
 
     /**
@@ -179,6 +308,26 @@ public final class Interpreter {
         return actuatorWrapper.get().invokeByArgs(args);
     }
 
+    /**
+     * 在运行期间注册一个命令工厂，工厂中的命令、过滤器、参数转换方法同时生效
+     * <p>工厂中的初始化方法会立即执行，销毁方法会在工厂被注销或者系统关闭时执行。</p>
+     * @param factory 工厂实例
+     * @return 注册的命令数量
+     */
+    public int register(Object factory) {
+        return AssemblyFactory.register(factory);
+    }
+
+    /**
+     * 在运行期间注销一个工厂中的所有命令和过滤器，并执行它的销毁方法
+     * <p>已经开始执行的命令不受影响，注销之后新的命令行将找不到这些命令。</p>
+     * @param factory 调用 {@link #register(Object)} 时使用的工厂实例
+     * @return 注销的命令数量
+     */
+    public int unregister(Object factory) {
+        return AssemblyFactory.unregister(factory);
+    }
+
     /**
      * 将一个键值对放置到当前用户的变量池中
      * @param key 键
@@ -198,6 +347,13 @@ public final class Interpreter {
         return this.config;
     }
 
+    /**
+     * @return 用户管理中心，可以在这里管理会话的生命周期
+     */
+    public ClientCenter getClientCenter() {
+        return clientCenter;
+    }
+
     /**
      * 执行过滤链
      * @param actuator 方法执行器
@@ -242,6 +398,8 @@ public final class Interpreter {
         Client user = this.localUser.get();
         if (user == null)
             this.localUser.set(clientCenter.getPublicUser());
+        else if (user.isEvicted() && user != this.pinnedUser.get()) // 会话已经被回收，以相同的标识重新创建
+            this.localUser.set(clientCenter.createUser(user.getUserKey()));
     }
 
     /**
@@ -251,7 +409,7 @@ public final class Interpreter {
      */
     protected Optional<MethodActuator> findActuatorByName(String name) {
         name = name.toLowerCase(Locale.ROOT);
-        MethodActuator actuator = strategyMap.get(name);
+        MethodActuator actuator = registry.lookup(name);
         if (actuator != null)
             return Optional.of(actuator);
         if (name.isEmpty())
@@ -259,13 +417,14 @@ public final class Interpreter {
         return Optional.empty();
     }
 
-    // 加载方法执行器到解释器中来
-    protected void loadCommandMethod(MethodActuator actuator) {
-        strategyMap.put(actuator.cmdName, actuator);
-        Cmd cmdAnno = actuator.cmd;
-        if (!cmdAnno.name().equals("")) {
-            strategyMap.put(cmdAnno.name().toLowerCase(Locale.ROOT), actuator);
-        }
+    // 命令注册表
+    protected CommandRegistry getRegistry() {
+        return registry;
+    }
+
+    // 加载一批方法执行器到解释器中来，这批执行器同时生效
+    protected void loadCommandMethods(Collection<MethodActuator> actuators) {
+        registry.registerAll(actuators);
     }
 
     // 增加过滤器
@@ -273,9 +432,10 @@ public final class Interpreter {
         FilterMethodWrapper.addFilter(actuator);
     }
 
-    // 排序过滤器
-    protected void sortFilter() {
-        FilterMethodWrapper.sort();
+    // 移除某个工厂中的命令和过滤器
+    protected List<MethodActuator> unloadFactory(Object factory) {
+        FilterMethodWrapper.removeIf(filter -> filter.meta.owner == factory);
+        return registry.unregisterIf(actuator -> actuator.obj == factory);
     }
 
     /**
@@ -291,6 +451,14 @@ public final class Interpreter {
         private final Object obj;
         private ParameterParser parser;
         private final MethodMeta methodMeta;
+        private final MethodInvoker invoker;
+        // 执行耗时统计，第一次执行时获取
+        private volatile CommandStats stats;
+        // 是否缓存结果，执行成功后需要清空结果的命令
+        private final boolean cacheable;
+        private final String[] evicts;
+        // 参数类型是否允许缓存解析结果
+        private final boolean parseCacheable;
 
         // 返回值类型，方法名
         private final Class<?> rtnType;
@@ -298,49 +466,89 @@ public final class Interpreter {
 
         // construct
         public MethodActuator(Method m, Cmd c, Object o) {
+            this(m, c, o, MethodInvoker.Engine.HANDLE);
+        }
+
+        /**
+         * 创建执行器，并在创建时绑定方法的调用器
+         * @param m 方法对象
+         * @param c 方法上的注解
+         * @param o 方法所在类的实例
+         * @param engine 调用引擎
+         */
+        public MethodActuator(Method m, Cmd c, Object o, MethodInvoker.Engine engine) {
             this.cmd = c;
             this.method = m;
             this.obj = o;
             this.parser = DftParameterParser.INSTANCE;
+            this.invoker = MethodInvoker.bind(m, engine);
 
             this.cmdName = method.getName().toLowerCase(Locale.ROOT);
             this.rtnType = method.getReturnType();
             this.methodMeta = MethodMeta.getInstance(method, obj);
+            this.cacheable = cmd.cache() || method.isAnnotationPresent(Stateless.class) ||
+                    method.getDeclaringClass().isAnnotationPresent(Stateless.class);
+            this.evicts = Arrays.stream(cmd.evict())
+                    .map(name -> name.toLowerCase(Locale.ROOT))
+                    .toArray(String[]::new);
+            this.parseCacheable = ParseCache.isCacheable(methodMeta);
         }
 
         @Override
         public InvokeInfo execute(String commandArgs) {
-            return invokeCore(commandArgs);
+            return invokeCore(CommandLine.ofArgs(commandArgs));
+        }
+
+        @Override
+        public InvokeInfo execute(CommandLine commandLine) {
+            return invokeCore(commandLine);
         }
 
         /**
          * *字符串命令调用的核心实现入口*
-         * @param cmdArgs 命令行参数
+         * @param line 命令行的分词结果
          * @return 执行结果信息
          */
-        protected InvokeInfo invokeCore(String cmdArgs) {
+        protected InvokeInfo invokeCore(CommandLine line) {
+            CommandStats stats = getStats();
+            long start = stats != null ? System.nanoTime() : 0;
             // 在方法执行之前先获取此方法的一些信息
-            InvokeInfo info = InvokeInfo.beforeInvoke(cmdName, rtnType, cmdArgs);
-            // 发布命令解析前事件
-            List<String> tmpArgs = Actuator.splitCommandArgsBySpace(cmdArgs);
-            EventPublisher.beforeResolveInput(cmdName, tmpArgs);
-            cmdArgs = String.join(" ", tmpArgs);
+            InvokeInfo info = InvokeInfo.beforeInvoke(cmdName, rtnType, line.args());
+            // 发布命令解析前事件，监听器直接修改分词结果
+            EventPublisher.beforeResolveInput(cmdName, line.asList());
+            long mark = stats != null ? System.nanoTime() : 0;
+            long listenerNanos = mark - start;
+            String cmdArgs = line.args();
             // 由解析工厂将字符串命令解析成Object数组供method对象调用，结果由wrapper包装
             ResultWrapper wrapper;
             try {
-                wrapper = parser.parse(methodMeta, cmdArgs);
+                wrapper = parse(line, cmdArgs);
             } catch (Exception paramResolveEx) {
                 // 这里一般是参数解析异常
-                return info.onException(new ParameterResolveException("不能将命令行参数映射到方法参数", paramResolveEx)
+                info.onException(new ParameterResolveException("不能将命令行参数映射到方法参数", paramResolveEx)
                         .appendExData(methodMeta, obj, cmdArgs, parser.getClass())
                         .setErrorInfo(ErrorCode.PARAMETER_PARSER_ERROR), null);
+                if (stats != null) {
+                    long end = System.nanoTime();
+                    stats.record(Phase.PARSE, end - mark);
+                    stats.record(Phase.LISTENER, listenerNanos);
+                    stats.record(Phase.TOTAL, end - start);
+                    stats.onFinish(info);
+                }
+                return info;
+            }
+            if (stats != null) {
+                long now = System.nanoTime();
+                stats.record(Phase.PARSE, now - mark);
+                mark = now;
             }
             // 如果解析成功
             if (wrapper.isSuccess()) {
                 try {
-                    method.setAccessible(true);
-                    // 用解析后的参数对method进行调用
-                    Object rtnVal = method.invoke(obj, wrapper.getArgs());
+                    // 用解析后的参数对method进行调用，可缓存的命令先查找缓存
+                    Object rtnVal = cacheable ? invokeCached(wrapper.getArgs()) : invoker.invoke(obj, wrapper.getArgs());
+                    for (String evict : evicts)
+                        ResultCache.invalidate(evict);
                     // 得到结果填充给info对象
                     info.finishInvoke(rtnVal, wrapper.getArgs());
                 } catch (Exception e) {
@@ -357,22 +565,68 @@ public final class Interpreter {
                 // 将错误信息填充至info
                 info.onException(wrapper.getEx(), null);
             }
+            if (stats != null) {
+                long now = System.nanoTime();
+                if (wrapper.isSuccess())
+                    stats.record(Phase.INVOKE, now - mark);
+                mark = now;
+            }
             // 发布命令行解析完成事件
             EventPublisher.onInputResolved(cmdName, info);
+            if (stats != null) {
+                long end = System.nanoTime();
+                stats.record(Phase.LISTENER, listenerNanos + end - mark);
+                stats.record(Phase.TOTAL, end - start);
+                stats.onFinish(info);
+            }
             // 返回调用信息
             return info;
         }
 
+        // 解析参数，相同的命令行直接复用上一次解析出的参数
+        private ResultWrapper parse(CommandLine line, String cmdArgs) throws Exception {
+            ParameterParser current = this.parser;
+            // 自定义的解析器可能有副作用或者依赖参数以外的状态，只缓存内置的解析器
+            if (!parseCacheable || !ParseCache.isEnabled() ||
+                    !(current == DftParameterParser.INSTANCE || PresetFactoryManager.isPresetParser(current)))
+                return current.parse(methodMeta, line);
+            // 本次命令有占位符替换(变量或者随机函数)，或者参数需要从文件中读取
+            if (Interpreter.getCurrentUser().getResources().getReplacementRecord().size() > 0 ||
+                    cmdArgs.contains(PrimitiveArrays.FILE_PREFIX)) {
+                ParseCache.bypass();
+                return current.parse(methodMeta, line);
+            }
+            Object[] args = ParseCache.get(this, cmdArgs);
+            if (args != null)
+                return ParameterWrapper.successWith(args);
+            ResultWrapper wrapper = current.parse(methodMeta, line);
+            if (wrapper.isSuccess() && this.parser == current)
+                ParseCache.put(this, cmdArgs, wrapper.getArgs());
+            return wrapper;
+        }
+
+        // 相同的参数直接返回缓存的结果
+        private Object invokeCached(Object[] args) throws Exception {
+            if (!ResultCache.isEnabled())
+                return invoker.invoke(obj, args);
+            ResultCache.Key key = ResultCache.key(cmdName, args);
+            Object rtnVal = ResultCache.get(key);
+            if (rtnVal == ResultCache.MISS) {
+                rtnVal = invoker.invoke(obj, args);
+                ResultCache.put(key, rtnVal);
+            }
+            return rtnVal;
+        }
+
         /**
          * 使用传入参数的方式执行
          * @param args 调用方法用的参数
          * @return 调用信息
          */
         protected InvokeInfo invokeByArgs(Object ... args) {
-            method.setAccessible(true);
             InvokeInfo info = InvokeInfo.beforeInvoke(cmdName, rtnType, null);
             try {
-                Object rtnVal = method.invoke(obj, args);
+                Object rtnVal = invoker.invoke(obj, args);
                 info.finishInvoke(rtnVal, args);
                 return info;
             } catch (Exception e) {
@@ -387,6 +641,7 @@ public final class Interpreter {
         public boolean setParser(ParameterParser parser) {
             if (parser != null) {
                 this.parser = parser;
+                ParseCache.invalidate(this);
                 return parser.check(this.methodMeta);
             }
             return true;
@@ -394,6 +649,11 @@ public final class Interpreter {
 
         // getter
 
+        // 获取此命令使用的参数解析器
+        public ParameterParser getParser() {
+            return this.parser;
+        }
+
         // 获取此方法对应的类的实例
         public Object getInstance() {
             return this.obj;
@@ -404,6 +664,26 @@ public final class Interpreter {
             return this.method;
         }
 
+        // 获取装配时绑定的调用器
+        public MethodInvoker getInvoker() {
+            return this.invoker;
+        }
+
+        // 获取此命令的执行耗时统计，关闭统计时返回null
+        public CommandStats getStats() {
+            if (!CommandMetrics.isEnabled())
+                return null;
+            CommandStats current = this.stats;
+            if (current == null)
+                this.stats = current = CommandMetrics.of(cmdName);
+            return current;
+        }
+
+        // 命令的结果是否会被缓存
+        public boolean isCacheable() {
+            return this.cacheable;
+        }
+
         // 获取方法的名称
         public String getCmdName() {
             return this.cmdName;
@@ -448,23 +728,16 @@ public final class Interpreter {
      * @since 2021/3/1 11:00
      */
     private static class FilterMethodWrapper {
-        /** 全局过滤器 */
-        private static final List<FilterMethodWrapper> filters = new ArrayList<>();
+        /** 全局过滤器，按照优先级排序，修改时整体替换数组，执行过滤链时不加锁 */
+        private static volatile FilterMethodWrapper[] filters = new FilterMethodWrapper[0];
+        private static final Object writeLock = new Object();
 
         /** instance properties */
         private final MethodMeta meta;  // 方法信息
+        private final MethodInvoker invoker; // 装配时绑定的调用器
         private final String errorMsg;  // 对应 Cmd 注解上的 error
         private final int order;        // 优先级
 
-        /**
-         * 按照过滤器的 order 值进行排序
-         */
-        public static void sort() {
-            if (filters.isEmpty())
-                return;
-            filters.sort(Comparator.comparingInt(FilterMethodWrapper::getOrder));
-        }
-
         /**
          * 主要检查此方法的返回值，返回值必须是bool类型
          * @param method 一个过滤器的 method 对象
@@ -483,8 +756,7 @@ public final class Interpreter {
         public static FilterChainMessage doFilterChain() {
             FilterChainMessage filterChainMessage = getCurrentUser().getResources().getFilterChainMessage();
             filterChainMessage.reset();
-            if (filters.isEmpty())
-                return filterChainMessage.ok();
+            FilterMethodWrapper[] filters = FilterMethodWrapper.filters;
             for (FilterMethodWrapper filter : filters) {
                 boolean pass = InvokeProxy.fun(filter::invoke)
                         .addHandle(filterChainMessage::onException).setDefault(false).call();
@@ -504,7 +776,33 @@ public final class Interpreter {
                 console.err("过滤器方法格式错误:\n" + getSpecification());
                 return;
             }
-            filters.add(new FilterMethodWrapper(methodActuator));
+            FilterMethodWrapper filter = new FilterMethodWrapper(methodActuator);
+            synchronized (writeLock) {
+                FilterMethodWrapper[] current = filters;
+                // 插入到相同优先级的过滤器之后，和稳定排序的结果一致
+                int pos = current.length;
+                while (pos > 0 && current[pos - 1].order > filter.order)
+                    pos--;
+                FilterMethodWrapper[] next = new FilterMethodWrapper[current.length + 1];
+                System.arraycopy(current, 0, next, 0, pos);
+                next[pos] = filter;
+                System.arraycopy(current, pos, next, pos + 1, current.length - pos);
+                filters = next;
+            }
+        }
+
+        /**
+         * 移除满足条件的过滤器
+         * @param condition 条件
+         */
+        public static void removeIf(Predicate<FilterMethodWrapper> condition) {
+            synchronized (writeLock) {
+                FilterMethodWrapper[] current = filters;
+                FilterMethodWrapper[] next = Arrays.stream(current)
+                        .filter(condition.negate()).toArray(FilterMethodWrapper[]::new);
+                if (next.length != current.length)
+                    filters = next;
+            }
         }
 
         // *constructor*
@@ -514,28 +812,23 @@ public final class Interpreter {
                     "被 " + ClassUtils.getMethodDescribe(methodActuator.method) + " 拦截" : cmdAnno.onError();
             this.order = cmdAnno.order();
             this.meta = methodActuator.methodMeta;
+            this.invoker = methodActuator.invoker;
         }
 
         // 调用过滤器方法
         private boolean invoke() throws InvocationTargetException, IllegalAccessException {
             // 获取参数
             Class<?>[] paramTypes = meta.parameterTypes;
-            List<Object> methodParamList = new ArrayList<>();
-            for (Class<?> curParamType : paramTypes) {
+            Object[] methodParams = new Object[paramTypes.length];
+            for (int i = 0; i<paramTypes.length; i++) {
                 // 根据类型注入值
-                if (curParamType == String.class)
-                    methodParamList.add(INSTANCE.localUser.get().getResources().getCallingCommand());
+                if (paramTypes[i] == String.class)
+                    methodParams[i] = INSTANCE.localUser.get().getResources().getCallingCommand();
                 else
-                    TransformFactory.getDefVal(curParamType);
+                    methodParams[i] = TransformFactory.getDefVal(paramTypes[i]);
             }
 
-            this.meta.method.setAccessible(true);
-            return (boolean) meta.method.invoke(meta.owner, methodParamList.toArray());
-        }
-
-        // 获取过滤器的优先级信息
-        private int getOrder() {
-            return order;
+            return (boolean) invoker.invoke(meta.owner, methodParams);
         }
 
         // 此过滤器的错误时信息
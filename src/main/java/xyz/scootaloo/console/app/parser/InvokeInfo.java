@@ -11,6 +11,8 @@ import java.util.Arrays;
  * @since 2021/1/7 9:32
  */
 public final class InvokeInfo {
+    // 紧凑形式中返回值保留的最大长度
+    private static final int COMPACT_RTN_LENGTH = 128;
 
     private String name;             // 被执行的方法名，或者命令名
     private Object rtnVal;           // 方法返回值
@@ -47,6 +49,30 @@ public final class InvokeInfo {
         return info;
     }
 
+    /**
+     * 根据保存下来的信息还原一个紧凑形式的调用信息，不包含解析后的方法参数数组和异常对象
+     * @param name 命令名
+     * @param cmdArgs 命令参数
+     * @param rtnVal 返回值，通常是它的字符串形式
+     * @param invokeAt 调用时间
+     * @param interval 执行用时
+     * @param success 是否执行成功
+     * @param exMsg 异常信息
+     * @return 调用信息
+     */
+    public static InvokeInfo restore(String name, String cmdArgs, Object rtnVal, long invokeAt,
+                                     long interval, boolean success, String exMsg) {
+        InvokeInfo info = new InvokeInfo();
+        info.name = name;
+        info.cmdArgs = cmdArgs;
+        info.rtnVal = rtnVal;
+        info.invokeAt = invokeAt;
+        info.interval = interval;
+        info.success = success;
+        info.exMsg = exMsg;
+        return info;
+    }
+
     // 填充属性
     public static InvokeInfo beforeInvoke(String name, Class<?> rtnType, String cmdItems) {
         InvokeInfo info = new InvokeInfo();
@@ -78,6 +104,28 @@ public final class InvokeInfo {
         this.interval = System.currentTimeMillis() - this.invokeAt;
     }
 
+    /**
+     * 生成一个紧凑的副本，用于长期保存
+     * <p>副本中的返回值被替换成它的字符串形式(最多保留 {@value #COMPACT_RTN_LENGTH} 个字符)，
+     * 不再保存解析后的方法参数数组和异常对象，只保留异常信息。</p>
+     * @return 紧凑的副本
+     */
+    public InvokeInfo compact() {
+        InvokeInfo copy = new InvokeInfo();
+        copy.name = this.name;
+        copy.rtnType = this.rtnType;
+        copy.cmdArgs = this.cmdArgs;
+        copy.interval = this.interval;
+        copy.invokeAt = this.invokeAt;
+        copy.success = this.success;
+        copy.exMsg = this.exMsg;
+        if (this.rtnVal != null) {
+            String rtn = this.rtnVal.toString();
+            copy.rtnVal = rtn.length() > COMPACT_RTN_LENGTH ? rtn.substring(0, COMPACT_RTN_LENGTH) + "..." : rtn;
+        }
+        return copy;
+    }
+
     /**
      * 获取返回值
      * <pre>建议在获取返回值之前检查 success 属性是否为 true，对方法执行失败的情况做一定处理。
@@ -0,0 +1,289 @@
+package xyz.scootaloo.console.app.parser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * 方法调用器
+ * <p>命令方法、过滤器方法、参数转换方法在装配阶段就会绑定一个调用器，
+ * 运行期直接使用这个调用器执行方法，而不是每次都经过 {@link Method#invoke(Object, Object...)}。</p>
+ * <p>调用器的语义和 {@code Method.invoke} 保持一致: 方法内部抛出的异常会被包装成 {@link InvocationTargetException}，
+ * 参数数量或者类型不匹配时抛出 {@link IllegalArgumentException}，所以调用方原有的异常处理方式不需要做任何修改。</p>
+ *
+ * @see Engine 可选的调用引擎
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 10:20
+ */
+@FunctionalInterface
+public interface MethodInvoker {
+
+    /**
+     * 调用方法
+     * @param obj 方法所在类的实例，静态方法时可以为null
+     * @param args 方法参数
+     * @return 方法返回值，方法返回值类型为void时返回null
+     * @throws InvocationTargetException 方法内部抛出了异常
+     * @throws IllegalAccessException 没有权限访问此方法
+     * @throws IllegalArgumentException 参数数量或者类型不匹配，或者实例不是方法所在类的对象
+     */
+    Object invoke(Object obj, Object ... args) throws InvocationTargetException, IllegalAccessException;
+
+    /**
+     * 为方法绑定一个调用器，当选择的引擎不能处理此方法时，退回到反射的方式
+     * @param method 方法对象
+     * @param engine 调用引擎
+     * @return 调用器
+     */
+    static MethodInvoker bind(Method method, Engine engine) {
+        method.setAccessible(true);
+        if (engine == Engine.GENERATED) {
+            MethodInvoker invoker = GeneratedInvoker.of(method);
+            if (invoker != null)
+                return invoker;
+        }
+        if (engine == Engine.HANDLE || engine == Engine.GENERATED) {
+            MethodInvoker invoker = HandleInvoker.of(method);
+            if (invoker != null)
+                return invoker;
+        }
+        return method::invoke;
+    }
+
+    /**
+     * 调用引擎
+     * <pre>
+     * REFLECT: 使用反射调用，即 {@code Method.invoke}
+     * HANDLE:  在装配时将方法编译为 {@link MethodHandle}，运行期直接调用
+     * GENERATED: 使用编译期生成的代码直接调用 ({@link CommandIndex})，没有生成代码的方法使用 HANDLE
+     * </pre>
+     */
+    enum Engine {
+        REFLECT, HANDLE, GENERATED;
+
+        /**
+         * 根据名称获取引擎，不区分大小写，名称不能识别时返回 {@code HANDLE}
+         * @param name 引擎名称
+         * @return 引擎
+         */
+        public static Engine of(String name) {
+            if (name == null)
+                return HANDLE;
+            for (Engine engine : values()) {
+                if (engine.name().equals(name.trim().toUpperCase(Locale.ROOT)))
+                    return engine;
+            }
+            return HANDLE;
+        }
+    }
+
+    /**
+     * 基于 MethodHandle 的调用器
+     * <p>方法句柄被适配成 {@code (Object, Object[])Object} 的形式，调用时使用 {@code invokeExact}，
+     * 避免了反射调用时的访问检查和参数数组的复制。</p>
+     */
+    final class HandleInvoker implements MethodInvoker {
+        private static final Object[] EMPTY_ARGS = new Object[0];
+        private static final MethodType GENERIC_TYPE =
+                MethodType.methodType(Object.class, Object.class, Object[].class);
+
+        private final MethodHandle handle;
+        private final Arguments arguments;
+
+        private HandleInvoker(MethodHandle handle, Arguments arguments) {
+            this.handle = handle;
+            this.arguments = arguments;
+        }
+
+        // 方法已经 setAccessible, unreflect 不再检查访问权限; 不能生成句柄时返回null
+        private static MethodInvoker of(Method method) {
+            try {
+                MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+                if (Modifier.isStatic(method.getModifiers()))
+                    handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                handle = handle.asSpreader(Object[].class, method.getParameterCount()).asType(GENERIC_TYPE);
+                return new HandleInvoker(handle, new Arguments(method));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Object invoke(Object obj, Object ... args) throws InvocationTargetException {
+            // 先检查参数，适配器抛出的类型转换异常不能和方法内部的异常混在一起
+            Object[] realArgs = arguments.check(obj, args == null ? EMPTY_ARGS : args);
+            try {
+                return (Object) handle.invokeExact(obj, realArgs);
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+
+    }
+
+    /**
+     * 基于编译期生成代码的调用器
+     * <p>每个类的生成代码只加载一次，找不到时记录为空，不会重复查找。</p>
+     */
+    final class GeneratedInvoker implements MethodInvoker {
+        private static final Object[] EMPTY_ARGS = new Object[0];
+        private static final ClassValue<Optional<CommandIndex>> INDEXES = new ClassValue<Optional<CommandIndex>>() {
+            @Override
+            protected Optional<CommandIndex> computeValue(Class<?> type) {
+                try {
+                    Class<?> generated = Class.forName(type.getName() + CommandIndex.SUFFIX, true,
+                            type.getClassLoader());
+                    if (!CommandIndex.class.isAssignableFrom(generated))
+                        return Optional.empty();
+                    return Optional.of((CommandIndex) generated.getDeclaredConstructor().newInstance());
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    return Optional.empty();
+                }
+            }
+        };
+
+        private final CommandIndex index;
+        private final int id;
+        private final Arguments arguments;
+
+        private GeneratedInvoker(CommandIndex index, int id, Arguments arguments) {
+            this.index = index;
+            this.id = id;
+            this.arguments = arguments;
+        }
+
+        // 没有生成的代码，或者生成的代码中没有这个方法时返回null
+        private static MethodInvoker of(Method method) {
+            Optional<CommandIndex> index = INDEXES.get(method.getDeclaringClass());
+            if (!index.isPresent())
+                return null;
+            String signature = signature(method);
+            String[] signatures = index.get().signatures();
+            for (int i = 0; i<signatures.length; i++) {
+                if (signatures[i].equals(signature))
+                    return new GeneratedInvoker(index.get(), i, new Arguments(method));
+            }
+            return null;
+        }
+
+        // 方法名(参数类型,参数类型)，和生成代码中的格式保持一致
+        private static String signature(Method method) {
+            StringBuilder sb = new StringBuilder(method.getName()).append('(');
+            Class<?>[] types = method.getParameterTypes();
+            for (int i = 0; i<types.length; i++) {
+                if (i > 0)
+                    sb.append(',');
+                sb.append(types[i].getCanonicalName());
+            }
+            return sb.append(')').toString();
+        }
+
+        @Override
+        public Object invoke(Object obj, Object ... args) throws InvocationTargetException {
+            // 生成的代码直接强制转换，基本类型的拓宽转换需要在这里完成
+            Object[] realArgs = arguments.check(obj, args == null ? EMPTY_ARGS : args);
+            try {
+                return index.call(id, obj, realArgs);
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+
+    }
+
+    /**
+     * 按照 {@code Method.invoke} 的规则检查实例和参数
+     * <p>基本类型的参数不能为null，包装类型的值可以按照拓宽转换放到更宽的基本类型上，例如 Integer 放到 long 参数上;
+     * 其他参数必须是参数类型的实例或者null。不符合时抛出 {@link IllegalArgumentException}。</p>
+     */
+    final class Arguments {
+        private final Class<?> owner;
+        private final boolean isStatic;
+        private final Class<?>[] types;
+
+        private Arguments(Method method) {
+            this.owner = method.getDeclaringClass();
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+            this.types = method.getParameterTypes();
+        }
+
+        // 返回可以直接传给方法的参数，需要拓宽转换时返回新的数组
+        private Object[] check(Object obj, Object[] args) {
+            if (!isStatic && !owner.isInstance(obj)) {
+                if (obj == null)
+                    throw new NullPointerException();
+                throw new IllegalArgumentException("实例不是 " + owner.getName() + " 的对象");
+            }
+            if (args.length != types.length)
+                throw new IllegalArgumentException("参数数量不匹配, 需要" + types.length + "个, 实际为" + args.length + "个");
+            Object[] realArgs = args;
+            for (int i = 0; i<types.length; i++) {
+                Class<?> type = types[i];
+                Object arg = args[i];
+                if (!type.isPrimitive()) {
+                    if (arg != null && !type.isInstance(arg))
+                        throw mismatch(i, type, arg);
+                    continue;
+                }
+                Object widened = widen(type, arg);
+                if (widened == null)
+                    throw mismatch(i, type, arg);
+                if (widened != arg) {
+                    if (realArgs == args)
+                        realArgs = args.clone();
+                    realArgs[i] = widened;
+                }
+            }
+            return realArgs;
+        }
+
+        // 按照拓宽转换规则转换成基本类型对应的包装类型，不能转换时返回null
+        private static Object widen(Class<?> type, Object arg) {
+            if (arg == null)
+                return null;
+            int from = rank(arg.getClass());
+            int to = rank(type);
+            if (arg.getClass() == box(type))
+                return arg;
+            // char 只能由 Character 转换，short 也不能接受 char
+            if (from == 0 || to == 0 || from >= to || type == char.class || type == short.class && arg instanceof Character)
+                return null;
+            if (arg instanceof Float)
+                return (double) (Float) arg;
+            long num = arg instanceof Character ? (Character) arg : ((Number) arg).longValue();
+            if (type == short.class)
+                return (short) num;
+            if (type == int.class)
+                return (int) num;
+            if (type == long.class)
+                return num;
+            return type == float.class ? (Object) (float) num : (Object) (double) num;
+        }
+
+        // 数值类型在拓宽转换中的顺序，boolean 和非数值类型返回0
+        private static int rank(Class<?> type) {
+            if (type == byte.class || type == Byte.class) return 1;
+            if (type == short.class || type == Short.class || type == char.class || type == Character.class) return 2;
+            if (type == int.class || type == Integer.class) return 3;
+            if (type == long.class || type == Long.class) return 4;
+            if (type == float.class || type == Float.class) return 5;
+            if (type == double.class || type == Double.class) return 6;
+            return 0;
+        }
+
+        private static Class<?> box(Class<?> type) {
+            return MethodType.methodType(type).wrap().returnType();
+        }
+
+        private static IllegalArgumentException mismatch(int index, Class<?> type, Object arg) {
+            return new IllegalArgumentException("第" + (index + 1) + "个参数类型不匹配, 需要 " +
+                    type.getName() + ", 实际为 " + (arg == null ? "null" : arg.getClass().getName()));
+        }
+    }
+
+}
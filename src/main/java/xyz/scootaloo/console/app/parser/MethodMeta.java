@@ -27,6 +27,8 @@ public final class MethodMeta implements Iterable<MethodMeta.CurrentParamInfo> {
     public final  Set<Character> optCharSet;       // 短参数集
     public final     Set<String> fullNameSet;      // 完整参数集
     public final     Set<String> jointMarkSet;     // 连接标记集
+    public final     BindingPlan bindingPlan;      // 参数绑定计划
+    private final CurrentParamInfo[] paramInfos;   // 每个参数的信息，迭代时复用
 
     // constructor
     private MethodMeta(Method method, Object obj) {
@@ -39,6 +41,8 @@ public final class MethodMeta implements Iterable<MethodMeta.CurrentParamInfo> {
         this.optCharSet = findOptCharSet();
         this.fullNameSet = findFullNameSet();
         this.jointMarkSet = findJointMartSet();
+        this.paramInfos = findParamInfos();
+        this.bindingPlan = BindingPlan.compile(this);
     }
 
     // 获取此方法的元数据
@@ -89,6 +93,14 @@ public final class MethodMeta implements Iterable<MethodMeta.CurrentParamInfo> {
                 .collect(Collectors.toSet());
     }
 
+    private CurrentParamInfo[] findParamInfos() {
+        CurrentParamInfo[] infos = new CurrentParamInfo[this.size];
+        for (int i = 0; i<this.size; i++) {
+            infos[i] = new CurrentParamInfo(this, i);
+        }
+        return infos;
+    }
+
     private Optional<Opt> findOption(Annotation[] annoArr) {
         for (Annotation anno : annoArr) {
             if (anno.annotationType() == Opt.class)
@@ -109,6 +121,7 @@ public final class MethodMeta implements Iterable<MethodMeta.CurrentParamInfo> {
                 ", optCharSet=" + optCharSet +
                 ", fullNameSet=" + fullNameSet +
                 ", jointMarkSet=" + jointMarkSet +
+                ", bindingPlan=" + bindingPlan +
                 '}';
     }
 
@@ -193,7 +206,7 @@ public final class MethodMeta implements Iterable<MethodMeta.CurrentParamInfo> {
 
         @Override
         public CurrentParamInfo next() {
-            CurrentParamInfo currentType = new CurrentParamInfo(meta, currentIndex);
+            CurrentParamInfo currentType = meta.paramInfos[currentIndex];
             currentIndex++;
             return currentType;
         }
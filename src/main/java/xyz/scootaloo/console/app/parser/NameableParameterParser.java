@@ -17,6 +17,7 @@ import xyz.scootaloo.console.app.common.Factory;
  *     System.out.println(a + b);
  * }}</pre>
  * <p>这样，当你在控制台输入 test 这个命令的时候，YourImpl的解析参数方法就会被调用</p>
+ * <p>自定义解析器的解析结果不会被 {@link ParseCache} 缓存，每次执行命令都会调用解析方法。</p>
  * @see xyz.scootaloo.console.app.parser.preset.SubParameterParser 一个系统中预置的解析器实现供参考
  * @author flutterdash@qq.com
  * @since 2021/1/18 11:44
@@ -19,6 +19,19 @@ public interface ParameterParser {
      */
     ResultWrapper parse(MethodMeta meta, String args) throws Exception;
 
+    /**
+     * 根据已经分词的命令行获取方法的参数，框架调用的是这个方法
+     * <p>默认将命令参数还原成字符串，交给 {@link #parse(MethodMeta, String)} 处理，
+     * 需要逐个处理单词的解析器可以重写这个方法，避免重复分词。</p>
+     * @param meta 目标java方法的信息
+     * @param line 命令行的分词结果，不要在解析结束后继续持有它
+     * @return 一个包装类，包含处理的结果
+     * @throws Exception 解析时抛出的异常
+     */
+    default ResultWrapper parse(MethodMeta meta, CommandLine line) throws Exception {
+        return parse(meta, line.args());
+    }
+
     /**
      * 编写自定义参数解析器实现的时候，可以重写这个方法，检查方法参数是否符合要求，以便在运行之初抛出异常方便检查
      * @param meta 方法中的有效信息
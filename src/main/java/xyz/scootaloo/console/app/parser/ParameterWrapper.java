@@ -21,8 +21,12 @@ public final class ParameterWrapper implements ResultWrapper {
         return new ParameterWrapper(true, argList, null);
     }
 
+    public static ParameterWrapper successWith(Object[] args) {
+        return new ParameterWrapper(true, args, null);
+    }
+
     public static ParameterWrapper fail(ConsoleAppRuntimeException e) {
-        return new ParameterWrapper(false, null, e);
+        return new ParameterWrapper(false, (Object[]) null, e);
     }
 
     private ParameterWrapper(boolean success, List<Object> argList, ConsoleAppRuntimeException ex) {
@@ -34,6 +38,12 @@ public final class ParameterWrapper implements ResultWrapper {
             this.args = null;
     }
 
+    private ParameterWrapper(boolean success, Object[] args, ConsoleAppRuntimeException ex) {
+        this.ex = ex;
+        this.success = success;
+        this.args = args;
+    }
+
     // getter
 
     @Override
@@ -0,0 +1,327 @@
+package xyz.scootaloo.console.app.parser;
+
+import xyz.scootaloo.console.app.anno.Form;
+import xyz.scootaloo.console.app.config.ConsoleConfig;
+import xyz.scootaloo.console.app.parser.Interpreter.MethodActuator;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 参数解析结果缓存
+ * <p>脚本和初始化命令中经常重复执行完全相同的命令行，这里以 (命令执行器, 命令参数文本) 为键，
+ * 保存上一次解析出的参数，再次遇到时直接复制一份参数，不再分词和转换。</p>
+ * <pre>
+ * 不缓存的情况:
+ *      命令行中有占位符，包括变量 ${key} 和随机函数 ${rand.int} (本次命令有替换记录);
+ *      命令行中有 {@code file:} 文件引用，文件内容可能已经改变;
+ *      命令使用用户自定义的解析器，解析结果可能依赖参数以外的状态，只缓存框架内置的解析器;
+ *      无参方法，或者方法参数中有系统预设的类型 ({@link TransformFactory#getPresetVal(Class)}) 或者表单类 ({@link Form});
+ *      解析出的参数不全是不可变的值: null 字符串 包装类型 枚举，以及元素是这些值的数组和 List Set Map;
+ *      解析失败。
+ * 复用:
+ *      数组和集合在每次取出时都会复制，命令方法修改参数不会影响缓存。
+ * </pre>
+ * <p>容量由配置 parseCacheSize 决定，超出时回收最久没有使用的结果，0表示不缓存。
+ * 添加新的类型解析器、修改命令的解析器和注销命令时，相关的结果会被清空。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:20
+ */
+public final class ParseCache {
+    private static final LinkedHashMap<Key, Object[]> CACHE = new LinkedHashMap<>(64, 0.75f, true);
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder BYPASSES = new LongAdder();
+
+    private static volatile int maxSize = 512;
+
+    private ParseCache() {
+    }
+
+    /**
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        setMaxSize(config.getParseCacheSize());
+    }
+
+    /**
+     * @param size 最大条目数，0表示不缓存
+     */
+    public static void setMaxSize(int size) {
+        maxSize = Math.max(0, size);
+        synchronized (CACHE) {
+            trim();
+        }
+    }
+
+    /**
+     * @return 是否启用缓存
+     */
+    public static boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * 方法参数中是否有不能缓存的类型
+     * @param meta 方法元数据
+     * @return 有参数，且没有系统预设的类型和表单类时返回true
+     */
+    static boolean isCacheable(MethodMeta meta) {
+        // 无参方法不需要解析
+        if (meta.parameterTypes.length == 0)
+            return false;
+        for (Class<?> type : meta.parameterTypes) {
+            if (TransformFactory.hasPresetVal(type) || type.isAnnotationPresent(Form.class))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 查找缓存的参数
+     * @param actuator 命令执行器
+     * @param cmdArgs 命令参数文本
+     * @return 复制的参数，不存在时返回null
+     */
+    static Object[] get(MethodActuator actuator, String cmdArgs) {
+        Object[] template;
+        synchronized (CACHE) {
+            template = CACHE.get(new Key(actuator, cmdArgs));
+        }
+        if (template == null) {
+            MISSES.increment();
+            return null;
+        }
+        HITS.increment();
+        Object[] args = template.clone();
+        for (int i = 0; i<args.length; i++)
+            args[i] = copy(args[i]);
+        return args;
+    }
+
+    /**
+     * 保存解析出的参数，参数不全是不可变的值时不保存
+     * @param actuator 命令执行器
+     * @param cmdArgs 命令参数文本
+     * @param args 解析出的参数
+     */
+    static void put(MethodActuator actuator, String cmdArgs, Object[] args) {
+        if (args == null)
+            return;
+        Object[] template = args.clone();
+        for (int i = 0; i<template.length; i++) {
+            if (!isImmutable(template[i], true)) {
+                BYPASSES.increment();
+                return;
+            }
+            template[i] = copy(template[i]);
+        }
+        synchronized (CACHE) {
+            CACHE.put(new Key(actuator, cmdArgs), template);
+            trim();
+        }
+    }
+
+    /**
+     * 记录一次因为占位符等原因没有使用缓存的解析
+     */
+    static void bypass() {
+        BYPASSES.increment();
+    }
+
+    /**
+     * 清空某个命令的所有结果
+     * @param actuator 命令执行器
+     */
+    static void invalidate(MethodActuator actuator) {
+        synchronized (CACHE) {
+            CACHE.keySet().removeIf(key -> key.actuator == actuator);
+        }
+    }
+
+    /**
+     * 清空所有结果
+     */
+    public static void invalidateAll() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * @return 当前的统计信息
+     */
+    public static Stats getStats() {
+        int size;
+        synchronized (CACHE) {
+            size = CACHE.size();
+        }
+        return new Stats(size, maxSize, HITS.sum(), MISSES.sum(), BYPASSES.sum());
+    }
+
+    /**
+     * 清零统计，不影响缓存的结果
+     */
+    public static void resetStats() {
+        HITS.reset();
+        MISSES.reset();
+        BYPASSES.reset();
+    }
+
+    // 持有锁时调用
+    private static void trim() {
+        Iterator<Key> iterator = CACHE.keySet().iterator();
+        while (CACHE.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    // 不可变的值，container 为true时允许一层数组或者集合
+    private static boolean isImmutable(Object value, boolean container) {
+        if (value == null || value instanceof String || value instanceof Boolean ||
+                value instanceof Character || value instanceof Enum)
+            return true;
+        Class<?> type = value.getClass();
+        if (type == Integer.class || type == Long.class || type == Double.class || type == Float.class ||
+                type == Short.class || type == Byte.class)
+            return true;
+        if (!container)
+            return false;
+        if (type.isArray()) {
+            if (type.getComponentType().isPrimitive())
+                return true;
+            for (Object item : (Object[]) value) {
+                if (!isImmutable(item, false))
+                    return false;
+            }
+            return true;
+        }
+        if (type == ArrayList.class || type == LinkedHashSet.class || type == HashSet.class) {
+            for (Object item : (Collection<?>) value) {
+                if (!isImmutable(item, false))
+                    return false;
+            }
+            return true;
+        }
+        if (type == LinkedHashMap.class || type == HashMap.class) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!isImmutable(entry.getKey(), false) || !isImmutable(entry.getValue(), false))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // 复制数组和集合，其他值原样返回
+    private static Object copy(Object value) {
+        if (value == null)
+            return null;
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            if (value instanceof Object[])
+                return ((Object[]) value).clone();
+            int len = Array.getLength(value);
+            Object copy = Array.newInstance(type.getComponentType(), len);
+            System.arraycopy(value, 0, copy, 0, len);
+            return copy;
+        }
+        if (type == ArrayList.class)
+            return new ArrayList<>((Collection<?>) value);
+        if (type == LinkedHashSet.class)
+            return new LinkedHashSet<>((Collection<?>) value);
+        if (type == HashSet.class)
+            return new HashSet<>((Collection<?>) value);
+        if (type == LinkedHashMap.class)
+            return new LinkedHashMap<>((Map<?, ?>) value);
+        if (type == HashMap.class)
+            return new HashMap<>((Map<?, ?>) value);
+        return value;
+    }
+
+    private static final class Key {
+        private final MethodActuator actuator;
+        private final String cmdArgs;
+
+        private Key(MethodActuator actuator, String cmdArgs) {
+            this.actuator = actuator;
+            this.cmdArgs = cmdArgs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return actuator == other.actuator && cmdArgs.equals(other.cmdArgs);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(actuator) * 31 + cmdArgs.hashCode();
+        }
+    }
+
+    /**
+     * 缓存的统计信息
+     */
+    public static final class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long bypasses;
+
+        private Stats(int size, int maxSize, long hits, long misses, long bypasses) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.bypasses = bypasses;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return 因为占位符、参数不是不可变的值等原因没有缓存的次数
+         */
+        public long getBypasses() {
+            return bypasses;
+        }
+
+        /**
+         * @return 命中率，没有查询过时为0
+         */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d/%d, hits=%d, misses=%d, hitRate=%.2f%%, bypasses=%d",
+                    size, maxSize, hits, misses, getHitRate() * 100, bypasses);
+        }
+    }
+
+}
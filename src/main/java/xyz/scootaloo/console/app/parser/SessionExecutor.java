@@ -0,0 +1,310 @@
+package xyz.scootaloo.console.app.parser;
+
+import xyz.scootaloo.console.app.client.ClientCenter;
+import xyz.scootaloo.console.app.error.CommandInvokeException;
+import xyz.scootaloo.console.app.error.ErrorCode;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 会话执行引擎
+ * <p>由框架负责调度各个用户的命令，调用者不再需要自己创建和管理线程。
+ * 同一个用户的命令按照提交的顺序依次执行，不同用户的命令并行执行。</p>
+ * <pre>
+ * 两种模式:
+ *      VIRTUAL: 每个会话的命令在虚拟线程中执行，只在 JDK21 及以上版本可用，
+ *               在更低的版本中会自动退回到 POOL 模式;
+ *      POOL:    使用固定大小的线程池执行所有会话的命令
+ * </pre>
+ * <p>每个用户对应一个执行通道，通道中只有队列和一个调度标记，没有命令时不占用任何线程，
+ * 所以大量空闲的会话可以共享同一个解释器。通道的队列执行完毕后通道就会被移除，下次提交时重新创建。</p>
+ *
+ * @see Interpreter#getSessionExecutor()
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 15:20
+ */
+public final class SessionExecutor {
+    // 一个通道连续执行的最大命令数，超过之后让出线程，避免某个用户长期占用线程
+    private static final int BATCH = 32;
+
+    private final Interpreter interpreter;
+    private final ExecutorService executor;
+    private final Mode mode;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    // 会话被回收时移除空闲的通道
+    private final ClientCenter.EvictionListener evictionListener = (client, cause) -> {
+        Lane lane = lanes.get(client.getUserKey());
+        if (lane != null)
+            lane.retireIfIdle(false);
+    };
+    private volatile boolean shutdown;
+
+    protected SessionExecutor(Interpreter interpreter, Mode mode, int poolSize) {
+        this.interpreter = interpreter;
+        ExecutorService virtual = mode == Mode.VIRTUAL ? newVirtualExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.mode = Mode.VIRTUAL;
+        } else {
+            this.executor = newPoolExecutor(poolSize);
+            this.mode = Mode.POOL;
+        }
+        interpreter.getClientCenter().addEvictionListener(evictionListener);
+    }
+
+    /**
+     * 提交一条命令，这条命令会在此用户之前提交的命令都执行完毕后执行
+     * @param userKey 用户标识
+     * @param commandline 命令行
+     * @return 命令的执行结果
+     */
+    public CompletableFuture<InvokeInfo> submit(String userKey, String commandline) {
+        CompletableFuture<InvokeInfo> future = new CompletableFuture<>();
+        if (shutdown) {
+            future.complete(rejected("执行引擎已经关闭"));
+            return future;
+        }
+        enqueue(userKey, lane -> {
+            try {
+                future.complete(interpreter.runAs(userKey, () -> interpreter.interpret(commandline)));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    // 放入用户的通道，通道已经被移除时使用新的通道; 任务执行时可以拿到所在的通道
+    private void enqueue(String userKey, Consumer<Lane> task) {
+        while (true) {
+            Lane lane = lanes.computeIfAbsent(userKey, Lane::new);
+            if (lane.offer(() -> task.accept(lane)))
+                return;
+        }
+    }
+
+    /**
+     * 提交一条命令并等待它执行完毕
+     * @param userKey 用户标识
+     * @param commandline 命令行
+     * @return 命令的执行结果
+     */
+    public InvokeInfo await(String userKey, String commandline) {
+        return submit(userKey, commandline).join();
+    }
+
+    /**
+     * 提交一条命令并等待它执行完毕，超时后返回一个失败的调用信息，命令仍然会继续执行
+     * @param userKey 用户标识
+     * @param commandline 命令行
+     * @param timeout 等待时间
+     * @param unit 时间单位
+     * @return 命令的执行结果
+     */
+    public InvokeInfo await(String userKey, String commandline, long timeout, TimeUnit unit) {
+        try {
+            return submit(userKey, commandline).get(timeout, unit);
+        } catch (TimeoutException e) {
+            return InvokeInfo.failed(null, commandline,
+                    new CommandInvokeException("等待命令执行超时: `" + commandline + "`", e)
+                            .setErrorInfo(ErrorCode.SESSION_TIMEOUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return rejected("等待命令执行时被中断");
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * 关闭某个用户的会话，此用户已经提交的命令仍然会执行完毕，之后销毁此用户的资源
+     * <p>执行引擎已经关闭时，返回的结果以 {@link CommandInvokeException} 异常结束。</p>
+     * @param userKey 用户标识
+     * @return 会话关闭完成时结束
+     */
+    public CompletableFuture<Void> closeSession(String userKey) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (shutdown) {
+            future.completeExceptionally(new CommandInvokeException("执行引擎已经关闭")
+                    .setErrorInfo(ErrorCode.SESSION_REJECTED));
+            return future;
+        }
+        enqueue(userKey, lane -> {
+            try {
+                interpreter.destroyUser(userKey);
+                // 这是队列中最后一个任务时，立即移除通道
+                lane.retireIfIdle(true);
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 关闭执行引擎，已经提交的命令仍然会执行，之后提交的命令会直接返回失败
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        executor.shutdown();
+        interpreter.getClientCenter().removeEvictionListener(evictionListener);
+    }
+
+    /**
+     * @return 实际使用的模式
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return 当前会话数量
+     */
+    public int sessionCount() {
+        return lanes.size();
+    }
+
+    private static InvokeInfo rejected(String msg) {
+        return InvokeInfo.failed(null, null,
+                new CommandInvokeException(msg).setErrorInfo(ErrorCode.SESSION_REJECTED));
+    }
+
+    // JDK21 及以上版本时，通过反射创建虚拟线程执行器，否则返回null
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPoolExecutor(int poolSize) {
+        int size = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "console-session-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionExecutor{" +
+                "mode=" + mode +
+                ", sessions=" + lanes.size() +
+                ", shutdown=" + shutdown +
+                '}';
+    }
+
+    /**
+     * 执行模式
+     */
+    public enum Mode {
+        VIRTUAL, POOL;
+
+        /**
+         * 根据名称获取模式，不区分大小写，名称不能识别时返回 {@code VIRTUAL}
+         * @param name 模式名称
+         * @return 模式
+         */
+        public static Mode of(String name) {
+            if (name == null)
+                return VIRTUAL;
+            for (Mode mode : values()) {
+                if (mode.name().equals(name.trim().toUpperCase(Locale.ROOT)))
+                    return mode;
+            }
+            return VIRTUAL;
+        }
+    }
+
+    /**
+     * 单个用户的执行通道
+     * <p>任务进入队列后，假如通道还没有被调度，则向执行器提交一次调度;
+     * 同一时刻一个通道最多只有一个线程在执行，所以同一用户的命令是串行的。</p>
+     * <p>队列为空且没有在执行时，通道从 lanes 中移除并且不再接受任务，
+     * 放入任务和移除通道使用通道自身的锁，所以同一个用户不会同时有两个可用的通道。</p>
+     */
+    private final class Lane implements Runnable {
+        private final String userKey;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private boolean retired; // 由通道的锁保护
+
+        private Lane(String userKey) {
+            this.userKey = userKey;
+        }
+
+        // 通道已经被移除时返回false
+        private boolean offer(Runnable task) {
+            synchronized (this) {
+                if (retired)
+                    return false;
+                tasks.offer(task);
+            }
+            schedule();
+            return true;
+        }
+
+        /**
+         * 队列为空时移除通道
+         * @param running 是否由通道中正在执行的任务调用，为false时通道正在执行也不移除
+         */
+        private void retireIfIdle(boolean running) {
+            synchronized (this) {
+                if (retired || !tasks.isEmpty() || (!running && scheduled.get()))
+                    return;
+                retired = true;
+            }
+            lanes.remove(userKey, this);
+        }
+
+        private void schedule() {
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // 执行器已经关闭，在当前线程中执行剩余的任务
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                int count = 0;
+                while (count++ < BATCH && (task = tasks.poll()) != null)
+                    task.run();
+            } finally {
+                scheduled.set(false);
+                retireIfIdle(false);
+                // 在释放调度标记之后可能有新的任务进入队列
+                schedule();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Lane{" +
+                    "userKey='" + userKey + '\'' +
+                    ", pending=" + tasks.size() +
+                    '}';
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ public final class TransformFactory {
     private static final Map<Class<?>, Object> DEFAULT_VALUE_MAP = new HashMap<>(16);
     private static final Map<Class<?>, Function<String , Object>> STR_RESOLVE_MAP = new HashMap<>(16);
     private static final Map<Class<?>, Supplier<Object>> PRESET_VALUES_MAP = new HashMap<>();
+    private static final Set<Class<?>> CUSTOMIZED_TYPES = new HashSet<>();
 
     private static final Random random = ResourceManager.getRandom();
 
@@ -73,6 +74,24 @@ public final class TransformFactory {
                 .map(Supplier::get);
     }
 
+    /**
+     * 获取系统预设的值，和 {@link #getPresetVal(Class)} 相同，但不创建 Optional 对象
+     * @param type 类型
+     * @return 此类型的实例，假如不存在此实例则返回null
+     */
+    public static Object findPresetVal(Class<?> type) {
+        Supplier<Object> supplier = PRESET_VALUES_MAP.get(type);
+        return supplier == null ? null : supplier.get();
+    }
+
+    /**
+     * @param type 类型
+     * @return 是否是系统预设的类型
+     */
+    public static boolean hasPresetVal(Class<?> type) {
+        return PRESET_VALUES_MAP.containsKey(type);
+    }
+
     /**
      * 向工厂中放置预设的值
      * @param type 指定一个类型
@@ -91,14 +110,10 @@ public final class TransformFactory {
      * @param classType 目标对象的类型
      * @param genericType 这个目标类型的泛型信息
      * @return 生成好的对象，假如不能生成，返回null。可能抛出运行时异常
-     * @throws Exception 解析数组时 {@link #resolveArray(Object, Class, Type)}
+     * @throws Exception 转换失败时 {@link ConverterRegistry.Converter#convert(Object)}
      */
     public static Object parsingParam(Object value, Class<?> classType, Type genericType) throws Exception {
-        if (classType.isArray() || ClassUtils.isExtendForm(classType, Collection.class)) {
-            return resolveArray(value, classType, genericType);
-        } else {
-            return simpleTrans(String.valueOf(value), classType);
-        }
+        return ConverterRegistry.get(classType, genericType).convert(value);
     }
 
     /**
@@ -110,9 +125,9 @@ public final class TransformFactory {
      */
     public static Object simpleTrans(Object value, Class<?> type) {
         // 尝试进行占位符替换
-        Optional<Object> pObj = resolvePlaceholder(value, type);
-        if (pObj.isPresent())
-            return pObj.get();
+        Object pObj = resolvePlaceholder(value, type);
+        if (pObj != null)
+            return pObj;
 
         Function<String, Object> convertor = STR_RESOLVE_MAP.get(type);
         if (convertor != null) {
@@ -139,23 +154,21 @@ public final class TransformFactory {
             if (type == null)
                 continue;
             STR_RESOLVE_MAP.put(type, parser);
+            CUSTOMIZED_TYPES.add(type);
         }
+        // 已经生成的转换器中可能持有旧的解析器，缓存的参数也是由旧的解析器生成的
+        ConverterRegistry.clear();
+        ParseCache.invalidateAll();
     }
 
-    // 解析数组和集合
-    private static Object resolveArray(Object value, Class<?> type, Type genericType)
-            throws ClassNotFoundException {
-        if (type.isArray()) { // 数组
-            return ClassUtils.genArray(type.getComponentType(), (String) value);
-        } else {
-            if (ClassUtils.isExtendForm(type, Set.class)) { // 集
-                return ClassUtils.genSet(ClassUtils.getRawType(genericType).get(0), (String) value);
-            } else if (ClassUtils.isExtendForm(type, List.class)) { // 列表
-                return ClassUtils.genList(ClassUtils.getRawType(genericType).get(0), (String) value);
-            } else {
-                throw new RuntimeException("暂不支持的数据结构: " + type.getName());
-            }
-        }
+    // 是否通过 addParser 替换或者添加了此类型的解析器
+    static boolean isCustomized(Class<?> type) {
+        return CUSTOMIZED_TYPES.contains(type);
+    }
+
+    // 获取某类型的字符串解析器，没有则返回null
+    static Function<String, Object> findConvertor(Class<?> type) {
+        return STR_RESOLVE_MAP.get(type);
     }
 
     /**
@@ -163,21 +176,63 @@ public final class TransformFactory {
      * <p>满足要求：确实存在变量，且变量的类型和方法参数类型一致</p>
      * @param value 占位符信息
      * @param type 目标类型
-     * @return 处理结果，假如处理失败，则返回空
+     * @return 处理结果，假如处理失败，则返回null
      */
-    private static Optional<Object> resolvePlaceholder(Object value, Class<?> type) {
+    static Object resolvePlaceholder(Object value, Class<?> type) {
         if (!(value instanceof String))
-            return Optional.empty();
+            return null;
         String key = (String) value;
         if (!key.startsWith(VariableManager.placeholder))
-            return Optional.empty();
-        int keyId = Integer.parseInt(key.substring(VariableManager.placeholder.length()));
+            return null;
+        int keyId = parseId(key, VariableManager.placeholder.length());
+        if (keyId < 0)
+            return null;
         ReplacementRecord replacementRecord = Interpreter.getCurrentUser().getResources().getReplacementRecord();
-        Optional<Object> placeholderObj = VariableManager.get(replacementRecord, keyId);
-        if (placeholderObj.isPresent() && ClassUtils.sameType(placeholderObj.get(), type)) {
-            return placeholderObj;
+        ReplacementRecord.KVPair kvPair = replacementRecord.get(keyId);
+        if (kvPair == null || kvPair.value == null)
+            return null;
+        if (ClassUtils.sameType(kvPair.value, type))
+            return kvPair.value;
+        return widen(kvPair.value, type);
+    }
+
+    /**
+     * 变量池中以基本类型保存的值，放到类型不完全相同的参数上时，直接按照数值转换，不再经过字符串<br>
+     * 只进行不会丢失信息的转换: int -> long, int/long -> float/double 只在值可以被精确表示时转换，
+     * 例如 16777217 不能转换成 float; 参数是字符串时返回值的字符串形式
+     */
+    private static Object widen(Object value, Class<?> type) {
+        if (type == String.class)
+            return value instanceof Number || value instanceof Boolean ? String.valueOf(value) : null;
+        if (value instanceof Integer || value instanceof Long) {
+            long num = ((Number) value).longValue();
+            if (type == long.class || type == Long.class)
+                return num;
+            if (type == double.class || type == Double.class) {
+                double d = num;
+                // 2^63 转换回 long 时会被截断成 Long.MAX_VALUE，需要单独排除
+                return d < 0x1p63 && (long) d == num ? d : null;
+            }
+            if (type == float.class || type == Float.class) {
+                float f = num;
+                return f < 0x1p63f && (long) f == num ? f : null;
+            }
+        }
+        return null;
+    }
+
+    // 解析占位符中的id，不是数字时返回-1
+    private static int parseId(String key, int from) {
+        if (from >= key.length() || key.length() - from > 9)
+            return -1;
+        int id = 0;
+        for (int i = from; i<key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            id = id * 10 + (c - '0');
         }
-        return Optional.empty();
+        return id;
     }
 
     private static void putDefVal(Function<String, Object> convertor) {
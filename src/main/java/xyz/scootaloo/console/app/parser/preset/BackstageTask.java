@@ -1,6 +1,7 @@
 package xyz.scootaloo.console.app.parser.preset;
 
 import xyz.scootaloo.console.app.anno.mark.Stateless;
+import xyz.scootaloo.console.app.client.Client;
 import xyz.scootaloo.console.app.parser.Interpreter;
 import xyz.scootaloo.console.app.parser.OptionHandler;
 import xyz.scootaloo.console.app.support.BackstageTaskManager;
@@ -11,7 +12,9 @@ import xyz.scootaloo.console.app.support.BackstageTaskManager;
  * 例如一个命令行是这样的: sleep 500 代表休眠当前线程500毫秒
  * 而 {@code sleep-Dtest 500} 表示提交一个名为"test"的任务到后台，命令行的功能不变，唯一的区别是被转移到了后台。
  * 这个时候你可以使用 tasks 查看后台的任务信息。
- * 使用 task test 查看这个命令的输出.</pre>
+ * 使用 task test 查看这个命令的输出.
+ * 任务名后面可以跟上优先级和超时时间，例如 {@code sleep-Dtest:1:3000 5000}，
+ * 表示以优先级1提交，执行超过3000毫秒时取消; 使用 task -k test 可以取消这个任务.</pre>
  * @author flutterdash@qq.com
  * @since 2021/2/5 21:13
  */
@@ -29,9 +32,12 @@ public final class BackstageTask implements OptionHandler {
     public void runWithParameter(String cmd, String optionParameter,
                                  String argItems, Interpreter interpreter) {
         String completeCmd = getCompleteCommand(cmd, argItems);
-        BackstageTaskManager.submit(optionParameter,
-                () -> interpreter.interpret(completeCmd),
-                    Interpreter.getCurrentUser().getResources().getTaskList());
+        Client user = Interpreter.getCurrentUser();
+        String userKey = user.getUserKey();
+        // 后台线程中仍然以提交任务的用户身份执行
+        BackstageTaskManager.submit(optionParameter, userKey,
+                () -> interpreter.runAs(userKey, () -> interpreter.interpret(completeCmd)),
+                    user.getResources().getTaskList());
     }
 
     @Override
@@ -2,6 +2,7 @@ package xyz.scootaloo.console.app.parser.preset;
 
 import xyz.scootaloo.console.app.config.ConsoleConfig;
 import xyz.scootaloo.console.app.parser.NameableParameterParser;
+import xyz.scootaloo.console.app.parser.ParameterParser;
 
 import java.util.LinkedHashSet;
 import java.util.Objects;
@@ -47,6 +48,16 @@ public final class PresetFactoryManager {
                 .findAny();
     }
 
+    /**
+     * 是否是系统预设的解析器，按照引用判断，名称相同的自定义解析器不算
+     * @param parser 解析器
+     * @return 是否是预设的解析器
+     */
+    public static boolean isPresetParser(ParameterParser parser) {
+        return parser == SimpleParameterParser.INSTANCE || parser == SubParameterParser.INSTANCE ||
+                parser == CollectionParameterParser.INSTANCE || parser == LeetcodeParameterParser.INSATNCE;
+    }
+
     private static Set<Supplier<Object>> getPresetFactories() {
         Set<Supplier<Object>> factories = new LinkedHashSet<>();
         factories.add(() -> SimpleParameterParser.INSTANCE);     // 1
@@ -1,18 +1,16 @@
 package xyz.scootaloo.console.app.parser.preset;
 
-import xyz.scootaloo.console.app.anno.Opt;
 import xyz.scootaloo.console.app.anno.mark.Stateless;
 import xyz.scootaloo.console.app.error.ErrorCode;
 import xyz.scootaloo.console.app.parser.*;
-import xyz.scootaloo.console.app.parser.MethodMeta.Context;
-import xyz.scootaloo.console.app.parser.MethodMeta.CurrentParamInfo;
-
-import java.util.*;
-import java.util.stream.Collectors;
+import xyz.scootaloo.console.app.parser.BindingPlan.Frame;
+import xyz.scootaloo.console.app.parser.BindingPlan.Slot;
 
 /**
  * sub
  *
+ * <p>按照参数名提取键值对，参数名不需要 '-' 前缀，解析时执行 {@link MethodMeta#bindingPlan} 中的绑定计划。</p>
+ *
  * @author flutterdash@qq.com
  * @since 2021/2/6 14:47
  */
@@ -22,72 +20,73 @@ public final class SubParameterParser extends FillParamInOrder<Object> implement
     protected static final SubParameterParser INSTANCE = new SubParameterParser();
 
     @Override
-    protected Context<Object> createContext(MethodMeta meta, String args) {
-        return Context.getInstance(meta, args, this::parseParameters);
+    public ResultWrapper parse(MethodMeta meta, String args) {
+        return parse(meta, CommandLine.ofArgs(args));
     }
 
-    // 有注解时，处理参数解析
     @Override
-    protected void doResolveIfAnnoExist(Context<Object> state, CurrentParamInfo current) {
-        Opt opt = current.getAnno();
-        String paramName = getNameStrategy(opt);
-        // 命令行参数中有当前方法参数的信息
-        if (state.containParam(paramName)) {
-            String value = state.getParam(paramName);
-            Object parserResult = parsingParam(value, current.getParamType());
-            if (parserResult instanceof Exception) {
-                state.setException(
-                        createException("参数解析时异常, 类型:" + current.getParamType().getName(),
+    public ResultWrapper parse(MethodMeta meta, CommandLine line) {
+        if (meta.size == 0)
+            return returnNothing();
+
+        BindingPlan plan = meta.bindingPlan;
+        Frame frame = plan.acquireFrame();
+        try {
+            parseParameters(plan, frame, line);
+            for (int i = 0; i<plan.size; i++) {
+                Slot slot = plan.slot(i);
+                String value = slot.opt != null ? frame.value(slot) : null;
+                // 命令行参数中有当前方法参数的信息
+                if (value != null) {
+                    Object parserResult = parsingParam(value, slot.type);
+                    if (parserResult instanceof Exception) {
+                        frame.fail(createException("参数解析时异常, 类型:" + slot.type.getName(),
                                 (Throwable) parserResult, ErrorCode.NONSUPPORT_TYPE));
-            } else {
-                state.addMethodArgument(parserResult);
+                    } else {
+                        frame.setArgument(slot, parserResult);
+                    }
+                }
+                // 命令行参数中没有此方法参数，没有注解的参数也按照缺省参数处理
+                else {
+                    bindLackSlot(frame, slot);
+                }
+
+                if (frame.hasException())
+                    return ParameterWrapper.fail(frame.getException());
             }
-        }
-        // 命令行参数中没有此方法参数
-        else {
-            addLackMark(state, current);
+
+            if (frame.lackCount() > 0)
+                fillLackSlots(frame);
+
+            return ParameterWrapper.successWith(frame.getArgs());
+        } finally {
+            frame.release();
         }
     }
 
     /**
-     * 将命令行中与方法参数中注解描述相符的参数项提取出来，并从原命令行中删除该项
-     * @param state 解析状态
-     * @param args 命令行参数
-     * @return 命令行中剩余的内容
+     * 将命令行中与方法参数中注解描述相符的参数项提取出来，其余的内容做为剩余的命令参数
+     * <p>参数名优先选取 Opt 注解的 fullName 属性，假如没有指定 fullName，则使用 value 值</p>
+     * @param plan 绑定计划
+     * @param frame 解析状态
+     * @param line 命令行的分词结果
      */
-    private List<String> parseParameters(Context<Object> state, String args) {
-        List<String> cmdArgsItems = Actuator.splitCommandArgsBySpace(args);  // 用空格分隔的命令参数列表
-        Map<String, String> kvPairs = state.getKVPairs();
-        Set<String> paramSet = getParamKeySetForAnnoList(state.getOptionals());
-        List<String> remainList = new ArrayList<>();
-        int size = cmdArgsItems.size();
+    private void parseParameters(BindingPlan plan, Frame frame, CommandLine line) {
+        int size = line.size();
         for (int i = 0; i<size; i++) {
-            String key = cmdArgsItems.get(i);
-            if (paramSet.contains(key)) {
-                if (i+1 < size && !paramSet.contains(cmdArgsItems.get(i+1))) {
-                    kvPairs.put(key, cmdArgsItems.get(i+1));
+            String key = line.get(i);
+            Slot slot = plan.findByStrategyName(key);
+            if (slot != null) {
+                if (i+1 < size && plan.findByStrategyName(line.get(i+1)) == null) {
+                    frame.put(slot, line.get(i+1), true);
                     i++;
                 } else {
-                    kvPairs.put(key, "true");
+                    frame.put(slot, "true", true);
                 }
             } else {
-                remainList.add(key);
+                frame.addPositional(key);
             }
         }
-        return remainList;
-    }
-
-    /**
-     * 优先选取 Opt 注解的 fullName 属性，假如没有指定 fullName，则使用 value 值
-     * @param annoList 方法参数上的注解
-     * @return 收集到的参数名集合
-     */
-    private Set<String> getParamKeySetForAnnoList(Optional<Opt>[] annoList) {
-        return Arrays.stream(annoList)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .map(FillParamInOrder::getNameStrategy)
-                .collect(Collectors.toSet());
     }
 
     @Override
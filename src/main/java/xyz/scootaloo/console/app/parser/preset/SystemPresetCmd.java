@@ -4,8 +4,10 @@ import xyz.scootaloo.console.app.anno.Cmd;
 import xyz.scootaloo.console.app.anno.Opt;
 import xyz.scootaloo.console.app.anno.mark.Public;
 import xyz.scootaloo.console.app.client.Client;
+import xyz.scootaloo.console.app.client.ClientCenter;
 import xyz.scootaloo.console.app.client.ReplacementRecord.KVPair;
 import xyz.scootaloo.console.app.client.Console;
+import xyz.scootaloo.console.app.client.VariablePool;
 import xyz.scootaloo.console.app.common.ResourceManager;
 import xyz.scootaloo.console.app.config.ConsoleConfig;
 import xyz.scootaloo.console.app.event.AppListenerAdapter;
@@ -15,6 +17,9 @@ import xyz.scootaloo.console.app.parser.*;
 import xyz.scootaloo.console.app.parser.Interpreter.MethodActuator;
 import xyz.scootaloo.console.app.support.BackstageTaskManager;
 import xyz.scootaloo.console.app.support.BackstageTaskManager.BackstageTaskInfo;
+import xyz.scootaloo.console.app.support.CommandMetrics;
+import xyz.scootaloo.console.app.support.HistoryJournal;
+import xyz.scootaloo.console.app.support.ResultCache;
 import xyz.scootaloo.console.app.util.ClassUtils;
 import xyz.scootaloo.console.app.support.VariableManager;
 
@@ -82,9 +87,13 @@ public final class SystemPresetCmd implements AppListenerAdapter {
     @Cmd(tag = SYS_TAG, parser = "sub", comment = "查看某个后台任务的详细信息")
     public void task(@Opt(value = 's', fullName = "name", dftVal = "*") String taskName,
                      @Opt(value = 'n', fullName = "size", dftVal = "-1") int size,
-                     @Opt(value = 'c', fullName = "clear", dftVal = "*") String clear) {
+                     @Opt(value = 'c', fullName = "clear", dftVal = "*") String clear,
+                     @Opt(value = 'k', fullName = "kill", dftVal = "*") String kill) {
         Set<BackstageTaskInfo> taskList = Interpreter.getCurrentUser().getResources().getTaskList();
-        if (!clear.equals("*")) {
+        if (!kill.equals("*")) {
+            if (BackstageTaskManager.cancel(taskList, kill))
+                console.println("已取消任务: `" + kill + "`");
+        } else if (!clear.equals("*")) {
             BackstageTaskManager
                     .clearHistory(taskList, clear.toLowerCase(Locale.ROOT).startsWith("a"));
         } else {
@@ -96,6 +105,114 @@ public final class SystemPresetCmd implements AppListenerAdapter {
         }
     }
 
+    @Cmd(name = "tkst", tag = SYS_TAG, comment = "查看后台任务调度器的统计信息")
+    public BackstageTaskManager.Metrics taskStats() {
+        BackstageTaskManager.Metrics metrics = BackstageTaskManager.getMetrics();
+        console.println(metrics);
+        return metrics;
+    }
+
+    @Cmd(tag = SYS_TAG, comment = "查看命令的执行耗时统计")
+    public List<CommandMetrics.Snapshot> perf(@Opt(value = 's', fullName = "name") String name,
+                                              @Opt(value = 'p', fullName = "phase") boolean phase,
+                                              @Opt(value = 'r', fullName = "reset") boolean reset) {
+        if (reset) {
+            CommandMetrics.reset();
+            console.println("已清空执行耗时统计");
+            return new ArrayList<>();
+        }
+        if (!CommandMetrics.isEnabled())
+            console.println("没有启用执行耗时统计，需要配置 metricsEnabled");
+        List<CommandMetrics.Snapshot> snapshots = name == null ? CommandMetrics.snapshot() :
+                CommandMetrics.snapshot(name.toLowerCase(Locale.ROOT))
+                        .map(Collections::singletonList).orElse(Collections.emptyList());
+        console.println(String.format("%-12s %8s %8s %10s %10s %10s %10s", "command", "count", "failure",
+                "rate/s", "p50", "p99", "max"));
+        for (CommandMetrics.Snapshot snapshot : snapshots) {
+            CommandMetrics.PhaseSnapshot total = snapshot.getPhase(CommandMetrics.Phase.TOTAL);
+            console.println(String.format("%-12s %8d %8d %10.2f %10s %10s %10s", snapshot.getName(),
+                    snapshot.getCount(), snapshot.getFailure(), snapshot.getThroughput(),
+                    CommandMetrics.formatNanos(total.getP50()), CommandMetrics.formatNanos(total.getP99()),
+                    CommandMetrics.formatNanos(total.getMax())));
+            if (phase) {
+                for (CommandMetrics.Phase p : CommandMetrics.Phase.values()) {
+                    if (p != CommandMetrics.Phase.TOTAL)
+                        console.println("    " + p + " " + snapshot.getPhase(p));
+                }
+                snapshot.getErrors().forEach((code, count) -> console.println("    " + code.name() + " " + count));
+            }
+        }
+        return snapshots;
+    }
+
+    @Cmd(tag = SYS_TAG, comment = "查看和清空命令的结果缓存")
+    public ResultCache.Stats cache(@Opt(value = 'c', fullName = "clear") String clear,
+                                   @Opt(value = 'a', fullName = "all") boolean all,
+                                   @Opt(value = 'r', fullName = "reset") boolean reset) {
+        if (all) {
+            ResultCache.invalidateAll();
+            console.println("已清空所有缓存的结果");
+        } else if (clear != null) {
+            console.println("已清空 " + ResultCache.invalidate(clear.toLowerCase(Locale.ROOT)) + " 个结果");
+        }
+        if (all)
+            ParseCache.invalidateAll();
+        if (reset) {
+            ResultCache.resetStats();
+            ParseCache.resetStats();
+        }
+        if (!ResultCache.isEnabled())
+            console.println("没有启用结果缓存，需要配置 resultCacheSize");
+        ResultCache.Stats stats = ResultCache.getStats();
+        console.println(stats);
+        console.println("参数解析缓存: " + ParseCache.getStats());
+        console.println("可缓存的命令: " + AssemblyFactory.getAllCommands().stream()
+                .filter(MethodActuator::isCacheable)
+                .map(MethodActuator::getCmdName)
+                .collect(Collectors.joining(", ")));
+        return stats;
+    }
+
+    @Cmd(tag = SYS_TAG, comment = "查看和回收用户会话")
+    public List<Client> sessions(@Opt(value = 'k', fullName = "kill") String kill) {
+        ClientCenter center = ClientCenter.getInstance();
+        Client current = Interpreter.getCurrentUser();
+        // 只有默认用户可以查看和回收其他用户的会话
+        boolean admin = current == center.getPublicUser();
+        if (kill != null) {
+            if (admin || kill.equals(current.getUserKey())) {
+                center.destroyUser(kill);
+                console.println("已回收会话: " + kill);
+            } else {
+                console.println("只能回收自己的会话");
+            }
+        }
+        List<Client> sessions = center.sessions();
+        if (!admin)
+            sessions = sessions.stream()
+                    .filter(session -> session.getUserKey().equals(current.getUserKey()))
+                    .collect(Collectors.toList());
+        long now = System.currentTimeMillis();
+        long totalBytes = 0;
+        console.println(String.format("%-20s %10s %8s %8s %10s", "user", "idle", "history", "vars", "memory"));
+        for (Client session : sessions) {
+            Client.Resources resources = session.getResources();
+            long bytes = resources.estimateBytes();
+            totalBytes += bytes;
+            console.println(String.format("%-20s %9ds %8d %8d %9dB", session.getUserKey(),
+                    session.getIdleMillis(now) / 1000, resources.getHistory().size(),
+                    resources.getVariablePool().size(), bytes));
+        }
+        console.println("会话: " + sessions.size() + "/" +
+                (center.getMaxSessions() == 0 ? "-" : center.getMaxSessions()) +
+                ", 空闲回收: " + (center.getIdleTimeoutMillis() == 0 ? "-" : center.getIdleTimeoutMillis() / 1000 + "s") +
+                ", 估计占用: " + totalBytes + "B" +
+                ", 已回收: expired=" + center.getEvictedCount(ClientCenter.Cause.EXPIRED) +
+                " size=" + center.getEvictedCount(ClientCenter.Cause.SIZE) +
+                " destroyed=" + center.getEvictedCount(ClientCenter.Cause.DESTROYED));
+        return sessions;
+    }
+
     @Cmd(name = "fd", tag = SYS_TAG, comment = "查看某个注册到系统的可调用的java方法")
     private void find(@Opt(value = 's', fullName = "name") String name,
                       @Opt(value = 't', fullName = "tag") String tag) {
@@ -150,7 +267,19 @@ public final class SystemPresetCmd implements AppListenerAdapter {
                                      @Opt(value = 'r', fullName = "rtnVal"  ) boolean rtnVal,
                                      @Opt(value = 'g', fullName = "args"    ) boolean args,
                                      @Opt(value = 't', fullName = "invokeAt") boolean invokeAt,
-                                     @Opt(value = 'i', fullName = "interval") boolean interval) {
+                                     @Opt(value = 'i', fullName = "interval") boolean interval,
+                                     @Opt(value = 'j', fullName = "journal" ) boolean journal) {
+        if (journal) {
+            Optional<HistoryJournal> historyJournal = HistoryJournal.current();
+            if (!historyJournal.isPresent()) {
+                console.println("没有启用历史记录日志，需要配置 journalDir");
+                return new ArrayList<>();
+            }
+            List<InvokeInfo> infos = historyJournal.get()
+                    .latest(Interpreter.getCurrentUser().getUserKey(), name, size);
+            Client.History.print(infos, isAll, success, rtnVal, args, invokeAt, interval);
+            return infos;
+        }
         return Interpreter.getCurrentUser().getResources().getHistory()
                 .select(name, size, isAll, success, rtnVal, args, invokeAt, interval);
     }
@@ -228,11 +357,18 @@ public final class SystemPresetCmd implements AppListenerAdapter {
     }
 
     @Cmd(tag = SYS_TAG, comment = "查看所有变量")
-    private Map<String, Object> keys() {
-        Map<String, Object> kvMap = Interpreter.getCurrentUser()
+    private Map<String, Object> keys(@Opt(value = 'm', fullName = "memory") boolean memory) {
+        VariablePool kvMap = Interpreter.getCurrentUser()
                 .getResources()
                 .getVariablePool();
-        kvMap.forEach((k, v) -> console.println("[" + k + "]: " + v));
+        if (memory) {
+            VariablePool.Footprint footprint = kvMap.footprint();
+            footprint.getItems().forEach(item -> console.println(item.toString()));
+            console.println("变量: " + footprint.getItems().size() + ", 基本类型: " + footprint.getPrimitiveCount() +
+                    ", 估计占用: " + footprint.getTotalBytes() + "B");
+        } else {
+            kvMap.forEach((k, v) -> console.println("[" + k + "]: " + v));
+        }
         return kvMap;
     }
 
@@ -286,13 +422,16 @@ public final class SystemPresetCmd implements AppListenerAdapter {
     public void onInputResolved(String cmdName, InvokeInfo info) {
         if (info != null) {
             // 记录命令行执行信息
-            Interpreter.getCurrentUser().getResources().getHistory().add(info);
+            Client user = Interpreter.getCurrentUser();
+            user.getResources().getHistory().add(info);
+            // 启用了历史记录日志时，同时追加到磁盘上
+            HistoryJournal.current().ifPresent(journal -> journal.append(user.getUserKey(), info));
         }
     }
 
     @Override
     public String info() {
-        return "系统自带的监听器，将命令参数中的占位符替换成函数的返回值，另外记录执行过的命令信息";
+        return "系统自带的监听器，将命令参数中的占位符替换成函数的返回值，另外记录执行过的命令信息(启用时同时写入历史记录日志)";
     }
 
     //----------------------------------------------------------------------------------
@@ -354,7 +493,28 @@ public final class SystemPresetCmd implements AppListenerAdapter {
                     "    -r, --rtnVal           显示命令调用时的返回值\n" +
                     "    -g, --args             显示调用此命令时使用的参数\n" +
                     "    -t, --invokeAt         显示何时调用的此命令\n" +
-                    "    -i, --interval         显示执行此命令所花费的时间\n";
+                    "    -i, --interval         显示执行此命令所花费的时间\n" +
+                    "    -j, --journal          从历史记录日志中查询，包括应用重启之前的记录，需要配置 journalDir\n";
+        }
+
+        public String _perf() {
+            return "查看命令的执行耗时统计(p50 p99 max 为整个命令的耗时，不包含过滤链)\n" +
+                    "    -s, --name             只查看某个命令\n" +
+                    "    -p, --phase            同时显示过滤、解析、调用、事件各阶段的耗时和失败原因\n" +
+                    "    -r, --reset            清空统计\n";
+        }
+
+        public String _cache() {
+            return "查看命令结果缓存的命中率和可缓存的命令(@Cmd(cache = true)或者方法、类上有@Stateless)，以及参数解析缓存的命中率\n" +
+                    "    -c, --clear            清空某个命令缓存的结果\n" +
+                    "    -a, --all              清空所有缓存的结果和解析出的参数\n" +
+                    "    -r, --reset            清零统计\n";
+        }
+
+        public String _sessions() {
+            return "查看所有用户会话的空闲时间、历史记录数、变量数和估计的内存占用(不包括默认用户)\n" +
+                    "其他用户只能查看和回收自己的会话\n" +
+                    "    -k, --kill             回收指定用户的会话\n";
         }
 
         public String _set() {
@@ -370,7 +530,8 @@ public final class SystemPresetCmd implements AppListenerAdapter {
         }
 
         public String _keys() {
-            return "无需参数，显示所有的键值对\n";
+            return "显示所有的键值对\n" +
+                    "    -m, --memory           显示每个变量的保存方式和估计的内存占用\n";
         }
 
         public String _echo() {
@@ -0,0 +1,266 @@
+package xyz.scootaloo.console.app.processor;
+
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.Form;
+import xyz.scootaloo.console.app.parser.CommandIndex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * 编译期命令处理器
+ * <pre>
+ * 在编译时处理所有的类，生成以下内容:
+ *      命令调用代码: 为每个含有 {@code @Cmd} 方法的类生成 {@code 类名$$Commands}，实现 {@link CommandIndex}，
+ *                  直接调用这些方法，私有方法和参数类型不可访问的方法不生成;
+ *      工厂索引: {@link #FACTORY_INDEX}，记录编译过的包，以及含有 {@code INSTANCE} 或者 {@code FACTORY_INSTANCE}
+ *              静态常量的类，{@code FactoryCollector.scanPack} 优先使用jar包中的索引，不再遍历jar包;
+ *      native-image 配置: {@link #REFLECT_CONFIG}，登记命令工厂、生成的类、工厂索引中的类和表单类 ({@code @Form})，
+ *                        这些类在运行期仍然需要通过反射读取注解、属性和构造器。
+ * </pre>
+ * <p>处理器通过 {@code META-INF/services} 注册，依赖本框架的项目在编译时会自动启用。
+ * 只重新编译部分文件时(例如IDE的增量编译)，索引只包含这次编译的类，所以目录中的索引不会被使用，只读取jar包中的索引。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:30
+ */
+public final class CommandProcessor extends AbstractProcessor {
+    /** 工厂索引的位置 */
+    public static final String FACTORY_INDEX = "META-INF/jconsole/factories";
+    /** native-image 反射配置的位置 */
+    public static final String REFLECT_CONFIG = "META-INF/native-image/jconsole/reflect-config.json";
+
+    private static final String[] INSTANCE_NAMES = { "FACTORY_INSTANCE", "INSTANCE" };
+
+    // 多轮处理中累积的结果，最后一轮统一写出
+    private final Set<String> packages = new TreeSet<>();
+    private final Set<String> factories = new LinkedHashSet<>();
+    // 类名 -> 需要的反射权限
+    private final Map<String, String> reflections = new LinkedHashMap<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        // 工厂索引需要检查所有的类，不只是含有注解的类
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) {
+            if (root instanceof TypeElement)
+                processType((TypeElement) root);
+        }
+        if (roundEnv.processingOver()) {
+            writeFactoryIndex();
+            writeReflectConfig();
+        }
+        return false;
+    }
+
+    // 处理类和它的所有成员类
+    private void processType(TypeElement type) {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        packages.add(packageOf(type).getQualifiedName().toString());
+        if (type.getAnnotation(Form.class) != null)
+            reflections.put(binaryName, "\"allDeclaredConstructors\": true, \"allDeclaredFields\": true");
+        if (hasInstanceField(type)) {
+            factories.add(binaryName);
+            reflections.putIfAbsent(binaryName, "\"allDeclaredFields\": true");
+        }
+        List<ExecutableElement> commands = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getAnnotation(Cmd.class) != null)
+                commands.add(method);
+        }
+        if (!commands.isEmpty()) {
+            reflections.put(binaryName, "\"allDeclaredConstructors\": true, " +
+                    "\"allDeclaredFields\": true, \"allDeclaredMethods\": true");
+            if (isAccessible(type))
+                writeCommands(type, binaryName, commands);
+        }
+        for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements()))
+            processType(member);
+    }
+
+    // 是否含有与当前类类型一致的 INSTANCE 或者 FACTORY_INSTANCE 静态常量
+    private boolean hasInstanceField(TypeElement type) {
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!field.getModifiers().contains(Modifier.STATIC))
+                continue;
+            if (!Arrays.asList(INSTANCE_NAMES).contains(field.getSimpleName().toString()))
+                continue;
+            TypeMirror fieldType = processingEnv.getTypeUtils().erasure(field.asType());
+            if (processingEnv.getTypeUtils().isSameType(fieldType,
+                    processingEnv.getTypeUtils().erasure(type.asType())))
+                return true;
+        }
+        return false;
+    }
+
+    // 生成 类名$$Commands
+    private void writeCommands(TypeElement type, String binaryName, List<ExecutableElement> commands) {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + CommandIndex.SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder signatures = new StringBuilder();
+        StringBuilder cases = new StringBuilder();
+        int id = 0;
+        for (ExecutableElement method : commands) {
+            if (method.getModifiers().contains(Modifier.PRIVATE) || !isAccessible(method.getParameters(), packageName))
+                continue;
+            boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+            StringBuilder call = new StringBuilder();
+            call.append(isStatic ? typeName : "((" + typeName + ") obj)")
+                    .append('.').append(method.getSimpleName()).append('(');
+            signatures.append("            \"").append(method.getSimpleName()).append('(');
+            List<? extends VariableElement> params = method.getParameters();
+            for (int i = 0; i<params.size(); i++) {
+                String paramType = typeName(params.get(i).asType());
+                if (i > 0) {
+                    call.append(", ");
+                    signatures.append(',');
+                }
+                call.append('(').append(paramType).append(") args[").append(i).append(']');
+                signatures.append(paramType);
+            }
+            call.append(')');
+            signatures.append(")\",\n");
+            cases.append("            case ").append(id++).append(":\n");
+            if (method.getReturnType().getKind() == TypeKind.VOID) {
+                cases.append("                ").append(call).append(";\n");
+                cases.append("                return null;\n");
+            } else {
+                cases.append("                return ").append(call).append(";\n");
+            }
+        }
+
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + '.' + simpleName;
+        reflections.put(qualifiedName, "\"allDeclaredConstructors\": true");
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try (Writer writer = file.openWriter()) {
+                if (!packageName.isEmpty())
+                    writer.write("package " + packageName + ";\n\n");
+                writer.write("/**\n * 由 CommandProcessor 根据 {@code " + typeName + "} 生成，不要修改\n */\n");
+                writer.write("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+                writer.write("public final class " + simpleName + " implements " +
+                        CommandIndex.class.getCanonicalName() + " {\n");
+                writer.write("    private static final String[] SIGNATURES = {\n" + signatures + "    };\n\n");
+                writer.write("    @Override\n    public String[] signatures() {\n");
+                writer.write("        return SIGNATURES.clone();\n    }\n\n");
+                writer.write("    @Override\n    public Object call(int id, Object obj, Object[] args) throws Throwable {\n");
+                writer.write("        switch (id) {\n" + cases);
+                writer.write("            default:\n");
+                writer.write("                throw new IllegalArgumentException(\"未知的方法序号: \" + id);\n");
+                writer.write("        }\n    }\n\n}\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "生成命令调用代码失败: " + e.getMessage(), type);
+        }
+    }
+
+    private void writeFactoryIndex() {
+        if (packages.isEmpty())
+            return;
+        StringBuilder sb = new StringBuilder("# 由 CommandProcessor 生成，package 开头的行是编译过的包，其余是工厂类\n");
+        for (String pack : packages)
+            sb.append("package ").append(pack).append('\n');
+        for (String factory : factories)
+            sb.append(factory).append('\n');
+        writeResource(FACTORY_INDEX, sb.toString());
+    }
+
+    private void writeReflectConfig() {
+        if (reflections.isEmpty())
+            return;
+        StringBuilder sb = new StringBuilder("[\n");
+        Iterator<Map.Entry<String, String>> iterator = reflections.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, String> entry = iterator.next();
+            sb.append("  { \"name\": \"").append(entry.getKey()).append("\", ").append(entry.getValue()).append(" }");
+            sb.append(iterator.hasNext() ? ",\n" : "\n");
+        }
+        writeResource(REFLECT_CONFIG, sb.append("]\n").toString());
+    }
+
+    private void writeResource(String name, String content) {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", name);
+            try (Writer writer = file.openWriter()) {
+                writer.write(content);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "写入 " + name + " 失败: " + e.getMessage());
+        }
+    }
+
+    // 生成的类和工厂类在同一个包中，类和它的外部类都不能是私有的
+    private boolean isAccessible(TypeElement type) {
+        Element current = type;
+        while (current instanceof TypeElement) {
+            if (current.getModifiers().contains(Modifier.PRIVATE))
+                return false;
+            current = current.getEnclosingElement();
+        }
+        return true;
+    }
+
+    // 参数类型在生成的类中可以访问: 公开的类，或者同一个包中的非私有类
+    private boolean isAccessible(List<? extends VariableElement> params, String packageName) {
+        for (VariableElement param : params) {
+            TypeMirror type = processingEnv.getTypeUtils().erasure(param.asType());
+            while (type.getKind() == TypeKind.ARRAY)
+                type = ((ArrayType) type).getComponentType();
+            if (type.getKind() != TypeKind.DECLARED)
+                continue;
+            TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+            boolean samePackage = packageOf(element).getQualifiedName().contentEquals(packageName);
+            Element current = element;
+            while (current instanceof TypeElement) {
+                Set<Modifier> modifiers = current.getModifiers();
+                if (modifiers.contains(Modifier.PRIVATE) || (!samePackage && !modifiers.contains(Modifier.PUBLIC)))
+                    return false;
+                current = current.getEnclosingElement();
+            }
+        }
+        return true;
+    }
+
+    // 擦除后的规范名称，和 Class.getCanonicalName 一致
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind() == TypeKind.ARRAY)
+            return typeName(((ArrayType) erased).getComponentType()) + "[]";
+        if (erased.getKind() == TypeKind.DECLARED)
+            return ((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().toString();
+        return erased.getKind().name().toLowerCase(Locale.ROOT);
+    }
+
+    private PackageElement packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+}
@@ -4,73 +4,208 @@ import xyz.scootaloo.console.app.anno.mark.Public;
 import xyz.scootaloo.console.app.client.out.CPrinter;
 import xyz.scootaloo.console.app.client.Console;
 import xyz.scootaloo.console.app.common.ResourceManager;
+import xyz.scootaloo.console.app.config.ConsoleConfig;
 import xyz.scootaloo.console.app.parser.InvokeInfo;
 import xyz.scootaloo.console.app.util.StringUtils;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 /**
  * 后台任务管理器
+ * <pre>
+ * 后台任务由一个带优先级的线程池执行:
+ *      线程数由配置 backstagePoolSize 决定;
+ *      每个用户同时存在(排队中和执行中)的任务数量不能超过配置 backstageUserQuota;
+ *      提交任务时可以指定优先级和超时时间，格式为 {@code 任务名:优先级:超时毫秒数}，
+ *      优先级数值越小越先执行，默认为5，超时时间为0表示不限制;
+ *      任务可以被取消，超时的任务也会被取消(中断执行任务的线程)。
+ * </pre>
+ * <p>每个任务有自己的输出缓冲，任务执行期间通过 {@link #getPrinter()} 获取到的就是这个任务的输出器。</p>
  *
  * @author flutterdash@qq.com
  * @since 2021/2/5 21:09
  */
-@Public("多用户环境下会产生并发问题，不推荐在多线程/多用户环境下使用")
+@Public("多用户环境下可以使用，每个用户的任务列表由用户自己的资源对象保存")
 public final class BackstageTaskManager {
-    /** 线程池 Size : 3 */
-    private static final ExecutorService threadPool = Executors.newFixedThreadPool(3);
     private static final Console console = ResourceManager.getConsole();
+    // 默认的优先级，和回调的默认顺序保持一致
+    private static final int DFT_PRIORITY = 5;
+
+    // 当前线程正在执行的任务的输出器
+    private static final ThreadLocal<PrinterImpl> LOCAL_OUTPUT = new ThreadLocal<>();
+    // 每个用户占用的任务数量，数量为0时移除
+    private static final Map<String, Integer> USER_TASKS = new ConcurrentHashMap<>();
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final Metrics METRICS = new Metrics();
+
+    private static volatile int poolSize = 3;
+    private static volatile int userQuota = 16;
+    private static volatile ThreadPoolExecutor threadPool;
+    private static volatile ScheduledExecutorService timer;
+
+    private BackstageTaskManager() {
+    }
 
-    private static PrinterImpl curOutput = PrinterImpl.DFT_PRINTER;
+    /**
+     * 根据配置设置线程池大小和用户配额，需要在提交第一个任务之前调用
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        if (config.getBackstagePoolSize() > 0)
+            poolSize = config.getBackstagePoolSize();
+        userQuota = Math.max(config.getBackstageUserQuota(), 0);
+        ThreadPoolExecutor pool = threadPool;
+        if (pool != null && pool.getMaximumPoolSize() != poolSize) {
+            if (poolSize > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(poolSize);
+                pool.setCorePoolSize(poolSize);
+            } else {
+                pool.setCorePoolSize(poolSize);
+                pool.setMaximumPoolSize(poolSize);
+            }
+        }
+    }
 
     /**
-     * 提交一个任务到后台
+     * 提交一个任务到后台，使用默认的优先级，不限制执行时间
      * @param taskName 给后台任务一个名称，用于查找
      * @param callable 后台任务要运行的内容
      * @param taskList 任务列表
      */
     public static void submit(String taskName, Callable<InvokeInfo> callable,
                               Set<BackstageTaskInfo> taskList) {
-        bind(threadPool.submit(callable), taskName, taskList);
+        submit(taskName, "", callable, taskList);
+    }
+
+    /**
+     * 提交一个任务到后台
+     * @param taskSpec 任务描述，格式为 {@code 任务名[:优先级[:超时毫秒数]]}
+     * @param userKey 提交任务的用户，用于计算配额
+     * @param callable 后台任务要运行的内容
+     * @param taskList 此用户的任务列表
+     * @return 提交成功时返回任务信息，超过配额或者任务描述有误时返回null
+     */
+    public static BackstageTaskInfo submit(String taskSpec, String userKey, Callable<InvokeInfo> callable,
+                                           Set<BackstageTaskInfo> taskList) {
+        TaskSpec spec = TaskSpec.parse(taskSpec);
+        if (spec == null) {
+            console.println("任务描述格式错误: `" + taskSpec + "`, 正确的格式为 任务名:优先级:超时毫秒数");
+            return null;
+        }
+        if (!tryAcquire(userKey)) {
+            METRICS.rejected.increment();
+            console.println("后台任务数量已经达到上限: " + userQuota + ", 任务`" + spec.name + "`没有被提交");
+            return null;
+        }
+
+        PrinterImpl output = new PrinterImpl(new StringBuffer());
+        TaskFuture task = new TaskFuture(callable, spec, userKey, output);
+        BackstageTaskInfo taskInfo = new BackstageTaskInfo(spec.name, task, output);
+        synchronized (taskList) {
+            taskList.remove(taskInfo);
+            taskList.add(taskInfo);
+        }
+        METRICS.submitted.increment();
+        pool().execute(task);
+        return taskInfo;
     }
 
-    // 防重排序
-    private static synchronized void bind(Future<InvokeInfo> future, String taskName,
-                                          Set<BackstageTaskInfo> taskList) {
-        PrinterImpl newOutPrinter = new PrinterImpl(new StringBuffer());
-        curOutput = newOutPrinter;
-        BackstageTaskInfo needToAdd = new BackstageTaskInfo(taskName, future, newOutPrinter);
-        taskList.remove(needToAdd);
-        taskList.add(needToAdd);
+    // 检查配额和增加计数在同一次 compute 中完成，不会和 release 移除计数互相干扰
+    private static boolean tryAcquire(String userKey) {
+        boolean[] acquired = new boolean[1];
+        USER_TASKS.compute(userKey, (key, current) -> {
+            int count = current == null ? 0 : current;
+            if (userQuota > 0 && count >= userQuota)
+                return current;
+            acquired[0] = true;
+            return count + 1;
+        });
+        return acquired[0];
+    }
+
+    private static void release(String userKey) {
+        USER_TASKS.computeIfPresent(userKey, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private static ThreadPoolExecutor pool() {
+        ThreadPoolExecutor pool = threadPool;
+        if (pool == null) {
+            synchronized (BackstageTaskManager.class) {
+                if (threadPool == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    threadPool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                            new PriorityBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "console-backstage-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    threadPool.allowCoreThreadTimeOut(true);
+                    timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "console-backstage-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                pool = threadPool;
+            }
+        }
+        return pool;
     }
 
     //------------------------------Functions----------------------------------
 
     /**
      * 获取一个输出器，用于使用print或者println这些功能
+     * <p>在后台任务中调用时，返回这个任务自己的输出器; 否则返回直接输出到控制台的输出器。</p>
      * @return 输出器
      */
     public static CPrinter getPrinter() {
-        if (curOutput != null) {
-            CPrinter printer = curOutput;
-            curOutput = null;
+        PrinterImpl printer = LOCAL_OUTPUT.get();
+        if (printer != null)
             return printer;
-        }
-        PrinterImpl.DFT_PRINTER.reset();
         return PrinterImpl.DFT_PRINTER;
     }
 
+    /**
+     * 取消一个任务，排队中的任务不会再被执行，执行中的任务所在的线程会被中断
+     * @param taskList 任务列表
+     * @param taskName 任务名
+     * @return 是否找到了此任务并成功取消
+     */
+    public static boolean cancel(Set<BackstageTaskInfo> taskList, String taskName) {
+        BackstageTaskInfo taskInfo = find(taskList, taskName);
+        if (taskInfo == null) {
+            console.println("没有找到这个任务: `" + taskName + "`");
+            return false;
+        }
+        return cancel(taskInfo);
+    }
+
+    private static boolean cancel(BackstageTaskInfo taskInfo) {
+        if (!(taskInfo.future instanceof TaskFuture))
+            return taskInfo.future.cancel(true);
+        TaskFuture task = (TaskFuture) taskInfo.future;
+        boolean cancelled = task.cancel(true);
+        if (cancelled && threadPool != null)
+            threadPool.remove(task);
+        return cancelled;
+    }
+
     // isDone 清除已完成的任务或者清除已完成的任务
     public static void clearHistory(Set<BackstageTaskInfo> taskList, boolean isDone) {
-        if (isDone) {
-            taskList.clear();
-            return;
+        synchronized (taskList) {
+            if (isDone) {
+                taskList.clear();
+                return;
+            }
+            taskList.removeIf(info -> info.future.isDone());
         }
-        taskList.removeIf(info -> info.future.isDone());
     }
 
     /**
@@ -79,13 +214,7 @@ public final class BackstageTaskManager {
      * @param size 最后多少条
      */
     public static void showLogs(Set<BackstageTaskInfo> taskList, String taskName, int size) {
-        BackstageTaskInfo taskInfo = null;
-        for (BackstageTaskInfo info : taskList) {
-            if (info.taskName.equalsIgnoreCase(taskName)) {
-                taskInfo = info;
-                break;
-            }
-        }
+        BackstageTaskInfo taskInfo = find(taskList, taskName);
         if (taskInfo == null) {
             console.println("没有找到这个任务: `" + taskName + "`");
             return;
@@ -93,8 +222,246 @@ public final class BackstageTaskManager {
         taskInfo.output.showLog(size);
     }
 
+    private static BackstageTaskInfo find(Set<BackstageTaskInfo> taskList, String taskName) {
+        synchronized (taskList) {
+            for (BackstageTaskInfo info : taskList) {
+                if (info.taskName.equalsIgnoreCase(taskName))
+                    return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 调度器当前的统计信息
+     */
+    public static Metrics getMetrics() {
+        return METRICS;
+    }
+
     //---------------------------------POJO-------------------------------------
 
+    /**
+     * 任务描述 {@code 任务名:优先级:超时毫秒数}
+     */
+    private static final class TaskSpec {
+        final String name;
+        final int priority;
+        final long timeout;
+
+        private TaskSpec(String name, int priority, long timeout) {
+            this.name = name;
+            this.priority = priority;
+            this.timeout = timeout;
+        }
+
+        // 格式错误时返回null
+        static TaskSpec parse(String spec) {
+            String[] segments = spec.split(":", -1);
+            if (segments.length > 3 || segments[0].isEmpty())
+                return null;
+            try {
+                int priority = segments.length > 1 && !segments[1].isEmpty() ?
+                        Integer.parseInt(segments[1]) : DFT_PRIORITY;
+                long timeout = segments.length > 2 && !segments[2].isEmpty() ?
+                        Long.parseLong(segments[2]) : 0;
+                return new TaskSpec(segments[0], priority, Math.max(timeout, 0));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 线程池中的任务
+     * <p>按照优先级排序，优先级相同时先提交的先执行; 记录排队时间和执行时间，开始执行时绑定此任务的输出器。</p>
+     * <p>超时或者取消后，不响应中断的任务仍然占用线程，所以配额在线程真正退出任务时才归还，
+     * 只有还没有开始执行就被取消的任务在 {@link #done()} 中归还。</p>
+     */
+    private static final class TaskFuture extends FutureTask<InvokeInfo> implements Comparable<TaskFuture> {
+        private final TaskSpec spec;
+        private final long seq;
+        private final String userKey;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final PrinterImpl output;
+        private final long submitAt;
+        private volatile long startAt;
+        private volatile boolean timedOut;
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        private TaskFuture(Callable<InvokeInfo> callable, TaskSpec spec, String userKey,
+                           PrinterImpl output) {
+            super(callable);
+            this.spec = spec;
+            this.seq = SEQUENCE.incrementAndGet();
+            this.userKey = userKey;
+            this.output = output;
+            this.submitAt = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            if (isDone())
+                return;
+            this.startAt = System.nanoTime();
+            METRICS.onStart(startAt - submitAt);
+            if (spec.timeout > 0)
+                this.timeoutFuture = timer.schedule(this::onTimeout, spec.timeout, TimeUnit.MILLISECONDS);
+            LOCAL_OUTPUT.set(output);
+            try {
+                super.run();
+            } finally {
+                LOCAL_OUTPUT.remove();
+                // 清除可能残留的中断标记，避免影响线程池中的下一个任务
+                Thread.interrupted();
+                METRICS.onFinish(System.nanoTime() - startAt);
+                releaseQuota();
+            }
+        }
+
+        // 归还配额，开始执行前被取消时，done 和 run 都可能调用
+        private void releaseQuota() {
+            if (released.compareAndSet(false, true))
+                release(userKey);
+        }
+
+        private void onTimeout() {
+            if (!isDone()) {
+                this.timedOut = true;
+                cancel(true);
+            }
+        }
+
+        @Override
+        protected void done() {
+            // 已经开始执行的任务由 run 归还配额
+            if (startAt == 0)
+                releaseQuota();
+            ScheduledFuture<?> timeout = this.timeoutFuture;
+            if (timeout != null)
+                timeout.cancel(false);
+            output.done();
+            if (timedOut)
+                METRICS.timedOut.increment();
+            else if (isCancelled())
+                METRICS.cancelled.increment();
+            else
+                METRICS.completed.increment();
+        }
+
+        private String state() {
+            if (timedOut)
+                return "已超时";
+            if (isCancelled())
+                return "已取消";
+            if (isDone())
+                return "已完成";
+            return startAt == 0 ? "排队中" : "进行中";
+        }
+
+        @Override
+        public int compareTo(TaskFuture other) {
+            if (this.spec.priority != other.spec.priority)
+                return Integer.compare(this.spec.priority, other.spec.priority);
+            return Long.compare(this.seq, other.seq);
+        }
+    }
+
+    /**
+     * 调度器的统计信息
+     */
+    public static final class Metrics {
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder totalWait = new LongAdder();
+        private final LongAdder finished = new LongAdder();
+        private final LongAdder totalRun = new LongAdder();
+        private final AtomicLong maxWait = new AtomicLong();
+        private final AtomicLong maxRun = new AtomicLong();
+
+        private Metrics() {
+        }
+
+        private void onStart(long waitNanos) {
+            started.increment();
+            totalWait.add(waitNanos);
+            maxWait.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        private void onFinish(long runNanos) {
+            finished.increment();
+            totalRun.add(runNanos);
+            maxRun.accumulateAndGet(runNanos, Math::max);
+        }
+
+        // 排队中的任务数
+        public int getQueueDepth() {
+            ThreadPoolExecutor pool = threadPool;
+            return pool == null ? 0 : pool.getQueue().size();
+        }
+
+        // 正在执行的任务数
+        public int getActiveCount() {
+            ThreadPoolExecutor pool = threadPool;
+            return pool == null ? 0 : pool.getActiveCount();
+        }
+
+        public long getSubmitted() {
+            return submitted.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public long getCompleted() {
+            return completed.sum();
+        }
+
+        public long getCancelled() {
+            return cancelled.sum();
+        }
+
+        public long getTimedOut() {
+            return timedOut.sum();
+        }
+
+        // 平均排队时间，毫秒
+        public double getAvgWaitMillis() {
+            long count = started.sum();
+            return count == 0 ? 0 : totalWait.sum() / 1e6 / count;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWait.get() / 1e6;
+        }
+
+        // 平均执行时间，毫秒
+        public double getAvgRunMillis() {
+            long count = finished.sum();
+            return count == 0 ? 0 : totalRun.sum() / 1e6 / count;
+        }
+
+        public double getMaxRunMillis() {
+            return maxRun.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("线程数: %d, 执行中: %d, 排队中: %d\n" +
+                            "已提交: %d, 已完成: %d, 已取消: %d, 已超时: %d, 被拒绝: %d\n" +
+                            "排队时间(ms) 平均: %.2f, 最大: %.2f\n" +
+                            "执行时间(ms) 平均: %.2f, 最大: %.2f",
+                    poolSize, getActiveCount(), getQueueDepth(),
+                    getSubmitted(), getCompleted(), getCancelled(), getTimedOut(), getRejected(),
+                    getAvgWaitMillis(), getMaxWaitMillis(), getAvgRunMillis(), getMaxRunMillis());
+        }
+    }
+
     // 存放后台任务的一些信息
     public static class BackstageTaskInfo {
         final String taskName;
@@ -112,17 +479,31 @@ public final class BackstageTaskManager {
             this.timestamp = System.currentTimeMillis();
         }
 
+        /**
+         * @return 任务名
+         */
+        public String getTaskName() {
+            return taskName;
+        }
+
+        /**
+         * @return 任务的执行结果
+         */
+        public Future<InvokeInfo> getFuture() {
+            return future;
+        }
+
         // 输出本任务的执行情况
         public void showTask(StringBuilder stringBuilder) {
             stringBuilder.setLength(0);
             boolean isDone = future.isDone();
-            if (isDone)
-                output.done();
+            String state = future instanceof TaskFuture ? ((TaskFuture) future).state() :
+                    (isDone ? "已完成" : "进行中");
             stringBuilder.append('[').append(taskName).append(']').append(" \t")
-                    .append(isDone ? "已完成" : "进行中").append(" ").append("提交于:");
+                    .append(state).append(" ").append("提交于:");
             StringUtils.getHourMinuteSecond(timestamp, stringBuilder).append(" ");
             // 已完成
-            if (isDone) {
+            if (isDone && !future.isCancelled()) {
                 final boolean[] hasEx = {false};
                 InvokeInfo info = InvokeProxy.fun(this::getInvokeInfo)
                                     .addHandle((ex) -> {
@@ -137,7 +518,7 @@ public final class BackstageTaskManager {
                         stringBuilder.append("- error, msg:").append(info.getExMsg());
                     }
                 }
-            } else {
+            } else if (!isDone) {
                 stringBuilder.append(" 已进行:");
                 StringUtils.getIntervalBySS_MS(System.currentTimeMillis() - timestamp, stringBuilder);
             }
@@ -167,15 +548,16 @@ public final class BackstageTaskManager {
 
     }
 
-    // 打印器默认实现
+    // 打印器默认实现，缓冲中最多保留 MAX_LINES 行，超出时丢弃最早的内容
     private static class PrinterImpl extends CPrinter {
         // 默认实现为直接输出在控制台上
         static final PrinterImpl DFT_PRINTER = new PrinterImpl(new StringBuffer(), true);
+        static final int MAX_LINES = 1024;
         static Consumer<String> outputMode = console::println;
 
         final StringBuffer sb;
         final LinkedList<String> lines;
-        boolean immediately;
+        volatile boolean immediately;
 
         public PrinterImpl(StringBuffer sb) {
             this(sb, false);
@@ -195,42 +577,42 @@ public final class BackstageTaskManager {
 
         // 显示最后 n 条输出
         public void showLog(int n) {
-            if (n < 0) {
-                lines.forEach(outputMode);
-            } else {
-                int len = Math.min(n, lines.size());
-                LinkedList<String> tmp = new LinkedList<>();
-                ListIterator<String> listIterator = lines.listIterator(lines.size());
-                while (len > 0 && listIterator.hasPrevious()) {
-                    String pre = listIterator.previous();
-                    tmp.addFirst(pre);
-                    len--;
-                }
-                tmp.forEach(outputMode);
+            List<String> tmp;
+            synchronized (this) {
+                if (n < 0 || n >= lines.size())
+                    tmp = new ArrayList<>(lines);
+                else
+                    tmp = new ArrayList<>(lines.subList(lines.size() - n, lines.size()));
             }
+            tmp.forEach(outputMode);
         }
 
         @Override
         public void refresh() {
-            done();
-            this.lines.forEach(this::simplePrint);
+            List<String> tmp;
+            synchronized (this) {
+                done();
+                tmp = new ArrayList<>(lines);
+            }
+            tmp.forEach(this::simplePrint);
         }
 
         /**
          * 当任务执行完成，将缓存中剩余的内容清除
          */
-        private void done() {
+        private synchronized void done() {
             if (immediately)
                 return;
             if (sb.length() > 0) {
-                lines.add(sb.toString());
+                addLine(sb.toString());
                 sb.setLength(0);
             }
         }
 
-        protected void reset() {
-            sb.setLength(0);
-            lines.clear();
+        private void addLine(String line) {
+            if (lines.size() >= MAX_LINES)
+                lines.removeFirst();
+            lines.add(line);
         }
 
         @Override
@@ -239,7 +621,9 @@ public final class BackstageTaskManager {
                 console.print(o);
                 return;
             }
-            sb.append(o.toString());
+            synchronized (this) {
+                sb.append(o);
+            }
         }
 
         @Override
@@ -248,19 +632,23 @@ public final class BackstageTaskManager {
                 console.println(o);
                 return;
             }
-            if (sb.length() > 0) {
-                lines.add(sb.toString());
-                sb.setLength(0);
+            synchronized (this) {
+                if (sb.length() > 0) {
+                    addLine(sb.toString());
+                    sb.setLength(0);
+                }
+                addLine(String.valueOf(o));
             }
-            lines.add(o.toString());
         }
 
         @Override
         public void err(Object o) {
             if (immediately) {
                 console.err(o);
-            } else {
-                lines.add(o.toString());
+                return;
+            }
+            synchronized (this) {
+                addLine(String.valueOf(o));
             }
         }
 
@@ -0,0 +1,556 @@
+package xyz.scootaloo.console.app.support;
+
+import xyz.scootaloo.console.app.client.Console;
+import xyz.scootaloo.console.app.common.ResourceManager;
+import xyz.scootaloo.console.app.config.ConsoleConfig;
+import xyz.scootaloo.console.app.error.ConsoleAppRuntimeException;
+import xyz.scootaloo.console.app.error.ErrorCode;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 命令执行耗时统计
+ * <p>每个命令按照执行阶段分别记录耗时，另外记录成功、失败的次数(按照错误代码分类)和吞吐量。</p>
+ * <pre>
+ * 阶段:
+ *      FILTER:   执行过滤链
+ *      PARSE:    将命令行参数解析成方法参数
+ *      INVOKE:   调用命令方法
+ *      LISTENER: 发布命令解析前和解析完成的事件
+ *      TOTAL:    从解析开始到事件发布完毕，不包含过滤链
+ * 耗时直方图:
+ *      以纳秒为单位，按照数量级分段，每段再平均分成16个桶，相对误差不超过 1/16;
+ *      记录时只对固定的数组做原子操作，不创建任何对象，读取时才计算百分位数。
+ * </pre>
+ * <p>由配置 metricsEnabled 决定是否统计，使用 perf 命令查看；配置了 metricsFile 时定时追加到文件中，
+ * 也可以通过 {@link #addExporter(Exporter, long, TimeUnit)} 注册自己的导出方式。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:50
+ */
+public final class CommandMetrics {
+    private static final Console console = ResourceManager.getConsole();
+    private static final Map<String, CommandStats> STATS = new ConcurrentHashMap<>();
+    private static final Map<Exporter, ScheduledFuture<?>> EXPORTERS = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = true;
+    private static volatile Exporter fileExporter;
+    private static volatile ScheduledExecutorService scheduler;
+
+    private CommandMetrics() {
+    }
+
+    /**
+     * 根据配置开启或关闭统计，配置了 metricsFile 时定时导出到这个文件
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        enabled = config.isMetricsEnabled();
+        Exporter previous = fileExporter;
+        if (previous != null)
+            removeExporter(previous);
+        fileExporter = null;
+        String file = config.getMetricsFile();
+        if (enabled && file != null && !file.trim().isEmpty()) {
+            Exporter exporter = new FileExporter(Paths.get(file.trim()));
+            addExporter(exporter, config.getMetricsInterval(), TimeUnit.SECONDS);
+            fileExporter = exporter;
+        }
+    }
+
+    /**
+     * @return 是否正在统计
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean flag) {
+        enabled = flag;
+    }
+
+    /**
+     * 获取某个命令的统计，不存在时创建；命令执行器持有这个对象，所以执行命令时不需要查表
+     * @param cmdName 命令名
+     * @return 统计对象
+     */
+    public static CommandStats of(String cmdName) {
+        return STATS.computeIfAbsent(cmdName, CommandStats::new);
+    }
+
+    /**
+     * @return 所有命令的统计快照，按照命令名排序，没有执行过的命令不包含在内
+     */
+    public static List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (CommandStats stats : new TreeMap<>(STATS).values()) {
+            Snapshot snapshot = stats.snapshot();
+            if (snapshot.getCount() > 0)
+                snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+
+    /**
+     * @param cmdName 命令名
+     * @return 某个命令的统计快照
+     */
+    public static Optional<Snapshot> snapshot(String cmdName) {
+        CommandStats stats = STATS.get(cmdName);
+        return stats == null ? Optional.empty() : Optional.of(stats.snapshot());
+    }
+
+    /**
+     * 清空所有命令的统计，命令执行器持有的统计对象仍然有效
+     */
+    public static void reset() {
+        STATS.values().forEach(CommandStats::reset);
+    }
+
+    /**
+     * 注册一个导出器，每隔一段时间把所有命令的统计快照交给它，应用退出时再导出一次
+     * @param exporter 导出器
+     * @param period 导出间隔
+     * @param unit 时间单位
+     */
+    public static void addExporter(Exporter exporter, long period, TimeUnit unit) {
+        Objects.requireNonNull(exporter);
+        ScheduledFuture<?> future = scheduler().scheduleAtFixedRate(() -> export(exporter),
+                period, period, unit);
+        ScheduledFuture<?> old = EXPORTERS.put(exporter, future);
+        if (old != null)
+            old.cancel(false);
+    }
+
+    /**
+     * 移除一个导出器
+     * @param exporter 导出器
+     * @return 是否存在这个导出器
+     */
+    public static boolean removeExporter(Exporter exporter) {
+        ScheduledFuture<?> future = EXPORTERS.remove(exporter);
+        if (future == null)
+            return false;
+        future.cancel(false);
+        return true;
+    }
+
+    /**
+     * 立即让所有导出器导出一次
+     */
+    public static void exportNow() {
+        EXPORTERS.keySet().forEach(CommandMetrics::export);
+    }
+
+    private static void export(Exporter exporter) {
+        try {
+            List<Snapshot> snapshots = snapshot();
+            synchronized (exporter) {
+                exporter.export(snapshots);
+            }
+        } catch (Exception e) {
+            console.err("导出执行耗时统计失败: " + e.getMessage());
+        }
+    }
+
+    private static ScheduledExecutorService scheduler() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor == null) {
+            synchronized (CommandMetrics.class) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "console-metrics");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    Runtime.getRuntime().addShutdownHook(new Thread(CommandMetrics::exportNow,
+                            "console-metrics-shutdown"));
+                }
+                executor = scheduler;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 把纳秒转换成便于阅读的形式
+     * @param nanos 纳秒
+     * @return 例如 {@code 850ns 12.3us 4.56ms 1.20s}
+     */
+    public static String formatNanos(long nanos) {
+        if (nanos < 1000)
+            return nanos + "ns";
+        if (nanos < 1000_000)
+            return String.format("%.1fus", nanos / 1e3);
+        if (nanos < 1000_000_000)
+            return String.format("%.2fms", nanos / 1e6);
+        return String.format("%.2fs", nanos / 1e9);
+    }
+
+    /**
+     * 命令执行的阶段
+     */
+    public enum Phase {
+        FILTER, PARSE, INVOKE, LISTENER, TOTAL
+    }
+
+    /**
+     * 统计导出器
+     */
+    @FunctionalInterface
+    public interface Exporter {
+
+        /**
+         * 在统计线程中调用，同一个导出器不会被并发调用
+         * @param snapshots 所有执行过的命令的统计快照
+         * @throws IOException 导出失败
+         */
+        void export(List<Snapshot> snapshots) throws IOException;
+
+    }
+
+    /**
+     * 单个命令的统计，记录的方法都不会创建对象
+     */
+    public static final class CommandStats {
+        private static final ErrorCode[] CODES = ErrorCode.values();
+
+        private final String name;
+        private final Histogram[] phases = new Histogram[Phase.values().length];
+        private final LongAdder success = new LongAdder();
+        private final LongAdder failure = new LongAdder();
+        private final AtomicLongArray errors = new AtomicLongArray(CODES.length);
+        private volatile long since = System.currentTimeMillis();
+
+        private CommandStats(String name) {
+            this.name = name;
+            for (int i = 0; i<phases.length; i++)
+                phases[i] = new Histogram();
+        }
+
+        /**
+         * 记录某个阶段的耗时
+         * @param phase 阶段
+         * @param nanos 纳秒
+         */
+        public void record(Phase phase, long nanos) {
+            phases[phase.ordinal()].record(nanos);
+        }
+
+        /**
+         * 记录一次命令执行的结果
+         * @param info 调用信息
+         */
+        public void onFinish(InvokeInfo info) {
+            if (info.isSuccess()) {
+                success.increment();
+                return;
+            }
+            failure.increment();
+            ConsoleAppRuntimeException ex = info.getException();
+            ErrorCode code = ex == null || ex.getErrorCode() == null ? ErrorCode.DEFAULT_ERROR : ex.getErrorCode();
+            errors.incrementAndGet(code.ordinal());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private void reset() {
+            for (Histogram histogram : phases)
+                histogram.reset();
+            success.reset();
+            failure.reset();
+            for (int i = 0; i<CODES.length; i++)
+                errors.set(i, 0);
+            since = System.currentTimeMillis();
+        }
+
+        private Snapshot snapshot() {
+            Map<ErrorCode, Long> errorMap = new EnumMap<>(ErrorCode.class);
+            for (int i = 0; i<CODES.length; i++) {
+                long count = errors.get(i);
+                if (count > 0)
+                    errorMap.put(CODES[i], count);
+            }
+            Map<Phase, PhaseSnapshot> phaseMap = new EnumMap<>(Phase.class);
+            for (Phase phase : Phase.values())
+                phaseMap.put(phase, phases[phase.ordinal()].snapshot());
+            return new Snapshot(name, since, success.sum(), failure.sum(), errorMap, phaseMap);
+        }
+    }
+
+    /**
+     * 对数线性的耗时直方图
+     * <p>小于16纳秒的值各占一个桶；之后每个2的幂次区间平均分成16个桶，超过 2^40 纳秒(约18分钟)的值计入最后一个桶。</p>
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            if (nanos < 0)
+                nanos = 0;
+            counts.incrementAndGet(indexOf(nanos));
+            count.increment();
+            sum.add(nanos);
+            long current;
+            while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+                // 其他线程更新了最大值，重新比较
+            }
+        }
+
+        private void reset() {
+            for (int i = 0; i<BUCKETS; i++)
+                counts.set(i, 0);
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_COUNT)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent >= MAX_EXPONENT)
+                return BUCKETS - 1;
+            int shift = exponent - SUB_BITS;
+            int mantissa = (int) (value >>> shift) & (SUB_COUNT - 1);
+            return (shift + 1) * SUB_COUNT + mantissa;
+        }
+
+        // 桶中能表示的最大值
+        static long upperBound(int index) {
+            if (index < SUB_COUNT)
+                return index;
+            int shift = index / SUB_COUNT - 1;
+            long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        /**
+         * @return 当前数据的快照
+         */
+        public PhaseSnapshot snapshot() {
+            long[] copy = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i<BUCKETS; i++) {
+                copy[i] = counts.get(i);
+                total += copy[i];
+            }
+            long maxVal = max.get();
+            long mean = total == 0 ? 0 : sum.sum() / total;
+            return new PhaseSnapshot(total, mean, percentile(copy, total, 0.5, maxVal),
+                    percentile(copy, total, 0.9, maxVal), percentile(copy, total, 0.99, maxVal), maxVal);
+        }
+
+        private static long percentile(long[] counts, long total, double p, long max) {
+            if (total == 0)
+                return 0;
+            long target = Math.max(1, (long) Math.ceil(total * p));
+            long seen = 0;
+            for (int i = 0; i<counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target)
+                    return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+    }
+
+    /**
+     * 某个阶段耗时的快照，单位纳秒
+     */
+    public static final class PhaseSnapshot {
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        private PhaseSnapshot(long count, long mean, long p50, long p90, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count +
+                    " mean=" + formatNanos(mean) +
+                    " p50=" + formatNanos(p50) +
+                    " p90=" + formatNanos(p90) +
+                    " p99=" + formatNanos(p99) +
+                    " max=" + formatNanos(max);
+        }
+    }
+
+    /**
+     * 单个命令的统计快照
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long since;
+        private final long success;
+        private final long failure;
+        private final Map<ErrorCode, Long> errors;
+        private final Map<Phase, PhaseSnapshot> phases;
+
+        private Snapshot(String name, long since, long success, long failure,
+                         Map<ErrorCode, Long> errors, Map<Phase, PhaseSnapshot> phases) {
+            this.name = name;
+            this.since = since;
+            this.success = success;
+            this.failure = failure;
+            this.errors = Collections.unmodifiableMap(errors);
+            this.phases = Collections.unmodifiableMap(phases);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // 开始统计的时间
+        public long getSince() {
+            return since;
+        }
+
+        public long getCount() {
+            return success + failure;
+        }
+
+        public long getSuccess() {
+            return success;
+        }
+
+        public long getFailure() {
+            return failure;
+        }
+
+        public Map<ErrorCode, Long> getErrors() {
+            return errors;
+        }
+
+        public PhaseSnapshot getPhase(Phase phase) {
+            return phases.get(phase);
+        }
+
+        // 从开始统计到现在的平均吞吐量，单位 次/秒
+        public double getThroughput() {
+            long elapsed = Math.max(System.currentTimeMillis() - since, 1);
+            return getCount() * 1000.0 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                    "name='" + name + '\'' +
+                    ", success=" + success +
+                    ", failure=" + failure +
+                    ", errors=" + errors.entrySet().stream()
+                            .map(entry -> entry.getKey().name() + "=" + entry.getValue())
+                            .collect(Collectors.toList()) +
+                    ", total=" + phases.get(Phase.TOTAL) +
+                    '}';
+        }
+    }
+
+    /**
+     * 把统计快照以文本的形式追加到文件中，每个命令一行
+     * <pre>{@code 2026-10-17 20:50:00 add count=12 success=12 failure=0 rate=0.20/s TOTAL[...] PARSE[...] ...}</pre>
+     */
+    public static final class FileExporter implements Exporter {
+        private final Path file;
+
+        public FileExporter(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void export(List<Snapshot> snapshots) throws IOException {
+            if (snapshots.isEmpty())
+                return;
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Snapshot snapshot : snapshots) {
+                    writer.write(time);
+                    writer.write(' ');
+                    writer.write(snapshot.getName());
+                    writer.write(" count=" + snapshot.getCount() +
+                            " success=" + snapshot.getSuccess() +
+                            " failure=" + snapshot.getFailure() +
+                            String.format(" rate=%.2f/s", snapshot.getThroughput()));
+                    for (Phase phase : Phase.values()) {
+                        PhaseSnapshot ps = snapshot.getPhase(phase);
+                        if (ps.getCount() > 0)
+                            writer.write(" " + phase + "[" + ps + "]");
+                    }
+                    for (Map.Entry<ErrorCode, Long> error : snapshot.getErrors().entrySet())
+                        writer.write(" " + error.getKey().name() + "=" + error.getValue());
+                    writer.newLine();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "FileExporter{" +
+                    "file=" + file +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,601 @@
+package xyz.scootaloo.console.app.support;
+
+import xyz.scootaloo.console.app.client.Console;
+import xyz.scootaloo.console.app.common.ResourceManager;
+import xyz.scootaloo.console.app.config.ConsoleConfig;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 历史记录日志
+ * <p>把每个用户的命令调用信息追加到磁盘上，应用重启或者用户资源被销毁之后，仍然可以查询以前的调用记录。</p>
+ * <pre>
+ * 存储结构:
+ *      每个用户一个目录，目录中是按照序号命名的段文件，例如 {@code 0000000000000001.log};
+ *      只向最新的段文件追加记录，段文件超过配置 journalSegmentSize 后创建新的段文件;
+ *      查询时把段文件以只读的方式映射到内存，从最新的记录开始向前扫描，不需要读取整个文件。
+ * 记录格式:
+ *      int 长度, int 校验和, 记录体, int 长度(和开头的长度相同，用于反向扫描)
+ * 记录体:
+ *      long 调用时间, long 执行用时, byte 是否成功, str 命令名, str 参数, str 返回值, str 异常信息
+ *      str 为 int 长度(null时为-1) 加上 UTF-8 编码的内容
+ * </pre>
+ * <p>进程异常退出时最后一条记录可能只写入了一部分，下次打开这个用户的日志时会截断不完整的记录。</p>
+ * <p>返回值的保存方式由配置 journalRtnMode 决定，见 {@link RtnMode}。</p>
+ * <p>用户的会话被回收时通过 {@link #release(String)} 释放写入器，已经写入的记录仍然可以查询。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 17:50
+ */
+public final class HistoryJournal {
+    private static final Console console = ResourceManager.getConsole();
+    private static final String SEGMENT_SUFFIX = ".log";
+    // 同时打开的文件数量上限，超过后关闭最久没有写入的用户的文件
+    private static final int MAX_OPEN_WRITERS = 64;
+    // 返回值字符串保留的最大长度
+    private static final int MAX_RTN_LENGTH = 1024;
+    // 长度和校验和，以及末尾的长度
+    private static final int HEAD_SIZE = 8;
+    private static final int TAIL_SIZE = 4;
+    // 记录体中固定长度的部分
+    private static final int FIXED_BODY_SIZE = 17;
+
+    private static volatile HistoryJournal current;
+    private static volatile boolean hookRegistered;
+
+    private final Path dir;
+    private final long segmentSize;
+    private final RtnMode rtnMode;
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+    // 持有打开的文件的写入器，按照访问顺序排列
+    private final LinkedHashMap<String, Writer> openWriters = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile boolean closed;
+
+    private HistoryJournal(Path dir, long segmentSize, RtnMode rtnMode) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.rtnMode = rtnMode == null ? RtnMode.STRING : rtnMode;
+    }
+
+    /**
+     * 根据配置打开历史记录日志，配置 journalDir 为空时关闭日志功能
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        String journalDir = config.getJournalDir();
+        HistoryJournal journal = null;
+        if (journalDir != null && !journalDir.trim().isEmpty()) {
+            try {
+                journal = open(Paths.get(journalDir.trim()), config.getJournalSegmentSize(),
+                        config.getJournalRtnMode());
+            } catch (UncheckedIOException e) {
+                console.err("无法打开历史记录日志 `" + journalDir + "`: " + e.getMessage());
+            }
+        }
+        HistoryJournal previous = current;
+        current = journal;
+        if (previous != null && previous != journal)
+            previous.close();
+        if (journal != null && !hookRegistered) {
+            hookRegistered = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> current().ifPresent(HistoryJournal::close)));
+        }
+    }
+
+    /**
+     * @return 当前启用的历史记录日志，没有启用时返回空
+     */
+    public static Optional<HistoryJournal> current() {
+        return Optional.ofNullable(current);
+    }
+
+    /**
+     * 打开一个历史记录日志，目录不存在时会自动创建
+     * @param dir 日志目录
+     * @param segmentSize 段文件的大小上限
+     * @param rtnMode 返回值的保存方式
+     * @return 历史记录日志
+     */
+    public static HistoryJournal open(Path dir, long segmentSize, RtnMode rtnMode) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // 段文件需要能够被完整地映射到内存中
+        long size = Math.min(Math.max(segmentSize, 1024), Integer.MAX_VALUE);
+        return new HistoryJournal(dir, size, rtnMode);
+    }
+
+    //---------------------------------------写入--------------------------------------------
+
+    /**
+     * 追加一条调用记录，写入失败时只输出错误信息，不影响命令的执行
+     * @param userKey 用户标识
+     * @param info 调用信息
+     */
+    public void append(String userKey, InvokeInfo info) {
+        if (closed || info == null)
+            return;
+        try {
+            // 写入器在写入之前被释放时，使用新的写入器
+            while (true) {
+                Writer writer = writers.computeIfAbsent(userKey, key -> new Writer(userDir(key)));
+                touch(userKey, writer);
+                if (writer.append(info))
+                    return;
+                synchronized (openWriters) {
+                    openWriters.remove(userKey, writer);
+                }
+            }
+        } catch (IOException e) {
+            console.err("历史记录写入失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 释放用户的写入器，把已经写入的记录刷新到磁盘并关闭文件; 之后再追加记录时重新打开
+     * @param userKey 用户标识
+     */
+    public void release(String userKey) {
+        Writer writer = writers.remove(userKey);
+        if (writer == null)
+            return;
+        synchronized (openWriters) {
+            openWriters.remove(userKey, writer);
+        }
+        writer.release();
+    }
+
+    // 把写入器放到打开列表的末尾，关闭超出上限的写入器; 关闭文件时不持有列表的锁，避免和写入线程互相等待
+    private void touch(String userKey, Writer writer) {
+        List<Writer> evicted = null;
+        synchronized (openWriters) {
+            openWriters.put(userKey, writer);
+            Iterator<Writer> iterator = openWriters.values().iterator();
+            while (openWriters.size() > MAX_OPEN_WRITERS && iterator.hasNext()) {
+                if (evicted == null)
+                    evicted = new ArrayList<>();
+                evicted.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        if (evicted != null)
+            evicted.forEach(Writer::closeChannel);
+    }
+
+    /**
+     * 把所有已经写入的记录刷新到磁盘
+     */
+    public void flush() {
+        for (Writer writer : writers.values())
+            writer.force();
+    }
+
+    /**
+     * 关闭日志，之后追加的记录会被忽略
+     */
+    public void close() {
+        closed = true;
+        synchronized (openWriters) {
+            openWriters.clear();
+        }
+        for (Writer writer : writers.values()) {
+            writer.force();
+            writer.closeChannel();
+        }
+    }
+
+    /**
+     * @return 持有写入器的用户数量
+     */
+    public int writerCount() {
+        return writers.size();
+    }
+
+    //---------------------------------------查询--------------------------------------------
+
+    /**
+     * 按照时间顺序取出最近的记录
+     * @param userKey 用户标识
+     * @param name 命令名，为null时不按照命令名筛选
+     * @param size 最多取出多少条，小于0时取出全部
+     * @return 记录列表，最早的记录在前; 返回值以字符串的形式保存
+     */
+    public List<InvokeInfo> latest(String userKey, String name, int size) {
+        List<InvokeInfo> found = new ArrayList<>();
+        if (size == 0)
+            return found;
+        byte[] nameBytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+        scanBackward(userKey, nameBytes, info -> {
+            found.add(info);
+            return size < 0 || found.size() < size;
+        });
+        Collections.reverse(found);
+        return found;
+    }
+
+    /**
+     * 从最新的记录开始向前遍历某个用户的所有记录
+     * @param userKey 用户标识
+     * @param visitor 访问记录，返回false时停止遍历
+     */
+    public void scan(String userKey, Predicate<InvokeInfo> visitor) {
+        scanBackward(userKey, null, visitor);
+    }
+
+    /**
+     * @param userKey 用户标识
+     * @return 此用户的记录总数
+     */
+    public long count(String userKey) {
+        long[] count = new long[1];
+        forEachSegment(userKey, buffer -> {
+            int end = buffer.limit();
+            while (end > 0) {
+                int start = recordStart(buffer, end);
+                if (start < 0)
+                    break;
+                count[0]++;
+                end = start;
+            }
+            return true;
+        });
+        return count[0];
+    }
+
+    // 从新到旧遍历段文件，再从后向前遍历段文件中的记录，命令名不匹配的记录不解码
+    private void scanBackward(String userKey, byte[] nameBytes, Predicate<InvokeInfo> visitor) {
+        forEachSegment(userKey, buffer -> {
+            int end = buffer.limit();
+            while (end > 0) {
+                int start = recordStart(buffer, end);
+                if (start < 0)
+                    break;
+                int bodyFrom = start + HEAD_SIZE;
+                int bodyTo = end - TAIL_SIZE;
+                end = start;
+                if (nameBytes != null && !nameEquals(buffer, bodyFrom + FIXED_BODY_SIZE, nameBytes))
+                    continue;
+                if (!checksum(buffer, start, bodyFrom, bodyTo))
+                    break;
+                if (!visitor.test(decode(buffer, bodyFrom)))
+                    return false;
+            }
+            return true;
+        });
+    }
+
+    // 遍历段文件，只读映射，从最新的段文件开始; 最新的段文件只读取到已经完整写入的位置
+    private void forEachSegment(String userKey, Predicate<ByteBuffer> action) {
+        Path userDir = userDir(userKey);
+        if (!Files.isDirectory(userDir))
+            return;
+        Writer writer = writers.get(userKey);
+        List<Path> segments = listSegments(userDir);
+        for (int i = segments.size() - 1; i>=0; i--) {
+            Path segment = segments.get(i);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                long limit = writer != null ? writer.committedSize(segment, channel.size()) : channel.size();
+                if (limit <= 0)
+                    continue;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, limit);
+                // 末尾有不完整的记录(还没有被写入器截断)时，只读取完整的部分
+                if (recordStart(buffer, (int) limit) < 0)
+                    buffer.limit(validLength(buffer));
+                if (!action.test(buffer))
+                    return;
+            } catch (NoSuchFileException ignore) {
+                // 段文件在遍历期间被删除
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // 从头扫描，返回最后一条完整记录的结束位置
+    private static int validLength(ByteBuffer buffer) {
+        int size = buffer.limit();
+        int pos = 0;
+        while (pos + HEAD_SIZE <= size) {
+            int length = buffer.getInt(pos);
+            long end = (long) pos + HEAD_SIZE + length + TAIL_SIZE;
+            if (length < FIXED_BODY_SIZE || end > size || buffer.getInt((int) end - TAIL_SIZE) != length
+                    || !checksum(buffer, pos, pos + HEAD_SIZE, (int) end - TAIL_SIZE))
+                break;
+            pos = (int) end;
+        }
+        return pos;
+    }
+
+    // 根据记录末尾的长度找到记录的起始位置，长度不一致时返回-1
+    private static int recordStart(ByteBuffer buffer, int end) {
+        if (end < HEAD_SIZE + TAIL_SIZE + FIXED_BODY_SIZE)
+            return -1;
+        int length = buffer.getInt(end - TAIL_SIZE);
+        int start = end - TAIL_SIZE - length - HEAD_SIZE;
+        if (length < FIXED_BODY_SIZE || start < 0 || buffer.getInt(start) != length)
+            return -1;
+        return start;
+    }
+
+    private static boolean nameEquals(ByteBuffer buffer, int pos, byte[] nameBytes) {
+        if (buffer.getInt(pos) != nameBytes.length)
+            return false;
+        pos += 4;
+        for (int i = 0; i<nameBytes.length; i++) {
+            if (buffer.get(pos + i) != nameBytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean checksum(ByteBuffer buffer, int start, int bodyFrom, int bodyTo) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(bodyTo).position(bodyFrom);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue() == buffer.getInt(start + 4);
+    }
+
+    private static InvokeInfo decode(ByteBuffer buffer, int bodyFrom) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(bodyFrom);
+        long invokeAt = body.getLong();
+        long interval = body.getLong();
+        boolean success = body.get() != 0;
+        String name = readString(body);
+        String args = readString(body);
+        String rtn = readString(body);
+        String exMsg = readString(body);
+        return InvokeInfo.restore(name, args, rtn, invokeAt, interval, success, exMsg);
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //---------------------------------------文件--------------------------------------------
+
+    // 用户标识经过编码后作为目录名，加上前缀避免出现 "." 或者 ".." 这样的目录名
+    private Path userDir(String userKey) {
+        try {
+            return dir.resolve("u_" + URLEncoder.encode(userKey, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Path> listSegments(Path userDir) {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(userDir)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(segments::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // 文件名是定长的序号，按照名称排序就是按照创建顺序排序
+        segments.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return segments;
+    }
+
+    private static Path segmentPath(Path userDir, long seq) {
+        return userDir.resolve(String.format("%016d", seq) + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentSeq(Path segment) {
+        String filename = segment.getFileName().toString();
+        try {
+            return Long.parseLong(filename.substring(0, filename.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryJournal{" +
+                "dir=" + dir +
+                ", segmentSize=" + segmentSize +
+                ", rtnMode=" + rtnMode +
+                ", users=" + writers.size() +
+                '}';
+    }
+
+    /**
+     * 返回值的保存方式
+     * <pre>
+     *      NONE:   不保存返回值;
+     *      TYPE:   只保存返回值的类型名;
+     *      STRING: 保存返回值的字符串形式，最多保留1024个字符
+     * </pre>
+     */
+    public enum RtnMode {
+        NONE, TYPE, STRING;
+
+        /**
+         * 根据名称获取保存方式，不区分大小写，名称不能识别时返回 {@code STRING}
+         * @param name 名称
+         * @return 保存方式
+         */
+        public static RtnMode of(String name) {
+            if (name == null)
+                return STRING;
+            for (RtnMode mode : values()) {
+                if (mode.name().equals(name.trim().toUpperCase(Locale.ROOT)))
+                    return mode;
+            }
+            return STRING;
+        }
+    }
+
+    /**
+     * 单个用户的写入器
+     * <p>同一用户的记录串行写入; 文件在第一次写入时打开，被关闭之后再次写入时重新打开。</p>
+     */
+    private final class Writer {
+        private final Path userDir;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(512);
+        private FileChannel channel;
+        private Path segment;
+        private long seq;
+        private volatile Path committedSegment;
+        private volatile long committed;   // 当前段文件中已经完整写入的字节数
+        private boolean released;
+
+        private Writer(Path userDir) {
+            this.userDir = userDir;
+        }
+
+        // 写入器已经被释放时返回false
+        private synchronized boolean append(InvokeInfo info) throws IOException {
+            if (released)
+                return false;
+            ByteBuffer record = encode(info);
+            if (channel == null)
+                openLastSegment();
+            if (committed > 0 && committed + record.remaining() > segmentSize)
+                rotate();
+            while (record.hasRemaining())
+                channel.write(record);
+            committed = channel.position();
+            return true;
+        }
+
+        // 打开最新的段文件，截断末尾不完整的记录
+        private void openLastSegment() throws IOException {
+            Files.createDirectories(userDir);
+            List<Path> segments = listSegments(userDir);
+            if (segments.isEmpty()) {
+                seq = 1;
+                segment = segmentPath(userDir, seq);
+            } else {
+                segment = segments.get(segments.size() - 1);
+                seq = segmentSeq(segment);
+            }
+            channel = FileChannel.open(segment, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            long valid = size == 0 ? 0 : validLength(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            if (valid < channel.size())
+                channel.truncate(valid);
+            channel.position(valid);
+            committedSegment = segment;
+            committed = valid;
+        }
+
+        private void rotate() throws IOException {
+            channel.force(false);
+            channel.close();
+            seq++;
+            segment = segmentPath(userDir, seq);
+            channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            // 先切换段文件再清零，并发的读取者不会把旧的段文件当作空文件
+            committedSegment = segment;
+            committed = 0;
+        }
+
+        private ByteBuffer encode(InvokeInfo info) {
+            byte[] name = bytesOf(info.getName());
+            byte[] args = bytesOf(info.getCmdArgs());
+            byte[] rtn = bytesOf(rtnOf(info));
+            byte[] exMsg = bytesOf(info.getExMsg());
+            int length = FIXED_BODY_SIZE + sizeOf(name) + sizeOf(args) + sizeOf(rtn) + sizeOf(exMsg);
+            int total = HEAD_SIZE + length + TAIL_SIZE;
+            if (buffer.capacity() < total)
+                buffer = ByteBuffer.allocate(Math.max(total, buffer.capacity() * 2));
+            buffer.clear();
+            buffer.putInt(length).putInt(0);
+            buffer.putLong(info.getInvokeAt()).putLong(info.getInterval()).put((byte) (info.isSuccess() ? 1 : 0));
+            putBytes(name);
+            putBytes(args);
+            putBytes(rtn);
+            putBytes(exMsg);
+            buffer.putInt(length);
+            crc.reset();
+            crc.update(buffer.array(), HEAD_SIZE, length);
+            buffer.putInt(4, (int) crc.getValue());
+            buffer.flip();
+            return buffer;
+        }
+
+        private String rtnOf(InvokeInfo info) {
+            Object rtn = info.getRtnVal();
+            if (rtn == null || rtnMode == RtnMode.NONE)
+                return null;
+            if (rtnMode == RtnMode.TYPE)
+                return rtn.getClass().getName();
+            String text = rtn.toString();
+            return text.length() > MAX_RTN_LENGTH ? text.substring(0, MAX_RTN_LENGTH) + "..." : text;
+        }
+
+        private void putBytes(byte[] bytes) {
+            if (bytes == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+
+        // 读取时可以看到的长度，正在写入的段文件只能读取到已经完整写入的位置
+        private long committedSize(Path path, long fileSize) {
+            return path.equals(committedSegment) ? Math.min(committed, fileSize) : fileSize;
+        }
+
+        private synchronized void force() {
+            try {
+                if (channel != null)
+                    channel.force(false);
+            } catch (IOException ignore) {
+                // 文件已经被关闭
+            }
+        }
+
+        private synchronized void release() {
+            released = true;
+            force();
+            closeChannel();
+        }
+
+        private synchronized void closeChannel() {
+            if (channel == null)
+                return;
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+                // 忽略关闭时的异常
+            }
+            channel = null;
+        }
+    }
+
+    private static byte[] bytesOf(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+}
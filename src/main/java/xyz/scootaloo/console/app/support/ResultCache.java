@@ -0,0 +1,349 @@
+package xyz.scootaloo.console.app.support;
+
+import xyz.scootaloo.console.app.config.ConsoleConfig;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 命令结果缓存
+ * <p>只对声明为可缓存的命令生效: {@code @Cmd(cache = true)}，或者命令方法、命令所在的类上有 {@code @Stateless} 注解。
+ * 以命令名和解析完成的参数值作为键，相同的参数再次执行时直接返回上一次的结果，不再调用方法。</p>
+ * <pre>
+ * 规则:
+ *      容量: 配置 resultCacheSize，超出时回收最久没有使用的结果，0表示不缓存;
+ *      过期: 配置 resultCacheTtl，结果缓存这么多秒之后过期，0表示不过期;
+ *      参数: 数组和集合按照内容比较，保存键时会复制一份，命令方法修改参数不会影响缓存;
+ *      结果: 只缓存执行成功的结果，null和void命令也会被缓存，缓存的结果对象是共享的，不要修改它;
+ *      失效: {@link #invalidate(String)} {@link #invalidateAll()}，
+ *            或者在命令上声明 {@code @Cmd(evict = {"命令名"})}，这个命令执行成功后清空这些命令的结果。
+ * </pre>
+ * <p>命中率等统计使用 cache 命令查看。</p>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:10
+ */
+public final class ResultCache {
+    /** {@link #get(Key)} 没有找到结果时的返回值，和缓存了null的结果区分开 */
+    public static final Object MISS = new Object();
+    private static final LinkedHashMap<Key, Entry> CACHE = new LinkedHashMap<>(64, 0.75f, true);
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    private static final LongAdder EXPIRATIONS = new LongAdder();
+    private static final LongAdder INVALIDATIONS = new LongAdder();
+
+    private static volatile int maxSize = 256;
+    private static volatile long ttlNanos = TimeUnit.SECONDS.toNanos(60);
+
+    private ResultCache() {
+    }
+
+    /**
+     * 根据配置设置容量和过期时间
+     * @param config 控制台配置
+     */
+    public static void configure(ConsoleConfig config) {
+        setMaxSize(config.getResultCacheSize());
+        setTtl(config.getResultCacheTtl(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param size 最大条目数，0表示不缓存
+     */
+    public static void setMaxSize(int size) {
+        maxSize = Math.max(0, size);
+        synchronized (CACHE) {
+            trim();
+        }
+    }
+
+    /**
+     * @param ttl 过期时间，0表示不过期
+     * @param unit 时间单位
+     */
+    public static void setTtl(long ttl, TimeUnit unit) {
+        ttlNanos = Math.max(0, unit.toNanos(ttl));
+    }
+
+    /**
+     * @return 是否启用缓存
+     */
+    public static boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * 生成缓存的键，参数中的数组和集合会被复制
+     * @param cmdName 命令名
+     * @param args 解析完成的参数
+     * @return 键
+     */
+    public static Key key(String cmdName, Object[] args) {
+        Object[] values = new Object[args.length];
+        for (int i = 0; i<args.length; i++)
+            values[i] = normalize(args[i]);
+        return new Key(cmdName, values);
+    }
+
+    /**
+     * @param key 键
+     * @return 缓存的结果，不存在或者已经过期时返回 {@link #MISS}
+     */
+    public static Object get(Key key) {
+        if (!isEnabled())
+            return MISS;
+        synchronized (CACHE) {
+            Entry entry = CACHE.get(key);
+            if (entry != null) {
+                if (entry.expireAt == 0 || entry.expireAt - System.nanoTime() > 0) {
+                    HITS.increment();
+                    return entry.value;
+                }
+                CACHE.remove(key);
+                EXPIRATIONS.increment();
+            }
+        }
+        MISSES.increment();
+        return MISS;
+    }
+
+    /**
+     * 放置一个结果
+     * @param key 键
+     * @param value 命令的返回值，可以是null
+     */
+    public static void put(Key key, Object value) {
+        if (!isEnabled())
+            return;
+        long ttl = ttlNanos;
+        Entry entry = new Entry(value, ttl == 0 ? 0 : Math.max(1, System.nanoTime() + ttl));
+        synchronized (CACHE) {
+            CACHE.put(key, entry);
+            trim();
+        }
+    }
+
+    /**
+     * 清空某个命令的所有结果
+     * @param cmdName 命令名
+     * @return 被清除的条目数
+     */
+    public static int invalidate(String cmdName) {
+        int count = 0;
+        synchronized (CACHE) {
+            Iterator<Key> iterator = CACHE.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().cmdName.equals(cmdName)) {
+                    iterator.remove();
+                    count++;
+                }
+            }
+        }
+        INVALIDATIONS.add(count);
+        return count;
+    }
+
+    /**
+     * 清空所有结果
+     */
+    public static void invalidateAll() {
+        synchronized (CACHE) {
+            INVALIDATIONS.add(CACHE.size());
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * @return 当前的统计信息
+     */
+    public static Stats getStats() {
+        int size;
+        synchronized (CACHE) {
+            size = CACHE.size();
+        }
+        return new Stats(size, maxSize, TimeUnit.NANOSECONDS.toSeconds(ttlNanos), HITS.sum(), MISSES.sum(),
+                EVICTIONS.sum(), EXPIRATIONS.sum(), INVALIDATIONS.sum());
+    }
+
+    /**
+     * 清零统计，不影响缓存的结果
+     */
+    public static void resetStats() {
+        HITS.reset();
+        MISSES.reset();
+        EVICTIONS.reset();
+        EXPIRATIONS.reset();
+        INVALIDATIONS.reset();
+    }
+
+    // 持有锁时调用
+    private static void trim() {
+        int limit = maxSize;
+        Iterator<Key> iterator = CACHE.keySet().iterator();
+        while (CACHE.size() > limit && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            EVICTIONS.increment();
+        }
+    }
+
+    // 数组和集合复制一份，数组按照内容比较
+    private static Object normalize(Object arg) {
+        if (arg == null)
+            return null;
+        if (arg.getClass().isArray()) {
+            if (arg instanceof Object[]) {
+                Object[] src = (Object[]) arg;
+                Object[] copy = new Object[src.length];
+                for (int i = 0; i<src.length; i++)
+                    copy[i] = normalize(src[i]);
+                return copy;
+            }
+            int len = Array.getLength(arg);
+            Object copy = Array.newInstance(arg.getClass().getComponentType(), len);
+            System.arraycopy(arg, 0, copy, 0, len);
+            return copy;
+        }
+        if (arg instanceof Set) {
+            Set<Object> copy = new HashSet<>();
+            for (Object item : (Set<?>) arg)
+                copy.add(normalize(item));
+            return copy;
+        }
+        if (arg instanceof Collection) {
+            List<Object> copy = new ArrayList<>();
+            for (Object item : (Collection<?>) arg)
+                copy.add(normalize(item));
+            return copy;
+        }
+        if (arg instanceof Map) {
+            Map<Object, Object> copy = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) arg).entrySet())
+                copy.put(normalize(entry.getKey()), normalize(entry.getValue()));
+            return copy;
+        }
+        return arg;
+    }
+
+    /**
+     * 缓存的键: 命令名和参数值
+     */
+    public static final class Key {
+        private final String cmdName;
+        private final Object[] args;
+        private final int hash;
+
+        private Key(String cmdName, Object[] args) {
+            this.cmdName = cmdName;
+            this.args = args;
+            this.hash = cmdName.hashCode() * 31 + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash && cmdName.equals(other.cmdName) && Arrays.deepEquals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return cmdName + Arrays.deepToString(args);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expireAt; // System.nanoTime()，0表示不过期
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 缓存的统计信息
+     */
+    public static final class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long ttlSeconds;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+
+        private Stats(int size, int maxSize, long ttlSeconds, long hits, long misses,
+                      long evictions, long expirations, long invalidations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.ttlSeconds = ttlSeconds;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        /**
+         * @return 命中率，没有查询过时为0
+         */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d/%d, ttl=%ds, hits=%d, misses=%d, hitRate=%.2f%%, " +
+                            "evictions=%d, expirations=%d, invalidations=%d", size, maxSize, ttlSeconds,
+                    hits, misses, getHitRate() * 100, evictions, expirations, invalidations);
+        }
+    }
+
+}
@@ -5,11 +5,12 @@ import xyz.scootaloo.console.app.client.ReplacementRecord.KVPair;
 import xyz.scootaloo.console.app.common.ResourceManager;
 import xyz.scootaloo.console.app.util.StringUtils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.util.Locale;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 变量管理器，如果不需要这个功能则在设置中关闭
@@ -29,6 +30,7 @@ public final class VariableManager {
      * {@code the name is ${student.name}}
      */
     private static final String DFT_RAND_STR = "0";
+    private static final String OPEN_SIGN = "${";
     private static final Random rand = ResourceManager.getRandom();
 
     // getter and setter ---------------------------------------------------------------------------
@@ -71,15 +73,8 @@ public final class VariableManager {
      * @return 返回这个变量值，假如没有这个id的信息，则返回空。
      */
     public static Optional<Object> get(ReplacementRecord record, int tKeyId) {
-        Optional<KVPair> rsl = record.getRecords().stream()
-                .filter(kvPairs -> kvPairs.id == tKeyId)
-                .findAny();
-        if (rsl.isPresent()) {
-            Object value = rsl.get().value;
-            return Optional.of(value);
-        } else {
-            return Optional.empty();
-        }
+        KVPair kvPair = record.get(tKeyId);
+        return kvPair == null ? Optional.empty() : Optional.ofNullable(kvPair.value);
     }
 
     //----------------------------------------------------------------------------------------------
@@ -88,64 +83,31 @@ public final class VariableManager {
      * 将字符串中的占位符替换成Properties中的value
      * @see xyz.scootaloo.console.app.parser.preset.SystemPresetCmd#beforeResolveInput 使用点
      * 这里当命令行参数按照空格分段以后，每个部分假如有占位符，都会被替换成变量的“@#@”加上id，同时每次替换都会在 {@link KVPair} 做记录。
+     * <p>不含 "${" 的文本直接返回；其他文本第一次出现时被解析成 {@link Template} 并缓存，之后只需要求值。</p>
      * @param text 文本
      * @return 替换占位符后的文本
      */
     public static String resolvePlaceholders(String text, ReplacementRecord replacementRecord,
                                              Map<String, Object> variablePool) {
-        KVPair curKV = new KVPair();
-        StringBuilder sb = new StringBuilder();
-        boolean isOpen = false;
-        int lSign = -1;
-
-        // 遍历字符串，检查其中的占位符
-        for (int i = 0; i<text.length(); i++) {
-            char c = text.charAt(i);
-            if (c == '$') {
-                if (i + 1 < text.length() && text.charAt(i + 1) == '{') {
-
-                    if (isOpen && lSign - 2 >= 0)
-                        for (int j = lSign - 2; j<i; j++)
-                            sb.append(text.charAt(j));
-
-                    isOpen = true;
-                    lSign = i + 2;
-                    i += 1;
-                    continue;
-                }
-            }
-            if (isOpen && c == '}') {
-                isOpen = false;
-                if (lSign == i)
-                    continue;
-                // 获取占位符中的内容
-                String key = String.valueOf(text.subSequence(lSign, i));
-                // 这段内容做为变量的key
-                curKV.key = key;
-                // 尝试在变量池中找到对应的值，假如没有则保持原样
-                String value = getValueOrDefault(key, "${"+ key + "}", curKV, variablePool);
-                sb.append(value);
-                continue;
-            }
-            if (!isOpen)
-                sb.append(c);
-        }
+        if (text.indexOf(OPEN_SIGN) < 0)
+            return text;
+        KVPair curKV = replacementRecord.next();
+        String result = Template.of(text).render(curKV, variablePool);
         if (curKV.hasVar) {
             replacementRecord.add(curKV);
         }
-        return sb.toString();
+        return result;
     }
 
     /**
-     * @param key 这是占位符中包含的内容，做为key
-     * @param defaultValue 假如不能找到key对应的值，则返回defaultValue
+     * @param expr 占位符，其中的内容做为key
      * @param curKV 替换过程中的信息会记录到这个对象中
-     * @return 参考defaultValue的描述
+     * @return 变量的值、占位符标记，假如不能找到key对应的值，则返回占位符原本的文本
      */
-    private static String getValueOrDefault(String key, String defaultValue, KVPair curKV,
-                                            Map<String, Object> variablePool) {
+    private static String getValueOrDefault(Expression expr, KVPair curKV, Map<String, Object> variablePool) {
+        curKV.key = expr.key;
         // 从变量池中尝试查找这个键
-        Object value = variablePool.get(key);
+        Object value = variablePool.get(expr.key);
         curKV.hasVar = true;
         if (value != null) {
             // 键不为空，且是String类型，直接返回
@@ -160,26 +122,27 @@ public final class VariableManager {
             }
         }
 
-        String[] fields = key.split("\\.");
+        String[] fields = expr.fields;
         if (fields.length < 2) {
             // 将这个key按照小数点分隔后，所得到的位数小于2，这不符合预期的格式，所以直接返回
             curKV.hasVar = false;
-            return defaultValue;
+            return expr.raw;
         }
         // 假如这段字符串类似这样的格式 "rand.int(1,2)"，则按照随机函数的方式处理
-        if (fields[0].toLowerCase(Locale.ROOT).equals("rand"))
+        if (expr.random)
             return doRandom(fields[1], curKV);
 
-        // 它可能是一个对象中的一个属性，进行递归操作找到这个目标属性值
+        // 它可能是一个对象中的一个属性，沿着属性路径找到这个目标属性值
         Object obj = variablePool.get(fields[0]);
         if (obj == null)
-            return defaultValue;
-        String[] res = new String[1];
-        if (dfs(obj, fields, 1, res, curKV))
-            return getPlaceholderWithId(curKV);
-        else
+            return expr.raw;
+        for (int i = 1; i<fields.length && obj != null; i++)
+            obj = PropertyAccessor.get(obj, fields[i]);
+        if (obj == null || obj == PropertyAccessor.MISSING)
             // 查找失败，返回默认值
-            return defaultValue;
+            return expr.raw;
+        curKV.value = obj;
+        return getPlaceholderWithId(curKV);
     }
 
     /**
@@ -238,21 +201,151 @@ public final class VariableManager {
         return placeholder + kvPair.id;
     }
 
-    private static boolean dfs(Object obj, String[] fields, int idx, String[] res, KVPair curKV) {
-        if (idx == fields.length) {
-            curKV.value = obj;
-            res[0] = obj.toString();
-            return true;
+    /**
+     * 解析好的文本: 由普通文本和占位符两种片段组成
+     * <p>解析只和文本有关，和变量池无关，所以同样的文本只解析一次，按照最近使用的顺序保留 {@value #CACHE_SIZE} 个。
+     * 解析的规则和逐字符替换时完全相同: 没有闭合的 "${" 之后的内容会被丢弃，"${}" 被移除。</p>
+     */
+    private static final class Template {
+        private static final int CACHE_SIZE = 512;
+        private static final Map<String, Template> CACHE = new LinkedHashMap<String, Template>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        // String 为普通文本，Expression 为占位符
+        private final Object[] segments;
+        private final int literalLength;
+
+        private Template(Object[] segments, int literalLength) {
+            this.segments = segments;
+            this.literalLength = literalLength;
         }
 
-        Class<?> clazz = obj.getClass();
-        try {
-            Field field = clazz.getDeclaredField(fields[idx]);
-            field.setAccessible(true);
-            Object fieldObj = field.get(obj);
-            return dfs(fieldObj, fields, idx + 1, res, curKV);
-        } catch (Exception e) {
-            return false;
+        private static Template of(String text) {
+            Template template;
+            synchronized (CACHE) {
+                template = CACHE.get(text);
+            }
+            if (template == null) {
+                template = compile(text);
+                synchronized (CACHE) {
+                    CACHE.put(text, template);
+                }
+            }
+            return template;
+        }
+
+        private static Template compile(String text) {
+            List<Object> segments = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            int literalLength = 0;
+            boolean isOpen = false;
+            int lSign = -1;
+            for (int i = 0; i<text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '$' && i + 1 < text.length() && text.charAt(i + 1) == '{') {
+                    // 上一个占位符没有闭合，保留它的原文
+                    if (isOpen)
+                        literal.append(text, lSign - 2, i);
+                    isOpen = true;
+                    lSign = i + 2;
+                    i += 1;
+                    continue;
+                }
+                if (isOpen && c == '}') {
+                    isOpen = false;
+                    if (lSign == i)
+                        continue;
+                    if (literal.length() > 0) {
+                        literalLength += literal.length();
+                        segments.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    segments.add(new Expression(text.substring(lSign, i)));
+                    continue;
+                }
+                if (!isOpen)
+                    literal.append(c);
+            }
+            if (literal.length() > 0) {
+                literalLength += literal.length();
+                segments.add(literal.toString());
+            }
+            return new Template(segments.toArray(), literalLength);
+        }
+
+        private String render(KVPair curKV, Map<String, Object> variablePool) {
+            StringBuilder sb = new StringBuilder(literalLength + 16);
+            for (Object segment : segments) {
+                if (segment instanceof Expression)
+                    sb.append(getValueOrDefault((Expression) segment, curKV, variablePool));
+                else
+                    sb.append((String) segment);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 占位符中的内容，例如 {@code ${stu.name}} 中的 stu.name
+     */
+    private static final class Expression {
+        private final String key;      // 占位符中的内容
+        private final String raw;      // 找不到变量时保持原样
+        private final String[] fields; // 按照小数点分隔的属性路径
+        private final boolean random;  // 是否是随机函数
+
+        private Expression(String key) {
+            this.key = key;
+            this.raw = "${" + key + "}";
+            this.fields = key.split("\\.");
+            this.random = fields.length >= 2 && fields[0].toLowerCase(Locale.ROOT).equals("rand");
+        }
+    }
+
+    /**
+     * 按照类和属性名缓存的属性读取方法
+     * <p>只查找类自身声明的属性(不包括父类)，找不到或者不能访问的属性也会被缓存。</p>
+     */
+    private static final class PropertyAccessor {
+        private static final Object MISSING = new Object();
+        private static final MethodHandle ABSENT = MethodHandles.constant(Object.class, MISSING);
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final ClassValue<Map<String, MethodHandle>> ACCESSORS = new ClassValue<Map<String, MethodHandle>>() {
+            @Override
+            protected Map<String, MethodHandle> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+        /**
+         * @param obj 对象
+         * @param name 属性名
+         * @return 属性值，没有这个属性或者不能访问时返回 {@link #MISSING}
+         */
+        private static Object get(Object obj, String name) {
+            Class<?> type = obj.getClass();
+            MethodHandle getter = ACCESSORS.get(type).computeIfAbsent(name, key -> lookup(type, key));
+            if (getter == ABSENT)
+                return MISSING;
+            try {
+                return (Object) getter.invokeExact(obj);
+            } catch (Throwable e) {
+                return MISSING;
+            }
+        }
+
+        private static MethodHandle lookup(Class<?> type, String name) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (Exception e) {
+                return ABSENT;
+            }
         }
     }
 
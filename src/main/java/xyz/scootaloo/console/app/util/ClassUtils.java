@@ -295,6 +295,25 @@ public final class ClassUtils {
         return rArr;
     }
 
+    /**
+     * 生成基本类型的数组，{@link #genArray(Class, String)} 的返回值是 {@code T[]}，不能用于基本类型
+     * <p>{@code int long double boolean byte} 由 {@link PrimitiveArrays} 直接解析，其他类型逐个转换</p>
+     * @param type 基本类型，例如 {@code int.class}
+     * @param theArr 逗号分隔的字符串
+     * @return 基本类型的数组，例如 {@code int[]}
+     */
+    public static Object genPrimitiveArray(Class<?> type, String theArr) {
+        if (theArr == null || theArr.trim().equals(""))
+            return Array.newInstance(type, 0);
+        if (PrimitiveArrays.isSupported(type))
+            return PrimitiveArrays.parse(type, theArr);
+        String[] items = theArr.split(DELIMITER);
+        Object rArr = Array.newInstance(type, items.length);
+        for (int i = 0; i<items.length; i++)
+            Array.set(rArr, i, TransformFactory.simpleTrans(items[i], type));
+        return rArr;
+    }
+
     // 生成泛型列表
     public static <T> List<T> genList(Class<T> type, String rList) {
         List<T> list = new ArrayList<>();
@@ -1,7 +1,11 @@
 package xyz.scootaloo.console.app.util;
 
+import xyz.scootaloo.console.app.processor.CommandProcessor;
+
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLDecoder;
@@ -20,13 +24,75 @@ import java.util.jar.JarFile;
  */
 public final class PackScanner {
 
+    /**
+     * 获取某包路径下(包括子包)可能是工厂的类，优先使用编译期生成的工厂索引
+     * <p>按照类路径的根逐个处理: jar包中有工厂索引，并且索引编译过这个包时，只加载索引中的类; 没有索引的jar包和目录仍然遍历其中的所有类。
+     * 目录总是被遍历，因为增量编译(例如IDE)之后目录中的索引只包含重新编译过的类，使用它会漏掉工厂。</p>
+     * @see CommandProcessor#FACTORY_INDEX
+     * @param pack 包名
+     * @return 类集合
+     */
+    public static Set<Class<?>> getFactoryClasses(String pack) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        String packageDirName = pack.replace('.', '/');
+        try {
+            Enumeration<URL> dirs = loader.getResources(packageDirName);
+            while (dirs.hasMoreElements()) {
+                URL url = dirs.nextElement();
+                if (!"jar".equals(url.getProtocol()) || !readJarIndex(loader, url, pack, classes))
+                    scan(url, pack, packageDirName, classes);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return classes;
+    }
+
+    // 读取这个jar包中的工厂索引，jar包没有索引或者索引没有编译过这个包时返回false
+    private static boolean readJarIndex(ClassLoader loader, URL url, String pack,
+                                        Set<Class<?>> classes) throws IOException {
+        JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+        JarEntry index = jar.getJarEntry(CommandProcessor.FACTORY_INDEX);
+        if (index == null)
+            return false;
+        boolean indexed = false;
+        Set<String> factories = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(jar.getInputStream(index), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                if (line.startsWith("package "))
+                    indexed |= inPack(line.substring(8).trim(), pack);
+                else if (inPack(line, pack))
+                    factories.add(line);
+            }
+        }
+        if (!indexed)
+            return false;
+        for (String factory : factories) {
+            try {
+                classes.add(loader.loadClass(factory));
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        return true;
+    }
+
+    // name 是否在 pack 包中(包括子包)
+    private static boolean inPack(String name, String pack) {
+        return pack.isEmpty() || name.equals(pack) || name.startsWith(pack + '.');
+    }
+
     public static Set<Class<?>> getClasses(String pack) {
 
         // 第一个class类的集合
         Set<Class<?>> classes = new LinkedHashSet<>();
-        // 获取包的名字 并进行替换
-        String packageName = pack;
-        String packageDirName = packageName.replace('.', '/');
+        String packageDirName = pack.replace('.', '/');
         // 定义一个枚举的集合 并进行循环来处理这个目录下的things
         Enumeration<URL> dirs;
         try {
@@ -35,76 +101,81 @@ public final class PackScanner {
             // 循环迭代下去
             while (dirs.hasMoreElements()) {
                 // 获取下一个元素
-                URL url = dirs.nextElement();
-                // 得到协议的名称
-                String protocol = url.getProtocol();
-                // 如果是以文件的形式保存在服务器上
-                if ("file".equals(protocol)) {
-                    // 获取包的物理路径
-                    String filePath = URLDecoder.decode(url.getFile(), String.valueOf(StandardCharsets.UTF_8));
-                    // 以文件的方式扫描整个包下的文件 并添加到集合中
-                    findAndAddClassesInPackageByFile(packageName, filePath,
-                            true, classes);
-                } else if ("jar".equals(protocol)) {
-                    // 如果是jar包文件
-                    // 定义一个JarFile
-                    JarFile jar;
-                    try {
-                        // 获取jar
-                        jar = ((JarURLConnection) url.openConnection())
-                                .getJarFile();
-                        // 从此jar包 得到一个枚举类
-                        Enumeration<JarEntry> entries = jar.entries();
-                        // 同样的进行循环迭代
-                        while (entries.hasMoreElements()) {
-                            // 获取jar里的一个实体 可以是目录 和一些jar包里的其他文件 如META-INF等文件
-                            JarEntry entry = entries.nextElement();
-                            String name = entry.getName();
-                            // 如果是以/开头的
-                            if (name.charAt(0) == '/') {
-                                // 获取后面的字符串
-                                name = name.substring(1);
-                            }
-                            // 如果前半部分和定义的包名相同
-                            if (name.startsWith(packageDirName)) {
-                                int idx = name.lastIndexOf('/');
-                                // 如果以"/"结尾 是一个包
-                                if (idx != -1) {
-                                    // 获取包名 把"/"替换成"."
-                                    packageName = name.substring(0, idx)
-                                            .replace('/', '.');
-                                }
-                                // 如果可以迭代下去 并且是一个包
-                                if ((idx != -1)) {
-                                    // 如果是一个.class文件 而且不是目录
-                                    if (name.endsWith(".class")
-                                            && !entry.isDirectory()) {
-                                        // 去掉后面的".class" 获取真正的类名
-                                        String className = name.substring(
-                                                packageName.length() + 1, name
-                                                        .length() - 6);
-                                        try {
-                                            // 添加到classes
-                                            classes.add(Class
-                                                    .forName(packageName + '.'
-                                                            + className));
-                                        } catch (ClassNotFoundException e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
+                scan(dirs.nextElement(), pack, packageDirName, classes);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return classes;
+    }
+
+    // 遍历类路径中的一个目录或者jar包
+    private static void scan(URL url, String packageName, String packageDirName, Set<Class<?>> classes)
+            throws IOException {
+        // 得到协议的名称
+        String protocol = url.getProtocol();
+        // 如果是以文件的形式保存在服务器上
+        if ("file".equals(protocol)) {
+            // 获取包的物理路径
+            String filePath = URLDecoder.decode(url.getFile(), String.valueOf(StandardCharsets.UTF_8));
+            // 以文件的方式扫描整个包下的文件 并添加到集合中
+            findAndAddClassesInPackageByFile(packageName, filePath,
+                    true, classes);
+        } else if ("jar".equals(protocol)) {
+            // 如果是jar包文件
+            // 定义一个JarFile
+            JarFile jar;
+            try {
+                // 获取jar
+                jar = ((JarURLConnection) url.openConnection())
+                        .getJarFile();
+                // 从此jar包 得到一个枚举类
+                Enumeration<JarEntry> entries = jar.entries();
+                // 同样的进行循环迭代
+                while (entries.hasMoreElements()) {
+                    // 获取jar里的一个实体 可以是目录 和一些jar包里的其他文件 如META-INF等文件
+                    JarEntry entry = entries.nextElement();
+                    String name = entry.getName();
+                    // 如果是以/开头的
+                    if (name.charAt(0) == '/') {
+                        // 获取后面的字符串
+                        name = name.substring(1);
+                    }
+                    // 如果前半部分和定义的包名相同
+                    if (name.startsWith(packageDirName)) {
+                        int idx = name.lastIndexOf('/');
+                        // 如果以"/"结尾 是一个包
+                        if (idx != -1) {
+                            // 获取包名 把"/"替换成"."
+                            packageName = name.substring(0, idx)
+                                    .replace('/', '.');
+                        }
+                        // 如果可以迭代下去 并且是一个包
+                        if ((idx != -1)) {
+                            // 如果是一个.class文件 而且不是目录
+                            if (name.endsWith(".class")
+                                    && !entry.isDirectory()) {
+                                // 去掉后面的".class" 获取真正的类名
+                                String className = name.substring(
+                                        packageName.length() + 1, name
+                                                .length() - 6);
+                                try {
+                                    // 添加到classes
+                                    classes.add(Class
+                                            .forName(packageName + '.'
+                                                    + className));
+                                } catch (ClassNotFoundException e) {
+                                    e.printStackTrace();
                                 }
                             }
                         }
-                    } catch (IOException e) {
-                        e.printStackTrace();
                     }
                 }
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-
-        return classes;
     }
 
     private static void findAndAddClassesInPackageByFile(String packageName,
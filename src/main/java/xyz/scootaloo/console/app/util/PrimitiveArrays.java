@@ -0,0 +1,356 @@
+package xyz.scootaloo.console.app.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 基本类型数组的解析
+ * <p>直接从字符串中逐个读取数据项写入基本类型的数组，不生成中间的 {@code String[]}，也不经过包装类型。
+ * 支持 {@code int[] long[] double[] boolean[] byte[]}，其他类型请使用 {@link ClassUtils#genPrimitiveArray(Class, String)}。</p>
+ * <pre>
+ * 两种输入:
+ *      字符串: 数据项之间使用逗号分隔，例如 {@code 1,2,3}，和 {@link ClassUtils#genArray(Class, String)} 的规则一致
+ *      文件: 以 {@code file:} 开头，后面是文件路径，例如 {@code file:/tmp/nums.txt}，
+ *           文件中的数据项使用逗号或者空白字符分隔，文件按块读取，适合数据量很大的情况
+ * </pre>
+ *
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:00
+ */
+public final class PrimitiveArrays {
+    /** 文件引用的前缀 */
+    public static final String FILE_PREFIX = "file:";
+    private static final char DELIMITER = ',';
+    private static final int BUFFER_SIZE = 8192;
+    // 10的0~22次方都可以用double精确表示
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i<POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private PrimitiveArrays() {
+    }
+
+    /**
+     * @param componentType 数组元素的类型
+     * @return 是否可以使用这个类处理
+     */
+    public static boolean isSupported(Class<?> componentType) {
+        return componentType == int.class || componentType == long.class || componentType == double.class ||
+                componentType == boolean.class || componentType == byte.class;
+    }
+
+    /**
+     * 解析逗号分隔的字符串，末尾多余的逗号会被忽略
+     * @param componentType 数组元素的类型，需要满足 {@link #isSupported(Class)}
+     * @param text 字符串
+     * @return 基本类型的数组
+     * @throws NumberFormatException 数据项格式错误
+     */
+    public static Object parse(Class<?> componentType, CharSequence text) {
+        int end = text.length();
+        while (end > 0 && (text.charAt(end - 1) == DELIMITER || Character.isWhitespace(text.charAt(end - 1))))
+            end--;
+        int count = 0;
+        if (end > 0) {
+            count = 1;
+            for (int i = 0; i<end; i++) {
+                if (text.charAt(i) == DELIMITER)
+                    count++;
+            }
+        }
+        Sink sink = sinkOf(componentType, count);
+        int from = 0;
+        for (int i = 0; i<end; i++) {
+            if (text.charAt(i) == DELIMITER) {
+                sink.add(text, from, i);
+                from = i + 1;
+            }
+        }
+        if (end > 0)
+            sink.add(text, from, end);
+        return sink.toArray();
+    }
+
+    /**
+     * 按块读取文件，数据项之间使用逗号或者空白字符分隔
+     * @param componentType 数组元素的类型，需要满足 {@link #isSupported(Class)}
+     * @param file 文件
+     * @return 基本类型的数组
+     * @throws IOException 读取文件失败
+     * @throws NumberFormatException 数据项格式错误
+     */
+    public static Object load(Class<?> componentType, Path file) throws IOException {
+        Sink sink = sinkOf(componentType, 1024);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            char[] buf = new char[BUFFER_SIZE];
+            CharBuffer view = CharBuffer.wrap(buf);
+            int len = 0;
+            while (true) {
+                int n = reader.read(buf, len, buf.length - len);
+                boolean eof = n < 0;
+                if (!eof)
+                    len += n;
+                int from = 0;
+                for (int i = 0; i<len; i++) {
+                    char c = buf[i];
+                    if (c == DELIMITER || Character.isWhitespace(c)) {
+                        if (i > from)
+                            sink.add(view, from, i);
+                        from = i + 1;
+                    }
+                }
+                if (eof) {
+                    if (len > from)
+                        sink.add(view, from, len);
+                    break;
+                }
+                // 把不完整的数据项移动到缓冲区开头，数据项比缓冲区还长时扩容
+                len -= from;
+                System.arraycopy(buf, from, buf, 0, len);
+                if (len == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    view = CharBuffer.wrap(buf);
+                }
+            }
+        }
+        return sink.toArray();
+    }
+
+    private static Sink sinkOf(Class<?> componentType, int capacity) {
+        if (componentType == int.class)
+            return new IntSink(capacity);
+        if (componentType == long.class)
+            return new LongSink(capacity);
+        if (componentType == double.class)
+            return new DoubleSink(capacity);
+        if (componentType == boolean.class)
+            return new BooleanSink(capacity);
+        if (componentType == byte.class)
+            return new ByteSink(capacity);
+        throw new IllegalArgumentException("不支持的数组类型: " + componentType.getName() + "[]");
+    }
+
+    /**
+     * 解析 [from, to) 区间中的整数，两端的空白字符会被忽略，规则和 {@link Long#parseLong(String)} 一致
+     * @param text 字符串
+     * @param from 开始位置
+     * @param to 结束位置
+     * @param min 最小值
+     * @param max 最大值
+     * @return 整数
+     * @throws NumberFormatException 格式错误或者超出范围
+     */
+    public static long parseLong(CharSequence text, int from, int to, long min, long max) {
+        while (from < to && Character.isWhitespace(text.charAt(from)))
+            from++;
+        while (to > from && Character.isWhitespace(text.charAt(to - 1)))
+            to--;
+        if (from == to)
+            throw formatError(text, from, to);
+        int i = from;
+        boolean negative = false;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == to)
+                throw formatError(text, from, to);
+        }
+        // 和jdk一样使用负数累加，避免最小值溢出
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i<to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin)
+                throw formatError(text, from, to);
+            result *= 10;
+            if (result < limit + digit)
+                throw formatError(text, from, to);
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * 解析 [from, to) 区间中的小数，两端的空白字符会被忽略<br>
+     * 不超过15位有效数字且没有指数的小数直接计算，结果和 {@link Double#parseDouble(String)} 相同，其他情况交给 {@code parseDouble}
+     * @param text 字符串
+     * @param from 开始位置
+     * @param to 结束位置
+     * @return 小数
+     * @throws NumberFormatException 格式错误
+     */
+    public static double parseDouble(CharSequence text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from)))
+            from++;
+        while (to > from && Character.isWhitespace(text.charAt(to - 1)))
+            to--;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            negative = text.charAt(i++) == '-';
+        long mantissa = 0;
+        int digits = 0, scale = -1;
+        for (; i<to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0)
+                    scale++;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < to || digits == 0 || digits > 15 || scale >= POW10.length)
+            return Double.parseDouble(text.subSequence(from, to).toString());
+        // 尾数和10的幂都能精确表示，一次除法的结果就是正确舍入的
+        double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * 解析 [from, to) 区间中的布尔值，规则和 {@link xyz.scootaloo.console.app.parser.TransformFactory} 一致: 以 t 开头为 true
+     * @param text 字符串
+     * @param from 开始位置
+     * @param to 结束位置
+     * @return 布尔值
+     */
+    public static boolean parseBoolean(CharSequence text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from)))
+            from++;
+        if (from == to)
+            return false;
+        char c = text.charAt(from);
+        return c == 't' || c == 'T';
+    }
+
+    private static NumberFormatException formatError(CharSequence text, int from, int to) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(from, to) + "\"");
+    }
+
+    // 基本类型数组的容器，容量不足时扩容
+    private abstract static class Sink {
+        protected int size;
+
+        abstract void add(CharSequence text, int from, int to);
+
+        abstract Object toArray();
+
+        protected int grow(int length) {
+            return Math.max(16, length + (length >> 1));
+        }
+    }
+
+    private static final class IntSink extends Sink {
+        private int[] data;
+
+        private IntSink(int capacity) {
+            this.data = new int[capacity];
+        }
+
+        @Override
+        void add(CharSequence text, int from, int to) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(size));
+            data[size++] = (int) parseLong(text, from, to, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        @Override
+        Object toArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class LongSink extends Sink {
+        private long[] data;
+
+        private LongSink(int capacity) {
+            this.data = new long[capacity];
+        }
+
+        @Override
+        void add(CharSequence text, int from, int to) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(size));
+            data[size++] = parseLong(text, from, to, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        @Override
+        Object toArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class DoubleSink extends Sink {
+        private double[] data;
+
+        private DoubleSink(int capacity) {
+            this.data = new double[capacity];
+        }
+
+        @Override
+        void add(CharSequence text, int from, int to) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(size));
+            data[size++] = parseDouble(text, from, to);
+        }
+
+        @Override
+        Object toArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class BooleanSink extends Sink {
+        private boolean[] data;
+
+        private BooleanSink(int capacity) {
+            this.data = new boolean[capacity];
+        }
+
+        @Override
+        void add(CharSequence text, int from, int to) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(size));
+            data[size++] = parseBoolean(text, from, to);
+        }
+
+        @Override
+        Object toArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class ByteSink extends Sink {
+        private byte[] data;
+
+        private ByteSink(int capacity) {
+            this.data = new byte[capacity];
+        }
+
+        @Override
+        void add(CharSequence text, int from, int to) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, grow(size));
+            data[size++] = (byte) parseLong(text, from, to, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+
+        @Override
+        Object toArray() {
+            return size == data.length ? data : Arrays.copyOf(data, size);
+        }
+    }
+
+}
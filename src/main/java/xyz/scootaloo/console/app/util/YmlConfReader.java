@@ -3,6 +3,10 @@ package xyz.scootaloo.console.app.util;
 import org.yaml.snakeyaml.Yaml;
 import xyz.scootaloo.console.app.common.ResourceManager;
 import xyz.scootaloo.console.app.config.ConsoleConfigProvider.DefaultValueConfigBuilder;
+import xyz.scootaloo.console.app.parser.MethodInvoker;
+import xyz.scootaloo.console.app.client.out.AsyncPrinter;
+import xyz.scootaloo.console.app.support.HistoryJournal;
+import xyz.scootaloo.console.app.parser.SessionExecutor;
 
 import java.util.*;
 import java.util.function.Function;
@@ -28,6 +32,10 @@ public final class YmlConfReader {
                 throw new RuntimeException("不能处理的类型" + type.getClass().getSimpleName());
             }
         });
+        converterMap.put("dispatchEngine", (type) -> MethodInvoker.Engine.of(String.valueOf(type)));
+        converterMap.put("sessionMode", (type) -> SessionExecutor.Mode.of(String.valueOf(type)));
+        converterMap.put("journalRtnMode", (type) -> HistoryJournal.RtnMode.of(String.valueOf(type)));
+        converterMap.put("outputFlush", (type) -> AsyncPrinter.FlushPolicy.of(String.valueOf(type)));
     }
 
     public static void loadConf(DefaultValueConfigBuilder builder) {
@@ -0,0 +1,45 @@
+package xyz.scootaloo.test.actuator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.parser.CommandLine;
+
+/**
+ * 测试命令行分词
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 13:52
+ */
+public class TestCommandLine {
+
+    @Test
+    public void testTokenize() {
+        CommandLine line = CommandLine.of("echo  -m 'hello world' a\\ b \"x\"y 'open");
+        System.out.println(line);
+        Assertions.assertEquals("echo", line.name());
+        Assertions.assertEquals(5, line.size());
+        Assertions.assertEquals("hello world", line.get(1));
+        Assertions.assertEquals("a b", line.get(2));
+        Assertions.assertEquals("xy", line.get(3));
+        Assertions.assertEquals("'open", line.get(4));
+        Assertions.assertEquals("-m 'hello world' a\\ b \"x\"y 'open", line.args());
+        Assertions.assertTrue(line.startsWith(0, '-'));
+        Assertions.assertFalse(CommandLine.ofArgs("'-x'").startsWith(0, '-'));
+    }
+
+    @Test
+    public void testModify() {
+        CommandLine line = CommandLine.acquire("add  1   2");
+        try {
+            Assertions.assertEquals("1   2", line.args());
+            line.asList().set(0, "1");
+            Assertions.assertEquals("1   2", line.args());
+            line.asList().set(1, "3");
+            Assertions.assertEquals("1 3", line.args());
+            Assertions.assertEquals("3", line.joinFrom(1));
+        } finally {
+            line.release();
+        }
+        Assertions.assertTrue(CommandLine.of("   ").isEmpty());
+    }
+
+}
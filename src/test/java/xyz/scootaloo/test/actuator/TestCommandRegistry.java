@@ -0,0 +1,149 @@
+package xyz.scootaloo.test.actuator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.CmdType;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.parser.Interpreter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试运行期间注册和注销命令工厂
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 14:55
+ */
+public class TestCommandRegistry {
+
+    @Test
+    public void testHotRegister() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        Assertions.assertFalse(interpreter.interpret("greet world").isSuccess());
+
+        GreetFactory factory = new GreetFactory();
+        Assertions.assertEquals(1, interpreter.register(factory));
+        Assertions.assertEquals(0, interpreter.register(factory));
+        Assertions.assertTrue(factory.init);
+        Assertions.assertEquals("hello world", interpreter.interpret("greet world").get());
+        Assertions.assertEquals("hello alias", interpreter.interpret("gr alias").get());
+        Assertions.assertEquals(2, factory.filtered.get());
+
+        Assertions.assertEquals(1, interpreter.unregister(factory));
+        Assertions.assertTrue(factory.destroy);
+        Assertions.assertFalse(interpreter.interpret("gr alias").isSuccess());
+        Assertions.assertEquals(2, factory.filtered.get());
+    }
+
+    @Test
+    public void testFilterOnlyFactory() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        PingFactory ping = new PingFactory();
+        CountFilterFactory factory = new CountFilterFactory();
+        interpreter.register(ping);
+        try {
+            // 只含有过滤器的工厂重复注册时不做处理，过滤器只执行一次
+            Assertions.assertEquals(0, interpreter.register(factory));
+            Assertions.assertEquals(0, interpreter.register(factory));
+            Assertions.assertTrue(interpreter.interpret("ping").isSuccess());
+            Assertions.assertEquals(1, factory.filtered.get());
+
+            // 注销之后可以重新注册
+            interpreter.unregister(factory);
+            Assertions.assertTrue(interpreter.interpret("ping").isSuccess());
+            Assertions.assertEquals(1, factory.filtered.get());
+            interpreter.register(factory);
+            Assertions.assertTrue(interpreter.interpret("ping").isSuccess());
+            Assertions.assertEquals(2, factory.filtered.get());
+        } finally {
+            interpreter.unregister(factory);
+            interpreter.unregister(ping);
+        }
+    }
+
+    @Test
+    public void testRegisterWhileRunning() throws InterruptedException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        PingFactory ping = new PingFactory();
+        interpreter.register(ping);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch cdl = new CountDownLatch(4);
+        for (int i = 0; i<4; i++) {
+            String userKey = "registry-" + i;
+            new Thread(() -> {
+                ResourcesHandler handler = interpreter.setUser(userKey);
+                try {
+                    while (running.get()) {
+                        if (!interpreter.interpret("ping").isSuccess())
+                            failed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    failed.incrementAndGet();
+                } finally {
+                    handler.shutdown();
+                    cdl.countDown();
+                }
+            }).start();
+        }
+        for (int i = 0; i<200; i++) {
+            GreetFactory factory = new GreetFactory();
+            interpreter.register(factory);
+            interpreter.unregister(factory);
+        }
+        running.set(false);
+        cdl.await();
+        interpreter.unregister(ping);
+        Assertions.assertEquals(0, failed.get());
+    }
+
+    public static class PingFactory {
+        @Cmd
+        public int ping() {
+            return 1;
+        }
+    }
+
+    public static class CountFilterFactory {
+        private final AtomicInteger filtered = new AtomicInteger();
+
+        @Cmd(type = CmdType.Filter)
+        public boolean count(String command) {
+            filtered.incrementAndGet();
+            return true;
+        }
+    }
+
+    public static class GreetFactory {
+        private final AtomicInteger filtered = new AtomicInteger();
+        private boolean init;
+        private boolean destroy;
+
+        @Cmd(name = "gr")
+        public String greet(String name) {
+            return "hello " + name;
+        }
+
+        @Cmd(type = CmdType.Filter)
+        public boolean count(String command) {
+            filtered.incrementAndGet();
+            return true;
+        }
+
+        @Cmd(type = CmdType.Init)
+        public void init() {
+            init = true;
+        }
+
+        @Cmd(type = CmdType.Destroy)
+        public void destroy() {
+            destroy = true;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package xyz.scootaloo.test.actuator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.parser.CommandIndex;
+import xyz.scootaloo.console.app.parser.MethodInvoker;
+import xyz.scootaloo.console.app.processor.CommandProcessor;
+import xyz.scootaloo.console.app.util.PackScanner;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+/**
+ * 测试编译期生成的命令调用代码和工厂索引
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:30
+ */
+public class TestGeneratedInvoker {
+
+    @Test
+    public void testGenerated() throws Exception {
+        Class<?> generated = Class.forName(CalcFactory.class.getName() + CommandIndex.SUFFIX);
+        CommandIndex index = (CommandIndex) generated.getDeclaredConstructor().newInstance();
+        List<String> signatures = Arrays.asList(index.signatures());
+        System.out.println(signatures);
+        Assertions.assertTrue(signatures.contains("add(int,int)"));
+        Assertions.assertTrue(signatures.contains("sum(java.util.List)"));
+        Assertions.assertTrue(signatures.contains("join(java.lang.String[])"));
+        // 私有方法不生成
+        Assertions.assertFalse(signatures.contains("hidden()"));
+
+        CalcFactory factory = new CalcFactory();
+        MethodInvoker add = bind("add", int.class, int.class);
+        Assertions.assertEquals(3, add.invoke(factory, 1, 2));
+        Assertions.assertEquals(6, bind("sum", List.class).invoke(factory, Arrays.asList(1, 2, 3)));
+        Assertions.assertEquals("a,b", bind("join", String[].class).invoke(null, (Object) new String[] {"a", "b"}));
+        Assertions.assertNull(bind("reset").invoke(factory, (Object[]) null));
+        Assertions.assertEquals(0, factory.total);
+        Assertions.assertEquals("hidden", bind("hidden").invoke(factory));
+
+        InvocationTargetException ex = Assertions.assertThrows(InvocationTargetException.class,
+                () -> bind("error").invoke(factory));
+        Assertions.assertEquals(IllegalStateException.class, ex.getTargetException().getClass());
+    }
+
+    @Test
+    public void testFactoryIndex() throws Exception {
+        String pack = "xyz.scootaloo.test.util";
+        String stale = "# 增量编译后只包含 AObj\npackage " + pack + "\n" + pack + ".ReflectionTest$AObj\n";
+        Path root = Files.createTempDirectory("factory-index");
+
+        // jar包中的索引编译过这个包时，只加载索引中的类
+        Path indexed = root.resolve("indexed.jar");
+        writeJar(indexed, stale);
+        Assertions.assertEquals(Collections.singleton(pack + ".ReflectionTest$AObj"), factoryNames(indexed.toUri().toURL(), pack));
+
+        // 没有索引的jar包，或者索引没有编译过这个包时，遍历jar包
+        Path plain = root.resolve("plain.jar");
+        writeJar(plain, null);
+        Assertions.assertTrue(factoryNames(plain.toUri().toURL(), pack).contains(pack + ".ReflectionTest$BObj"));
+        Path other = root.resolve("other.jar");
+        writeJar(other, "package xyz.scootaloo.other\n");
+        Assertions.assertTrue(factoryNames(other.toUri().toURL(), pack).contains(pack + ".ReflectionTest$BObj"));
+
+        // 目录中的索引可能是过期的，总是遍历目录
+        Path dir = root.resolve("classes");
+        Files.createDirectories(dir.resolve("META-INF/jconsole"));
+        Files.write(dir.resolve(CommandProcessor.FACTORY_INDEX), stale.getBytes(StandardCharsets.UTF_8));
+        for (String name : CLASS_FILES) {
+            Path target = dir.resolve(name);
+            Files.createDirectories(target.getParent());
+            Files.copy(classFile(name), target);
+        }
+        Set<String> names = factoryNames(dir.toUri().toURL(), pack);
+        System.out.println(names);
+        Assertions.assertTrue(names.contains(pack + ".ReflectionTest$BObj"));
+    }
+
+    private static final String[] CLASS_FILES = {
+            "xyz/scootaloo/test/util/ReflectionTest$AObj.class",
+            "xyz/scootaloo/test/util/ReflectionTest$BObj.class"
+    };
+
+    // 只从指定的类路径中查找
+    private static Set<String> factoryNames(URL url, String pack) throws IOException {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {url}, null)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            return PackScanner.getFactoryClasses(pack).stream().map(Class::getName).collect(Collectors.toSet());
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    private static void writeJar(Path jar, String index) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            if (index != null) {
+                out.putNextEntry(new JarEntry(CommandProcessor.FACTORY_INDEX));
+                out.write(index.getBytes(StandardCharsets.UTF_8));
+            }
+            for (String dir : new String[] {"xyz/", "xyz/scootaloo/", "xyz/scootaloo/test/", "xyz/scootaloo/test/util/"})
+                out.putNextEntry(new JarEntry(dir));
+            for (String name : CLASS_FILES) {
+                out.putNextEntry(new JarEntry(name));
+                out.write(Files.readAllBytes(classFile(name)));
+            }
+        }
+    }
+
+    private static Path classFile(String name) {
+        try {
+            return Paths.get(TestGeneratedInvoker.class.getClassLoader().getResource(name).toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodInvoker bind(String name, Class<?> ... types) throws NoSuchMethodException {
+        return MethodInvoker.bind(CalcFactory.class.getDeclaredMethod(name, types), MethodInvoker.Engine.GENERATED);
+    }
+
+    public static class CalcFactory {
+        private int total = 10;
+
+        @Cmd
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @Cmd
+        int sum(List<Integer> values) {
+            return values.stream().mapToInt(Integer::intValue).sum();
+        }
+
+        @Cmd
+        public static String join(String ... items) {
+            return String.join(",", items);
+        }
+
+        @Cmd
+        public void reset() {
+            total = 0;
+        }
+
+        @Cmd
+        public void error() {
+            throw new IllegalStateException("error");
+        }
+
+        @Cmd
+        private String hidden() {
+            return "hidden";
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package xyz.scootaloo.test.actuator;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.parser.MethodInvoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 测试两种调用引擎的行为是否一致
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 10:48
+ */
+public class TestMethodInvoker {
+
+    @Test
+    public void testInvoke() throws Exception {
+        for (MethodInvoker.Engine engine : MethodInvoker.Engine.values()) {
+            MethodInvoker add = MethodInvoker.bind(method("add", int.class, int.class), engine);
+            Assertions.assertEquals(3, add.invoke(this, 1, 2));
+
+            MethodInvoker nothing = MethodInvoker.bind(method("nothing"), engine);
+            Assertions.assertNull(nothing.invoke(this));
+            Assertions.assertNull(nothing.invoke(this, (Object[]) null));
+
+            MethodInvoker join = MethodInvoker.bind(method("join", String[].class), engine);
+            Assertions.assertEquals("a,b", join.invoke(null, (Object) new String[] {"a", "b"}));
+        }
+    }
+
+    @Test
+    public void testException() throws Exception {
+        for (MethodInvoker.Engine engine : MethodInvoker.Engine.values()) {
+            MethodInvoker error = MethodInvoker.bind(method("error"), engine);
+            InvocationTargetException ex = Assertions.assertThrows(InvocationTargetException.class,
+                    () -> error.invoke(this));
+            Assertions.assertEquals(IllegalStateException.class, ex.getTargetException().getClass());
+        }
+    }
+
+    @Test
+    public void testArgumentMismatch() throws Exception {
+        for (MethodInvoker.Engine engine : MethodInvoker.Engine.values()) {
+            MethodInvoker add = MethodInvoker.bind(method("add", int.class, int.class), engine);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> add.invoke(this, "1", 2));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> add.invoke(this, null, 2));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> add.invoke(this, 1L, 2));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> add.invoke(this, 1));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> add.invoke("this", 1, 2));
+            Assertions.assertThrows(NullPointerException.class, () -> add.invoke(null, 1, 2));
+
+            MethodInvoker join = MethodInvoker.bind(method("join", String[].class), engine);
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> join.invoke(null, (Object) new Integer[] {1}));
+
+            // 拓宽转换和 Method.invoke 一样可以通过
+            Assertions.assertEquals(3, add.invoke(this, (short) 1, (byte) 2));
+            MethodInvoker scale = MethodInvoker.bind(method("scale", double.class), engine);
+            Assertions.assertEquals(3.0, scale.invoke(this, 1));
+            Assertions.assertEquals(3.0, scale.invoke(this, 1f));
+            Assertions.assertEquals(3.0 * 'a', scale.invoke(this, 'a'));
+        }
+    }
+
+    private static Method method(String name, Class<?> ... types) throws NoSuchMethodException {
+        return TestMethodInvoker.class.getDeclaredMethod(name, types);
+    }
+
+    private int add(int a, int b) {
+        return a + b;
+    }
+
+    private double scale(double value) {
+        return value * 3;
+    }
+
+    private void nothing() {
+    }
+
+    private static String join(String ... items) {
+        return String.join(",", items);
+    }
+
+    private void error() {
+        throw new IllegalStateException("error");
+    }
+
+}
@@ -0,0 +1,99 @@
+package xyz.scootaloo.test.app;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.application.BatchRunner;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.parser.Interpreter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 测试批量执行命令
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 19:10
+ */
+public class TestBatchRunner {
+
+    @Test
+    public void testRunFile() throws IOException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        BatchFactory factory = new BatchFactory();
+        interpreter.register(factory);
+        ResourcesHandler handler = interpreter.setUser("batch-user");
+        try {
+            Path file = Files.createTempFile("commands", ".txt");
+            int total = 20000;
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("# 回放的命令\n\n");
+                for (int i = 0; i<total; i++)
+                    writer.write("count " + i + "\n");
+                writer.write("count \\\n  1\n");
+                writer.write("boom\n");
+                writer.write("count 2\n");
+            }
+            BatchRunner.Report report = BatchRunner.of(interpreter).chunkSize(100).run(file);
+            System.out.println(report);
+            Assertions.assertEquals(total + 6, report.getLines());
+            Assertions.assertEquals(2, report.getSkipped());
+            Assertions.assertEquals(total + 3, report.getExecuted());
+            Assertions.assertEquals(1, report.getFailed());
+            Assertions.assertEquals(5, report.getFailures().get(0).getLineNumber() - total);
+            Assertions.assertNull(report.getStopReason());
+            Assertions.assertEquals(total + 2, factory.count);
+        } finally {
+            handler.shutdown();
+            interpreter.unregister(factory);
+        }
+    }
+
+    @Test
+    public void testErrorPolicy() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        BatchFactory factory = new BatchFactory();
+        interpreter.register(factory);
+        ResourcesHandler handler = interpreter.setUser("batch-user");
+        try {
+            String commands = "count 1\nboom\ncount 2\nboom\nboom\ncount 3\n";
+            BatchRunner.Report report = BatchRunner.of(interpreter)
+                    .errorPolicy(BatchRunner.ErrorPolicy.STOP)
+                    .run(new StringReader(commands));
+            System.out.println(report);
+            Assertions.assertEquals(2, report.getExecuted());
+            Assertions.assertNotNull(report.getStopReason());
+
+            report = BatchRunner.of(interpreter).maxErrors(2).run(new StringReader(commands));
+            Assertions.assertEquals(4, report.getExecuted());
+            Assertions.assertEquals(2, report.getFailed());
+
+            report = BatchRunner.of(interpreter).run(new StringReader("count 1\nexit\ncount 2\n"));
+            Assertions.assertEquals(1, report.getExecuted());
+            Assertions.assertEquals(4, factory.count);
+        } finally {
+            handler.shutdown();
+            interpreter.unregister(factory);
+        }
+    }
+
+    public static class BatchFactory {
+        private int count;
+
+        @Cmd
+        public int count(int i) {
+            return ++count;
+        }
+
+        @Cmd
+        public void boom() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package xyz.scootaloo.test.app;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.CmdType;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.error.ErrorCode;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.support.CommandMetrics;
+import xyz.scootaloo.console.app.support.CommandMetrics.Phase;
+import xyz.scootaloo.console.app.support.CommandMetrics.PhaseSnapshot;
+import xyz.scootaloo.console.app.support.CommandMetrics.Snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试命令执行耗时统计
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 21:00
+ */
+public class TestCommandMetrics {
+
+    @Test
+    public void testHistogram() {
+        CommandMetrics.Histogram histogram = new CommandMetrics.Histogram();
+        for (int i = 1; i<=10000; i++)
+            histogram.record(i * 1000L);
+        PhaseSnapshot snapshot = histogram.snapshot();
+        System.out.println(snapshot);
+        Assertions.assertEquals(10000, snapshot.getCount());
+        Assertions.assertEquals(10000_000, snapshot.getMax());
+        // 相对误差不超过 1/16
+        Assertions.assertEquals(5000_000, snapshot.getP50(), 5000_000 / 16.0);
+        Assertions.assertEquals(9900_000, snapshot.getP99(), 9900_000 / 16.0);
+        Assertions.assertTrue(snapshot.getP50() >= 5000_000);
+    }
+
+    @Test
+    public void testInterpret() throws IOException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        MetricsFactory factory = new MetricsFactory();
+        interpreter.register(factory);
+        ResourcesHandler handler = interpreter.setUser("metrics-user");
+        Path file = Files.createTempFile("metrics", ".log");
+        CommandMetrics.Exporter exporter = new CommandMetrics.FileExporter(file);
+        try {
+            CommandMetrics.reset();
+            for (int i = 0; i<100; i++)
+                interpreter.interpret("square " + i);
+            interpreter.interpret("square x");
+            interpreter.interpret("square -1");
+            interpreter.interpret("square 1000");
+
+            Snapshot snapshot = CommandMetrics.snapshot("square").orElseThrow(AssertionError::new);
+            System.out.println(snapshot);
+            Assertions.assertEquals(103, snapshot.getCount());
+            Assertions.assertEquals(100, snapshot.getSuccess());
+            Assertions.assertEquals(1, (long) snapshot.getErrors().get(ErrorCode.FILTER_INTERCEPT));
+            Assertions.assertEquals(1, (long) snapshot.getErrors().get(ErrorCode.METHOD_INVOKE_ERROR));
+            Assertions.assertEquals(3, snapshot.getErrors().values().stream().mapToLong(Long::longValue).sum());
+            Assertions.assertEquals(103, snapshot.getPhase(Phase.FILTER).getCount());
+            Assertions.assertEquals(102, snapshot.getPhase(Phase.TOTAL).getCount());
+            Assertions.assertEquals(101, snapshot.getPhase(Phase.INVOKE).getCount());
+            Assertions.assertTrue(snapshot.getPhase(Phase.TOTAL).getMax() > 0);
+
+            List<Snapshot> perf = interpreter.interpret("perf -p -s square").get();
+            Assertions.assertEquals(1, perf.size());
+
+            CommandMetrics.addExporter(exporter, 1, TimeUnit.HOURS);
+            CommandMetrics.exportNow();
+            List<String> lines = Files.readAllLines(file);
+            System.out.println(lines);
+            Assertions.assertTrue(lines.stream().anyMatch(line -> line.contains(" square count=103 ")));
+        } finally {
+            CommandMetrics.removeExporter(exporter);
+            handler.shutdown();
+            interpreter.unregister(factory);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static class MetricsFactory {
+        @Cmd
+        public int square(int i) {
+            if (i < 0)
+                throw new IllegalArgumentException("负数");
+            return i * i;
+        }
+
+        @Cmd(type = CmdType.Filter)
+        public boolean rejectThousand(String command) {
+            return !command.equals("square 1000");
+        }
+    }
+
+}
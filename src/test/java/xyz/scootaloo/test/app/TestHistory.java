@@ -0,0 +1,65 @@
+package xyz.scootaloo.test.app;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.client.Client;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.util.List;
+
+/**
+ * 测试环形历史记录和按命令名查询
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 17:30
+ */
+public class TestHistory {
+
+    @Test
+    public void testRing() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        HistoryFactory factory = new HistoryFactory();
+        interpreter.register(factory);
+        ResourcesHandler handler = interpreter.setUser("history-user");
+        try {
+            int max = interpreter.getConfig().getMaxHistory();
+            for (int i = 0; i<max * 2; i++) {
+                interpreter.interpret("odd " + i);
+                if (i % 3 == 0)
+                    interpreter.interpret("third " + i);
+            }
+            Client.History history = Interpreter.getCurrentUser().getResources().getHistory();
+            Assertions.assertEquals(max, history.size());
+            Assertions.assertEquals(max, history.getInvokeHistory().size());
+
+            List<InvokeInfo> thirds = history.latest("third", 3);
+            Assertions.assertEquals(3, thirds.size());
+            Assertions.assertEquals(max * 2 - 2, (int) thirds.get(2).get());
+            Assertions.assertEquals(max * 2 - 8, (int) thirds.get(0).get());
+
+            List<InvokeInfo> his = interpreter.interpret("his -n 2 -s odd").get();
+            Assertions.assertEquals(2, his.size());
+            Assertions.assertEquals(max * 2 - 1, (int) his.get(1).get());
+            Assertions.assertTrue(history.latest("none", 5).isEmpty());
+        } finally {
+            handler.shutdown();
+            interpreter.unregister(factory);
+        }
+    }
+
+    public static class HistoryFactory {
+        @Cmd
+        public int odd(int i) {
+            return i;
+        }
+
+        @Cmd
+        public int third(int i) {
+            return i;
+        }
+    }
+
+}
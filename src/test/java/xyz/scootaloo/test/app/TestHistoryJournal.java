@@ -0,0 +1,100 @@
+package xyz.scootaloo.test.app;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+import xyz.scootaloo.console.app.support.HistoryJournal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 测试历史记录日志的写入、分段和重新打开
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 18:10
+ */
+public class TestHistoryJournal {
+
+    @Test
+    public void testAppendAndReplay() throws IOException {
+        Path dir = Files.createTempDirectory("journal");
+        HistoryJournal journal = HistoryJournal.open(dir, 4096, HistoryJournal.RtnMode.STRING);
+        int total = 2000;
+        for (int i = 0; i<total; i++) {
+            String name = i % 4 == 0 ? "add" : "echo";
+            journal.append("u1", InvokeInfo.restore(name, "arg " + i, i, i, 1, i % 7 != 0, null));
+            if (i % 10 == 0)
+                journal.append("u2", InvokeInfo.restore("get", "k", "值" + i, i, 0, true, null));
+        }
+        Assertions.assertEquals(total, journal.count("u1"));
+        Assertions.assertEquals(total / 10, journal.count("u2"));
+        Assertions.assertTrue(segments(dir.resolve("u_u1")) > 1);
+
+        List<InvokeInfo> adds = journal.latest("u1", "add", 3);
+        System.out.println(adds);
+        Assertions.assertEquals(3, adds.size());
+        Assertions.assertEquals("arg 1996", adds.get(2).getCmdArgs());
+        Assertions.assertEquals("1988", adds.get(0).get());
+        Assertions.assertEquals("值1990", journal.latest("u2", null, 1).get(0).get());
+        Assertions.assertEquals(total / 4, journal.latest("u1", "add", -1).size());
+        journal.close();
+
+        // 模拟写入到一半时进程退出，重新打开后截断不完整的记录并继续写入
+        Path last = lastSegment(dir.resolve("u_u1"));
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+        }
+        journal = HistoryJournal.open(dir, 4096, HistoryJournal.RtnMode.NONE);
+        Assertions.assertEquals(total, journal.count("u1"));
+        journal.append("u1", InvokeInfo.restore("add", "x", "ignored", 0, 0, true, null));
+        Assertions.assertEquals(total + 1, journal.count("u1"));
+        InvokeInfo latest = journal.latest("u1", "add", 1).get(0);
+        Assertions.assertEquals("x", latest.getCmdArgs());
+        Assertions.assertNull(latest.get());
+        Assertions.assertTrue(journal.latest("nobody", null, -1).isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        HistoryJournal journal = HistoryJournal.open(dir, 4096, HistoryJournal.RtnMode.STRING);
+        for (int i = 0; i<200; i++)
+            journal.append("r" + i, InvokeInfo.restore("echo", "a", i, i, 0, true, null));
+        Assertions.assertEquals(200, journal.writerCount());
+        for (int i = 0; i<200; i++)
+            journal.release("r" + i);
+        // 释放之后不再持有写入器，已经写入的记录仍然可以查询
+        Assertions.assertEquals(0, journal.writerCount());
+        Assertions.assertEquals(1, journal.count("r7"));
+
+        // 写入和释放同时进行，记录不会丢失
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i<2000; i++)
+                journal.append("r0", InvokeInfo.restore("echo", "b", i, i, 0, true, null));
+        });
+        writer.start();
+        while (writer.isAlive())
+            journal.release("r0");
+        writer.join();
+        Assertions.assertEquals(2001, journal.count("r0"));
+        journal.close();
+    }
+
+    private static long segments(Path userDir) throws IOException {
+        try (Stream<Path> files = Files.list(userDir)) {
+            return files.count();
+        }
+    }
+
+    private static Path lastSegment(Path userDir) throws IOException {
+        try (Stream<Path> files = Files.list(userDir)) {
+            return files.max(Path::compareTo).orElseThrow(IllegalStateException::new);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package xyz.scootaloo.test.app;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.mark.Stateless;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.support.ResultCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试命令结果缓存
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:10
+ */
+public class TestResultCache {
+
+    @Test
+    public void testCache() throws InterruptedException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        LookupFactory factory = new LookupFactory();
+        interpreter.register(factory);
+        ResultCache.Stats before = ResultCache.getStats();
+        try {
+            ResultCache.setMaxSize(2);
+            ResultCache.setTtl(0, TimeUnit.SECONDS);
+            ResultCache.resetStats();
+            Assertions.assertEquals("1-3", interpreter.interpret("lookup 1 3").get());
+            Assertions.assertEquals("1-3", interpreter.interpret("lookup 1 3").get());
+            Assertions.assertEquals(1, factory.count.get());
+            Assertions.assertEquals(1, ResultCache.getStats().getHits());
+
+            // 数组参数按照内容比较
+            Assertions.assertEquals(6, (int) interpreter.interpret("sum 1,2,3").get());
+            Assertions.assertEquals(6, (int) interpreter.interpret("sum 1,2,3").get());
+            Assertions.assertEquals(2, factory.count.get());
+
+            // 超出容量时回收最久没有使用的结果
+            interpreter.interpret("lookup 2 2");
+            interpreter.interpret("lookup 1 3");
+            Assertions.assertEquals(4, factory.count.get());
+            Assertions.assertEquals(2, ResultCache.getStats().getSize());
+            Assertions.assertTrue(ResultCache.getStats().getEvictions() > 0);
+
+            // 执行成功后清空 lookup 的结果
+            interpreter.interpret("update");
+            interpreter.interpret("lookup 1 3");
+            Assertions.assertEquals(5, factory.count.get());
+
+            // 过期
+            ResultCache.setTtl(30, TimeUnit.MILLISECONDS);
+            interpreter.interpret("lookup 7 7");
+            Thread.sleep(60);
+            interpreter.interpret("lookup 7 7");
+            Assertions.assertEquals(7, factory.count.get());
+            Assertions.assertEquals(1, ResultCache.getStats().getExpirations());
+            interpreter.interpret("cache");
+        } finally {
+            interpreter.unregister(factory);
+            ResultCache.setMaxSize(before.getMaxSize());
+            ResultCache.setTtl(before.getTtlSeconds(), TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(0, ResultCache.getStats().getSize());
+    }
+
+    @Test
+    public void testNullAndClassLevel() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        LookupFactory lookup = new LookupFactory();
+        PureFactory pure = new PureFactory();
+        interpreter.register(lookup);
+        interpreter.register(pure);
+        ResultCache.Stats before = ResultCache.getStats();
+        try {
+            ResultCache.setMaxSize(16);
+            ResultCache.setTtl(0, TimeUnit.SECONDS);
+            // 返回null和void的命令同样只执行一次
+            Assertions.assertNull(interpreter.interpret("find 1").get());
+            Assertions.assertNull(interpreter.interpret("find 1").get());
+            Assertions.assertEquals(1, lookup.count.get());
+            interpreter.interpret("touch 1");
+            interpreter.interpret("touch 1");
+            Assertions.assertEquals(2, lookup.count.get());
+
+            // 类上的 @Stateless 对类中所有的命令生效
+            Assertions.assertEquals(4, (int) interpreter.interpret("twice 2").get());
+            Assertions.assertEquals(4, (int) interpreter.interpret("twice 2").get());
+            Assertions.assertEquals(1, pure.count.get());
+        } finally {
+            interpreter.unregister(lookup);
+            interpreter.unregister(pure);
+            ResultCache.setMaxSize(before.getMaxSize());
+            ResultCache.setTtl(before.getTtlSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    public static class LookupFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Cmd(cache = true)
+        public String lookup(int a, int b) {
+            count.incrementAndGet();
+            return a + "-" + b;
+        }
+
+        @Stateless
+        @Cmd
+        public int sum(int[] values) {
+            count.incrementAndGet();
+            int sum = 0;
+            for (int value : values)
+                sum += value;
+            return sum;
+        }
+
+        @Cmd(evict = "lookup")
+        public void update() {
+        }
+
+        @Stateless
+        @Cmd
+        public String find(int id) {
+            count.incrementAndGet();
+            return null;
+        }
+
+        @Cmd(cache = true)
+        public void touch(int id) {
+            count.incrementAndGet();
+        }
+    }
+
+    @Stateless
+    public static class PureFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Cmd
+        public int twice(int value) {
+            count.incrementAndGet();
+            return value * 2;
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package xyz.scootaloo.test.app;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.client.Client;
+import xyz.scootaloo.console.app.client.SessionSnapshots;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 测试会话快照的保存和恢复
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:30
+ */
+public class TestSessionSnapshots {
+
+    @Test
+    public void testRestore() throws IOException {
+        Path dir = Files.createTempDirectory("console-snapshot");
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        String userKey = "snap/user 1";
+        SessionSnapshots.allowClass(Cart.class);
+        SessionSnapshots snapshots = SessionSnapshots.open(dir);
+        Client before = interpreter.runAs(userKey, () -> {
+            Client client = Interpreter.getCurrentUser();
+            client.getResources().setValue(new Cart("apple", 3));
+            interpreter.set("n", 42);
+            interpreter.set("name", "小明");
+            interpreter.set("thread", Thread.currentThread()); // 不能序列化，不保存
+            interpreter.interpret("app");
+            interpreter.interpret("echo hello");
+            return client;
+        });
+        // 系统监听器启用时才有历史记录
+        int historySize = before.getResources().getHistory().size();
+        snapshots.capture(before);
+        snapshots.close();
+        Assertions.assertTrue(snapshots.knownKeys().contains(userKey));
+
+        // 重新打开目录，相当于重启应用
+        interpreter.getClientCenter().destroyUser(userKey);
+        SessionSnapshots reopened = SessionSnapshots.open(dir);
+        try {
+            Assertions.assertTrue(reopened.knownKeys().contains(userKey));
+            Client after = interpreter.runAs(userKey, Interpreter::getCurrentUser);
+            Assertions.assertNotSame(before, after);
+            Assertions.assertTrue(reopened.restore(after));
+
+            Client.Resources resources = after.getResources();
+            Cart cart = resources.getValue();
+            Assertions.assertEquals("apple", cart.item);
+            Assertions.assertEquals(3, cart.count);
+            Assertions.assertEquals(42, resources.getVariablePool().getInt("n", -1));
+            Assertions.assertEquals("小明", resources.getVariablePool().get("name"));
+            Assertions.assertFalse(resources.getVariablePool().containsKey("thread"));
+            List<InvokeInfo> history = resources.getHistory().getInvokeHistory();
+            history.forEach(System.out::println);
+            Assertions.assertEquals(historySize, history.size());
+
+            // 损坏的文件不会被恢复，关闭时其他测试留下的会话也会写入这个目录，所以损坏所有快照文件
+            List<Path> snapFiles;
+            try (Stream<Path> files = Files.list(dir)) {
+                snapFiles = files.filter(path -> path.toString().endsWith(".snap")).collect(Collectors.toList());
+            }
+            Assertions.assertFalse(snapFiles.isEmpty());
+            for (Path file : snapFiles) {
+                byte[] data = Files.readAllBytes(file);
+                data[data.length / 2] ^= 1;
+                Files.write(file, data);
+            }
+            interpreter.getClientCenter().destroyUser(userKey);
+            Client broken = interpreter.runAs(userKey, Interpreter::getCurrentUser);
+            Assertions.assertFalse(reopened.restore(broken));
+
+            Assertions.assertTrue(reopened.delete(userKey));
+            Assertions.assertFalse(reopened.knownKeys().contains(userKey));
+        } finally {
+            reopened.close();
+            interpreter.getClientCenter().destroyUser(userKey);
+        }
+    }
+
+    @Test
+    public void testAllowList() throws IOException {
+        Path dir = Files.createTempDirectory("console-snapshot");
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        String userKey = "snap/allow";
+        SessionSnapshots snapshots = SessionSnapshots.open(dir);
+        try {
+            Client before = interpreter.runAs(userKey, () -> {
+                Client client = Interpreter.getCurrentUser();
+                client.getResources().setValue(new Gadget());
+                interpreter.set("list", new ArrayList<>(Arrays.asList(1, "a", TimeUnit.SECONDS)));
+                interpreter.set("ints", new int[] { 1, 2 });
+                interpreter.set("gadgets", new Gadget[] { new Gadget() });
+                return client;
+            });
+            snapshots.capture(before);
+            interpreter.getClientCenter().destroyUser(userKey);
+            Client after = interpreter.runAs(userKey, Interpreter::getCurrentUser);
+            Assertions.assertTrue(snapshots.restore(after));
+
+            // 没有登记的类不会被反序列化
+            Client.Resources resources = after.getResources();
+            Assertions.assertNull(resources.getValue());
+            Assertions.assertNull(resources.getVariablePool().get("gadgets"));
+            Assertions.assertEquals(0, Gadget.restored.get());
+            Assertions.assertEquals(Arrays.asList(1, "a", TimeUnit.SECONDS), resources.getVariablePool().get("list"));
+            Assertions.assertArrayEquals(new int[] { 1, 2 }, (int[]) resources.getVariablePool().get("ints"));
+        } finally {
+            snapshots.delete(userKey);
+            snapshots.close();
+            interpreter.getClientCenter().destroyUser(userKey);
+        }
+    }
+
+    private static class Gadget implements Serializable {
+        private static final AtomicInteger restored = new AtomicInteger();
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            restored.incrementAndGet();
+        }
+    }
+
+    private static class Cart implements Serializable {
+        private final String item;
+        private final int count;
+
+        private Cart(String item, int count) {
+            this.item = item;
+            this.count = count;
+        }
+    }
+
+}
@@ -1,12 +1,16 @@
 package xyz.scootaloo.test.parser;
 
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import xyz.scootaloo.console.app.anno.Opt;
+import xyz.scootaloo.console.app.parser.MethodMeta;
+import xyz.scootaloo.console.app.parser.ParameterParser;
 import xyz.scootaloo.console.app.parser.preset.PresetFactoryManager;
 import xyz.scootaloo.console.app.util.ParserTester;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +36,41 @@ public class TestCollectionParser {
         System.out.println(method);
     }
 
+    @Test
+    public void testNested() throws Exception {
+        ParameterParser parser = PresetFactoryManager.getParserByName("collection").orElse(null);
+        Assertions.assertNotNull(parser);
+        Method method = TestCollectionParser.class.getDeclaredMethod("nested", Map.class, int[].class, List.class);
+        MethodMeta meta = MethodMeta.getInstance(method, this);
+
+        Object[] args = parser.parse(meta, "g={a:[1, 2], 'b c':[]} [7,8 ,9] [[1.5], (2, 2, 3)]").getArgs();
+        Map<?, ?> groups = (Map<?, ?>) args[0];
+        Assertions.assertEquals(Arrays.asList(1L, 2L), groups.get("a"));
+        Assertions.assertEquals(Collections.emptyList(), groups.get("b c"));
+        Assertions.assertArrayEquals(new int[] {7, 8, 9}, (int[]) args[1]);
+        Assertions.assertEquals(Arrays.asList(Collections.singletonList(1.5), Arrays.asList(2.0, 3.0)), args[2]);
+
+        // 缺省的参数是空集合
+        args = parser.parse(meta, "").getArgs();
+        Assertions.assertTrue(((Map<?, ?>) args[0]).isEmpty());
+        Assertions.assertEquals(0, ((int[]) args[1]).length);
+
+        // 大量数据
+        StringBuilder sb = new StringBuilder("g={} [");
+        for (int i = 0; i<50000; i++)
+            sb.append(i).append(',');
+        int[] large = (int[]) parser.parse(meta, sb.append(']').toString()).getArgs()[1];
+        Assertions.assertEquals(50000, large.length);
+        Assertions.assertEquals(49999, large[49999]);
+
+        Assertions.assertThrows(RuntimeException.class, () -> parser.parse(meta, "[1, 2)"));
+        Assertions.assertThrows(RuntimeException.class, () -> parser.parse(meta, "g={a 1}"));
+    }
+
+    public void nested(@Opt(value = 'g', fullName = "g") Map<String, List<Long>> groups,
+                       int[] array, List<List<Double>> lists) {
+    }
+
     public void test(@Opt(value = 'm', fullName = "map") Map<String, Integer> map,
                      @Opt(value = 'l', fullName = "list") List<Integer> list,
                      @Opt(value = 's', fullName = "set") Set<Long> set,
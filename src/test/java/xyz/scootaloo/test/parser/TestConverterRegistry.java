@@ -0,0 +1,56 @@
+package xyz.scootaloo.test.parser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.parser.ConverterRegistry;
+import xyz.scootaloo.console.app.parser.TransformFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * 测试转换器的缓存和嵌套泛型的转换
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:50
+ */
+public class TestConverterRegistry {
+
+    @Test
+    public void testConvert() throws Exception {
+        Method method = Holder.class.getDeclaredMethod("params", List.class, Set.class, int[].class,
+                Map.class, List.class);
+        Class<?>[] types = method.getParameterTypes();
+        Type[] generics = method.getGenericParameterTypes();
+
+        Assertions.assertEquals(Arrays.asList(1, 2, 3), TransformFactory.parsingParam("1,2,3", types[0], generics[0]));
+        Set<?> set = (Set<?>) TransformFactory.parsingParam("3,1,3", types[1], generics[1]);
+        Assertions.assertEquals(Arrays.asList(3L, 1L), new ArrayList<>(set));
+        Assertions.assertArrayEquals(new int[] {4, 5}, (int[]) TransformFactory.parsingParam("4,5", types[2], generics[2]));
+        Assertions.assertEquals(0, ((int[]) TransformFactory.parsingParam("", types[2], generics[2])).length);
+
+        // 嵌套的泛型，输入是已经解析好的结构
+        Map<String, Object> tree = new LinkedHashMap<>();
+        tree.put("a", Arrays.asList("1", "2"));
+        tree.put("b", Collections.singletonList("3"));
+        Map<?, ?> map = (Map<?, ?>) TransformFactory.parsingParam(tree, types[3], generics[3]);
+        Assertions.assertEquals(Arrays.asList(1, 2), map.get("a"));
+        Assertions.assertEquals(Collections.singletonList(3), map.get("b"));
+        List<?> lists = (List<?>) TransformFactory.parsingParam(
+                Arrays.asList(Arrays.asList("1.5"), Arrays.asList("2", "3")), types[4], generics[4]);
+        Assertions.assertEquals(Arrays.asList(Arrays.asList(1.5), Arrays.asList(2.0, 3.0)), lists);
+        System.out.println(map + " " + lists);
+
+        // 同一个类型只生成一次转换器
+        Assertions.assertSame(ConverterRegistry.get(types[3], generics[3]), ConverterRegistry.get(types[3], generics[3]));
+        Assertions.assertSame(ConverterRegistry.get(int.class, null), ConverterRegistry.get(int.class, int.class));
+    }
+
+    private static class Holder {
+        @SuppressWarnings("unused")
+        void params(List<Integer> list, Set<Long> set, int[] array,
+                    Map<String, List<Integer>> map, List<List<Double>> lists) {
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package xyz.scootaloo.test.parser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.parser.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试参数解析结果缓存
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:20
+ */
+public class TestParseCache {
+
+    @Test
+    public void testReplay() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        ScaleFactory factory = new ScaleFactory();
+        interpreter.register(factory);
+        try {
+            ParseCache.Stats before = ParseCache.getStats();
+            for (int i = 0; i<5; i++) {
+                InvokeInfo info = interpreter.interpret("scale 2 1,2,3");
+                Assertions.assertTrue(info.isSuccess(), info::getExMsg);
+                // 命令方法修改了数组，缓存中的参数不受影响
+                Assertions.assertEquals(12, (int) info.get());
+            }
+            ParseCache.Stats after = ParseCache.getStats();
+            System.out.println(after);
+            Assertions.assertEquals(4, after.getHits() - before.getHits());
+
+            // 有占位符时不缓存
+            interpreter.set("factor", 3);
+            Assertions.assertEquals(18, (int) interpreter.interpret("scale ${factor} 1,2,3").get());
+            interpreter.set("factor", 4);
+            Assertions.assertEquals(24, (int) interpreter.interpret("scale ${factor} 1,2,3").get());
+            Assertions.assertEquals(after.getHits(), ParseCache.getStats().getHits());
+            Assertions.assertTrue(ParseCache.getStats().getBypasses() >= after.getBypasses() + 2);
+
+            // 有预设类型的参数时不缓存
+            interpreter.interpret("roll 6");
+            interpreter.interpret("roll 6");
+            Assertions.assertEquals(after.getHits(), ParseCache.getStats().getHits());
+        } finally {
+            interpreter.getClientCenter().getPublicUser().getResources().getVariablePool().remove("factor");
+            interpreter.unregister(factory);
+        }
+    }
+
+    @Test
+    public void testCustomParser() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        ScaleFactory factory = new ScaleFactory();
+        interpreter.register(factory);
+        try {
+            // 自定义解析器每次给出不同的参数，结果不能被缓存
+            AtomicInteger calls = new AtomicInteger();
+            NameableParameterParser counting = new NameableParameterParser() {
+                @Override
+                public String name() {
+                    return "counting";
+                }
+
+                @Override
+                public ResultWrapper parse(MethodMeta meta, String args) {
+                    return ParameterWrapper.successWith(new Object[] {calls.incrementAndGet(), new int[] {1}});
+                }
+            };
+            Interpreter.MethodActuator actuator = (Interpreter.MethodActuator) AssemblyFactory.findActuator("scale");
+            actuator.setParser(counting);
+            for (int i = 1; i<=3; i++)
+                Assertions.assertEquals(i, (int) interpreter.interpret("scale 1 1").get());
+            Assertions.assertEquals(3, calls.get());
+        } finally {
+            interpreter.unregister(factory);
+        }
+    }
+
+    public static class ScaleFactory {
+        @Cmd
+        public int scale(int factor, int[] values) {
+            int sum = 0;
+            for (int i = 0; i<values.length; i++) {
+                sum += values[i] * factor;
+                values[i] = -1;
+            }
+            return sum;
+        }
+
+        @Cmd
+        public int roll(int bound, Random random) {
+            return random.nextInt(bound);
+        }
+    }
+
+}
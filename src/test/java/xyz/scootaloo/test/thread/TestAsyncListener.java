@@ -0,0 +1,233 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.client.ResourcesHandler;
+import xyz.scootaloo.console.app.event.AppListenerAdapter;
+import xyz.scootaloo.console.app.event.AppListenerProperty;
+import xyz.scootaloo.console.app.event.EventPublisher;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 测试监听器的优先级和异步处理
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 21:20
+ */
+public class TestAsyncListener {
+
+    @Test
+    public void testAsync() throws InterruptedException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        EchoFactory factory = new EchoFactory();
+        interpreter.register(factory);
+        SlowListener blocking = new SlowListener("slow-block", 4, AppListenerProperty.Overflow.BLOCK, 2);
+        SlowListener dropping = new SlowListener("slow-drop", 2, AppListenerProperty.Overflow.DROP, 50);
+        EventPublisher.regListener(blocking);
+        EventPublisher.regListener(dropping);
+        ResourcesHandler handler = interpreter.setUser("async-user");
+        try {
+            int total = 40;
+            long start = System.currentTimeMillis();
+            for (int i = 0; i<total; i++)
+                Assertions.assertEquals(i, (int) interpreter.interpret("echoInt " + i).get());
+            long elapsed = System.currentTimeMillis() - start;
+            Assertions.assertTrue(EventPublisher.awaitAsync(10, TimeUnit.SECONDS));
+            System.out.println("elapsed: " + elapsed + "ms, blocking: " + blocking.seen.size() +
+                    ", dropping: " + dropping.seen.size());
+            EventPublisher.showAllListeners();
+
+            // 等待的监听器处理了所有事件，并且按照发布的顺序，用户身份与发布事件时一致
+            Assertions.assertEquals(total, blocking.seen.size());
+            for (int i = 0; i<total; i++)
+                Assertions.assertEquals("async-user:" + i, blocking.seen.get(i));
+            // 丢弃事件的监听器没有拖慢命令
+            Assertions.assertTrue(dropping.seen.size() < total);
+            Assertions.assertFalse(dropping.seen.isEmpty());
+        } finally {
+            EventPublisher.removeListener(blocking);
+            EventPublisher.removeListener(dropping);
+            handler.shutdown();
+            interpreter.unregister(factory);
+        }
+        // 移除之后不再收到事件
+        int before = blocking.seen.size();
+        interpreter.interpret("app");
+        Assertions.assertTrue(EventPublisher.awaitAsync(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(before, blocking.seen.size());
+    }
+
+    @Test
+    public void testEvictedUser() throws InterruptedException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        EchoFactory factory = new EchoFactory();
+        interpreter.register(factory);
+        SlowListener listener = new SlowListener("slow-evicted", 8, AppListenerProperty.Overflow.BLOCK, 30);
+        EventPublisher.regListener(listener);
+        try {
+            interpreter.runAs("gone-user", () -> {
+                for (int i = 0; i<3; i++)
+                    interpreter.interpret("echoInt " + i);
+                return null;
+            });
+            // 事件还在队列中时回收会话，处理事件不会重新创建这个会话
+            interpreter.getClientCenter().destroyUser("gone-user");
+            Assertions.assertTrue(EventPublisher.awaitAsync(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(3, listener.seen.size());
+            Assertions.assertEquals("gone-user:2", listener.seen.get(2));
+            Assertions.assertTrue(interpreter.getClientCenter().sessions().stream()
+                    .noneMatch(client -> client.getUserKey().equals("gone-user")));
+        } finally {
+            EventPublisher.removeListener(listener);
+            interpreter.unregister(factory);
+        }
+    }
+
+    @Test
+    public void testOfferAfterStop() throws Exception {
+        Class<?> laneType = Class.forName("xyz.scootaloo.console.app.event.EventPublisher$AsyncLane");
+        Constructor<?> constructor = laneType.getDeclaredConstructor(
+                String.class, int.class, AppListenerProperty.Overflow.class);
+        constructor.setAccessible(true);
+        Object lane = constructor.newInstance("stopped", 4, AppListenerProperty.Overflow.BLOCK);
+        Method start = method(laneType, "start");
+        Method stop = method(laneType, "stop");
+        Method offer = method(laneType, "offer", Runnable.class);
+        Field pending = field(laneType, "pending");
+        Field dropped = field(laneType, "dropped");
+        Field thread = field(laneType, "thread");
+
+        // 没有启动的队列在停止时丢弃剩余的事件
+        List<String> seen = new CopyOnWriteArrayList<>();
+        offer.invoke(lane, (Runnable) () -> seen.add("queued"));
+        stop.invoke(lane);
+        Assertions.assertEquals(0, ((AtomicInteger) pending.get(lane)).get());
+        Assertions.assertEquals(1, ((LongAdder) dropped.get(lane)).sum());
+
+        // 处理线程退出之后发布的事件算作丢弃，不会一直留在队列中
+        lane = constructor.newInstance("stopped", 4, AppListenerProperty.Overflow.BLOCK);
+        start.invoke(lane);
+        offer.invoke(lane, (Runnable) () -> seen.add("handled"));
+        stop.invoke(lane);
+        Thread worker = (Thread) thread.get(lane);
+        worker.join(5000);
+        Assertions.assertFalse(worker.isAlive());
+        offer.invoke(lane, (Runnable) () -> seen.add("late"));
+        Assertions.assertEquals(0, ((AtomicInteger) pending.get(lane)).get());
+        Assertions.assertEquals(1, ((LongAdder) dropped.get(lane)).sum());
+        Assertions.assertEquals(Collections.singletonList("handled"), seen);
+    }
+
+    private static Method method(Class<?> type, String name, Class<?> ... params) throws NoSuchMethodException {
+        Method method = type.getDeclaredMethod(name, params);
+        method.setAccessible(true);
+        return method;
+    }
+
+    private static Field field(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    @Test
+    public void testPriority() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        Suffix late = new Suffix("late", 'b', 20);
+        Suffix early = new Suffix("early", 'a', 10);
+        EventPublisher.regListener(late);
+        EventPublisher.regListener(early);
+        try {
+            Assertions.assertEquals("cmd ab", EventPublisher.onInput("cmd "));
+        } finally {
+            EventPublisher.removeListener(late);
+            EventPublisher.removeListener(early);
+        }
+        Assertions.assertEquals("cmd ", EventPublisher.onInput("cmd "));
+        Assertions.assertNotNull(interpreter);
+    }
+
+    public static class EchoFactory {
+        @Cmd
+        public int echoInt(int i) {
+            return i;
+        }
+    }
+
+    private static class SlowListener implements AppListenerAdapter {
+        private final String name;
+        private final int queueSize;
+        private final AppListenerProperty.Overflow overflow;
+        private final long delay;
+        private final List<String> seen = new CopyOnWriteArrayList<>();
+
+        private SlowListener(String name, int queueSize, AppListenerProperty.Overflow overflow, long delay) {
+            this.name = name;
+            this.queueSize = queueSize;
+            this.overflow = overflow;
+            this.delay = delay;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void config(AppListenerProperty interested) {
+            interested.onInputResolved().async(queueSize, overflow);
+        }
+
+        @Override
+        public void onInputResolved(String cmdName, InvokeInfo info) {
+            if (!cmdName.equals("echoint"))
+                return;
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            seen.add(Interpreter.getCurrentUser().getUserKey() + ":" + info.get());
+        }
+    }
+
+    private static class Suffix implements AppListenerAdapter {
+        private final String name;
+        private final char suffix;
+        private final int order;
+
+        private Suffix(String name, char suffix, int order) {
+            this.name = name;
+            this.suffix = suffix;
+            this.order = order;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void config(AppListenerProperty interested) {
+            interested.onInput(order);
+        }
+
+        @Override
+        public String onInput(String cmdline) {
+            return cmdline + suffix;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.client.out.AsyncPrinter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 测试异步输出，多个线程同时输出时不丢失内容，且同一线程的输出保持顺序
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 20:10
+ */
+public class TestAsyncPrinter {
+
+    @Test
+    public void testFile() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("output", ".log");
+        AsyncPrinter printer = AsyncPrinter.toFile(file, AsyncPrinter.FlushPolicy.BATCH, 16);
+        int threads = 8, lines = 5000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t<threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i<lines; i++) {
+                    printer.print(id + ":");
+                    printer.println(i);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        printer.close();
+        System.out.println(printer);
+
+        List<String> content = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Assertions.assertEquals(threads * lines, content.size());
+        int[] next = new int[threads];
+        for (String line : content) {
+            String[] parts = line.split(":");
+            int id = Integer.parseInt(parts[0]);
+            Assertions.assertEquals(next[id]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void testModeAndFlush() throws InterruptedException {
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes, true));
+        AsyncPrinter printer = AsyncPrinter.toStdout(AsyncPrinter.FlushPolicy.LINE, 64);
+        try {
+            printer.setMode(false);
+            printer.println("deferred");
+            Thread.sleep(200);
+            Assertions.assertEquals("", bytes.toString());
+            printer.setMode(true);
+            printer.print("a");
+            printer.println("b");
+            printer.flush();
+            Assertions.assertEquals("deferred" + System.lineSeparator() + "ab" + System.lineSeparator(),
+                    bytes.toString());
+            printer.print("tail");
+        } finally {
+            printer.close();
+            System.setOut(stdout);
+        }
+        Assertions.assertTrue(bytes.toString().endsWith("tail"));
+    }
+
+}
@@ -0,0 +1,140 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.client.out.CPrinter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+import xyz.scootaloo.console.app.support.BackstageTaskManager;
+import xyz.scootaloo.console.app.support.BackstageTaskManager.BackstageTaskInfo;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 测试后台任务的优先级、超时、配额和输出器
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 16:40
+ */
+public class TestBackstageTask {
+
+    @Test
+    public void testScheduler() throws Exception {
+        Set<BackstageTaskInfo> taskList = new LinkedHashSet<>();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        // 占满线程池
+        for (int i = 0; i<3; i++) {
+            BackstageTaskManager.submit("block" + i, "tester", () -> {
+                release.await();
+                return InvokeInfo.simpleSuccess();
+            }, taskList);
+        }
+        BackstageTaskInfo low = BackstageTaskManager.submit("low:9", "tester", () -> {
+            order.add("low");
+            return InvokeInfo.simpleSuccess();
+        }, taskList);
+        BackstageTaskInfo high = BackstageTaskManager.submit("high:1", "tester", () -> {
+            order.add("high");
+            CPrinter printer = BackstageTaskManager.getPrinter();
+            printer.println("output of high");
+            return InvokeInfo.simpleSuccess();
+        }, taskList);
+        Assertions.assertNotNull(low);
+        Assertions.assertNotNull(high);
+        release.countDown();
+        low.getFuture().get();
+        high.getFuture().get();
+        Assertions.assertEquals(Arrays.asList("high", "low"), order);
+        BackstageTaskManager.showLogs(taskList, "high", -1);
+
+        BackstageTaskInfo slow = BackstageTaskManager.submit("slow::50", "tester", () -> {
+            Thread.sleep(2000);
+            return InvokeInfo.simpleSuccess();
+        }, taskList);
+        Thread.sleep(300);
+        Assertions.assertTrue(slow.getFuture().isCancelled());
+
+        StringBuilder sb = new StringBuilder();
+        taskList.forEach(task -> task.showTask(sb));
+        System.out.println(BackstageTaskManager.getMetrics());
+        Assertions.assertTrue(BackstageTaskManager.getMetrics().getTimedOut() >= 1);
+    }
+
+    @Test
+    public void testQuota() throws Exception {
+        Set<BackstageTaskInfo> taskList = new LinkedHashSet<>();
+        CountDownLatch release = new CountDownLatch(1);
+        int accepted = 0;
+        for (int i = 0; i<20; i++) {
+            BackstageTaskInfo info = BackstageTaskManager.submit("q" + i, "quota", () -> {
+                release.await();
+                return InvokeInfo.simpleSuccess();
+            }, taskList);
+            if (info != null)
+                accepted++;
+        }
+        Assertions.assertEquals(16, accepted);
+        Assertions.assertTrue(BackstageTaskManager.cancel(taskList, "q15"));
+        release.countDown();
+        Assertions.assertNull(BackstageTaskManager.submit("bad:x", "quota", InvokeInfo::simpleSuccess, taskList));
+    }
+
+    @Test
+    public void testQuotaAfterTimeout() throws Exception {
+        Set<BackstageTaskInfo> taskList = new LinkedHashSet<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch exited = new CountDownLatch(1);
+        List<BackstageTaskInfo> accepted = new ArrayList<>();
+        try {
+            // 不响应中断的任务，超时后仍然占用线程
+            BackstageTaskInfo stubborn = BackstageTaskManager.submit("stubborn::50", "stubborn", () -> {
+                while (!stop.get()) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException ignore) {
+                        // 忽略中断
+                    }
+                }
+                exited.countDown();
+                return InvokeInfo.simpleSuccess();
+            }, taskList);
+            Assertions.assertNotNull(stubborn);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!stubborn.getFuture().isCancelled() && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            Assertions.assertTrue(stubborn.getFuture().isCancelled());
+
+            for (int i = 0; i<20; i++) {
+                BackstageTaskInfo info = BackstageTaskManager.submit("s" + i, "stubborn", () -> {
+                    release.await();
+                    return InvokeInfo.simpleSuccess();
+                }, taskList);
+                if (info != null)
+                    accepted.add(info);
+            }
+            // 超时的任务还在执行，仍然占用一个配额
+            Assertions.assertEquals(15, accepted.size());
+
+            stop.set(true);
+            release.countDown();
+            BackstageTaskInfo last = null;
+            deadline = System.currentTimeMillis() + 5000;
+            while (last == null && System.currentTimeMillis() < deadline) {
+                last = BackstageTaskManager.submit("last", "stubborn", InvokeInfo::simpleSuccess, taskList);
+                Thread.sleep(10);
+            }
+            Assertions.assertNotNull(last);
+            accepted.add(last);
+        } finally {
+            stop.set(true);
+            release.countDown();
+            // 等待所有任务结束，不影响其他测试使用线程池
+            exited.await();
+            for (BackstageTaskInfo info : accepted)
+                info.getFuture().get();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.client.ReplacementRecord;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 测试占位符替换记录在多个用户同时执行命令时互不干扰
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 21:35
+ */
+public class TestReplacementRecord {
+
+    @Test
+    public void testUsers() throws Exception {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        SumFactory factory = new SumFactory();
+        interpreter.register(factory);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int u = 0; u<4; u++) {
+                int user = u;
+                futures.add(pool.submit(() -> interpreter.runAs("record-user-" + user, () -> {
+                    interpreter.set("a", user);
+                    interpreter.set("b", user * 100L);
+                    for (int i = 0; i<500; i++) {
+                        InvokeInfo info = interpreter.interpret("sumOf ${a} ${b} " + i);
+                        Assertions.assertTrue(info.isSuccess(), info::getExMsg);
+                        Assertions.assertEquals(user + user * 100L + i, (long) info.get());
+                    }
+                    ReplacementRecord record = Interpreter.getCurrentUser().getResources().getReplacementRecord();
+                    Assertions.assertEquals(2, record.size());
+                    Assertions.assertEquals(user, record.get(0).value);
+                    Assertions.assertEquals(user * 100L, record.get(1).value);
+                    Assertions.assertNull(record.get(2));
+                    return null;
+                })));
+            }
+            for (Future<?> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+
+            // 不存在的记录和不是数字的id都保持原样
+            interpreter.setUser("record-user-x");
+            Assertions.assertEquals("@#@7", interpreter.interpret("text @#@7").get());
+            Assertions.assertEquals("@#@x", interpreter.interpret("text @#@x").get());
+        } finally {
+            pool.shutdown();
+            interpreter.unregister(factory);
+        }
+    }
+
+    public static class SumFactory {
+        @Cmd
+        public long sumOf(int a, long b, int c) {
+            return a + b + c;
+        }
+
+        @Cmd
+        public String text(String text) {
+            return text;
+        }
+    }
+
+}
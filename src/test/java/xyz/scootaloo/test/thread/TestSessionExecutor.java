@@ -0,0 +1,143 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.error.CommandInvokeException;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+import xyz.scootaloo.console.app.parser.SessionExecutor;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试会话执行引擎: 同一用户的命令串行，不同用户的命令并行
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 15:50
+ */
+public class TestSessionExecutor {
+
+    @Test
+    public void testSerialPerUser() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        SessionFactory factory = new SessionFactory();
+        interpreter.register(factory);
+        SessionExecutor executor = interpreter.getSessionExecutor();
+        System.out.println(executor.getMode());
+
+        List<CompletableFuture<InvokeInfo>> futures = new ArrayList<>();
+        for (int i = 0; i<200; i++) {
+            for (int user = 0; user<8; user++)
+                futures.add(executor.submit("session-" + user, "seq " + i));
+        }
+        futures.forEach(CompletableFuture::join);
+        for (int user = 0; user<8; user++) {
+            List<Integer> seq = factory.sequences.get("session-" + user);
+            Assertions.assertEquals(200, seq.size());
+            for (int i = 0; i<200; i++)
+                Assertions.assertEquals(i, seq.get(i));
+            executor.closeSession("session-" + user).join();
+        }
+        Assertions.assertEquals(0, factory.overlap.get());
+        Assertions.assertEquals(0, executor.sessionCount());
+
+        InvokeInfo info = executor.await("session-x", "sleep", 10, TimeUnit.MILLISECONDS);
+        Assertions.assertFalse(info.isSuccess());
+        Assertions.assertEquals("session-x", executor.await("session-x", "who").get());
+        executor.closeSession("session-x").join();
+        interpreter.unregister(factory);
+    }
+
+    @Test
+    public void testIdleLanes() throws InterruptedException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        SessionFactory factory = new SessionFactory();
+        interpreter.register(factory);
+        SessionExecutor executor = interpreter.getSessionExecutor();
+        try {
+            // 没有关闭会话，通道在队列执行完毕后也会被移除
+            List<CompletableFuture<InvokeInfo>> futures = new ArrayList<>();
+            for (int i = 0; i<500; i++)
+                futures.add(executor.submit("lane-" + i, "who"));
+            futures.forEach(CompletableFuture::join);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (executor.sessionCount() > 0 && System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            Assertions.assertEquals(0, executor.sessionCount());
+
+            // 通道移除后再次提交，命令仍然按顺序执行
+            for (int i = 0; i<100; i++)
+                futures.add(executor.submit("lane-0", "seq " + i));
+            futures.forEach(CompletableFuture::join);
+            Assertions.assertEquals(100, factory.sequences.get("lane-0").size());
+            for (int i = 0; i<100; i++)
+                Assertions.assertEquals(i, factory.sequences.get("lane-0").get(i));
+            Assertions.assertEquals(0, factory.overlap.get());
+        } finally {
+            for (int i = 0; i<500; i++)
+                interpreter.getClientCenter().destroyUser("lane-" + i);
+            interpreter.unregister(factory);
+        }
+    }
+
+    @Test
+    public void testCloseAfterShutdown() throws Exception {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        // 使用独立的执行引擎，不影响解释器中的引擎
+        Constructor<SessionExecutor> constructor = SessionExecutor.class
+                .getDeclaredConstructor(Interpreter.class, SessionExecutor.Mode.class, int.class);
+        constructor.setAccessible(true);
+        SessionExecutor executor = constructor.newInstance(interpreter, SessionExecutor.Mode.POOL, 2);
+
+        // 关闭会话的任务在线程池中执行，不依赖提交之后才设置的状态
+        for (int i = 0; i<200; i++) {
+            executor.submit("close-" + i, "help");
+            executor.closeSession("close-" + i).get(5, TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(0, executor.sessionCount());
+
+        executor.shutdown();
+        Assertions.assertFalse(executor.submit("close-x", "help").join().isSuccess());
+        CompletableFuture<Void> closed = executor.closeSession("close-x");
+        ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+                () -> closed.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(CommandInvokeException.class, ex.getCause().getClass());
+    }
+
+    public static class SessionFactory {
+        private final Map<String, List<Integer>> sequences = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        private final AtomicInteger overlap = new AtomicInteger();
+
+        @Cmd
+        public void seq(int i) {
+            String user = who();
+            AtomicInteger counter = running.computeIfAbsent(user, key -> new AtomicInteger());
+            if (counter.incrementAndGet() != 1)
+                overlap.incrementAndGet();
+            // 同一个用户的命令不会并行，所以这里不需要同步
+            sequences.computeIfAbsent(user, key -> new ArrayList<>()).add(i);
+            counter.decrementAndGet();
+        }
+
+        @Cmd
+        public String who() {
+            return Interpreter.getCurrentUser().toString().replaceAll(".*userKey='([^']*)'.*", "$1");
+        }
+
+        @Cmd
+        public void sleep() throws InterruptedException {
+            Thread.sleep(200);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.client.Client;
+import xyz.scootaloo.console.app.client.ClientCenter;
+import xyz.scootaloo.console.app.parser.Interpreter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 测试会话数量上限和空闲回收
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:15
+ */
+public class TestSessionLifecycle {
+
+    @Test
+    public void testLifecycle() throws InterruptedException {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        ClientCenter center = interpreter.getClientCenter();
+        Map<String, ClientCenter.Cause> evicted = new ConcurrentHashMap<>();
+        ClientCenter.EvictionListener listener = (client, cause) -> evicted.put(client.getUserKey(), cause);
+        center.addEvictionListener(listener);
+        try {
+            // 超出上限时回收最久没有使用的会话
+            center.setMaxSessions(3);
+            for (int i = 0; i<5; i++) {
+                interpreter.runAs("lru-" + i, () -> interpreter.interpret("app"));
+                Thread.sleep(5);
+            }
+            List<String> keys = center.sessions().stream().map(Client::getUserKey).collect(Collectors.toList());
+            System.out.println(keys + " " + evicted);
+            Assertions.assertEquals(3, keys.size());
+            Assertions.assertEquals("lru-4", keys.get(0));
+            Assertions.assertEquals(ClientCenter.Cause.SIZE, evicted.get("lru-0"));
+            Assertions.assertEquals(ClientCenter.Cause.SIZE, evicted.get("lru-1"));
+            center.setMaxSessions(0);
+
+            // 空闲的会话被回收，正在执行命令的会话不会
+            center.setIdleTimeout(100, TimeUnit.MILLISECONDS);
+            interpreter.setUser("idle-user");
+            Client before = Interpreter.getCurrentUser();
+            interpreter.set("k", 1);
+            Assertions.assertTrue(interpreter.runAs("busy-user", () -> interpreter.interpret("sleep -m 400")).isSuccess());
+            Assertions.assertNull(evicted.get("busy-user"));
+            waitFor(() -> evicted.containsKey("idle-user"));
+            Assertions.assertEquals(ClientCenter.Cause.EXPIRED, evicted.get("idle-user"));
+            Assertions.assertTrue(before.isEvicted());
+
+            // 持有被回收会话的线程重新得到一个新的会话
+            interpreter.interpret("app");
+            Client after = Interpreter.getCurrentUser();
+            Assertions.assertNotSame(before, after);
+            Assertions.assertEquals("idle-user", after.getUserKey());
+            Assertions.assertFalse(after.getResources().getVariablePool().containsKey("k"));
+            interpreter.interpret("sessions");
+        } finally {
+            center.setIdleTimeout(0, TimeUnit.SECONDS);
+            center.setMaxSessions(0);
+            center.removeEvictionListener(listener);
+        }
+    }
+
+    @Test
+    public void testManySessions() {
+        ClientCenter center = ApplicationRunner.getInterpreter().getClientCenter();
+        long evicted = center.getEvictedCount(ClientCenter.Cause.SIZE);
+        center.setMaxSessions(100);
+        try {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i<20000; i++) {
+                center.createUser("many-" + i);
+                // 重新使用较早的会话，它会被移到队尾而不是被回收
+                center.createUser("many-keep");
+            }
+            System.out.println("create: " + (System.currentTimeMillis() - start) + "ms");
+            List<String> keys = keys(center);
+            Assertions.assertEquals(100, keys.size());
+            Assertions.assertTrue(keys.contains("many-keep"));
+            Assertions.assertTrue(keys.contains("many-19999"));
+            Assertions.assertFalse(keys.contains("many-19900"));
+            // 其他测试留下的空闲会话也会被回收
+            Assertions.assertTrue(center.getEvictedCount(ClientCenter.Cause.SIZE) - evicted >= 19901);
+        } finally {
+            center.setMaxSessions(0);
+            keys(center).stream().filter(key -> key.startsWith("many-")).forEach(center::destroyUser);
+        }
+    }
+
+    @Test
+    public void testSessionsCommand() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        ClientCenter center = interpreter.getClientCenter();
+        interpreter.runAs("owner-a", () -> interpreter.interpret("app"));
+        try {
+            // 普通用户只能看到自己的会话，不能回收其他用户的会话
+            List<?> visible = (List<?>) interpreter.runAs("owner-b", () -> interpreter.interpret("sessions -k owner-a")).get();
+            Assertions.assertEquals(1, visible.size());
+            Assertions.assertEquals("owner-b", ((Client) visible.get(0)).getUserKey());
+            Assertions.assertTrue(keys(center).contains("owner-a"));
+
+            // 可以回收自己的会话
+            interpreter.runAs("owner-b", () -> interpreter.interpret("sessions -k owner-b"));
+            Assertions.assertFalse(keys(center).contains("owner-b"));
+
+            // 默认用户可以回收所有会话
+            interpreter.runAs(center.getPublicUser().getUserKey(), () -> interpreter.interpret("sessions -k owner-a"));
+            Assertions.assertFalse(keys(center).contains("owner-a"));
+        } finally {
+            center.destroyUser("owner-a");
+            center.destroyUser("owner-b");
+        }
+    }
+
+    @Test
+    public void testEvictBeforeEnter() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        ClientCenter center = interpreter.getClientCenter();
+        ProbeFactory factory = new ProbeFactory();
+        interpreter.register(factory);
+        // 回收 victim 时顺便回收刚刚创建的 race-k，这时 race-k 已经返回给解释器，但还没有进入
+        ClientCenter.EvictionListener listener = (client, cause) -> {
+            if (client.getUserKey().equals("victim"))
+                center.destroyUser("race-k");
+        };
+        try {
+            interpreter.runAs("victim", () -> interpreter.interpret("app"));
+            interpreter.setUser("race-k");
+            Client first = Interpreter.getCurrentUser();
+            center.destroyUser("race-k");
+            center.setMaxSessions(1);
+            center.addEvictionListener(listener);
+
+            // 当前线程持有的会话已经被回收，解释器重新创建 race-k，创建时因为超出上限回收了 victim
+            Assertions.assertTrue(interpreter.interpret("probe").isSuccess());
+            Assertions.assertEquals(1, factory.calls.get());
+            // 命令不会在已经被回收的会话上执行
+            Assertions.assertEquals(0, factory.evicted.get());
+            Client current = Interpreter.getCurrentUser();
+            Assertions.assertNotSame(first, current);
+            Assertions.assertFalse(current.isEvicted());
+            Assertions.assertTrue(keys(center).contains("race-k"));
+        } finally {
+            center.removeEvictionListener(listener);
+            center.setMaxSessions(0);
+            interpreter.unregister(factory);
+            center.destroyUser("race-k");
+            center.destroyUser("victim");
+            interpreter.setUser(center.getPublicUser().getUserKey());
+        }
+    }
+
+    @Test
+    public void testSlowListener() throws Exception {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        ClientCenter center = interpreter.getClientCenter();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ClientCenter.EvictionListener listener = (client, cause) -> {
+            if (!client.getUserKey().equals("slow-victim"))
+                return;
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        interpreter.runAs("slow-victim", () -> interpreter.interpret("app"));
+        center.addEvictionListener(listener);
+        try {
+            CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> center.destroyUser("slow-victim"));
+            Assertions.assertTrue(entered.await(5, TimeUnit.SECONDS));
+            // 回调执行期间，其他会话的创建和回收不受影响
+            CompletableFuture<Client> other = CompletableFuture.supplyAsync(() -> center.createUser("slow-other"));
+            Assertions.assertEquals("slow-other", other.get(1, TimeUnit.SECONDS).getUserKey());
+            center.destroyUser("slow-other");
+            release.countDown();
+            slow.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            center.removeEvictionListener(listener);
+        }
+        Assertions.assertFalse(keys(center).contains("slow-victim"));
+    }
+
+    private static List<String> keys(ClientCenter center) {
+        return center.sessions().stream().map(Client::getUserKey).collect(Collectors.toList());
+    }
+
+    public static class ProbeFactory {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger evicted = new AtomicInteger();
+
+        @Cmd
+        public void probe() {
+            calls.incrementAndGet();
+            if (Interpreter.getCurrentUser().isEvicted())
+                evicted.incrementAndGet();
+        }
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+    }
+
+}
@@ -0,0 +1,81 @@
+package xyz.scootaloo.test.thread;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.anno.CmdType;
+import xyz.scootaloo.console.app.client.VariablePool;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 测试多个线程同时以默认用户的身份执行命令
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:40
+ */
+public class TestSharedUser {
+
+    @Test
+    public void testRoot() throws Exception {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        PickFactory factory = new PickFactory();
+        interpreter.register(factory);
+        int threads = 8, rounds = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t<threads; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> {
+                    // 没有设置用户，使用默认用户
+                    Assertions.assertEquals("ROOT", Interpreter.getCurrentUser().getUserKey());
+                    barrier.await();
+                    for (int i = 0; i<rounds; i++) {
+                        interpreter.set("v" + id, i);
+                        InvokeInfo info = interpreter.interpret("pick ${v" + id + "} " + id);
+                        Assertions.assertTrue(info.isSuccess(), info::getExMsg);
+                        Assertions.assertEquals(i * 100 + id, (int) info.get());
+                        // 过滤器看到的是当前线程的命令行
+                        Assertions.assertFalse(interpreter.interpret("deny " + id).isSuccess());
+                        Assertions.assertFalse(Interpreter.getCurrentUser().getResources()
+                                .getFilterChainMessage().isSuccess());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+
+            VariablePool variables = interpreter.getClientCenter().getPublicUser().getResources().getVariablePool();
+            for (int t = 0; t<threads; t++)
+                Assertions.assertEquals(rounds - 1, variables.remove("v" + t));
+        } finally {
+            pool.shutdown();
+            interpreter.unregister(factory);
+        }
+    }
+
+    public static class PickFactory {
+        @Cmd
+        public int pick(int v, int id) {
+            return v * 100 + id;
+        }
+
+        @Cmd
+        public int deny(int id) {
+            return id;
+        }
+
+        @Cmd(type = CmdType.Filter)
+        public boolean denyFilter(String command) {
+            return !command.startsWith("deny");
+        }
+    }
+
+}
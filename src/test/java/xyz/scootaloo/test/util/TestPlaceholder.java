@@ -0,0 +1,72 @@
+package xyz.scootaloo.test.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.client.Client;
+import xyz.scootaloo.console.app.client.ReplacementRecord;
+import xyz.scootaloo.console.app.parser.Interpreter;
+
+import java.util.Map;
+
+import static xyz.scootaloo.console.app.support.VariableManager.resolvePlaceholders;
+
+/**
+ * 测试占位符的解析和替换
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 21:50
+ */
+public class TestPlaceholder {
+
+    @Test
+    public void testResolve() {
+        ApplicationRunner.getInterpreter().setUser("placeholder-user");
+        Client.Resources resources = Interpreter.getCurrentUser().getResources();
+        ReplacementRecord record = resources.getReplacementRecord();
+        Map<String, Object> pool = resources.getVariablePool();
+        pool.put("name", "bench");
+        pool.put("age", 18);
+        pool.put("stu", new Student("小明", new Student("小红", null)));
+        record.refresh();
+
+        // 没有占位符、找不到的变量保持原样
+        Assertions.assertEquals("plain$text", resolvePlaceholders("plain$text", record, pool));
+        Assertions.assertEquals("${none}", resolvePlaceholders("${none}", record, pool));
+        Assertions.assertEquals(0, record.size());
+
+        // 字符串直接替换，其他类型替换成记录的id
+        Assertions.assertEquals("hi-bench", resolvePlaceholders("hi-${name}", record, pool));
+        Assertions.assertEquals("@#@1", resolvePlaceholders("${age}", record, pool));
+        Assertions.assertEquals(18, record.get(1).value);
+
+        // 属性路径，多次访问使用缓存的读取方法
+        for (int i = 0; i<3; i++) {
+            record.refresh();
+            Assertions.assertEquals("@#@0", resolvePlaceholders("${stu.friend.name}", record, pool));
+            Assertions.assertEquals("小红", record.get(0).value);
+        }
+        Assertions.assertEquals("${stu.none}", resolvePlaceholders("${stu.none}", record, pool));
+        Assertions.assertEquals("${stu.friend.friend.name}",
+                resolvePlaceholders("${stu.friend.friend.name}", record, pool));
+
+        // 与逐字符替换相同的规则: "${}" 被移除，没有闭合的部分被丢弃
+        Assertions.assertEquals("ab", resolvePlaceholders("a${}b", record, pool));
+        Assertions.assertEquals("a", resolvePlaceholders("a${name", record, pool));
+        Assertions.assertEquals("a${xbench", resolvePlaceholders("a${x${name}", record, pool));
+
+        // 随机函数每次都重新求值
+        String rand = resolvePlaceholders("${rand.int(1,3)}", record, pool);
+        Assertions.assertTrue(rand.equals("1") || rand.equals("2"), rand);
+    }
+
+    private static class Student {
+        private final String name;
+        private final Student friend;
+
+        private Student(String name, Student friend) {
+            this.name = name;
+            this.friend = friend;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package xyz.scootaloo.test.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.parser.TransformFactory;
+import xyz.scootaloo.console.app.util.ClassUtils;
+import xyz.scootaloo.console.app.util.PrimitiveArrays;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * 测试基本类型数组的解析
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 23:00
+ */
+public class TestPrimitiveArrays {
+
+    @Test
+    public void testParse() {
+        Assertions.assertArrayEquals(new int[] {1, -2, 2147483647, -2147483648},
+                (int[]) PrimitiveArrays.parse(int.class, "1, -2,2147483647,-2147483648,"));
+        Assertions.assertArrayEquals(new long[] {Long.MIN_VALUE, 0, 12},
+                (long[]) PrimitiveArrays.parse(long.class, "-9223372036854775808,+0,12"));
+        Assertions.assertArrayEquals(new boolean[] {true, false, true},
+                (boolean[]) PrimitiveArrays.parse(boolean.class, "true,false,T,"));
+        Assertions.assertArrayEquals(new byte[] {127, -128}, (byte[]) PrimitiveArrays.parse(byte.class, "127,-128"));
+        Assertions.assertEquals(0, ((int[]) PrimitiveArrays.parse(int.class, "")).length);
+
+        Assertions.assertThrows(NumberFormatException.class, () -> PrimitiveArrays.parse(int.class, "2147483648"));
+        Assertions.assertThrows(NumberFormatException.class, () -> PrimitiveArrays.parse(byte.class, "128"));
+        Assertions.assertThrows(NumberFormatException.class, () -> PrimitiveArrays.parse(int.class, "1,,2"));
+        Assertions.assertThrows(NumberFormatException.class, () -> PrimitiveArrays.parse(long.class, "1x"));
+
+        // 小数的结果和 Double.parseDouble 完全一致
+        Random random = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        String[] samples = new String[2000];
+        for (int i = 0; i<samples.length; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+            samples[i] = i % 3 == 0 ? String.valueOf(value) : String.format("%.6f", value);
+            sb.append(samples[i]).append(',');
+        }
+        sb.append("1e3,.5,-0");
+        double[] doubles = (double[]) PrimitiveArrays.parse(double.class, sb);
+        for (int i = 0; i<samples.length; i++)
+            Assertions.assertEquals(Double.parseDouble(samples[i]), doubles[i], 0, samples[i]);
+        Assertions.assertEquals(1000, doubles[samples.length], 0);
+        Assertions.assertEquals(0.5, doubles[samples.length + 1], 0);
+        Assertions.assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(doubles[samples.length + 2]));
+
+        Assertions.assertArrayEquals(new short[] {1, 2}, (short[]) ClassUtils.genPrimitiveArray(short.class, "1,2"));
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        Path file = Files.createTempFile("console-array", ".txt");
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i<100000; i++)
+                sb.append(i).append(i % 10 == 9 ? '\n' : ',');
+            Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            long[] longs = (long[]) PrimitiveArrays.load(long.class, file);
+            Assertions.assertEquals(100000, longs.length);
+            Assertions.assertEquals(99999, longs[99999]);
+            int[] ints = (int[]) TransformFactory.parsingParam(PrimitiveArrays.FILE_PREFIX + file, int[].class, int[].class);
+            Assertions.assertEquals(100000, ints.length);
+            Assertions.assertEquals(12345, ints[12345]);
+            Assertions.assertArrayEquals(new int[] {3, 4},
+                    (int[]) TransformFactory.parsingParam("3,4", int[].class, int[].class));
+        } finally {
+            Files.delete(file);
+        }
+        Assertions.assertThrows(IOException.class,
+                () -> TransformFactory.parsingParam(PrimitiveArrays.FILE_PREFIX + file, int[].class, int[].class));
+    }
+
+}
@@ -0,0 +1,120 @@
+package xyz.scootaloo.test.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import xyz.scootaloo.console.app.ApplicationRunner;
+import xyz.scootaloo.console.app.anno.Cmd;
+import xyz.scootaloo.console.app.client.VariablePool;
+import xyz.scootaloo.console.app.parser.Interpreter;
+import xyz.scootaloo.console.app.parser.InvokeInfo;
+
+/**
+ * 测试变量池中基本类型的保存和占位符替换
+ * @author flutterdash@qq.com
+ * @since 2026/10/17 22:05
+ */
+public class TestVariablePool {
+
+    @Test
+    public void testTyped() {
+        ApplicationRunner.getInterpreter().setUser("pool-user");
+        VariablePool pool = Interpreter.getCurrentUser().getResources().getVariablePool();
+        pool.putInt("i", 7);
+        pool.putLong("l", 1L << 40);
+        pool.putDouble("d", 2.5);
+        pool.putBoolean("b", true);
+        pool.put("s", "text");
+        pool.put("boxed", 3);
+
+        Assertions.assertEquals(VariablePool.Kind.INT, pool.kindOf("boxed"));
+        Assertions.assertEquals(VariablePool.Kind.OBJECT, pool.kindOf("s"));
+        Assertions.assertNull(pool.kindOf("none"));
+        Assertions.assertEquals(7, pool.getInt("i", -1));
+        Assertions.assertEquals(7L, pool.getLong("i", -1));
+        Assertions.assertEquals(2.5, pool.getDouble("d", 0), 0);
+        Assertions.assertEquals(-1, pool.getInt("s", -1));
+        Assertions.assertTrue(pool.getBoolean("b", false));
+
+        // 作为Map使用时返回包装类型
+        Assertions.assertEquals(7, pool.get("i"));
+        Assertions.assertEquals(1L << 40, pool.get("l"));
+        Assertions.assertEquals(true, pool.get("b"));
+        Assertions.assertEquals(6, pool.size());
+        Assertions.assertEquals(7, pool.put("i", "seven"));
+        Assertions.assertEquals(VariablePool.Kind.OBJECT, pool.kindOf("i"));
+        pool.entrySet().removeIf(entry -> entry.getKey().equals("boxed"));
+        Assertions.assertFalse(pool.containsKey("boxed"));
+
+        VariablePool.Footprint footprint = pool.footprint();
+        footprint.getItems().forEach(System.out::println);
+        System.out.println(footprint);
+        Assertions.assertEquals(5, footprint.getItems().size());
+        Assertions.assertEquals(3, footprint.getPrimitiveCount());
+        Assertions.assertTrue(footprint.getTotalBytes() > 0);
+        pool.clear();
+    }
+
+    @Test
+    public void testPlaceholder() {
+        Interpreter interpreter = ApplicationRunner.getInterpreter();
+        NumFactory factory = new NumFactory();
+        interpreter.register(factory);
+        try {
+            interpreter.setUser("pool-user-2");
+            VariablePool pool = Interpreter.getCurrentUser().getResources().getVariablePool();
+            pool.putInt("n", 21);
+            // 与参数类型相同，直接使用
+            Assertions.assertEquals(42, (int) interpreter.interpret("twice ${n}").get());
+            // int 放到 long 参数上，按数值转换
+            InvokeInfo info = interpreter.interpret("twiceLong ${n}");
+            Assertions.assertTrue(info.isSuccess(), info::getExMsg);
+            Assertions.assertEquals(42L, (long) info.get());
+            // 放到字符串参数上得到值的字符串形式
+            Assertions.assertEquals("21!", interpreter.interpret("shout ${n}").get());
+            // 会丢失信息的转换不进行
+            pool.putDouble("x", 1.5);
+            Assertions.assertFalse(interpreter.interpret("twice ${x}").isSuccess());
+            // int/long 放到 float/double 参数上，只有可以精确表示时才转换
+            pool.putInt("small", 3);
+            Assertions.assertEquals(1.5f, (float) interpreter.interpret("half ${small}").get(), 0);
+            pool.putInt("big", 16777217);
+            Assertions.assertFalse(interpreter.interpret("half ${big}").isSuccess());
+            pool.putLong("huge", (1L << 53) + 1);
+            Assertions.assertFalse(interpreter.interpret("same ${huge}").isSuccess());
+            pool.putLong("max", Long.MAX_VALUE);
+            Assertions.assertFalse(interpreter.interpret("same ${max}").isSuccess());
+            pool.putLong("exact", 1L << 60);
+            Assertions.assertEquals(0x1p60, (double) interpreter.interpret("same ${exact}").get(), 0);
+        } finally {
+            interpreter.unregister(factory);
+        }
+    }
+
+    public static class NumFactory {
+        @Cmd
+        public int twice(int n) {
+            return n * 2;
+        }
+
+        @Cmd
+        public long twiceLong(long n) {
+            return n * 2;
+        }
+
+        @Cmd
+        public float half(float n) {
+            return n / 2;
+        }
+
+        @Cmd
+        public double same(double n) {
+            return n;
+        }
+
+        @Cmd
+        public String shout(String text) {
+            return text + "!";
+        }
+    }
+
+}